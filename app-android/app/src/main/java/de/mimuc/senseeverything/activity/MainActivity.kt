@@ -74,7 +74,6 @@ import de.mimuc.senseeverything.api.model.ema.fullQuestionnaireJson
 import de.mimuc.senseeverything.data.DataStoreManager
 import de.mimuc.senseeverything.data.StudyState
 import de.mimuc.senseeverything.db.AppDatabase
-import de.mimuc.senseeverything.db.models.PendingQuestionnaire
 import de.mimuc.senseeverything.db.models.QuestionnaireInboxItem
 import de.mimuc.senseeverything.db.models.toInboxItem
 import de.mimuc.senseeverything.db.models.validDistance
@@ -84,13 +83,17 @@ import de.mimuc.senseeverything.permissions.PermissionManager
 import de.mimuc.senseeverything.service.LogService
 import de.mimuc.senseeverything.workers.StaleUnsyncedSensorReadingsCheckWorker
 import de.mimuc.senseeverything.workers.UploadWorkTag
+import de.mimuc.senseeverything.workers.enqueueOpportunisticSyncCheckWorker
 import de.mimuc.senseeverything.workers.enqueueSingleSensorReadingsUploadWorker
+import de.mimuc.senseeverything.workers.enqueueStorageManagerWorkers
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
@@ -135,8 +138,11 @@ class StudyHomeViewModel @Inject constructor(
     val onboardingStepFlow = dataStoreManager.onboardingStepFlow.stateIn(viewModelScope, SharingStarted.Lazily, OnboardingStep.WELCOME)
     val studyStateFlow = dataStoreManager.studyStateFlow.stateIn(viewModelScope, SharingStarted.Lazily, StudyState.LOADING)
 
-    val pendingQuestionnairesFlow: StateFlow<List<PendingQuestionnaire>> = database.pendingQuestionnaireDao().getAllNotExpiredFlow(
-        System.currentTimeMillis()).stateIn(viewModelScope, SharingStarted.Eagerly, emptyList())
+    val questionnaireInboxFlow: StateFlow<List<QuestionnaireInboxItem>> = database.pendingQuestionnaireDao().getAllNotExpiredFlow(
+        System.currentTimeMillis())
+        .map { pending -> pending.mapNotNull { it.toInboxItem(database) } }
+        .flowOn(Dispatchers.IO)
+        .stateIn(viewModelScope, SharingStarted.Eagerly, emptyList())
 
     private val _hasPermissionIssues = MutableStateFlow(false)
     val hasPermissionIssues: StateFlow<Boolean> get() = _hasPermissionIssues
@@ -154,8 +160,13 @@ class StudyHomeViewModel @Inject constructor(
         .map { workInfos -> workInfos.firstOrNull() }
         .stateIn(viewModelScope, SharingStarted.Lazily, null)
 
-    val staleUnsyncedItems: StateFlow<Long> = database.logDataDao().getUnsyncedCountBeforeFlow(
-        System.currentTimeMillis() - StaleUnsyncedSensorReadingsCheckWorker.STALE_DURATION).stateIn(viewModelScope, SharingStarted.Lazily, 0)
+    private val staleCutoff = System.currentTimeMillis() - StaleUnsyncedSensorReadingsCheckWorker.STALE_DURATION
+
+    val staleUnsyncedItems: StateFlow<Long> = combine(
+        database.logDataDao().getUnsyncedCountBeforeFlow(staleCutoff),
+        database.typedReadings().getUnsyncedCountBeforeFlow(staleCutoff)
+    ) { logData, typed -> logData + typed }
+        .stateIn(viewModelScope, SharingStarted.Lazily, 0)
 
     init {
         load()
@@ -167,6 +178,7 @@ class StudyHomeViewModel @Inject constructor(
         getStudyDetails()
         checkPermissions()
         checkUnsyncedBeforeEnd()
+        ensureStudyWorkers()
     }
 
     private fun checkPermissions() {
@@ -180,7 +192,8 @@ class StudyHomeViewModel @Inject constructor(
         viewModelScope.launch {
             withContext(Dispatchers.IO) {
                 val studyEndTimestamp = dataStoreManager.timestampStudyEndFlow.first()
-                _unsyncedCountBeforeStudyEnd.value = database.logDataDao().getUnsyncedCountBefore(studyEndTimestamp)
+                _unsyncedCountBeforeStudyEnd.value = database.logDataDao().getUnsyncedCountBefore(studyEndTimestamp) +
+                        database.typedReadings().getUnsyncedCountBefore(studyEndTimestamp)
             }
         }
     }
@@ -244,6 +257,16 @@ class StudyHomeViewModel @Inject constructor(
         context.startActivity(intent)
     }
 
+    private fun ensureStudyWorkers() {
+        viewModelScope.launch {
+            // studies started before a worker existed only get it here, already scheduled work is kept
+            if (dataStoreManager.studyStateFlow.first() == StudyState.RUNNING) {
+                enqueueOpportunisticSyncCheckWorker(getApplication())
+                enqueueStorageManagerWorkers(getApplication())
+            }
+        }
+    }
+
     private fun checkEnrolment() {
         viewModelScope.launch {
             val token = dataStoreManager.tokenFlow.first()
@@ -308,7 +331,7 @@ fun StudyHome(viewModel: StudyHomeViewModel = viewModel()) {
     val currentDay = viewModel.currentDay.collectAsState()
     val study = viewModel.study.collectAsState()
     val onboardingStep = viewModel.onboardingStepFlow.collectAsState()
-    val pendingQuestionnaires = viewModel.pendingQuestionnairesFlow.collectAsState()
+    val questionnaireInboxItems = viewModel.questionnaireInboxFlow.collectAsState()
     val studyState by viewModel.studyStateFlow.collectAsState()
     val hasPermissionIssues = viewModel.hasPermissionIssues.collectAsState()
     val unsyncedBeforeEnd = viewModel.unsyncedCountBeforeStudyEnd.collectAsState()
@@ -375,9 +398,8 @@ fun StudyHome(viewModel: StudyHomeViewModel = viewModel()) {
                     StudyState.RUNNING, StudyState.NOT_ENROLLED -> {
                         if (isEnrolled.value && !onboardingStep.value.startedButIncomplete()) {
                             // Filter questionnaires for active study
-                            val activeStudyInboxItems = pendingQuestionnaires.value
+                            val activeStudyInboxItems = questionnaireInboxItems.value
                                 .filter { it.validDistance > kotlin.time.Duration.ZERO }
-                                .map { it.toInboxItem() }
 
                             ActiveStudyScreen(
                                 currentDay = currentDay.value,
@@ -408,7 +430,7 @@ fun StudyHome(viewModel: StudyHomeViewModel = viewModel()) {
                         )
                     }
                     StudyState.ENDED -> {
-                        val endedStudyInboxItems = pendingQuestionnaires.value.map { it.toInboxItem() }
+                        val endedStudyInboxItems = questionnaireInboxItems.value
 
                         StudyEndedScreen(
                             uploadWorkInfo = uploadWorkInfo.value,
@@ -45,13 +45,13 @@ import de.mimuc.senseeverything.data.DataStoreManager
 import de.mimuc.senseeverything.data.StudyState
 import de.mimuc.senseeverything.data.getCurrentStudyPhase
 import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.models.AttachmentDiskUsage
 import de.mimuc.senseeverything.db.models.LogData
 import de.mimuc.senseeverything.db.models.NotificationTrigger
 import de.mimuc.senseeverything.db.models.NotificationTriggerModality
 import de.mimuc.senseeverything.db.models.NotificationTriggerPriority
 import de.mimuc.senseeverything.db.models.NotificationTriggerSource
 import de.mimuc.senseeverything.db.models.NotificationTriggerStatus
-import de.mimuc.senseeverything.db.models.ScheduledAlarm
 import de.mimuc.senseeverything.helpers.DatabaseExporter
 import de.mimuc.senseeverything.helpers.ExportStatus
 import de.mimuc.senseeverything.helpers.getCurrentTimeBucket
@@ -62,8 +62,11 @@ import de.mimuc.senseeverything.workers.enqueueSinglePendingQuestionnaireUploadW
 import de.mimuc.senseeverything.workers.enqueueSingleSensorReadingsUploadWorker
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import kotlinx.serialization.encodeToString
@@ -111,8 +114,14 @@ class StudyDebugInfoViewModel @Inject constructor(
     private val _currentStudyPhase = MutableStateFlow<ExperimentalGroupPhase?>(ExperimentalGroupPhase(0, "", 0,0,InteractionWidgetDisplayStrategy.DEFAULT))
     val currentStudyPhase: StateFlow<ExperimentalGroupPhase?> get() = _currentStudyPhase
 
-    private val _unsyncedLogDataCount = MutableStateFlow(0L)
-    val unsyncedLogDataCount: StateFlow<Long> get() = _unsyncedLogDataCount
+    val unsyncedLogDataCount: StateFlow<Long> = combine(
+        database.logDataDao().getUnsyncedCountBeforeFlow(Long.MAX_VALUE),
+        database.typedReadings().getUnsyncedCountBeforeFlow(Long.MAX_VALUE)
+    ) { logData, typed -> logData + typed }
+        .stateIn(viewModelScope, SharingStarted.Lazily, 0)
+
+    private val _pendingAttachments = MutableStateFlow(AttachmentDiskUsage(0, 0, 0))
+    val pendingAttachments: StateFlow<AttachmentDiskUsage> get() = _pendingAttachments
 
     private val _lastLogDataItem = MutableStateFlow<LogData?>(LogData())
     val lastLogDataItem: StateFlow<LogData?> get() = _lastLogDataItem
@@ -147,8 +156,8 @@ class StudyDebugInfoViewModel @Inject constructor(
                 _cachedQuestionnaires.value = dataStoreManager.questionnairesFlow.first()
                 _studyStartedAt.value = dataStoreManager.timestampStudyStartedFlow.first()
                 _studyEnded.value = dataStoreManager.studyStateFlow.first() == StudyState.ENDED
-                _unsyncedLogDataCount.value = database.logDataDao().unsyncedCount
                 _lastLogDataItem.value = database.logDataDao().lastItem
+                _pendingAttachments.value = database.pendingAttachmentDao().getDiskUsage()
             }
             // _lastLogServiceExitTime.value = dataStoreManager.getLastLogServiceExitTime()
         }
@@ -188,13 +197,21 @@ class StudyDebugInfoViewModel @Inject constructor(
 
     fun exportDatabase(context: Context) {
         viewModelScope.launch {
-            databaseExporter.exportDatabase(context) { zipFile ->
-                // Clean up after a delay to allow sharing to complete
-                viewModelScope.launch {
-                    kotlinx.coroutines.delay(1000 * 60 * 2) // 2 minutes
-                    zipFile.delete()
-                }
-            }
+            databaseExporter.exportDatabase(context) { zipFile -> deleteLater(zipFile) }
+        }
+    }
+
+    fun exportTables(context: Context) {
+        viewModelScope.launch {
+            databaseExporter.exportTables(context) { zipFile -> deleteLater(zipFile) }
+        }
+    }
+
+    private fun deleteLater(zipFile: java.io.File) {
+        // Clean up after a delay to allow sharing to complete
+        viewModelScope.launch {
+            kotlinx.coroutines.delay(1000 * 60 * 2) // 2 minutes
+            zipFile.delete()
         }
     }
 
@@ -241,14 +258,8 @@ class StudyDebugInfoViewModel @Inject constructor(
     fun scheduleStudyEnd() {
         viewModelScope.launch {
             val timestamp = System.currentTimeMillis() + 30.seconds.inWholeMilliseconds
-            val scheduledAlarm = ScheduledAlarm.getOrCreateScheduledAlarm(
-                database,
-                "EndStudyReceiver",
-                "EndDebug",
-                timestamp
-            )
             val context = this@StudyDebugInfoViewModel.application
-            setStudyEndAlarm(context, scheduledAlarm)
+            setStudyEndAlarm(context, database, "EndDebug", timestamp)
 
             Toast.makeText(
                 context,
@@ -270,6 +281,7 @@ fun StudyDebugInfoView(
     val questionnaires = viewModel.cachedQuestionnaires.collectAsState()
     val studyStarted = viewModel.studyStartedAt.collectAsState()
     val lastLogDataItem = viewModel.lastLogDataItem.collectAsState()
+    val pendingAttachments = viewModel.pendingAttachments.collectAsState()
     val studyEnded = viewModel.studyEnded.collectAsState()
     val sensorRunning = viewModel.sensorRunning.collectAsState()
     val exportStatus = viewModel.exportStatus.collectAsState()
@@ -283,6 +295,7 @@ fun StudyDebugInfoView(
         Text("Your Enrolment: ${enrolmentId.value} started on ${dateFromTimestamp(studyStarted.value)} ended: ${studyEnded.value}")
         Text("Cached Questionnaires: ${questionnaires.value.map { it.questionnaire.name + " (" + it.questionnaire.id + ")" }}")
         Text("Items not yet synced: ${unsyncedLogDataCount.value}")
+        Text("Files not yet synced: ${pendingAttachments.value.fileCount} (${pendingAttachments.value.totalBytes / 1024} KB on disk)")
         if (lastLogDataItem.value != null) {
             Text("Last Log Data Item: ${dateFromTimestamp(lastLogDataItem.value!!.timestamp)} ${lastLogDataItem.value?.data}")
         } else {
@@ -320,14 +333,24 @@ fun StudyDebugInfoView(
             modifier = Modifier.fillMaxWidth(),
             enabled = exportStatus.value !is ExportStatus.Exporting
         ) {
-            when (exportStatus.value) {
-                is ExportStatus.Exporting -> Text("Exporting...")
+            when (val status = exportStatus.value) {
+                is ExportStatus.Exporting -> Text(status.progress?.let { "Exporting... ${(it * 100).toInt()}%" } ?: "Exporting...")
                 is ExportStatus.Success -> Text("Export Database (Success!)")
                 is ExportStatus.Error -> Text("Export Database (Error)")
                 else -> Text("Export Database")
             }
         }
 
+        Button(
+            onClick = {
+                viewModel.exportTables(context)
+            },
+            modifier = Modifier.fillMaxWidth(),
+            enabled = exportStatus.value !is ExportStatus.Exporting
+        ) {
+            Text("Export Tables as JSON")
+        }
+
         Spacer(modifier = Modifier.height(16.dp))
 
         Button(
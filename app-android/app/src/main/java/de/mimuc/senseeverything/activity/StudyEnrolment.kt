@@ -139,8 +139,9 @@ class EnrolmentViewModel @Inject constructor(
                 _study.value = study
 
                 dataStoreManager.saveStudy(study)
-                dataStoreManager.saveStudyDays(study.durationDays)
-                dataStoreManager.saveRemainingStudyDays(study.durationDays)
+                dataStoreManager.edit {
+                    it.copy(studyDays = study.durationDays, remainingStudyDays = study.durationDays)
+                }
             }
         }
     }
@@ -165,7 +166,9 @@ class EnrolmentViewModel @Inject constructor(
 
             withContext(IO) {
                 database.logDataDao().deleteAll()
+                database.typedReadings().deleteAll()
                 database.pendingQuestionnaireDao().deleteAll()
+                database.questionnaireDefinitionDao().deleteAll()
                 database.notificationTriggerDao().deleteAll()
                 database.generatedKeyDao().deleteAll()
                 database.socialNetworkContactDao().deleteAll()
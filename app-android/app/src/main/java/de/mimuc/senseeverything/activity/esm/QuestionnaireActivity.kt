@@ -27,6 +27,8 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.unit.dp
 import androidx.lifecycle.AndroidViewModel
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.compose.LifecycleEventEffect
 import androidx.lifecycle.viewModelScope
 import dagger.hilt.android.AndroidEntryPoint
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -46,6 +48,7 @@ import de.mimuc.senseeverything.logging.WHALELog
 import de.mimuc.senseeverything.service.esm.clearReminderNotification
 import de.mimuc.senseeverything.workers.enqueueQuestionnaireUploadWorker
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
@@ -53,7 +56,6 @@ import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.flow.takeWhile
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
-import org.json.JSONArray
 import java.util.UUID
 import javax.inject.Inject
 
@@ -100,6 +102,15 @@ class QuestionnaireViewModel @Inject constructor(
     private val _pendingQuestionnaire = MutableStateFlow<PendingQuestionnaire?>(null)
     val pendingQuestionnaire: StateFlow<PendingQuestionnaire?> = _pendingQuestionnaire.asStateFlow()
 
+    // compiled once per questionnaire, re-checks only the rules affected by changed answers
+    private var ruleEvaluator: QuestionnaireRuleEvaluator? = null
+
+    // writes edited answers as drafts in between the saves on page changes
+    private val autosave = QuestionnaireAutosave(viewModelScope) { drafts ->
+        _pendingQuestionnaire.value?.saveDrafts(database, drafts)
+    }
+    private var openedPage: Int? = null
+
     // Flag to track if this instance is completing the questionnaire locally
     // Prevents the Flow observer from auto-closing when this instance completes
     private var isCompletingLocally = false
@@ -297,8 +308,8 @@ class QuestionnaireViewModel @Inject constructor(
 
             // Start observing the pending questionnaire for changes
             observePendingQuestionnaire(pqId, activity) { pq ->
-                // Load questionnaire JSON from pending questionnaire (needed for upload)
-                _questionnaire.value = fullQuestionnaireJson.decodeFromString<FullQuestionnaire>(pq.questionnaireJson)
+                // Load questionnaire from pending questionnaire (needed for upload)
+                _questionnaire.value = pq.questionnaire(database)
 
                 WHALELog.i(
                     "Questionnaire",
@@ -367,13 +378,32 @@ class QuestionnaireViewModel @Inject constructor(
         saveQuestionnaire(context)
     }
 
+    fun valueChanged(value: ElementValue) {
+        autosave.changed(value)
+    }
+
     fun stepChanged(page: Int, values: Map<Int, ElementValue>, context: Context) {
         WHALELog.i("QuestionnaireViewModel", "Step changed to page $page")
+        ruleEvaluator()?.updateAll(values)
+        openedPage = page
 
         viewModelScope.launch(Dispatchers.IO) {
             val pq = _pendingQuestionnaire.value
             if (pq != null) {
-                pq.update(database, answerValues(values), page)
+                autosave.coalesce { pq.update(database, answerValues(values), page) }
+            }
+        }
+    }
+
+    /** Folds the drafts into the pending questionnaire when the user leaves, so they are part of the next upload. */
+    fun paused() {
+        if (isCompletingLocally) return
+
+        viewModelScope.launch(Dispatchers.IO) {
+            val pq = _pendingQuestionnaire.value ?: return@launch
+            // the activity may be finishing, the pending edits must still be written
+            withContext(NonCancellable) {
+                autosave.fold { pq.update(database, null, openedPage ?: pq.openedPage) }
             }
         }
     }
@@ -395,7 +425,7 @@ class QuestionnaireViewModel @Inject constructor(
             isCompletingLocally = true
 
             withContext(Dispatchers.IO) {
-                pendingQuestionnaire.markCompleted(database, answerValues(elementValues.value))
+                autosave.coalesce { pendingQuestionnaire.markCompleted(database, answerValues(elementValues.value)) }
                 clearReminderNotification(context, database, pendingQuestionnaireId)
             }
 
@@ -412,9 +442,9 @@ class QuestionnaireViewModel @Inject constructor(
 
             WHALELog.i("Questionnaire", "Scheduled questionnaire upload worker")
 
-            val rules = questionnaire.value.questionnaire.rules
-            if (rules != null) {
-                val actions = QuestionnaireRuleEvaluator(rules).evaluate(elementValues.value)
+            val evaluator = ruleEvaluator()
+            if (evaluator != null) {
+                val actions = evaluator.updateAll(elementValues.value)
                 WHALELog.i("Questionnaire", "Evaluated rules, got actions: $actions")
                 QuestionnaireRuleEvaluator.handleActions(context, actions.flatMap { it.value }, pendingQuestionnaire)
             }
@@ -423,8 +453,15 @@ class QuestionnaireViewModel @Inject constructor(
         }
     }
 
+    private fun ruleEvaluator(): QuestionnaireRuleEvaluator? {
+        val rules = questionnaire.value.questionnaire.rules ?: return null
+        val evaluator = ruleEvaluator
+        if (evaluator != null && evaluator.rules === rules) return evaluator
+        return QuestionnaireRuleEvaluator(rules).also { ruleEvaluator = it }
+    }
+
     private fun makeAnswerJsonArray(): String {
-        return ElementValue.valueMapToJson(answerValues(_elementValues.value)).toString()
+        return ElementValue.encodeValueMap(answerValues(_elementValues.value))
     }
 
     private fun answerValues(values: Map<Int, ElementValue>): Map<Int, ElementValue> {
@@ -434,7 +471,7 @@ class QuestionnaireViewModel @Inject constructor(
     private fun loadFromPendingQuestionnaire() {
         val pq = _pendingQuestionnaire.value
         if (pq != null) {
-            _elementValues.value = ElementValue.valueMapFromJson(JSONArray(pq.elementValuesJson ?: "[]"))
+            _elementValues.value = pq.savedValues(database)
             WHALELog.i("Questionnaire", "Loaded pending questionnaire values: ${_elementValues.value}")
         } else {
             WHALELog.w("Questionnaire", "No pending questionnaire to load from")
@@ -459,6 +496,10 @@ fun QuestionnaireView(
         viewModel.loadQuestionnaire(context)
     }
 
+    LifecycleEventEffect(Lifecycle.Event.ON_PAUSE) {
+        viewModel.paused()
+    }
+
     Scaffold(
         topBar = {
             TopAppBar(
@@ -486,6 +527,9 @@ fun QuestionnaireView(
                     onStepChanged = { page, values ->
                         viewModel.stepChanged(page, values, context)
                     },
+                    onValueChanged = { value ->
+                        viewModel.valueChanged(value)
+                    },
                     initialValues = initialValues.value,
                     pendingQuestionnaire = pendingQuestionnaire.value
                 )
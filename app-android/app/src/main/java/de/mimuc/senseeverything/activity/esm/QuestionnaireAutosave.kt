@@ -0,0 +1,105 @@
+package de.mimuc.senseeverything.activity.esm
+
+import de.mimuc.senseeverything.api.model.ElementValue
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+
+/**
+ * Tracks which answers changed since they were last written. Values are only encoded when drained,
+ * so repeated edits of the same element, e.g. while typing or dragging a slider, replace each other.
+ */
+class AnswerChanges<T>(private val encode: (T) -> String) {
+    private val changed = LinkedHashMap<Int, T>()
+    private val written = HashMap<Int, String>()
+
+    fun record(elementId: Int, value: T) {
+        changed[elementId] = value
+    }
+
+    /** @return the encoded values that differ from what was last written, which are then considered written */
+    fun drain(): Map<Int, String> {
+        val drained = LinkedHashMap<Int, String>()
+        for ((elementId, value) in changed) {
+            val encoded = encode(value)
+            if (written.put(elementId, encoded) != encoded) {
+                drained[elementId] = encoded
+            }
+        }
+        changed.clear()
+        return drained
+    }
+}
+
+/**
+ * Saves answers while a questionnaire is being filled in.
+ *
+ * Edits are debounced and then only the changed answers are written as drafts with [writeDrafts]. Writes of the
+ * whole pending questionnaire, on page changes, pauses and completion, fold the drafts into the row again.
+ */
+class QuestionnaireAutosave(
+    private val scope: CoroutineScope,
+    private val debounceMillis: Long = DEBOUNCE_MILLIS,
+    private val writeDrafts: suspend (Map<Int, String>) -> Unit
+) {
+    private val mutex = Mutex()
+    private val changes = AnswerChanges<ElementValue> { it.encode() }
+
+    @Volatile
+    private var debounced: Job? = null
+
+    // drafts were written since the row was last saved
+    private var hasDrafts = false
+
+    /** Records an edit, which is written once no other edit followed for [debounceMillis]. */
+    fun changed(value: ElementValue) {
+        if (!value.isAnswer) return
+
+        synchronized(changes) { changes.record(value.elementId, value) }
+        debounced?.cancel()
+        debounced = scope.launch(Dispatchers.IO) {
+            delay(debounceMillis)
+            mutex.withLock { writeChanges() }
+        }
+    }
+
+    /**
+     * Runs [write], which saves all current answers to the row and so replaces the drafts.
+     * Edits recorded until now are part of that write and are not written as drafts anymore.
+     */
+    suspend fun coalesce(write: suspend () -> Unit) = mutex.withLock {
+        debounced?.cancel()
+        synchronized(changes) { changes.drain() }
+        write()
+        hasDrafts = false
+    }
+
+    /**
+     * Writes the pending edits as drafts and then runs [write] to fold them into the row,
+     * if there are any drafts at all.
+     */
+    suspend fun fold(write: suspend () -> Unit) = mutex.withLock {
+        debounced?.cancel()
+        writeChanges()
+        if (hasDrafts) {
+            write()
+            hasDrafts = false
+        }
+    }
+
+    private suspend fun writeChanges() {
+        val drafts = synchronized(changes) { changes.drain() }
+        if (drafts.isNotEmpty()) {
+            writeDrafts(drafts)
+            hasDrafts = true
+        }
+    }
+
+    companion object {
+        const val DEBOUNCE_MILLIS = 1500L
+    }
+}
@@ -81,6 +81,7 @@ class QuestionnaireHostViewModel @AssistedInject constructor(
     @Assisted val onSave: (Map<Int, ElementValue>) -> Unit,
     @Assisted val onStepChanged: (Int, Map<Int, ElementValue>) -> Unit,
     @Assisted val initialValues: Map<Int, ElementValue> = emptyMap(),
+    @Assisted val onValueChanged: (ElementValue) -> Unit = {},
 ) : AndroidViewModel(application) {
     private val _activeStep = MutableStateFlow(1)
     val activeStep: StateFlow<Int> get() = _activeStep
@@ -94,7 +95,8 @@ class QuestionnaireHostViewModel @AssistedInject constructor(
             questionnaire: FullQuestionnaire,
             onSave: (Map<Int, ElementValue>) -> Unit,
             onStepChanged: (Int, Map<Int, ElementValue>) -> Unit,
-            initialValues: Map<Int, ElementValue> = emptyMap()
+            initialValues: Map<Int, ElementValue> = emptyMap(),
+            onValueChanged: (ElementValue) -> Unit = {}
         ): QuestionnaireHostViewModel
     }
 
@@ -108,6 +110,12 @@ class QuestionnaireHostViewModel @AssistedInject constructor(
         }
     }
 
+    /** Sets a value edited by the user. */
+    fun changeElementValue(elementId: Int, value: ElementValue) {
+        setElementValue(elementId, value)
+        onValueChanged(value)
+    }
+
     fun stepElementsAnswered(): Boolean {
         val currentStep = _activeStep.value
         return questionnaire.elements.filter { it.step == currentStep }
@@ -165,6 +173,7 @@ fun QuestionnaireHost(
     textReplacements: Map<String, String>,
     onSave: (Map<Int, ElementValue>) -> Unit,
     onStepChanged: (Int, Map<Int, ElementValue>) -> Unit = { _, _ -> },
+    onValueChanged: (ElementValue) -> Unit = {},
     initialValues: Map<Int, ElementValue> = emptyMap(),
     embedded: Boolean = false,
     hostKey: String = "default_host",
@@ -172,7 +181,7 @@ fun QuestionnaireHost(
 ) {
     val viewModel =
         hiltViewModel<QuestionnaireHostViewModel, QuestionnaireHostViewModel.Factory>(key = hostKey) { factory ->
-            factory.create(questionnaire, onSave, onStepChanged, initialValues)
+            factory.create(questionnaire, onSave, onStepChanged, initialValues, onValueChanged)
         }
 
     CompositionLocalProvider(LocalPendingQuestionnaire provides pendingQuestionnaire) {
@@ -215,7 +224,7 @@ private fun QuestionnaireHostContent(
                         elementValue,
                         textReplacements,
                         onValueChange = { id, value ->
-                            viewModel.setElementValue(id, value)
+                            viewModel.changeElementValue(id, value)
                         })
                 }
 
@@ -266,7 +275,7 @@ private fun QuestionnaireHostContent(
                             elementValue,
                             textReplacements,
                             onValueChange = { id, value ->
-                                viewModel.setElementValue(id, value)
+                                viewModel.changeElementValue(id, value)
                             })
                     }
                 }
@@ -45,6 +45,8 @@ import de.mimuc.senseeverything.study.reschedulePhaseChanges
 import de.mimuc.senseeverything.study.scheduleStudyEndAlarm
 import de.mimuc.senseeverything.workers.enqueueOldDataCheckWorker
 import de.mimuc.senseeverything.workers.enqueuePendingQuestionnaireUploadWorker
+import de.mimuc.senseeverything.workers.enqueueOpportunisticSyncCheckWorker
+import de.mimuc.senseeverything.workers.enqueueStorageManagerWorkers
 import de.mimuc.senseeverything.workers.enqueueSensorReadingsUploadWorker
 import de.mimuc.senseeverything.workers.enqueueUpdateQuestionnaireWorker
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -80,14 +82,18 @@ class StartStudyViewModel @Inject constructor(
             if (study != null) {
                 WHALELog.d("StartStudyViewModel", "Loaded study: $study")
                 dataStoreManager.saveStudy(study)
-                dataStoreManager.saveStudyDays(study.durationDays)
-                dataStoreManager.saveRemainingStudyDays(study.durationDays)
-                dataStoreManager.saveSensitiveDataSalt(generateSensitiveDataSalt())
-                dataStoreManager.saveStudyState(StudyState.RUNNING)
 
                 // the timestamp needs to be available for the EMA scheduling
                 val startedTimestamp = System.currentTimeMillis()
-                dataStoreManager.saveTimestampStudyStarted(startedTimestamp)
+                dataStoreManager.edit {
+                    it.copy(
+                        studyDays = study.durationDays,
+                        remainingStudyDays = study.durationDays,
+                        sensitiveDataSalt = generateSensitiveDataSalt(),
+                        studyState = StudyState.RUNNING,
+                        timestampStudyStarted = startedTimestamp
+                    )
+                }
 
                 try {
                     val questionnaires =
@@ -111,17 +117,20 @@ class StartStudyViewModel @Inject constructor(
 
                 val token = dataStoreManager.tokenFlow.first()
                 enqueueSensorReadingsUploadWorker(context, token)
+                enqueueOpportunisticSyncCheckWorker(context)
                 enqueueUpdateQuestionnaireWorker(context)
                 enqueuePendingQuestionnaireUploadWorker(context, studyId, token)
                 enqueueOldDataCheckWorker(context, LocalTime.of(14, 5))
+                enqueueStorageManagerWorkers(context)
 
                 val phaseSchedules = reschedulePhaseChanges(context, database, dataStoreManager)
-                dataStoreManager.savePhaseSchedules(phaseSchedules)
 
                 val studyEndTimestamp = phaseSchedules.lastOrNull()?.endTimestamp
                     ?: (startedTimestamp + study.durationDays.days.inWholeMilliseconds)
                 scheduleStudyEndAlarm(context, studyEndTimestamp, database)
-                dataStoreManager.saveTimestampStudyEnd(studyEndTimestamp)
+                dataStoreManager.edit {
+                    it.copy(phaseSchedules = phaseSchedules, timestampStudyEnd = studyEndTimestamp)
+                }
                 PeriodicServiceHealthcheckReceiver.schedule(context)
 
                 // automatically start data collection
@@ -179,12 +179,8 @@ class StudyInfoViewModel @Inject constructor(
 
             // 2. save data still required to datastore
             val enrolmentId = dataStoreManager.participantIdFlow.first()
-            val study = dataStoreManager.studyFlow.first()
-            dataStoreManager.eraseAllData()
-            dataStoreManager.saveParticipantId(enrolmentId)
-            dataStoreManager.saveStudyState(StudyState.CANCELLED)
-            if (study != null) {
-                dataStoreManager.saveStudy(study)
+            dataStoreManager.eraseAllData(keepStudy = true) {
+                it.copy(participantId = enrolmentId, studyState = StudyState.CANCELLED)
             }
 
             // 3. pop back to main activity after all operations are complete
@@ -0,0 +1,129 @@
+package de.mimuc.senseeverything.api
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.NetworkCapabilities
+import kotlinx.serialization.Serializable
+
+/**
+ * Learned upload sizes for one network type, persisted across worker runs.
+ */
+@Serializable
+data class BatchSizingState(
+    val pageSize: Int,
+    val chunkBytes: Int,
+    val throughputBytesPerSecond: Long = 0
+)
+
+/**
+ * Receives timing information for every request issued by [ChunkedUploadHelper].
+ */
+interface UploadObserver {
+    fun onRequestCompleted(bytes: Long, latencyMillis: Long)
+
+    fun onRequestFailed(e: Exception, bytes: Long, latencyMillis: Long)
+}
+
+/**
+ * Adapts the page size and chunk byte target of sensor reading uploads using
+ * additive-increase/multiplicative-decrease.
+ *
+ * Every fast request grows both values by a fixed step until the server limits are reached.
+ * A request that fails, takes longer than [targetLatencyMillis] or whose throughput collapses
+ * compared to the running average halves both values, so congested networks back off
+ * before requests start to time out.
+ *
+ * Throughput is only compared between requests of about [chunkBytes]. Smaller requests, like the
+ * last one of a stream, are dominated by their round trip and would otherwise look like a collapse.
+ */
+class AimdBatchController(
+    initial: BatchSizingState = DEFAULT_STATE,
+    private val targetLatencyMillis: Long = DEFAULT_TARGET_LATENCY_MILLIS
+) : UploadObserver {
+    var pageSize: Int = initial.pageSize.coerceIn(MIN_PAGE_SIZE, MAX_PAGE_SIZE)
+        private set
+
+    var chunkBytes: Int = initial.chunkBytes.coerceIn(MIN_CHUNK_BYTES, MAX_CHUNK_BYTES)
+        private set
+
+    var throughputBytesPerSecond: Long = initial.throughputBytesPerSecond
+        private set
+
+    val state: BatchSizingState
+        get() = BatchSizingState(pageSize, chunkBytes, throughputBytesPerSecond)
+
+    override fun onRequestCompleted(bytes: Long, latencyMillis: Long) {
+        val slow = latencyMillis > targetLatencyMillis
+        var collapsed = false
+
+        if (bytes >= chunkBytes * FULL_REQUEST_RATIO) {
+            val throughput = bytes * 1000 / latencyMillis.coerceAtLeast(1)
+            val previousThroughput = throughputBytesPerSecond
+            throughputBytesPerSecond = if (previousThroughput == 0L) {
+                throughput
+            } else {
+                ((1 - THROUGHPUT_SMOOTHING) * previousThroughput + THROUGHPUT_SMOOTHING * throughput).toLong()
+            }
+            collapsed = previousThroughput > 0 && throughput < previousThroughput * COLLAPSE_RATIO
+        }
+
+        if (slow || collapsed) {
+            decrease()
+        } else {
+            increase()
+        }
+    }
+
+    override fun onRequestFailed(e: Exception, bytes: Long, latencyMillis: Long) {
+        decrease()
+    }
+
+    private fun increase() {
+        pageSize = (pageSize + PAGE_SIZE_STEP).coerceAtMost(MAX_PAGE_SIZE)
+        chunkBytes = (chunkBytes + CHUNK_BYTES_STEP).coerceAtMost(MAX_CHUNK_BYTES)
+    }
+
+    private fun decrease() {
+        pageSize = (pageSize * DECREASE_FACTOR).toInt().coerceAtLeast(MIN_PAGE_SIZE)
+        chunkBytes = (chunkBytes * DECREASE_FACTOR).toInt().coerceAtLeast(MIN_CHUNK_BYTES)
+    }
+
+    companion object {
+        const val MIN_PAGE_SIZE = ChunkedUploadHelper.MIN_CHUNK_SIZE
+        const val MAX_PAGE_SIZE = 2000
+        const val PAGE_SIZE_STEP = 50
+
+        const val MIN_CHUNK_BYTES = 64 * 1024
+        const val MAX_CHUNK_BYTES = ChunkedUploadHelper.DEFAULT_SAFE_THRESHOLD
+        const val CHUNK_BYTES_STEP = 64 * 1024
+
+        const val DECREASE_FACTOR = 0.5
+
+        // half of Volley's default socket timeout
+        const val DEFAULT_TARGET_LATENCY_MILLIS = 1250L
+
+        private const val THROUGHPUT_SMOOTHING = 0.3
+        private const val COLLAPSE_RATIO = 0.25
+
+        // share of the chunk target from which a request counts towards throughput
+        private const val FULL_REQUEST_RATIO = 0.5
+
+        val DEFAULT_STATE = BatchSizingState(200, 256 * 1024)
+    }
+}
+
+/**
+ * Key under which learned batch sizes are stored for the currently active network.
+ */
+fun currentNetworkTypeKey(context: Context): String {
+    val connectivityManager = context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+    val capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.activeNetwork)
+        ?: return "none"
+
+    return when {
+        capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI) -> "wifi"
+        capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET) -> "ethernet"
+        capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR) -> "cellular"
+        else -> "other"
+    }
+}
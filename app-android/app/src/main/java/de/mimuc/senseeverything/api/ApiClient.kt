@@ -9,8 +9,10 @@ import com.android.volley.Response
 import com.android.volley.toolbox.HttpHeaderParser
 import com.android.volley.toolbox.StringRequest
 import com.android.volley.toolbox.Volley
-import kotlinx.serialization.encodeToString
+import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.encodeToStream
+import java.io.ByteArrayOutputStream
 import java.nio.charset.Charset
 import kotlin.coroutines.resume
 import kotlin.coroutines.resumeWithException
@@ -56,6 +58,7 @@ class ApiClient private constructor(context: Context) {
      * POST request with kotlinx.serialization support using a custom JSON instance
      * Serializes the request object to JSON and deserializes the response
      */
+    @OptIn(ExperimentalSerializationApi::class)
     suspend inline fun <reified T, reified R> postSerialized(
         url: String,
         requestData: T,
@@ -75,10 +78,16 @@ class ApiClient private constructor(context: Context) {
                 return requestHeaders
             }
 
+            // Volley asks for the body on every attempt, it is encoded only once
+            private val body: ByteArray by lazy {
+                val stream = ByteArrayOutputStream()
+                json.encodeToStream(requestData, stream)
+                stream.toByteArray()
+            }
+
             override fun getBody(): ByteArray {
                 return try {
-                    val jsonString = json.encodeToString(requestData)
-                    jsonString.toByteArray(Charsets.UTF_8)
+                    body
                 } catch (e: Exception) {
                     throw Exception("Failed to serialize request: ${e.message}")
                 }
@@ -150,6 +159,52 @@ class ApiClient private constructor(context: Context) {
         addToRequestQueue(request)
     }
 
+    /**
+     * PUT request with a raw binary body, e.g. a part of a file
+     */
+    suspend fun putBytes(
+        url: String,
+        body: ByteArray,
+        headers: Map<String, String> = emptyMap()
+    ): String = suspendCoroutine { continuation ->
+        val request = object : Request<String>(Method.PUT, url, Response.ErrorListener { error ->
+            continuation.resumeWithException(error)
+        }) {
+            override fun getHeaders(): Map<String, String> {
+                val requestHeaders = HashMap<String, String>()
+                requestHeaders["Accept"] = "application/json"
+                if (headers.isNotEmpty()) {
+                    requestHeaders.putAll(headers)
+                }
+                return requestHeaders
+            }
+
+            override fun getBodyContentType(): String {
+                return "application/octet-stream"
+            }
+
+            override fun getBody(): ByteArray {
+                return body
+            }
+
+            override fun parseNetworkResponse(response: NetworkResponse): Response<String> {
+                return try {
+                    val charset = HttpHeaderParser.parseCharset(response.headers, "utf-8")
+                    val responseString = String(response.data, Charset.forName(charset))
+                    Response.success(responseString, HttpHeaderParser.parseCacheHeaders(response))
+                } catch (e: Exception) {
+                    Response.error(ParseError(e))
+                }
+            }
+
+            override fun deliverResponse(response: String) {
+                continuation.resume(response)
+            }
+        }
+
+        addToRequestQueue(request)
+    }
+
     /**
      * GET request with kotlinx.serialization support
      * Deserializes the JSON response to the specified type
@@ -31,6 +31,14 @@ class ApiResources {
             return "${API_BASE}/reading/batch"
         }
 
+        fun readingFileUpload(localId: String, offset: Long): String {
+            return "${API_BASE}/reading/$localId/file/upload?offset=$offset"
+        }
+
+        fun readingFileComplete(localId: String): String {
+            return "${API_BASE}/reading/$localId/file/complete"
+        }
+
         fun questionnaires(studyId: Int) : String {
             return "$API_BASE/study/$studyId/questionnaire"
         }
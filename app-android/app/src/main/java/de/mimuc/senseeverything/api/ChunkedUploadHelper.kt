@@ -44,6 +44,7 @@ object ChunkedUploadHelper {
      * @param url Target URL for upload
      * @param headers Request headers (including auth)
      * @param json Json serializer instance
+     * @param observer Optional observer notified about the latency of every request
      * @return UploadResult with statistics
      */
     suspend inline fun <reified T> uploadWithSizeBasedChunking(
@@ -53,7 +54,8 @@ object ChunkedUploadHelper {
         client: ApiClient,
         url: String,
         headers: Map<String, String>,
-        json: Json = Json
+        json: Json = Json,
+        observer: UploadObserver? = null
     ): UploadResult {
         if (data.isEmpty()) {
             WHALELog.d(TAG, "No data to upload")
@@ -71,7 +73,7 @@ object ChunkedUploadHelper {
             WHALELog.i(TAG, "Using fast path: uploading ${data.size} items ($sizeBytes bytes) in single batch")
 
             try {
-                client.postJsonString(url, jsonString, headers)
+                postObserved(client, url, jsonString, sizeBytes.toLong(), headers, observer)
                 return UploadResult(
                     totalItems = data.size,
                     chunksUploaded = 1,
@@ -94,7 +96,8 @@ object ChunkedUploadHelper {
             client = client,
             url = url,
             headers = headers,
-            json = json
+            json = json,
+            observer = observer
         )
     }
 
@@ -108,7 +111,8 @@ object ChunkedUploadHelper {
         client: ApiClient,
         url: String,
         headers: Map<String, String>,
-        json: Json
+        json: Json,
+        observer: UploadObserver? = null
     ): UploadResult {
         // Calculate optimal chunk size based on measured size
         val totalSize = json.encodeToString(data).toByteArray(Charsets.UTF_8).size
@@ -135,7 +139,8 @@ object ChunkedUploadHelper {
                     client = client,
                     url = url,
                     headers = headers,
-                    json = json
+                    json = json,
+                    observer = observer
                 )
 
                 totalBytesUploaded += result.bytesUploaded
@@ -190,7 +195,8 @@ object ChunkedUploadHelper {
         client: ApiClient,
         url: String,
         headers: Map<String, String>,
-        json: Json
+        json: Json,
+        observer: UploadObserver? = null
     ): ChunkUploadResult {
         val chunkJson = json.encodeToString(chunk)
         val chunkSize = chunkJson.toByteArray(Charsets.UTF_8).size
@@ -200,7 +206,7 @@ object ChunkedUploadHelper {
             WHALELog.w(TAG, "Warning: chunk size ($chunkSize bytes) at or above threshold ($safeThresholdBytes bytes)")
         }
 
-        client.postJsonString(url, chunkJson, headers)
+        postObserved(client, url, chunkJson, chunkSize.toLong(), headers, observer)
 
         return ChunkUploadResult(
             itemsUploaded = chunk.size,
@@ -208,6 +214,103 @@ object ChunkedUploadHelper {
         )
     }
 
+    /**
+     * Upload items that are already encoded as JSON objects, see [SensorReadingWireFormat].
+     *
+     * Chunks are planned from the exact fragment sizes, so nothing is serialized again.
+     * A chunk rejected as too large is split in half, a single item rejected as too large is dropped.
+     *
+     * @param fragments Encoded items, joined into a JSON array per request
+     * @param maxBatchSize Maximum items per request
+     * @param safeThresholdBytes Maximum safe payload size in bytes
+     * @param client ApiClient instance for making requests
+     * @param url Target URL for upload
+     * @param headers Request headers (including auth)
+     * @param observer Optional observer notified about the latency of every request
+     * @return UploadResult with statistics
+     */
+    suspend fun uploadPreEncoded(
+        fragments: List<String>,
+        maxBatchSize: Int,
+        safeThresholdBytes: Int = DEFAULT_SAFE_THRESHOLD,
+        client: ApiClient,
+        url: String,
+        headers: Map<String, String>,
+        observer: UploadObserver? = null
+    ): UploadResult {
+        if (fragments.isEmpty()) {
+            WHALELog.d(TAG, "No data to upload")
+            return UploadResult(0, 0, 0, true)
+        }
+
+        val sizes = fragments.map { SensorReadingWireFormat.utf8Length(it) }
+        val pending = ArrayDeque(SensorReadingWireFormat.planChunks(sizes, maxBatchSize, safeThresholdBytes))
+        val usedFastPath = pending.size == 1
+
+        WHALELog.d(TAG, "Uploading ${fragments.size} pre-encoded items in ${pending.size} chunk(s)")
+
+        var totalBytesUploaded = 0L
+        var chunksUploaded = 0
+        val errors = mutableListOf<String>()
+
+        while (pending.isNotEmpty()) {
+            val range = pending.removeFirst()
+            val chunkSize = SensorReadingWireFormat.arraySize(sizes.subList(range.first, range.last + 1))
+            val chunkJson = SensorReadingWireFormat.joinArray(fragments.subList(range.first, range.last + 1), chunkSize)
+
+            try {
+                postObserved(client, url, chunkJson, chunkSize.toLong(), headers, observer)
+                totalBytesUploaded += chunkSize
+                chunksUploaded++
+            } catch (e: Exception) {
+                val items = range.last - range.first + 1
+                if (isPayloadTooLargeError(e) && items > MINIMUM_CHUNK_SIZE) {
+                    WHALELog.w(TAG, "Chunk of $items items still too large, splitting")
+                    val middle = range.first + items / 2
+                    pending.addFirst(middle..range.last)
+                    pending.addFirst(range.first until middle)
+                } else if (isPayloadTooLargeError(e)) {
+                    val errorMsg = "Failed to upload chunk of $items item(s): ${e.javaClass.simpleName} - ${e.message}"
+                    WHALELog.e(TAG, "Dropping unuploadable chunk as last resort (payload too large): $errorMsg")
+                    errors.add(errorMsg)
+                } else {
+                    WHALELog.e(TAG, "Non-recoverable error uploading chunk: ${e.javaClass.simpleName} - ${e.message}")
+                    throw e
+                }
+            }
+        }
+
+        return UploadResult(
+            totalItems = fragments.size,
+            chunksUploaded = chunksUploaded,
+            totalBytesUploaded = totalBytesUploaded,
+            usedFastPath = usedFastPath,
+            errors = errors
+        )
+    }
+
+    /**
+     * Post a serialized payload and report its latency to the observer
+     */
+    suspend fun postObserved(
+        client: ApiClient,
+        url: String,
+        jsonBody: String,
+        sizeBytes: Long,
+        headers: Map<String, String>,
+        observer: UploadObserver?
+    ): String {
+        val startedAt = System.currentTimeMillis()
+        try {
+            val response = client.postJsonString(url, jsonBody, headers)
+            observer?.onRequestCompleted(sizeBytes, System.currentTimeMillis() - startedAt)
+            return response
+        } catch (e: Exception) {
+            observer?.onRequestFailed(e, sizeBytes, System.currentTimeMillis() - startedAt)
+            throw e
+        }
+    }
+
     /**
      * Check if error is a "payload too large" error (HTTP 413)
      */
@@ -0,0 +1,44 @@
+package de.mimuc.senseeverything.api
+
+import java.io.File
+import java.io.RandomAccessFile
+import java.security.MessageDigest
+
+/**
+ * Reads files in parts for resumable uploads without loading them into memory as a whole.
+ */
+object FileParts {
+    private const val READ_BUFFER_SIZE = 64 * 1024
+
+    /**
+     * Read up to [maxBytes] starting at [offset]. Returns an empty array at the end of the file.
+     */
+    fun readPart(file: File, offset: Long, maxBytes: Int): ByteArray {
+        RandomAccessFile(file, "r").use { access ->
+            val length = (access.length() - offset).coerceIn(0, maxBytes.toLong()).toInt()
+            val part = ByteArray(length)
+            access.seek(offset)
+            access.readFully(part)
+            return part
+        }
+    }
+
+    fun sha256Hex(data: ByteArray): String {
+        return MessageDigest.getInstance("SHA-256").digest(data).toHex()
+    }
+
+    fun sha256Hex(file: File): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        file.inputStream().use { input ->
+            val buffer = ByteArray(READ_BUFFER_SIZE)
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest().toHex()
+    }
+
+    private fun ByteArray.toHex(): String = joinToString("") { "%02x".format(it) }
+}
@@ -0,0 +1,96 @@
+package de.mimuc.senseeverything.api
+
+import de.mimuc.senseeverything.workers.SensorReading
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+
+/**
+ * Wire encoding of single sensor readings, so rows can be encoded once when they are written
+ * and uploads only need to join the stored fragments into a JSON array.
+ */
+object SensorReadingWireFormat {
+    private const val ARRAY_FRAMING_BYTES = 2
+    private const val SEPARATOR_BYTES = 1
+
+    /**
+     * Encode a reading exactly like the batch upload serializes it.
+     * Returns null for incomplete rows, which are then encoded at upload time.
+     */
+    @JvmStatic
+    fun encode(sensorName: String?, timestamp: Long, data: String?, localId: String?): String? {
+        if (sensorName == null || data == null || localId == null) {
+            return null
+        }
+
+        return Json.encodeToString(SensorReading(sensorName, timestamp, data, localId))
+    }
+
+    /**
+     * Join pre-encoded readings into a JSON array without decoding them again.
+     */
+    fun joinArray(fragments: List<String>, sizeBytes: Int = arraySize(fragments.map { utf8Length(it) })): String {
+        val builder = StringBuilder(sizeBytes)
+        builder.append('[')
+        for ((index, fragment) in fragments.withIndex()) {
+            if (index > 0) builder.append(',')
+            builder.append(fragment)
+        }
+        builder.append(']')
+        return builder.toString()
+    }
+
+    /**
+     * Size of the JSON array framing the given fragment sizes.
+     */
+    fun arraySize(fragmentSizes: List<Int>): Int {
+        if (fragmentSizes.isEmpty()) return ARRAY_FRAMING_BYTES
+        return ARRAY_FRAMING_BYTES + fragmentSizes.sum() + (fragmentSizes.size - 1) * SEPARATOR_BYTES
+    }
+
+    /**
+     * Split fragments into consecutive chunks of at most [maxItems] items whose array stays below [maxBytes].
+     * A fragment that is too large on its own forms a chunk by itself.
+     */
+    fun planChunks(fragmentSizes: List<Int>, maxItems: Int, maxBytes: Int): List<IntRange> {
+        val chunks = mutableListOf<IntRange>()
+        var start = 0
+        var chunkBytes = ARRAY_FRAMING_BYTES
+        for ((index, size) in fragmentSizes.withIndex()) {
+            val items = index - start
+            val added = if (items == 0) size else size + SEPARATOR_BYTES
+            if (items > 0 && (items >= maxItems || chunkBytes + added >= maxBytes)) {
+                chunks.add(start until index)
+                start = index
+                chunkBytes = ARRAY_FRAMING_BYTES + size
+            } else {
+                chunkBytes += added
+            }
+        }
+        if (start < fragmentSizes.size) {
+            chunks.add(start until fragmentSizes.size)
+        }
+        return chunks
+    }
+
+    /**
+     * Number of bytes the string occupies in UTF-8, without allocating the encoded array.
+     */
+    fun utf8Length(value: String): Int {
+        var length = 0
+        var i = 0
+        while (i < value.length) {
+            val c = value[i]
+            when {
+                c.code < 0x80 -> length += 1
+                c.code < 0x800 -> length += 2
+                Character.isHighSurrogate(c) && i + 1 < value.length && Character.isLowSurrogate(value[i + 1]) -> {
+                    length += 4
+                    i++
+                }
+                else -> length += 3
+            }
+            i++
+        }
+        return length
+    }
+}
@@ -2,29 +2,17 @@ package de.mimuc.senseeverything.api.model
 
 import de.mimuc.senseeverything.api.model.ema.QuestionnaireElement
 import de.mimuc.senseeverything.api.model.ema.QuestionnaireElementType
-import org.json.JSONArray
-import org.json.JSONObject
+import kotlinx.serialization.builtins.ListSerializer
 
 
+/**
+ * Value of a questionnaire element. Values are stored and uploaded with [ElementValueSerializer].
+ */
 open class ElementValue(val elementId: Int, val elementName: String, val elementType: QuestionnaireElementType) {
     open fun getSerializedValue(): String {
         return ""
     }
 
-    open fun valueAsJsonObject(): JSONObject {
-        return JSONObject()
-    }
-
-    open fun toJson(): JSONObject {
-        val json = JSONObject()
-        json.put("elementId", elementId)
-        json.put("elementName", elementName)
-        json.put("value", getSerializedValue())
-        json.put("valueJson", valueAsJsonObject())
-        json.put("elementType", elementType.apiName)
-        return json
-    }
-
     open fun isAnswered(): Boolean {
         return true
     }
@@ -37,86 +25,27 @@ open class ElementValue(val elementId: Int, val elementName: String, val element
             ).contains(elementType).not()
         }
 
+    fun encode(): String {
+        return elementValueJson.encodeToString(ElementValueSerializer, this)
+    }
+
     companion object {
-        fun valueMapToJson(values: Map<Int, ElementValue>): JSONArray {
-            val jsonArray = JSONArray()
-            for (value in values.values) {
-                jsonArray.put(value.toJson())
-            }
-            return jsonArray
-        }
+        private val listSerializer = ListSerializer(ElementValueSerializer)
 
-        fun valueMapFromJson(jsonArray: JSONArray): Map<Int, ElementValue> {
-            val values = mutableMapOf<Int, ElementValue>()
-            for (i in 0 until jsonArray.length()) {
-                val valueJson = jsonArray.getJSONObject(i)
-                val value = fromJson(valueJson)
-                values[value.elementId] = value
-            }
-            return values
+        fun encodeValueMap(values: Map<Int, ElementValue>): String {
+            return elementValueJson.encodeToString(listSerializer, values.values.toList())
         }
 
-        fun fromJson(json: JSONObject): ElementValue {
-            val elementId = json.getInt("elementId")
-            val elementName = json.getString("elementName")
-            val elementType = QuestionnaireElementType.fromApiName(json.getString("elementType"))
-            val valueJson = json.getJSONObject("valueJson")
-
-            return when (elementType) {
-                QuestionnaireElementType.RADIO_GROUP -> RadioGroupValue(
-                    elementId, elementName, valueJson.getInt("value")
-                )
-                QuestionnaireElementType.CHECKBOX_GROUP -> CheckboxGroupValue(
-                    elementId, elementName, valueJson.getJSONArray("values").let { entries ->
-                        (0 until entries.length()).map { index -> entries.getString(index) }
-                    }
-                )
-                QuestionnaireElementType.SLIDER -> SliderValue(
-                    elementId, elementName, valueJson.getDouble("value")
-                )
-                QuestionnaireElementType.TEXT_ENTRY -> TextEntryValue(
-                    elementId, elementName, valueJson.getString("value")
-                )
-                QuestionnaireElementType.SOCIAL_NETWORK_ENTRY -> SocialNetworkEntryValue(
-                    elementId, elementName, valueJson.getJSONArray("values").let { entries ->
-                        (0 until entries.length()).map { index -> entries.getLong(index) }
-                    }
-                )
-                QuestionnaireElementType.SOCIAL_NETWORK_RATING -> {
-                    val ratingsJson = valueJson.getJSONObject("ratings")
-                    val ratings = mutableMapOf<Int, Map<Int, ElementValue>>()
+        fun decodeValueMap(json: String): Map<Int, ElementValue> {
+            return decodeList(json).associateBy { it.elementId }
+        }
 
-                    for (key in ratingsJson.keys()) {
-                        val entryJson = ratingsJson.getJSONObject(key)
-                        val entryRatings = mutableMapOf<Int, ElementValue>()
-                        for (k in entryJson.keys()) {
-                            val valueJson = entryJson.getJSONObject(k)
-                            val value = fromJson(valueJson)
-                            entryRatings[k.toInt()] = value
-                        }
-                        ratings[key.toInt()] = entryRatings
-                    }
+        fun decodeList(json: String): List<ElementValue> {
+            return elementValueJson.decodeFromString(listSerializer, json)
+        }
 
-                    SocialNetworkRatingValue(
-                        elementId, elementName, ratings
-                    )
-                }
-                QuestionnaireElementType.CIRCUMPLEX -> CircumplexValue(
-                    elementId, elementName,
-                    Pair(valueJson.getDouble("x"), valueJson.getDouble("y"))
-                )
-                QuestionnaireElementType.BUTTON_GROUP -> ButtonGroupValue(
-                    elementId, elementName, valueJson.getString("selectedButton")
-                )
-                QuestionnaireElementType.TIME_INPUT -> TimeInputValue(
-                    elementId, elementName,
-                    Pair(valueJson.getInt("hour"), valueJson.getInt("minute"))
-                )
-                QuestionnaireElementType.QUANTITY_ENTRY -> QuantityEntryValue(
-                    elementId, elementName, valueJson.getString("value")
-                )
-                else -> ElementValue(elementId, elementName, QuestionnaireElementType.MALFORMED)
-            }
+        fun decode(json: String): ElementValue {
+            return elementValueJson.decodeFromString(ElementValueSerializer, json)
         }
     }
 }
@@ -129,12 +58,6 @@ class RadioGroupValue(elementId: Int, elementName: String, var value: Int) : Ele
     override fun getSerializedValue(): String {
         return value.toString()
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("value", value)
-        return json
-    }
 }
 
 class CheckboxGroupValue(elementId: Int, elementName: String, var values: List<String>) : ElementValue(elementId, elementName, QuestionnaireElementType.CHECKBOX_GROUP) {
@@ -145,24 +68,12 @@ class CheckboxGroupValue(elementId: Int, elementName: String, var values: List<S
     override fun getSerializedValue(): String {
         return values.joinToString(",")
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("values", JSONArray(values))
-        return json
-    }
 }
 
 class SocialNetworkEntryValue(elementId: Int, elementName: String, var values: List<Long>) : ElementValue(elementId, elementName, QuestionnaireElementType.SOCIAL_NETWORK_ENTRY) {
     override fun getSerializedValue(): String {
         return values.joinToString(",")
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("values", JSONArray(values))
-        return json
-    }
 }
 
 class SocialNetworkRatingValue(elementId: Int, elementName: String, var values: Map<Int, Map<Int, ElementValue>>) : ElementValue(elementId, elementName, QuestionnaireElementType.SOCIAL_NETWORK_RATING) {
@@ -176,20 +87,6 @@ class SocialNetworkRatingValue(elementId: Int, elementName: String, var values:
             "$key:${value.entries.joinToString(",") { (_, v) -> "${v.elementName}:${v.getSerializedValue()}" }}"
         }
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        val ratingsJson = JSONObject()
-        for ((key, value) in values) {
-            val entryJson = JSONObject()
-            for ((k, v) in value) {
-                entryJson.put(k.toString(), v.valueAsJsonObject())
-            }
-            ratingsJson.put(key.toString(), entryJson)
-        }
-        json.put("ratings", ratingsJson)
-        return json
-    }
 }
 
 class SliderValue(elementId: Int, elementName: String, var value: Double) : ElementValue(elementId, elementName, QuestionnaireElementType.SLIDER) {
@@ -200,12 +97,6 @@ class SliderValue(elementId: Int, elementName: String, var value: Double) : Elem
     override fun getSerializedValue(): String {
         return value.toString()
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("value", value)
-        return json
-    }
 }
 
 class TextEntryValue(elementId: Int, elementName: String, var value: String) : ElementValue(elementId, elementName, QuestionnaireElementType.TEXT_ENTRY) {
@@ -216,12 +107,6 @@ class TextEntryValue(elementId: Int, elementName: String, var value: String) : E
     override fun getSerializedValue(): String {
         return value
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("value", value)
-        return json
-    }
 }
 
 class QuantityEntryValue(elementId: Int, elementName: String, var value: String) : ElementValue(elementId, elementName, QuestionnaireElementType.QUANTITY_ENTRY) {
@@ -232,12 +117,6 @@ class QuantityEntryValue(elementId: Int, elementName: String, var value: String)
     override fun getSerializedValue(): String {
         return value
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("value", value)
-        return json
-    }
 }
 
 class CircumplexValue(elementId: Int, elementName: String, var value: Pair<Double, Double>) : ElementValue(elementId, elementName, QuestionnaireElementType.CIRCUMPLEX) {
@@ -248,13 +127,6 @@ class CircumplexValue(elementId: Int, elementName: String, var value: Pair<Doubl
     override fun getSerializedValue(): String {
         return "x:${value.first}, y:${value.second}"
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("x", value.first)
-        json.put("y", value.second)
-        return json
-    }
 }
 
 class ButtonGroupValue(elementId: Int, elementName: String, var value: String) : ElementValue(elementId, elementName, QuestionnaireElementType.BUTTON_GROUP) {
@@ -265,12 +137,6 @@ class ButtonGroupValue(elementId: Int, elementName: String, var value: String) :
     override fun getSerializedValue(): String {
         return value
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("value", value)
-        return json
-    }
 }
 
 class TimeInputValue(elementId: Int, elementName: String, var value: Pair<Int, Int>) : ElementValue(elementId, elementName, QuestionnaireElementType.TIME_INPUT) {
@@ -281,13 +147,6 @@ class TimeInputValue(elementId: Int, elementName: String, var value: Pair<Int, I
     override fun getSerializedValue(): String {
         return String.format("%02d:%02d", value.first, value.second)
     }
-
-    override fun valueAsJsonObject(): JSONObject {
-        val json = JSONObject()
-        json.put("hour", value.first)
-        json.put("minute", value.second)
-        return json
-    }
 }
 
 fun emptyValueForElement(element: QuestionnaireElement): ElementValue {
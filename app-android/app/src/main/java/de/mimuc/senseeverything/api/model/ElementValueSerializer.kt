@@ -0,0 +1,160 @@
+package de.mimuc.senseeverything.api.model
+
+import de.mimuc.senseeverything.api.model.ema.QuestionnaireElementType
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.descriptors.SerialDescriptor
+import kotlinx.serialization.descriptors.buildClassSerialDescriptor
+import kotlinx.serialization.descriptors.element
+import kotlinx.serialization.encoding.Decoder
+import kotlinx.serialization.encoding.Encoder
+import kotlinx.serialization.encoding.encodeStructure
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonDecoder
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.double
+import kotlinx.serialization.json.int
+import kotlinx.serialization.json.jsonArray
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.jsonPrimitive
+import kotlinx.serialization.json.long
+
+val elementValueJson = Json {
+    ignoreUnknownKeys = true
+}
+
+/**
+ * Serializes [ElementValue] and its subclasses as
+ * `{"elementId", "elementName", "value", "valueJson", "elementType"}`, where `value` is
+ * [ElementValue.getSerializedValue] and the shape of `valueJson` depends on the subclass.
+ *
+ * Values are encoded field by field, so encoding to a stream does not build an intermediate tree.
+ * Decoding needs `elementType` before `valueJson` can be read, which is why it goes through a [JsonObject].
+ */
+object ElementValueSerializer : KSerializer<ElementValue> {
+    override val descriptor: SerialDescriptor = buildClassSerialDescriptor("de.mimuc.senseeverything.api.model.ElementValue") {
+        element<Int>("elementId")
+        element<String>("elementName")
+        element<String>("value")
+        element("valueJson", ValueJsonSerializer.descriptor)
+        element<String>("elementType")
+    }
+
+    override fun serialize(encoder: Encoder, value: ElementValue) {
+        encoder.encodeStructure(descriptor) {
+            encodeIntElement(descriptor, 0, value.elementId)
+            encodeStringElement(descriptor, 1, value.elementName)
+            encodeStringElement(descriptor, 2, value.getSerializedValue())
+            encodeSerializableElement(descriptor, 3, ValueJsonSerializer, value)
+            encodeStringElement(descriptor, 4, value.elementType.apiName)
+        }
+    }
+
+    override fun deserialize(decoder: Decoder): ElementValue {
+        val input = decoder as? JsonDecoder ?: throw SerializationException("ElementValue can only be decoded from JSON")
+        return fromJsonObject(input.decodeJsonElement().jsonObject)
+    }
+
+    private fun fromJsonObject(json: JsonObject): ElementValue {
+        val elementId = json.getValue("elementId").jsonPrimitive.int
+        val elementName = json.getValue("elementName").jsonPrimitive.content
+        val elementType = QuestionnaireElementType.fromApiName(json.getValue("elementType").jsonPrimitive.content)
+        val valueJson = json.getValue("valueJson").jsonObject
+
+        return when (elementType) {
+            QuestionnaireElementType.RADIO_GROUP -> RadioGroupValue(
+                elementId, elementName, valueJson.getValue("value").jsonPrimitive.int
+            )
+            QuestionnaireElementType.CHECKBOX_GROUP -> CheckboxGroupValue(
+                elementId, elementName, valueJson.getValue("values").jsonArray.map { it.jsonPrimitive.content }
+            )
+            QuestionnaireElementType.SLIDER -> SliderValue(
+                elementId, elementName, valueJson.getValue("value").jsonPrimitive.double
+            )
+            QuestionnaireElementType.TEXT_ENTRY -> TextEntryValue(
+                elementId, elementName, valueJson.getValue("value").jsonPrimitive.content
+            )
+            QuestionnaireElementType.SOCIAL_NETWORK_ENTRY -> SocialNetworkEntryValue(
+                elementId, elementName, valueJson.getValue("values").jsonArray.map { it.jsonPrimitive.long }
+            )
+            QuestionnaireElementType.SOCIAL_NETWORK_RATING -> SocialNetworkRatingValue(
+                elementId, elementName, valueJson.getValue("ratings").jsonObject.entries.associate { (key, entry) ->
+                    key.toInt() to entry.jsonObject.entries.associate { (k, value) -> k.toInt() to fromJsonObject(value.jsonObject) }
+                }
+            )
+            QuestionnaireElementType.CIRCUMPLEX -> CircumplexValue(
+                elementId, elementName,
+                Pair(valueJson.getValue("x").jsonPrimitive.double, valueJson.getValue("y").jsonPrimitive.double)
+            )
+            // written as "value", older versions read "selectedButton"
+            QuestionnaireElementType.BUTTON_GROUP -> ButtonGroupValue(
+                elementId, elementName, (valueJson["value"] ?: valueJson.getValue("selectedButton")).jsonPrimitive.content
+            )
+            QuestionnaireElementType.TIME_INPUT -> TimeInputValue(
+                elementId, elementName,
+                Pair(valueJson.getValue("hour").jsonPrimitive.int, valueJson.getValue("minute").jsonPrimitive.int)
+            )
+            QuestionnaireElementType.QUANTITY_ENTRY -> QuantityEntryValue(
+                elementId, elementName, valueJson.getValue("value").jsonPrimitive.content
+            )
+            else -> ElementValue(elementId, elementName, QuestionnaireElementType.MALFORMED)
+        }
+    }
+}
+
+/**
+ * Writes the `valueJson` object of an [ElementValue]. It does not identify its element on its own,
+ * so it is only ever read as part of the enclosing [ElementValueSerializer].
+ */
+private object ValueJsonSerializer : KSerializer<ElementValue> {
+    override val descriptor: SerialDescriptor = buildClassSerialDescriptor("de.mimuc.senseeverything.api.model.ElementValue.valueJson")
+
+    override fun serialize(encoder: Encoder, value: ElementValue) {
+        when (value) {
+            is RadioGroupValue -> encoder.encodeSerializableValue(IntValue.serializer(), IntValue(value.value))
+            is CheckboxGroupValue -> encoder.encodeSerializableValue(StringValues.serializer(), StringValues(value.values))
+            is SliderValue -> encoder.encodeSerializableValue(DoubleValue.serializer(), DoubleValue(value.value))
+            is TextEntryValue -> encoder.encodeSerializableValue(StringValue.serializer(), StringValue(value.value))
+            is QuantityEntryValue -> encoder.encodeSerializableValue(StringValue.serializer(), StringValue(value.value))
+            is ButtonGroupValue -> encoder.encodeSerializableValue(StringValue.serializer(), StringValue(value.value))
+            is SocialNetworkEntryValue -> encoder.encodeSerializableValue(LongValues.serializer(), LongValues(value.values))
+            is SocialNetworkRatingValue -> encoder.encodeSerializableValue(Ratings.serializer(), Ratings(value.values))
+            is CircumplexValue -> encoder.encodeSerializableValue(Coordinates.serializer(), Coordinates(value.value.first, value.value.second))
+            is TimeInputValue -> encoder.encodeSerializableValue(Time.serializer(), Time(value.value.first, value.value.second))
+            else -> encoder.encodeSerializableValue(Empty.serializer(), Empty)
+        }
+    }
+
+    override fun deserialize(decoder: Decoder): ElementValue {
+        throw SerializationException("valueJson is decoded as part of its ElementValue")
+    }
+}
+
+@Serializable
+private class IntValue(val value: Int)
+
+@Serializable
+private class DoubleValue(val value: Double)
+
+@Serializable
+private class StringValue(val value: String)
+
+@Serializable
+private class StringValues(val values: List<String>)
+
+@Serializable
+private class LongValues(val values: List<Long>)
+
+@Serializable
+private class Coordinates(val x: Double, val y: Double)
+
+@Serializable
+private class Time(val hour: Int, val minute: Int)
+
+/** Ratings by contact and element, each written as its `valueJson` only. */
+@Serializable
+private class Ratings(val ratings: Map<Int, Map<Int, @Serializable(with = ValueJsonSerializer::class) ElementValue>>)
+
+@Serializable
+private object Empty
@@ -2,12 +2,12 @@ package de.mimuc.senseeverything.api.model.ema
 
 import de.mimuc.senseeverything.api.ApiClient
 import de.mimuc.senseeverything.api.ApiResources
+import de.mimuc.senseeverything.api.model.ElementValue
+import de.mimuc.senseeverything.api.model.ElementValueSerializer
 import de.mimuc.senseeverything.db.models.NotificationTrigger
 import de.mimuc.senseeverything.db.models.PendingQuestionnaire
 import de.mimuc.senseeverything.db.models.PendingQuestionnaireStatus
 import kotlinx.serialization.Serializable
-import kotlinx.serialization.json.Json
-import kotlinx.serialization.json.JsonArray
 import kotlinx.serialization.json.JsonElement
 
 @Serializable
@@ -19,7 +19,7 @@ data class QuestionnaireAnswerRequest(
     val lastOpenedPage: Int,
     val status: PendingQuestionnaireStatus,
     val notificationTrigger: SerializableNotificationTrigger?,
-    val answers: JsonArray
+    val answers: List<@Serializable(with = ElementValueSerializer::class) ElementValue>
 )
 
 @Serializable
@@ -66,8 +66,10 @@ fun makeAnswerRequest(
     pendingQuestionnaire: PendingQuestionnaire,
     notificationTrigger: NotificationTrigger?
 ): QuestionnaireAnswerRequest {
-    val answersJsonArray = Json.parseToJsonElement(answers) as JsonArray
-    
+    // decoded once into values, which are encoded straight into the request body
+    val answerValues = ElementValue.decodeList(answers)
+
+
     val serializableNotificationTrigger = notificationTrigger?.let { trigger ->
         // Parse the trigger JSON to get the trigger ID
         val triggerData = fullQuestionnaireJson.decodeFromString<QuestionnaireTrigger>(trigger.triggerJson)
@@ -100,6 +102,6 @@ fun makeAnswerRequest(
         lastOpenedPage = pendingQuestionnaire.openedPage ?: -1,
         status = pendingQuestionnaire.status,
         notificationTrigger = serializableNotificationTrigger,
-        answers = answersJsonArray
+        answers = answerValues
     )
 }
\ No newline at end of file
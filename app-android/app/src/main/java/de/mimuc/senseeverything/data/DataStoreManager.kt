@@ -2,19 +2,26 @@ package de.mimuc.senseeverything.data
 
 import android.content.Context
 import androidx.datastore.core.CorruptionException
+import androidx.datastore.core.DataMigration
 import androidx.datastore.core.DataStore
 import androidx.datastore.core.MultiProcessDataStoreFactory
 import androidx.datastore.core.Serializer
 import androidx.datastore.dataStoreFile
 import dagger.hilt.android.qualifiers.ApplicationContext
 import de.mimuc.senseeverything.activity.onboarding.OnboardingStep
+import de.mimuc.senseeverything.api.BatchSizingState
 import de.mimuc.senseeverything.api.model.ExperimentalGroupPhase
 import de.mimuc.senseeverything.api.model.Study
 import de.mimuc.senseeverything.api.model.ema.FullQuestionnaire
 import de.mimuc.senseeverything.api.model.ema.fullQuestionnaireJson
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.storage.StoragePressureLevel
 import de.mimuc.senseeverything.study.PhaseScheduleInfo
+import de.mimuc.senseeverything.workers.sync.QuestionnaireSyncWatermark
+import de.mimuc.senseeverything.workers.tiering.TieringWatermark
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.runBlocking
@@ -49,7 +56,8 @@ data class AppSettings(
     val token: String?,
     val participantId: String?,
     val studyId: Int,
-    val questionnaires: String?,
+    /** Moved to [PayloadSettings], only kept to migrate existing installs */
+    val questionnaires: String? = null,
     val inInteraction: Boolean,
     val studyDays: Int,
     val remainingStudyDays: Int,
@@ -59,13 +67,19 @@ data class AppSettings(
     val studyPausedUntil: Long,
     val onboardingStep: OnboardingStep,
     val onboardingSource: String?,
-    val study: Study?,
+    /** Moved to [PayloadSettings], only kept to migrate existing installs */
+    val study: Study? = null,
     val phases: List<ExperimentalGroupPhase>? = null,
     val studyState: StudyState,
     val sensitiveDataSalt: String? = null,
     val lastPermissionNotificationTime: Long = 0L,
     val lastRevokedPermissions: Set<String> = emptySet(),
-    val phaseSchedules: List<PhaseScheduleInfo>? = null
+    val phaseSchedules: List<PhaseScheduleInfo>? = null,
+    val lastQuestionnaireSyncTimestamp: Long = 0L,
+    val lastQuestionnaireSyncUid: String? = null,
+    val batchSizing: Map<String, BatchSizingState> = emptyMap(),
+    val storagePressure: StoragePressureLevel = StoragePressureLevel.NORMAL,
+    val tieringWatermarks: Map<String, TieringWatermark> = emptyMap()
 )
 
 @Serializable
@@ -90,7 +104,12 @@ data class OptionalAppSettings(
     val sensitiveDataSalt: String? = null,
     val lastPermissionNotificationTime: Long? = null,
     val lastRevokedPermissions: Set<String>? = null,
-    val phaseSchedules: List<PhaseScheduleInfo>? = null
+    val phaseSchedules: List<PhaseScheduleInfo>? = null,
+    val lastQuestionnaireSyncTimestamp: Long? = null,
+    val lastQuestionnaireSyncUid: String? = null,
+    val batchSizing: Map<String, BatchSizingState>? = null,
+    val storagePressure: StoragePressureLevel? = null,
+    val tieringWatermarks: Map<String, TieringWatermark>? = null
 )
 
 val DEFAULT_APP_SETTINGS = AppSettings(
@@ -98,7 +117,7 @@ val DEFAULT_APP_SETTINGS = AppSettings(
     token = "",
     participantId = "",
     studyId = -1,
-    questionnaires = "",
+    questionnaires = null,
     inInteraction = false,
     studyDays = -1,
     remainingStudyDays = -1,
@@ -112,7 +131,12 @@ val DEFAULT_APP_SETTINGS = AppSettings(
     phases = null,
     studyState = StudyState.NOT_ENROLLED,
     lastPermissionNotificationTime = 0L,
-    lastRevokedPermissions = emptySet()
+    lastRevokedPermissions = emptySet(),
+    lastQuestionnaireSyncTimestamp = 0L,
+    lastQuestionnaireSyncUid = null,
+    batchSizing = emptyMap(),
+    storagePressure = StoragePressureLevel.NORMAL,
+    tieringWatermarks = emptyMap()
 )
 
 fun recoverFromOptionalOrUseDefault(optionalAppSettings: OptionalAppSettings): AppSettings {
@@ -143,7 +167,14 @@ fun recoverFromOptionalOrUseDefault(optionalAppSettings: OptionalAppSettings): A
             ?: defaultAppSettings.lastPermissionNotificationTime,
         lastRevokedPermissions = optionalAppSettings.lastRevokedPermissions
             ?: defaultAppSettings.lastRevokedPermissions,
-        phaseSchedules = optionalAppSettings.phaseSchedules ?: defaultAppSettings.phaseSchedules
+        phaseSchedules = optionalAppSettings.phaseSchedules ?: defaultAppSettings.phaseSchedules,
+        lastQuestionnaireSyncTimestamp = optionalAppSettings.lastQuestionnaireSyncTimestamp
+            ?: defaultAppSettings.lastQuestionnaireSyncTimestamp,
+        lastQuestionnaireSyncUid = optionalAppSettings.lastQuestionnaireSyncUid
+            ?: defaultAppSettings.lastQuestionnaireSyncUid,
+        batchSizing = optionalAppSettings.batchSizing ?: defaultAppSettings.batchSizing,
+        storagePressure = optionalAppSettings.storagePressure ?: defaultAppSettings.storagePressure,
+        tieringWatermarks = optionalAppSettings.tieringWatermarks ?: defaultAppSettings.tieringWatermarks
     )
 }
 
@@ -179,11 +210,86 @@ class SettingsSerializer @Inject constructor() : Serializer<AppSettings> {
     }
 }
 
+/**
+ * Large payloads that rarely change, kept apart from [AppSettings] so that writing a single setting
+ * does not rewrite the questionnaires, and reading one does not decode them.
+ */
+@Serializable
+data class PayloadSettings(
+    val questionnaires: String? = null,
+    val study: Study? = null,
+    /** Whether the payloads have been moved out of [AppSettings] */
+    val migrated: Boolean = false
+)
+
+val DEFAULT_PAYLOAD_SETTINGS = PayloadSettings()
+
+@Singleton
+class PayloadSettingsSerializer @Inject constructor() : Serializer<PayloadSettings> {
+
+    private val json = Json {
+        ignoreUnknownKeys = true
+        explicitNulls = false
+    }
+    override val defaultValue = DEFAULT_PAYLOAD_SETTINGS
+
+    override suspend fun readFrom(input: InputStream): PayloadSettings =
+        try {
+            json.decodeFromStringJson<PayloadSettings>(input.readBytes().decodeToString())
+        } catch (serialization: SerializationException) {
+            throw CorruptionException("Unable to read payload settings", serialization)
+        }
+
+    override suspend fun writeTo(t: PayloadSettings, output: OutputStream) {
+        withContext(Dispatchers.IO) {
+            output.write(json.encodeToString(t).encodeToByteArray())
+        }
+    }
+}
+
+/** Moves questionnaires and study from [AppSettings] into [PayloadSettings] once. */
+private class PayloadSettingsMigration(
+    private val appSettings: DataStore<AppSettings>
+) : DataMigration<PayloadSettings> {
+    override suspend fun shouldMigrate(currentData: PayloadSettings): Boolean = !currentData.migrated
+
+    override suspend fun migrate(currentData: PayloadSettings): PayloadSettings {
+        val legacy = appSettings.data.first()
+        return currentData.copy(
+            questionnaires = currentData.questionnaires ?: legacy.questionnaires,
+            study = currentData.study ?: legacy.study,
+            migrated = true
+        )
+    }
+
+    override suspend fun cleanUp() {
+        appSettings.updateData { it.copy(questionnaires = null, study = null) }
+    }
+}
+
+/**
+ * Decodes an encoded payload only when its content changed. Callers share the decoded value
+ * and must not modify it.
+ */
+class DecodedCache<T>(private val decode: (String) -> T) {
+    private class Entry<T>(val hash: Int, val encoded: String, val decoded: T)
+
+    @Volatile
+    private var entry: Entry<T>? = null
+
+    fun get(encoded: String): T {
+        val hash = encoded.hashCode()
+        entry?.let { if (it.hash == hash && it.encoded == encoded) return it.decoded }
+        return decode(encoded).also { entry = Entry(hash, encoded, it) }
+    }
+}
+
 @Singleton
 class DataStoreManager @Inject constructor(@ApplicationContext context: Context) {
 
     companion object {
         private const val DATASTORE_NAME = "app_preferences"
+        private const val PAYLOAD_DATASTORE_NAME = "study_payloads"
     }
 
     private val dataStore: DataStore<AppSettings> = MultiProcessDataStoreFactory.create(
@@ -191,36 +297,64 @@ class DataStoreManager @Inject constructor(@ApplicationContext context: Context)
         produceFile = { context.appSettingsDataStoreFile(DATASTORE_NAME) }
     )
 
-    suspend fun eraseAllData() {
-        dataStore.updateData {
-            DEFAULT_APP_SETTINGS
-        }
+    private val payloadStore: DataStore<PayloadSettings> = MultiProcessDataStoreFactory.create(
+        serializer = PayloadSettingsSerializer(),
+        migrations = listOf(PayloadSettingsMigration(dataStore)),
+        produceFile = { context.appSettingsDataStoreFile(PAYLOAD_DATASTORE_NAME) }
+    )
+
+    private val questionnaireCache = DecodedCache { json ->
+        if (json.length < 2) emptyList() else fullQuestionnaireJson.decodeFromString<List<FullQuestionnaire>>(json)
     }
 
-    val tokenFlow = dataStore.data.map { preferences ->
-        preferences.token ?: ""
+    private fun <T> setting(select: (AppSettings) -> T): Flow<T> =
+        dataStore.data.map(select).distinctUntilChanged()
+
+    private fun <T> payload(select: (PayloadSettings) -> T): Flow<T> =
+        payloadStore.data.map(select).distinctUntilChanged()
+
+    /**
+     * Applies several setting changes in one atomic write, so other processes never see them half-applied.
+     * The settings file is only written if a setting actually changed.
+     *
+     * ```
+     * dataStoreManager.edit { it.copy(studyDays = days, remainingStudyDays = days) }
+     * ```
+     */
+    suspend fun edit(transform: (AppSettings) -> AppSettings) {
+        dataStore.updateData { current ->
+            val updated = transform(current)
+            if (updated == current) current else updated.copy(lastUpdate = System.currentTimeMillis())
+        }
     }
 
-    suspend fun saveParticipantId(participantId: String) {
-        dataStore.updateData { preferences ->
-            WHALELog.i("datastore", "saveParticipantId: $participantId")
-            preferences.copy(lastUpdate = System.currentTimeMillis(), participantId = participantId)
+    /**
+     * Resets all settings. [retain] can carry settings over into the reset state within the same write,
+     * [keepStudy] keeps the study payload.
+     */
+    suspend fun eraseAllData(keepStudy: Boolean = false, retain: (AppSettings) -> AppSettings = { it }) {
+        dataStore.updateData {
+            retain(DEFAULT_APP_SETTINGS)
+        }
+        payloadStore.updateData {
+            DEFAULT_PAYLOAD_SETTINGS.copy(study = if (keepStudy) it.study else null, migrated = true)
         }
     }
 
-    val participantIdFlow = dataStore.data.map { preferences ->
-        preferences.participantId ?: ""
+    val tokenFlow = setting { it.token ?: "" }
+
+    suspend fun saveParticipantId(participantId: String) {
+        WHALELog.i("datastore", "saveParticipantId: $participantId")
+        edit { it.copy(participantId = participantId) }
     }
 
+    val participantIdFlow = setting { it.participantId ?: "" }
+
     suspend fun saveStudyId(studyId: Int) {
-        dataStore.updateData { preferences ->
-            preferences.copy(lastUpdate = System.currentTimeMillis(), studyId = studyId)
-        }
+        edit { it.copy(studyId = studyId) }
     }
 
-    val studyIdFlow = dataStore.data.map { preferences ->
-        preferences.studyId
-    }
+    val studyIdFlow = setting { it.studyId }
 
     suspend fun saveEnrolment(
         token: String,
@@ -228,9 +362,8 @@ class DataStoreManager @Inject constructor(@ApplicationContext context: Context)
         studyId: Int,
         phases: List<ExperimentalGroupPhase>
     ) {
-        dataStore.updateData { preferences ->
-            preferences.copy(
-                lastUpdate = System.currentTimeMillis(),
+        edit {
+            it.copy(
                 token = token,
                 participantId = participantId,
                 studyId = studyId,
@@ -241,147 +374,81 @@ class DataStoreManager @Inject constructor(@ApplicationContext context: Context)
 
     suspend fun saveQuestionnaires(fullQuestionnaires: List<FullQuestionnaire>) {
         val json = fullQuestionnaireJson.encodeToString(fullQuestionnaires)
-        dataStore.updateData {
-            it.copy(
-                lastUpdate = System.currentTimeMillis(),
-                questionnaires = json
-            )
-        }
+        payloadStore.updateData { it.copy(questionnaires = json) }
     }
 
-    val questionnairesFlow = dataStore.data.map { preferences ->
-        val json = preferences.questionnaires ?: "[]"
-        if (json.length < 2) {
-            return@map emptyList()
-        }
-        val parsed = fullQuestionnaireJson.decodeFromString<List<FullQuestionnaire>>(json)
-        return@map parsed
-    }
+    val questionnairesFlow = payload { it.questionnaires ?: "[]" }
+        .map { questionnaireCache.get(it) }
 
     suspend fun saveStudyDays(studyDays: Int) {
-        dataStore.updateData { preferences ->
-            preferences.copy(lastUpdate = System.currentTimeMillis(), studyDays = studyDays)
-        }
+        edit { it.copy(studyDays = studyDays) }
     }
 
-    val studyDaysFlow = dataStore.data.map { preferences ->
-        preferences.studyDays
-    }
+    val studyDaysFlow = setting { it.studyDays }
 
     suspend fun saveRemainingStudyDays(remainingStudyDays: Int) {
-        dataStore.updateData { preferences ->
-            preferences.copy(
-                lastUpdate = System.currentTimeMillis(),
-                remainingStudyDays = remainingStudyDays
-            )
-        }
+        edit { it.copy(remainingStudyDays = remainingStudyDays) }
     }
 
     suspend fun saveTimestampStudyStarted(timestamp: Long) {
-        dataStore.updateData { preferences ->
-            preferences.copy(
-                lastUpdate = System.currentTimeMillis(),
-                timestampStudyStarted = timestamp
-            )
-        }
+        edit { it.copy(timestampStudyStarted = timestamp) }
     }
 
-    val timestampStudyStartedFlow = dataStore.data.map { preferences ->
-        preferences.timestampStudyStarted
-    }
+    val timestampStudyStartedFlow = setting { it.timestampStudyStarted }
 
     suspend fun saveTimestampStudyEnd(timestamp: Long) {
-        dataStore.updateData { preferences ->
-            preferences.copy(
-                lastUpdate = System.currentTimeMillis(),
-                timestampStudyEnd = timestamp
-            )
-        }
+        edit { it.copy(timestampStudyEnd = timestamp) }
     }
 
-    val timestampStudyEndFlow = dataStore.data.map { preferences ->
-        preferences.timestampStudyEnd
-    }
+    val timestampStudyEndFlow = setting { it.timestampStudyEnd }
 
     suspend fun saveStudyPaused(studyPaused: Boolean) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), studyPaused = studyPaused)
-        }
+        edit { it.copy(studyPaused = studyPaused) }
     }
 
-    val studyPausedFlow = dataStore.data.map { preferences ->
-        preferences.studyPaused
-    }
+    val studyPausedFlow = setting { it.studyPaused }
 
     suspend fun saveStudyPausedUntil(studyPausedUntil: Long) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), studyPausedUntil = studyPausedUntil)
-        }
+        edit { it.copy(studyPausedUntil = studyPausedUntil) }
     }
 
-    val studyPausedUntilFlow = dataStore.data.map { preferences ->
-        preferences.studyPausedUntil
-    }
+    val studyPausedUntilFlow = setting { it.studyPausedUntil }
 
-    val onboardingStepFlow = dataStore.data.map { preferences ->
-        preferences.onboardingStep
-    }
+    val onboardingStepFlow = setting { it.onboardingStep }
 
     suspend fun saveOnboardingStep(onboardingStep: OnboardingStep) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), onboardingStep = onboardingStep)
-        }
+        edit { it.copy(onboardingStep = onboardingStep) }
     }
 
-    val onboardingSourceFlow = dataStore.data.map { preferences ->
-        preferences.onboardingSource
-    }
+    val onboardingSourceFlow = setting { it.onboardingSource }
 
     suspend fun saveOnboardingSource(onboardingSource: String?) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), onboardingSource = onboardingSource)
-        }
+        edit { it.copy(onboardingSource = onboardingSource) }
     }
 
-    val studyFlow = dataStore.data.map { preferences ->
-        preferences.study
-    }
+    val studyFlow = payload { it.study }
 
     suspend fun saveStudy(study: Study) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), study = study)
-        }
+        payloadStore.updateData { it.copy(study = study) }
     }
 
-    val studyPhasesFlow = dataStore.data.map { preferences ->
-        preferences.phases
-    }
+    val studyPhasesFlow = setting { it.phases }
 
     suspend fun saveStudyPhases(phases: List<ExperimentalGroupPhase>) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), phases = phases)
-        }
+        edit { it.copy(phases = phases) }
     }
 
     suspend fun saveStudyState(studyState: StudyState) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), studyState = studyState)
-        }
+        edit { it.copy(studyState = studyState) }
     }
 
-    val studyStateFlow = dataStore.data.map { preferences ->
-        preferences.studyState
-    }
+    val studyStateFlow = setting { it.studyState }
 
     suspend fun saveSensitiveDataSalt(sensitiveDataSalt: String) {
-        dataStore.updateData {
-            it.copy(lastUpdate = System.currentTimeMillis(), sensitiveDataSalt = sensitiveDataSalt)
-        }
+        edit { it.copy(sensitiveDataSalt = sensitiveDataSalt) }
     }
 
-    val sensitiveDataSaltFlow = dataStore.data.map { preferences ->
-        preferences.sensitiveDataSalt
-    }
+    val sensitiveDataSaltFlow = setting { it.sensitiveDataSalt }
 
     fun getSensitiveDataSaltSync(callback: (String) -> Unit) {
         runBlocking {
@@ -392,44 +459,55 @@ class DataStoreManager @Inject constructor(@ApplicationContext context: Context)
         }
     }
 
-    val lastPermissionNotificationTimeFlow = dataStore.data.map { preferences ->
-        preferences.lastPermissionNotificationTime
-    }
+    val lastPermissionNotificationTimeFlow = setting { it.lastPermissionNotificationTime }
 
     suspend fun saveLastPermissionNotificationTime(timestamp: Long) {
-        dataStore.updateData {
-            it.copy(
-                lastUpdate = System.currentTimeMillis(),
-                lastPermissionNotificationTime = timestamp
-            )
-        }
+        edit { it.copy(lastPermissionNotificationTime = timestamp) }
     }
 
-    val lastRevokedPermissionsFlow = dataStore.data.map { preferences ->
-        preferences.lastRevokedPermissions
-    }
+    val lastRevokedPermissionsFlow = setting { it.lastRevokedPermissions }
 
     suspend fun saveLastRevokedPermissions(revokedPermissions: Set<String>) {
-        dataStore.updateData {
-            it.copy(
-                lastUpdate = System.currentTimeMillis(),
-                lastRevokedPermissions = revokedPermissions
-            )
-        }
+        edit { it.copy(lastRevokedPermissions = revokedPermissions) }
     }
 
-    val phaseSchedulesFlow = dataStore.data.map { preferences ->
-        preferences.phaseSchedules
-    }
+    val phaseSchedulesFlow = setting { it.phaseSchedules }
 
     suspend fun savePhaseSchedules(schedules: List<PhaseScheduleInfo>) {
-        dataStore.updateData {
-            it.copy(
-                lastUpdate = System.currentTimeMillis(),
-                phaseSchedules = schedules
-            )
+        edit { it.copy(phaseSchedules = schedules) }
+    }
+
+    val questionnaireSyncWatermarkFlow = setting {
+        QuestionnaireSyncWatermark(it.lastQuestionnaireSyncTimestamp, it.lastQuestionnaireSyncUid)
+    }
+
+    suspend fun saveQuestionnaireSyncWatermark(watermark: QuestionnaireSyncWatermark) {
+        edit { it.copy(lastQuestionnaireSyncTimestamp = watermark.updatedAt, lastQuestionnaireSyncUid = watermark.uid) }
+    }
+
+    val batchSizingFlow = setting { it.batchSizing }
+
+    suspend fun saveBatchSizing(networkType: String, state: BatchSizingState) {
+        edit { it.copy(batchSizing = it.batchSizing + (networkType to state)) }
+    }
+
+    val storagePressureFlow = setting { it.storagePressure }
+
+    fun getStoragePressureSync(callback: (StoragePressureLevel) -> Unit) {
+        runBlocking {
+            callback(storagePressureFlow.first())
         }
     }
+
+    suspend fun saveStoragePressure(level: StoragePressureLevel) {
+        edit { it.copy(storagePressure = level) }
+    }
+
+    val tieringWatermarksFlow = setting { it.tieringWatermarks }
+
+    suspend fun saveTieringWatermark(sensorName: String, watermark: TieringWatermark) {
+        edit { it.copy(tieringWatermarks = it.tieringWatermarks + (sensorName to watermark)) }
+    }
 }
 
 suspend fun DataStoreManager.currentStudyDay(): Long {
@@ -2,6 +2,7 @@ package de.mimuc.senseeverything.data
 
 import de.mimuc.senseeverything.db.AppDatabase
 import de.mimuc.senseeverything.db.models.NotificationTrigger
+import de.mimuc.senseeverything.db.models.NotificationTriggerIndex
 import de.mimuc.senseeverything.db.models.PendingQuestionnaire
 import java.util.Calendar
 import java.util.UUID
@@ -92,8 +93,8 @@ class QuestionnaireDataRepository @Inject constructor(
         endOfDay.set(Calendar.SECOND, 59)
         endOfDay.set(Calendar.MILLISECOND, 999)
 
-        val triggersForDay = database.notificationTriggerDao()
-            .getForInterval(startOfDay.timeInMillis, endOfDay.timeInMillis)
+        val triggersForDay = NotificationTriggerIndex
+            .between(database.notificationTriggerDao(), startOfDay.timeInMillis, endOfDay.timeInMillis)
         return triggersForDay.filter { trigger ->
             trigger.timeBucket == timeBucket
         }
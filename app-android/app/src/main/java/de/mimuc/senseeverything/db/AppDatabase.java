@@ -8,16 +8,33 @@ import de.mimuc.senseeverything.db.models.GeneratedKey;
 import de.mimuc.senseeverything.db.models.GeneratedKeyDao;
 import de.mimuc.senseeverything.db.models.LogData;
 import de.mimuc.senseeverything.db.models.LogDataDao;
+import de.mimuc.senseeverything.db.models.LogDataTableDao;
 import de.mimuc.senseeverything.db.models.NotificationTrigger;
 import de.mimuc.senseeverything.db.models.NotificationTriggerDao;
+import de.mimuc.senseeverything.db.models.PartitionedLogDataDao;
+import de.mimuc.senseeverything.db.models.PayloadDictionary;
+import de.mimuc.senseeverything.db.models.PayloadDictionaryDao;
+import de.mimuc.senseeverything.db.models.PendingAnswer;
+import de.mimuc.senseeverything.db.models.PendingAnswerDao;
+import de.mimuc.senseeverything.db.models.PendingAttachment;
+import de.mimuc.senseeverything.db.models.PendingAttachmentDao;
 import de.mimuc.senseeverything.db.models.PendingQuestionnaire;
 import de.mimuc.senseeverything.db.models.PendingQuestionnaireDao;
+import de.mimuc.senseeverything.db.models.QuestionnaireDefinition;
+import de.mimuc.senseeverything.db.models.QuestionnaireDefinitionDao;
+import de.mimuc.senseeverything.db.models.ReadingCounter;
+import de.mimuc.senseeverything.db.models.ReadingCounterDao;
+import de.mimuc.senseeverything.db.models.ScalarReading;
 import de.mimuc.senseeverything.db.models.ScheduledAlarm;
 import de.mimuc.senseeverything.db.models.ScheduledAlarmDao;
 import de.mimuc.senseeverything.db.models.SnapshotBatch;
 import de.mimuc.senseeverything.db.models.SnapshotBatchDao;
 import de.mimuc.senseeverything.db.models.SocialNetworkContact;
 import de.mimuc.senseeverything.db.models.SocialNetworkContactDao;
+import de.mimuc.senseeverything.db.models.TypedReadingCounter;
+import de.mimuc.senseeverything.db.models.TypedReadingDao;
+import de.mimuc.senseeverything.db.models.TypedReadingStore;
+import de.mimuc.senseeverything.db.models.Vector3Reading;
 
 @Database(entities = {
         LogData.class,
@@ -26,10 +43,35 @@ import de.mimuc.senseeverything.db.models.SocialNetworkContactDao;
         SocialNetworkContact.class,
         NotificationTrigger.class,
         ScheduledAlarm.class,
-        SnapshotBatch.class
-}, version = 18, autoMigrations = {@AutoMigration(from = 17, to = 18)}, exportSchema = true)
+        SnapshotBatch.class,
+        PendingAttachment.class,
+        PayloadDictionary.class,
+        Vector3Reading.class,
+        ScalarReading.class,
+        ReadingCounter.class,
+        QuestionnaireDefinition.class,
+        PendingAnswer.class,
+        TypedReadingCounter.class
+}, version = 27, autoMigrations = {@AutoMigration(from = 17, to = 18), @AutoMigration(from = 18, to = 19), @AutoMigration(from = 19, to = 20), @AutoMigration(from = 20, to = 21), @AutoMigration(from = 21, to = 22), @AutoMigration(from = 22, to = 23), @AutoMigration(from = 23, to = 24), @AutoMigration(from = 24, to = 25), @AutoMigration(from = 25, to = 26), @AutoMigration(from = 26, to = 27)}, exportSchema = true)
 public abstract class AppDatabase extends RoomDatabase {
-    public abstract LogDataDao logDataDao();
+    private volatile PartitionedLogDataDao partitionedLogDataDao;
+    private volatile TypedReadingStore typedReadingStore;
+
+    /**
+     * LogData is stored in daily partitions outside of the Room schema, see {@link PartitionedLogDataDao}.
+     */
+    public LogDataDao logDataDao() {
+        if (partitionedLogDataDao == null) {
+            synchronized (this) {
+                if (partitionedLogDataDao == null) {
+                    partitionedLogDataDao = new PartitionedLogDataDao(this);
+                }
+            }
+        }
+        return partitionedLogDataDao;
+    }
+
+    public abstract LogDataTableDao logDataTableDao();
 
     public abstract PendingQuestionnaireDao pendingQuestionnaireDao();
 
@@ -42,4 +84,30 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract ScheduledAlarmDao scheduledAlarmDao();
 
     public abstract SnapshotBatchDao snapshotBatchDao();
+
+    public abstract PendingAttachmentDao pendingAttachmentDao();
+
+    public abstract PayloadDictionaryDao payloadDictionaryDao();
+
+    public abstract TypedReadingDao typedReadingDao();
+
+    /**
+     * Writes to the typed reading tables go through the store, which keeps their counters current.
+     */
+    public TypedReadingStore typedReadings() {
+        if (typedReadingStore == null) {
+            synchronized (this) {
+                if (typedReadingStore == null) {
+                    typedReadingStore = new TypedReadingStore(this);
+                }
+            }
+        }
+        return typedReadingStore;
+    }
+
+    public abstract ReadingCounterDao readingCounterDao();
+
+    public abstract QuestionnaireDefinitionDao questionnaireDefinitionDao();
+
+    public abstract PendingAnswerDao pendingAnswerDao();
 }
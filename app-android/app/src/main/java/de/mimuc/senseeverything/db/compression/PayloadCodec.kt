@@ -0,0 +1,53 @@
+package de.mimuc.senseeverything.db.compression
+
+import java.io.ByteArrayOutputStream
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/**
+ * Raw deflate with a preset dictionary, the format of compressed LogData payloads.
+ * The dictionary itself is not part of the output, rows reference it by id.
+ */
+object PayloadCodec {
+    fun compress(data: String, dictionary: ByteArray): ByteArray {
+        val deflater = Deflater(Deflater.BEST_COMPRESSION, true)
+        try {
+            deflater.setDictionary(dictionary)
+            deflater.setInput(data.toByteArray(Charsets.UTF_8))
+            deflater.finish()
+
+            val output = ByteArrayOutputStream(data.length / 2)
+            val buffer = ByteArray(BUFFER_SIZE)
+            while (!deflater.finished()) {
+                val length = deflater.deflate(buffer)
+                output.write(buffer, 0, length)
+            }
+            return output.toByteArray()
+        } finally {
+            deflater.end()
+        }
+    }
+
+    fun decompress(compressed: ByteArray, dictionary: ByteArray): String {
+        val inflater = Inflater(true)
+        try {
+            inflater.setDictionary(dictionary)
+            inflater.setInput(compressed)
+
+            val output = ByteArrayOutputStream(compressed.size * 4)
+            val buffer = ByteArray(BUFFER_SIZE)
+            while (!inflater.finished()) {
+                val length = inflater.inflate(buffer)
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw IllegalStateException("Truncated payload")
+                }
+                output.write(buffer, 0, length)
+            }
+            return output.toByteArray().decodeToString()
+        } finally {
+            inflater.end()
+        }
+    }
+
+    private const val BUFFER_SIZE = 8 * 1024
+}
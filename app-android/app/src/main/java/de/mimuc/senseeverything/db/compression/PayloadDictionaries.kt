@@ -0,0 +1,102 @@
+package de.mimuc.senseeverything.db.compression
+
+import androidx.room.InvalidationTracker
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.models.PayloadDictionary
+import de.mimuc.senseeverything.db.models.PayloadDictionaryDao
+import de.mimuc.senseeverything.logging.WHALELog
+import java.util.concurrent.ConcurrentHashMap
+
+/** A payload compressed with the dictionary [dictionaryId]. */
+class CompressedPayload(
+    val dictionaryId: Int,
+    val bytes: ByteArray
+)
+
+/**
+ * Process-wide cache of payload dictionaries, so LogData rows can decompress their payload on first access.
+ * Dictionaries that are not cached yet, e.g. older versions, are loaded from the database on demand.
+ *
+ * The latest dictionaries are loaded again once the table was invalidated, which with multi-instance
+ * invalidation also happens when the other process trained new ones.
+ */
+object PayloadDictionaries {
+    private const val TAG = "PayloadDictionaries"
+
+    /** Shorter payloads do not gain enough to be worth the CPU time. */
+    const val MIN_COMPRESSED_LENGTH = 256
+
+    /** Payloads that do not shrink below this share, e.g. already gzipped data, are stored as they are. */
+    private const val MAX_COMPRESSED_RATIO = 0.9
+
+    private const val TABLE = "payload_dictionaries"
+
+    private val dictionaries = ConcurrentHashMap<Int, ByteArray>()
+
+    @Volatile
+    private var latestBySensor: Map<String, PayloadDictionary> = emptyMap()
+
+    @Volatile
+    private var dao: PayloadDictionaryDao? = null
+
+    @Volatile
+    private var stale = false
+
+    private val invalidationObserver = object : InvalidationTracker.Observer(TABLE) {
+        override fun onInvalidated(tables: Set<String>) {
+            stale = true
+        }
+    }
+
+    /** Loads the latest dictionaries and keeps them up to date with the table of [database]. */
+    fun load(database: AppDatabase) {
+        dao = database.payloadDictionaryDao()
+        database.invalidationTracker.addObserver(invalidationObserver)
+        reload()
+    }
+
+    private fun reload() {
+        val dictionaryDao = dao ?: return
+        // cleared first, so an invalidation during the query loads them again
+        stale = false
+        val latest = dictionaryDao.getLatest()
+        latest.forEach { dictionaries[it.id] = it.dictionary }
+        latestBySensor = latest.associateBy { it.sensorName }
+    }
+
+    fun register(dictionary: PayloadDictionary) {
+        dictionaries[dictionary.id] = dictionary.dictionary
+        latestBySensor = latestBySensor + (dictionary.sensorName to dictionary)
+    }
+
+    fun latestFor(sensorName: String): PayloadDictionary? {
+        if (stale) reload()
+        return latestBySensor[sensorName]
+    }
+
+    /**
+     * @return the compressed payload, or null if it should be stored as plain text
+     */
+    fun compress(sensorName: String?, data: String?): CompressedPayload? {
+        if (sensorName == null || data == null || data.length < MIN_COMPRESSED_LENGTH) return null
+        val dictionary = latestFor(sensorName) ?: return null
+
+        val compressed = PayloadCodec.compress(data, dictionary.dictionary)
+        if (compressed.size >= data.length * MAX_COMPRESSED_RATIO) return null
+        return CompressedPayload(dictionary.id, compressed)
+    }
+
+    /**
+     * @return the payload, or null if its dictionary is not available
+     */
+    @JvmStatic
+    fun decompress(dictionaryId: Int, compressed: ByteArray): String? {
+        val dictionary = dictionaries[dictionaryId]
+            ?: dao?.getById(dictionaryId)?.dictionary?.also { dictionaries[dictionaryId] = it }
+        if (dictionary == null) {
+            WHALELog.e(TAG, "Dictionary $dictionaryId not found, payload cannot be read")
+            return null
+        }
+        return PayloadCodec.decompress(compressed, dictionary)
+    }
+}
@@ -0,0 +1,42 @@
+package de.mimuc.senseeverything.db.compression
+
+/**
+ * Builds a preset dictionary from sample payloads of one sensor.
+ *
+ * Payloads are split into segments at common delimiters, and segments are scored by their length times the
+ * number of additional samples they appear in. The best segments fill the dictionary, with the most valuable
+ * ones at the end, since deflate reaches the end of the dictionary with the shortest distances.
+ */
+object PayloadDictionaryTrainer {
+    /** Deflate only looks back 32 KB, a larger dictionary would not be used. */
+    const val MAX_DICTIONARY_BYTES = 32 * 1024
+
+    private const val MIN_SEGMENT_LENGTH = 4
+    private val DELIMITERS = Regex("(?<=[,;|\\n{}\\[\\]])")
+
+    fun train(samples: List<String>, maxBytes: Int = MAX_DICTIONARY_BYTES): ByteArray {
+        val sampleCounts = HashMap<String, Int>()
+        for (sample in samples) {
+            for (segment in sample.split(DELIMITERS).toSet()) {
+                if (segment.length >= MIN_SEGMENT_LENGTH) {
+                    sampleCounts[segment] = (sampleCounts[segment] ?: 0) + 1
+                }
+            }
+        }
+
+        val selected = mutableListOf<Pair<String, Int>>()
+        var size = 0
+        for ((segment, count) in sampleCounts.entries.sortedByDescending { (it.value - 1) * it.key.length }) {
+            if (count < 2) break
+            val bytes = segment.toByteArray(Charsets.UTF_8).size
+            if (size + bytes > maxBytes) continue
+            selected.add(segment to (count - 1) * segment.length)
+            size += bytes
+        }
+
+        return selected
+            .sortedBy { it.second }
+            .joinToString("") { it.first }
+            .toByteArray(Charsets.UTF_8)
+    }
+}
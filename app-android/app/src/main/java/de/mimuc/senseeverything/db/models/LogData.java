@@ -1,9 +1,12 @@
 package de.mimuc.senseeverything.db.models;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 
-import java.util.UUID;
+import de.mimuc.senseeverything.api.SensorReadingWireFormat;
+import de.mimuc.senseeverything.db.compression.PayloadDictionaries;
+import de.mimuc.senseeverything.helpers.UuidV7Generator;
 
 @Entity
 public class LogData {
@@ -17,7 +20,13 @@ public class LogData {
 
     public boolean synced;
 
-    public String data;
+    private String data;
+
+    /** 0 for a plain payload in {@code data}, otherwise the id of the dictionary {@code compressedData} uses. */
+    @ColumnInfo(defaultValue = "0")
+    public int dataEncoding;
+
+    public byte[] compressedData;
 
     public boolean hasFile;
 
@@ -25,6 +34,9 @@ public class LogData {
 
     public String localId;
 
+    /** The reading encoded for upload, written once together with the row. */
+    public String wireJson;
+
     public LogData(){}
 
     public LogData(long timestamp, String sensorName, String data){
@@ -32,7 +44,8 @@ public class LogData {
         this.sensorName = sensorName;
         this.data = data;
         this.synced = false;
-        this.localId = UUID.randomUUID().toString();
+        this.localId = UuidV7Generator.nextString();
+        this.wireJson = SensorReadingWireFormat.encode(sensorName, timestamp, data, localId);
     }
 
     public LogData(long timestamp, String sensorName, String data, boolean hasFile, String filePath) {
@@ -41,6 +54,19 @@ public class LogData {
         this.data = data;
         this.hasFile = hasFile;
         this.filePath = filePath;
-        this.localId = UUID.randomUUID().toString();
+        this.localId = UuidV7Generator.nextString();
+        this.wireJson = SensorReadingWireFormat.encode(sensorName, timestamp, data, localId);
+    }
+
+    /** Compressed payloads are decompressed on first access. */
+    public String getData() {
+        if (data == null && compressedData != null) {
+            data = PayloadDictionaries.decompress(dataEncoding, compressedData);
+        }
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
     }
 }
@@ -1,41 +1,74 @@
 package de.mimuc.senseeverything.db.models
 
-import androidx.room.Dao
-import androidx.room.Delete
-import androidx.room.Insert
-import androidx.room.Query
-import androidx.room.Update
 import kotlinx.coroutines.flow.Flow
 
-@Dao
+/**
+ * Access to sensor readings, which are stored in daily partitions by [PartitionedLogDataDao].
+ */
 interface LogDataDao {
-    @get:Query("SELECT * FROM logdata")
     val all: List<LogData>
 
-    @Insert
     fun insertAll(vararg logDatas: LogData?)
 
-    @Query("SELECT * FROM logdata WHERE synced = FALSE AND timestamp <= :cutoffTimestamp ORDER BY timestamp ASC LIMIT :n")
     fun getNextNUnsyncedBefore(n: Int, cutoffTimestamp: Long): List<LogData>
 
-    @get:Query("SELECT COUNT(*) FROM logdata WHERE synced = FALSE")
     val unsyncedCount: Long
 
-    @Query("SELECT COUNT(*) FROM logdata WHERE synced = FALSE AND timestamp <= :cutoffTimestamp")
+    /** Rows that are still stored, synced or not. */
+    val rowCount: Long
+
     fun getUnsyncedCountBefore(cutoffTimestamp: Long): Long
 
-    @Query("SELECT COUNT(*) FROM logdata WHERE synced = FALSE AND timestamp <= :cutoffTimestamp")
     fun getUnsyncedCountBeforeFlow(cutoffTimestamp: Long): Flow<Long>
 
-    @get:Query("SELECT * FROM logdata ORDER BY timestamp DESC LIMIT 1")
+    fun getUnsyncedCountsBySensor(): Map<String, Long>
+
+    fun getNextNUnsyncedBeforeForSensors(n: Int, cutoffTimestamp: Long, sensorNames: List<String>): List<LogData>
+
+    fun getNextNUnsyncedBeforeExcludingSensors(n: Int, cutoffTimestamp: Long, sensorNames: List<String>): List<LogData>
+
+    /**
+     * Like [getNextNUnsyncedBeforeForSensors], but only readings after the one at [afterTimestamp] with [afterId],
+     * ordered by timestamp and id, so paging does not skip readings that share a timestamp.
+     */
+    fun getNextNUnsyncedAfterForSensors(n: Int, afterTimestamp: Long, afterId: Int, cutoffTimestamp: Long, sensorNames: List<String>): List<LogData>
+
+    fun getUnsyncedBacklogBefore(cutoffTimestamp: Long): UnsyncedBacklog
+
+    fun getUnsyncedBacklogBeforeForSensors(cutoffTimestamp: Long, sensorNames: List<String>): UnsyncedBacklog
+
+    fun getUnsyncedBacklogBeforeExcludingSensors(cutoffTimestamp: Long, sensorNames: List<String>): UnsyncedBacklog
+
     val lastItem: LogData?
 
-    @Update
     fun updateLogData(vararg logData: LogData?)
 
-    @Delete
+    /**
+     * Remove readings, e.g. after they were uploaded.
+     * Rows are only marked as synced and hidden from all queries, the storage is freed by [dropSyncedPartitions].
+     */
     fun deleteLogData(vararg logData: LogData?)
 
-    @Query("DELETE FROM logdata")
+    /**
+     * Clear the pre-encoded upload form of unsynced readings to save space, it is encoded again on upload.
+     * @return the number of changed rows
+     */
+    fun dropWireFormat(): Int
+
+    /**
+     * Drop partitions of past days that only contain synced readings.
+     * @return the number of dropped partitions
+     */
+    fun dropSyncedPartitions(): Int
+
+    /** Payloads of the most recent readings of a sensor, synced or not, e.g. to train a compression dictionary. */
+    fun getRecentPayloads(sensorName: String, n: Int): List<String>
+
     fun deleteAll()
 }
+
+/** Number of unsynced rows and the approximate size of their payloads. */
+data class UnsyncedBacklog(
+    val rowCount: Long,
+    val byteCount: Long
+)
@@ -0,0 +1,61 @@
+package de.mimuc.senseeverything.db.models
+
+import java.time.LocalDate
+import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
+
+/**
+ * Naming and time ranges of the daily LogData partition tables.
+ * Partitions cover one UTC day each and are named like `logdata_20261019`.
+ */
+object LogDataPartitions {
+    const val DAY_MILLIS = 24 * 60 * 60 * 1000L
+
+    /** Room's original table, only read once to move its rows into partitions. */
+    const val LEGACY_TABLE = "LogData"
+
+    private const val PREFIX = "logdata_"
+    private val DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE
+
+    const val COLUMNS = "`timestamp`, `sensorName`, `synced`, `data`, `hasFile`, `filePath`, `localId`, `wireJson`, " +
+            "`dataEncoding`, `compressedData`"
+
+    /** Columns added after the first partitions were created, with their definitions. */
+    val ADDED_COLUMNS = linkedMapOf(
+        "dataEncoding" to "INTEGER NOT NULL DEFAULT 0",
+        "compressedData" to "BLOB"
+    )
+
+    /** Pattern for `sqlite_master` lookups, with `\` as escape character. */
+    const val TABLE_NAME_PATTERN = "logdata\\_%"
+
+    /** Same columns as the [LogData] entity, see the exported Room schema. */
+    fun createSql(day: Long): String {
+        return "CREATE TABLE IF NOT EXISTS `${tableName(day)}` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "`timestamp` INTEGER NOT NULL, `sensorName` TEXT, `synced` INTEGER NOT NULL, `data` TEXT, " +
+                "`hasFile` INTEGER NOT NULL, `filePath` TEXT, `localId` TEXT, `wireJson` TEXT, " +
+                "`dataEncoding` INTEGER NOT NULL DEFAULT 0, `compressedData` BLOB)"
+    }
+
+    /** Day number since the epoch (UTC) of a timestamp. */
+    fun dayOf(timestamp: Long): Long = Math.floorDiv(timestamp, DAY_MILLIS)
+
+    fun startOf(day: Long): Long = day * DAY_MILLIS
+
+    fun tableName(day: Long): String = PREFIX + LocalDate.ofEpochDay(day).format(DAY_FORMAT)
+
+    /**
+     * @return the day of a partition table, or null if [tableName] is not a partition
+     */
+    fun dayOfTable(tableName: String): Long? {
+        if (!tableName.startsWith(PREFIX)) return null
+        return try {
+            LocalDate.parse(tableName.removePrefix(PREFIX), DAY_FORMAT).toEpochDay()
+        } catch (e: DateTimeParseException) {
+            null
+        }
+    }
+
+    /** A partition is closed once its day has passed, no new readings are expected for it. */
+    fun isClosed(day: Long, now: Long): Boolean = day < dayOf(now)
+}
@@ -0,0 +1,21 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.Dao
+import androidx.room.RawQuery
+import androidx.sqlite.db.SupportSQLiteQuery
+
+/**
+ * Row mapping for queries on the LogData partition tables, which are not known to Room.
+ * Use [LogDataDao] to access readings.
+ */
+@Dao
+interface LogDataTableDao {
+    @RawQuery
+    fun query(query: SupportSQLiteQuery): List<LogData>
+
+    @RawQuery
+    fun queryBacklog(query: SupportSQLiteQuery): UnsyncedBacklog
+
+    @RawQuery
+    fun queryLong(query: SupportSQLiteQuery): Long
+}
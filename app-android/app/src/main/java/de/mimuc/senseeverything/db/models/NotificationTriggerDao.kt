@@ -6,32 +6,60 @@ import androidx.room.Query
 import androidx.room.Update
 import java.util.UUID
 
+/** Writes also update the [NotificationTriggerIndex]. */
 @Dao
-interface NotificationTriggerDao {
+abstract class NotificationTriggerDao {
     @Query("SELECT * FROM notification_trigger")
-    fun getAll(): List<NotificationTrigger>
+    abstract fun getAll(): List<NotificationTrigger>
+
+    @Query("SELECT COUNT(*) FROM notification_trigger")
+    abstract fun getCount(): Long
 
     @Query("SELECT * FROM notification_trigger WHERE valid_from <= :timestamp ORDER BY valid_from DESC LIMIT 1")
-    fun getLast(timestamp: Long): NotificationTrigger?
+    abstract fun getLast(timestamp: Long): NotificationTrigger?
 
-    @Query("SELECT * FROM notification_trigger WHERE modality = :modality AND valid_from > :timestamp ORDER BY valid_from ASC")
-    fun getNextForModality(modality: NotificationTriggerModality, timestamp: Long): List<NotificationTrigger>
+    @Query("SELECT * FROM notification_trigger WHERE modality = :modality AND valid_from > :timestamp ORDER BY valid_from ASC LIMIT 1")
+    abstract fun getFirstForModality(modality: NotificationTriggerModality, timestamp: Long): NotificationTrigger?
 
     @Query("SELECT * FROM notification_trigger WHERE valid_from > :timestamp AND name=:name ORDER BY valid_from ASC")
-    fun getNextForName(name: String, timestamp: Long): List<NotificationTrigger>
+    abstract fun getNextForName(name: String, timestamp: Long): List<NotificationTrigger>
 
     @Query("SELECT * FROM notification_trigger WHERE valid_from BETWEEN :from AND :to ORDER BY valid_from ASC")
-    fun getForInterval(from: Long, to: Long): List<NotificationTrigger>
+    abstract fun getForInterval(from: Long, to: Long): List<NotificationTrigger>
 
     @Query("SELECT * FROM notification_trigger WHERE uid = :uid")
-    fun getById(uid: UUID): NotificationTrigger?
+    abstract fun getById(uid: UUID): NotificationTrigger?
+
+    fun insert(notificationTrigger: NotificationTrigger): Long {
+        val rowId = insertRow(notificationTrigger)
+        NotificationTriggerIndex.onInserted(listOf(notificationTrigger))
+        return rowId
+    }
+
+    fun insertAll(notificationTriggers: List<NotificationTrigger>) {
+        insertRows(notificationTriggers)
+        NotificationTriggerIndex.onInserted(notificationTriggers)
+    }
+
+    fun update(notificationTrigger: NotificationTrigger) {
+        updateRow(notificationTrigger)
+        NotificationTriggerIndex.onUpdated(notificationTrigger)
+    }
+
+    fun deleteAll() {
+        deleteAllRows()
+        NotificationTriggerIndex.onCleared()
+    }
+
+    @Insert()
+    protected abstract fun insertRow(notificationTrigger: NotificationTrigger): Long
 
     @Insert()
-    fun insert(notificationTrigger: NotificationTrigger): Long
+    protected abstract fun insertRows(notificationTriggers: List<NotificationTrigger>)
 
     @Update()
-    fun update(notificationTrigger: NotificationTrigger)
+    protected abstract fun updateRow(notificationTrigger: NotificationTrigger)
 
     @Query("DELETE FROM notification_trigger")
-    fun deleteAll()
-}
\ No newline at end of file
+    protected abstract fun deleteAllRows()
+}
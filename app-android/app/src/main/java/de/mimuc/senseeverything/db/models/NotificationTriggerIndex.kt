@@ -0,0 +1,141 @@
+package de.mimuc.senseeverything.db.models
+
+import java.util.UUID
+
+/**
+ * Immutable view of notification triggers, sorted by [NotificationTrigger.validFrom].
+ * Changes return a new timeline, so readers never see a partially updated index.
+ */
+class TriggerTimeline private constructor(
+    private val validFrom: LongArray,
+    private val triggers: Array<NotificationTrigger>
+) {
+    val size: Int get() = triggers.size
+
+    /** @return the triggers with `from <= validFrom <= to`, sorted by validFrom */
+    fun between(from: Long, to: Long): List<NotificationTrigger> {
+        if (to < from) return emptyList()
+        val start = lowerBound(from)
+        val end = upperBound(to)
+        return triggers.asList().subList(start, end)
+    }
+
+    fun withInserted(trigger: NotificationTrigger): TriggerTimeline {
+        val index = upperBound(trigger.validFrom)
+        val newValidFrom = LongArray(size + 1)
+        System.arraycopy(validFrom, 0, newValidFrom, 0, index)
+        newValidFrom[index] = trigger.validFrom
+        System.arraycopy(validFrom, index, newValidFrom, index + 1, size - index)
+
+        val newTriggers = arrayOfNulls<NotificationTrigger>(size + 1)
+        System.arraycopy(triggers, 0, newTriggers, 0, index)
+        newTriggers[index] = trigger
+        System.arraycopy(triggers, index, newTriggers, index + 1, size - index)
+
+        @Suppress("UNCHECKED_CAST")
+        return TriggerTimeline(newValidFrom, newTriggers as Array<NotificationTrigger>)
+    }
+
+    fun withAll(added: List<NotificationTrigger>): TriggerTimeline {
+        if (added.isEmpty()) return this
+        return of(triggers.asList() + added)
+    }
+
+    /** Replaces the trigger with the same uid, or inserts it if the timeline does not contain it yet. */
+    fun withUpdated(trigger: NotificationTrigger): TriggerTimeline {
+        val index = indexOf(trigger.uid, trigger.validFrom)
+        if (index < 0) {
+            // validFrom is not expected to change, but keep the timeline consistent if it does
+            val remaining = triggers.filter { it.uid != trigger.uid }
+            return if (remaining.size == size) withInserted(trigger) else of(remaining + trigger)
+        }
+
+        val newTriggers = triggers.copyOf()
+        newTriggers[index] = trigger
+        return TriggerTimeline(validFrom, newTriggers)
+    }
+
+    private fun indexOf(uid: UUID, timestamp: Long): Int {
+        var index = lowerBound(timestamp)
+        while (index < size && validFrom[index] == timestamp) {
+            if (triggers[index].uid == uid) return index
+            index++
+        }
+        return -1
+    }
+
+    /** @return the first index with validFrom >= [timestamp] */
+    private fun lowerBound(timestamp: Long): Int {
+        var low = 0
+        var high = size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (validFrom[mid] < timestamp) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    /** @return the first index with validFrom > [timestamp] */
+    private fun upperBound(timestamp: Long): Int {
+        var low = 0
+        var high = size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (validFrom[mid] <= timestamp) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    companion object {
+        val EMPTY = TriggerTimeline(LongArray(0), emptyArray())
+
+        fun of(triggers: List<NotificationTrigger>): TriggerTimeline {
+            val sorted = triggers.sortedBy { it.validFrom }.toTypedArray()
+            return TriggerTimeline(LongArray(sorted.size) { sorted[it].validFrom }, sorted)
+        }
+    }
+}
+
+/**
+ * Process-wide index of notification triggers, so the floating widget can find the current trigger
+ * with a binary search instead of querying and sorting a whole day of triggers on every unlock.
+ *
+ * The index is loaded on first use and kept up to date by [NotificationTriggerDao], so all writes
+ * to notification triggers must go through the DAO. It holds its own copies of the triggers,
+ * callers must [NotificationTrigger.copy] a trigger before changing it.
+ */
+object NotificationTriggerIndex {
+    private val lock = Any()
+
+    @Volatile
+    private var timeline: TriggerTimeline? = null
+
+    /** @return the triggers with `from <= validFrom <= to`, sorted by validFrom */
+    fun between(dao: NotificationTriggerDao, from: Long, to: Long): List<NotificationTrigger> {
+        return load(dao).between(from, to)
+    }
+
+    private fun load(dao: NotificationTriggerDao): TriggerTimeline {
+        timeline?.let { return it }
+        synchronized(lock) {
+            return timeline ?: TriggerTimeline.of(dao.getAll()).also { timeline = it }
+        }
+    }
+
+    internal fun onInserted(triggers: List<NotificationTrigger>) = change { current ->
+        // a whole phase plan is merged and sorted once instead of being inserted one by one
+        if (triggers.size == 1) current.withInserted(triggers[0].copy()) else current.withAll(triggers.map { it.copy() })
+    }
+
+    internal fun onUpdated(trigger: NotificationTrigger) = change { it.withUpdated(trigger.copy()) }
+
+    internal fun onCleared() = synchronized(lock) {
+        timeline = TriggerTimeline.EMPTY
+    }
+
+    private inline fun change(update: (TriggerTimeline) -> TriggerTimeline) = synchronized(lock) {
+        // not loaded yet, the first lookup reads the changes from the database
+        val current = timeline ?: return@synchronized
+        timeline = update(current)
+    }
+}
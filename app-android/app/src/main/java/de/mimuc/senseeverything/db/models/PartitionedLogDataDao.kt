@@ -0,0 +1,619 @@
+package de.mimuc.senseeverything.db.models
+
+import android.database.sqlite.SQLiteException
+import android.database.sqlite.SQLiteFullException
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteStatement
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.compression.PayloadDictionaries
+import de.mimuc.senseeverything.db.models.LogDataPartitions.COLUMNS
+import de.mimuc.senseeverything.db.models.LogDataPartitions.DAY_MILLIS
+import de.mimuc.senseeverything.db.models.LogDataPartitions.LEGACY_TABLE
+import de.mimuc.senseeverything.db.models.LogDataPartitions.TABLE_NAME_PATTERN
+import de.mimuc.senseeverything.db.models.LogDataPartitions.createSql
+import de.mimuc.senseeverything.db.models.LogDataPartitions.dayOf
+import de.mimuc.senseeverything.db.models.LogDataPartitions.startOf
+import de.mimuc.senseeverything.db.models.LogDataPartitions.tableName
+import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.storage.StorageBackpressure
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import java.util.concurrent.Callable
+
+/**
+ * Stores LogData in one table per UTC day instead of a single table.
+ *
+ * Uploaded rows are marked as synced instead of being deleted one by one, and once a past day only
+ * contains synced rows its whole table is dropped. This keeps the database from fragmenting and the
+ * WAL small on long studies. Queries run over all partitions in day order, so callers see a single table.
+ *
+ * The partition tables are not part of the Room schema, rows are mapped through [LogDataTableDao].
+ * Rows of the original LogData table are moved into partitions on first use. The list of partitions is
+ * read again whenever SQLite's schema version changed, so partitions created or dropped by the other
+ * process or another database instance are seen on the next call.
+ *
+ * Payloads of sensors with a trained dictionary are stored compressed, see [PayloadDictionaries].
+ *
+ * Every write also updates the [ReadingCounter]s of the touched days and sensors in the same transaction,
+ * so counts and their flows only read the small counters table.
+ */
+class PartitionedLogDataDao @JvmOverloads constructor(
+    private val database: AppDatabase,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) : LogDataDao {
+    private val TAG = "PartitionedLogDataDao"
+
+    private val tables = database.logDataTableDao()
+    private val counters = database.readingCounterDao()
+    private val db: SupportSQLiteDatabase get() = database.openHelper.writableDatabase
+
+    // days of existing partitions in ascending order, listed at the given schema version
+    @Volatile
+    private var listed: ListedPartitions? = null
+
+    @Volatile
+    private var prepared = false
+    private val prepareLock = Any()
+
+    override val all: List<LogData>
+        get() = read {
+            partitions().flatMap { day ->
+                tables.query(SimpleSQLiteQuery("SELECT * FROM `${tableName(day)}` WHERE synced = 0"))
+            }
+        }
+
+    override val unsyncedCount: Long
+        get() {
+            partitions()
+            return counters.getUnsyncedCount()
+        }
+
+    override val rowCount: Long
+        get() {
+            partitions()
+            return counters.getRowCount()
+        }
+
+    override val lastItem: LogData?
+        get() = read {
+            partitions().asReversed().firstNotNullOfOrNull { day ->
+                tables.query(
+                    SimpleSQLiteQuery("SELECT * FROM `${tableName(day)}` WHERE synced = 0 ORDER BY timestamp DESC LIMIT 1")
+                ).firstOrNull()
+            }
+        }
+
+    override fun insertAll(vararg logDatas: LogData?) {
+        val rows = logDatas.filterNotNull()
+        if (rows.isEmpty()) return
+
+        val storeWireFormat = StorageBackpressure.current.storeWireFormat
+        try {
+            write {
+                database.runInTransaction(Runnable {
+                    for ((day, group) in rows.groupBy { dayOf(it.timestamp) }) {
+                        val table = ensurePartition(day)
+                        db.compileStatement("INSERT INTO `$table` ($COLUMNS) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)").use { statement ->
+                            for (row in group) {
+                                bindRow(statement, row)
+                                if (!storeWireFormat) {
+                                    statement.bindNull(8)
+                                }
+                                row.id = statement.executeInsert().toInt()
+                                statement.clearBindings()
+                            }
+                        }
+                        for ((sensorName, sensorRows) in group.groupBy { it.sensorName }) {
+                            val synced = sensorRows.count { it.synced }.toLong()
+                            adjustCounter(day, sensorName, sensorRows.size - synced, synced)
+                        }
+                    }
+                })
+            }
+        } catch (e: SQLiteFullException) {
+            // losing these readings is better than crashing the sensor thread
+            StorageBackpressure.current.onStorageFull()
+            WHALELog.e(TAG, "Storage full, dropped ${rows.size} reading(s) and paused low-priority sensors", e)
+        }
+    }
+
+    override fun getNextNUnsyncedBefore(n: Int, cutoffTimestamp: Long): List<LogData> {
+        return nextUnsynced(n, cutoffTimestamp, SensorFilter.ALL)
+    }
+
+    override fun getNextNUnsyncedBeforeForSensors(n: Int, cutoffTimestamp: Long, sensorNames: List<String>): List<LogData> {
+        return nextUnsynced(n, cutoffTimestamp, SensorFilter.only(sensorNames))
+    }
+
+    override fun getNextNUnsyncedBeforeExcludingSensors(n: Int, cutoffTimestamp: Long, sensorNames: List<String>): List<LogData> {
+        return nextUnsynced(n, cutoffTimestamp, SensorFilter.excluding(sensorNames))
+    }
+
+    override fun getNextNUnsyncedAfterForSensors(n: Int, afterTimestamp: Long, afterId: Int, cutoffTimestamp: Long, sensorNames: List<String>): List<LogData> {
+        return nextUnsynced(n, cutoffTimestamp, SensorFilter.only(sensorNames).after(afterTimestamp, afterId))
+    }
+
+    override fun getUnsyncedCountBefore(cutoffTimestamp: Long): Long {
+        partitions()
+        val all = counters.getAll()
+        val cutoffDay = dayOf(cutoffTimestamp)
+        return unsyncedBeforeDay(all, cutoffDay) + unsyncedOnDayBefore(all.filter { it.day == cutoffDay }, cutoffTimestamp)
+    }
+
+    /**
+     * Re-evaluated whenever the counters change. Only the day of the cutoff has to be counted in its partition,
+     * and only again if the counters of that day changed.
+     */
+    override fun getUnsyncedCountBeforeFlow(cutoffTimestamp: Long): Flow<Long> {
+        val cutoffDay = dayOf(cutoffTimestamp)
+
+        return flow {
+            partitions()
+            var cutoffDayCounters: List<ReadingCounter>? = null
+            var cutoffDayCount = 0L
+
+            emitAll(counters.getAllFlow().conflate().map { all ->
+                val dayCounters = all.filter { it.day == cutoffDay }.sortedBy { it.sensorName }
+                if (dayCounters != cutoffDayCounters) {
+                    cutoffDayCount = unsyncedOnDayBefore(dayCounters, cutoffTimestamp)
+                    cutoffDayCounters = dayCounters
+                }
+                unsyncedBeforeDay(all, cutoffDay) + cutoffDayCount
+            })
+        }
+            .distinctUntilChanged()
+            .flowOn(Dispatchers.IO)
+    }
+
+    override fun getUnsyncedCountsBySensor(): Map<String, Long> {
+        partitions()
+        return counters.getAll()
+            .groupBy { it.sensorName }
+            .mapValues { (_, sensorCounters) -> sensorCounters.sumOf { it.unsynced } }
+            .filterValues { it > 0 }
+    }
+
+    override fun getUnsyncedBacklogBefore(cutoffTimestamp: Long): UnsyncedBacklog {
+        return backlog(cutoffTimestamp, SensorFilter.ALL)
+    }
+
+    override fun getUnsyncedBacklogBeforeForSensors(cutoffTimestamp: Long, sensorNames: List<String>): UnsyncedBacklog {
+        return backlog(cutoffTimestamp, SensorFilter.only(sensorNames))
+    }
+
+    override fun getUnsyncedBacklogBeforeExcludingSensors(cutoffTimestamp: Long, sensorNames: List<String>): UnsyncedBacklog {
+        return backlog(cutoffTimestamp, SensorFilter.excluding(sensorNames))
+    }
+
+    override fun updateLogData(vararg logData: LogData?) {
+        val rows = logData.filterNotNull()
+        if (rows.isEmpty()) return
+
+        write {
+            database.runInTransaction(Runnable {
+                for ((day, group) in rows.groupBy { dayOf(it.timestamp) }) {
+                    val sql = "UPDATE `${tableName(day)}` SET `timestamp` = ?, `sensorName` = ?, `synced` = ?, `data` = ?, " +
+                            "`hasFile` = ?, `filePath` = ?, `localId` = ?, `wireJson` = ?, `dataEncoding` = ?, `compressedData` = ? " +
+                            "WHERE `id` = ?"
+                    db.compileStatement(sql).use { statement ->
+                        for (row in group) {
+                            bindRow(statement, row)
+                            statement.bindLong(11, row.id.toLong())
+                            statement.executeUpdateDelete()
+                            statement.clearBindings()
+                        }
+                    }
+                    // updates may change the synced state or sensor of a row, which is rare
+                    recount(day)
+                }
+            })
+        }
+    }
+
+    override fun deleteLogData(vararg logData: LogData?) {
+        val rows = logData.filterNotNull()
+        if (rows.isEmpty()) return
+
+        val touchedDays = rows.map { dayOf(it.timestamp) }.toSet()
+        write {
+            database.runInTransaction(Runnable {
+                for ((day, group) in rows.groupBy { dayOf(it.timestamp) }) {
+                    for ((sensorName, sensorRows) in group.groupBy { it.sensorName }) {
+                        var changed = 0L
+                        for (ids in sensorRows.map { it.id }.chunked(MAX_IDS_PER_STATEMENT)) {
+                            db.compileStatement(
+                                "UPDATE `${tableName(day)}` SET synced = 1 WHERE synced = 0 AND id IN (${placeholders(ids.size)})"
+                            ).use { statement ->
+                                ids.forEachIndexed { index, id -> statement.bindLong(index + 1, id.toLong()) }
+                                changed += statement.executeUpdateDelete()
+                            }
+                        }
+                        adjustCounter(day, sensorName, -changed, changed)
+                    }
+                }
+            })
+        }
+
+        val now = clock()
+        touchedDays.filter { LogDataPartitions.isClosed(it, now) }.forEach { dropIfSynced(it) }
+    }
+
+    override fun dropWireFormat(): Int {
+        var changed = 0
+        write {
+            database.runInTransaction(Runnable {
+                for (day in partitions()) {
+                    db.compileStatement(
+                        "UPDATE `${tableName(day)}` SET wireJson = NULL WHERE synced = 0 AND wireJson IS NOT NULL"
+                    ).use { changed += it.executeUpdateDelete() }
+                }
+            })
+        }
+        return changed
+    }
+
+    override fun dropSyncedPartitions(): Int {
+        val now = clock()
+        val closed = read { partitions().filter { LogDataPartitions.isClosed(it, now) } }
+        return closed.count { dropIfSynced(it) }
+    }
+
+    override fun getRecentPayloads(sensorName: String, n: Int): List<String> = read {
+        val result = mutableListOf<String>()
+        for (day in partitions().asReversed()) {
+            if (result.size >= n) break
+            result += tables.query(
+                SimpleSQLiteQuery(
+                    "SELECT * FROM `${tableName(day)}` WHERE sensorName = ? ORDER BY timestamp DESC LIMIT ?",
+                    arrayOf<Any>(sensorName, n - result.size)
+                )
+            ).mapNotNull { it.data }
+        }
+        result
+    }
+
+    override fun deleteAll() {
+        write {
+            database.runInTransaction(Runnable {
+                for (day in partitions()) {
+                    db.execSQL("DROP TABLE IF EXISTS `${tableName(day)}`")
+                }
+                db.execSQL("DELETE FROM `$LEGACY_TABLE`")
+                db.execSQL("DELETE FROM `$COUNTERS_TABLE`")
+            })
+        }
+    }
+
+    private fun nextUnsynced(n: Int, cutoffTimestamp: Long, filter: SensorFilter): List<LogData> = read {
+        val result = mutableListOf<LogData>()
+        for (day in partitionsUpTo(cutoffTimestamp)) {
+            if (result.size >= n) break
+            if (startOf(day + 1) <= filter.afterTimestamp) continue
+            result += tables.query(
+                SimpleSQLiteQuery(
+                    "SELECT * FROM `${tableName(day)}` WHERE synced = 0 AND timestamp <= ?${filter.clause} " +
+                            "ORDER BY timestamp ASC, id ASC LIMIT ?",
+                    arrayOf<Any>(cutoffTimestamp, *filter.args.toTypedArray(), n - result.size)
+                )
+            )
+        }
+        result
+    }
+
+    private fun backlog(cutoffTimestamp: Long, filter: SensorFilter): UnsyncedBacklog = read {
+        var rowCount = 0L
+        var byteCount = 0L
+        for (day in partitionsUpTo(cutoffTimestamp)) {
+            val partition = tables.queryBacklog(
+                SimpleSQLiteQuery(
+                    "SELECT COUNT(*) AS rowCount, COALESCE(SUM(COALESCE(LENGTH(data), LENGTH(compressedData))), 0) AS byteCount FROM `${tableName(day)}` " +
+                            "WHERE synced = 0 AND timestamp <= ?${filter.clause}",
+                    arrayOf<Any>(cutoffTimestamp, *filter.args.toTypedArray())
+                )
+            )
+            rowCount += partition.rowCount
+            byteCount += partition.byteCount
+        }
+        UnsyncedBacklog(rowCount, byteCount)
+    }
+
+    /**
+     * Drop a partition if all of its rows are synced.
+     * Runs in one write transaction, so a reading inserted concurrently is never dropped with it.
+     */
+    private fun dropIfSynced(day: Long): Boolean {
+        val table = tableName(day)
+        val dropped = try {
+            database.runInTransaction(Callable {
+                val hasUnsynced = tables.queryLong(
+                    SimpleSQLiteQuery("SELECT EXISTS(SELECT 1 FROM `$table` WHERE synced = 0)")
+                ) > 0
+                if (!hasUnsynced) {
+                    db.execSQL("DROP TABLE IF EXISTS `$table`")
+                    db.execSQL("DELETE FROM `$COUNTERS_TABLE` WHERE day = ?", arrayOf(day))
+                }
+                !hasUnsynced
+            })
+        } catch (e: SQLiteException) {
+            if (!isMissingTable(e)) throw e
+            // already dropped by another database instance
+            return false
+        }
+
+        if (dropped) {
+            WHALELog.i(TAG, "Dropped synced partition $table")
+        }
+        return dropped
+    }
+
+    /**
+     * Creating or dropping a table in any connection increments the schema version,
+     * so the partitions only have to be listed again when it changed.
+     */
+    private fun partitions(): List<Long> {
+        prepare()
+        val schemaVersion = db.query("PRAGMA schema_version").use { cursor ->
+            if (cursor.moveToFirst()) cursor.getLong(0) else -1L
+        }
+        listed?.let { if (it.schemaVersion == schemaVersion) return it.days }
+
+        val days = listPartitions()
+        listed = ListedPartitions(schemaVersion, days)
+        return days
+    }
+
+    private fun partitionsUpTo(cutoffTimestamp: Long): List<Long> {
+        return partitions().filter { startOf(it) <= cutoffTimestamp }
+    }
+
+    private fun listPartitions(): List<Long> {
+        val days = mutableListOf<Long>()
+        db.query("SELECT name FROM sqlite_master WHERE type = 'table' AND name LIKE ? ESCAPE '\\'", arrayOf(TABLE_NAME_PATTERN))
+            .use { cursor ->
+                while (cursor.moveToNext()) {
+                    LogDataPartitions.dayOfTable(cursor.getString(0))?.let { days.add(it) }
+                }
+            }
+        return days.sorted()
+    }
+
+    /** Brings the tables of older versions up to date, once per instance. */
+    private fun prepare() {
+        if (prepared) return
+        synchronized(prepareLock) {
+            if (prepared) return
+
+            PayloadDictionaries.load(database)
+            moveLegacyRows()
+
+            val days = listPartitions()
+            days.forEach { addMissingColumns(tableName(it)) }
+            // partitions created before the counters existed
+            if (days.isNotEmpty() && counters.getCounterCount() == 0L) {
+                database.runInTransaction(Runnable { days.forEach { recount(it) } })
+                WHALELog.i(TAG, "Counted the rows of ${days.size} partition(s)")
+            }
+            prepared = true
+        }
+    }
+
+    /** Creating an existing partition again does nothing. */
+    private fun ensurePartition(day: Long): String {
+        if (day !in partitions()) {
+            db.execSQL(createSql(day))
+        }
+        return tableName(day)
+    }
+
+    /**
+     * Partitions created by an older version lack columns that were added to [LogData] since.
+     * Both processes may upgrade the same partition, so the columns are checked and added in one transaction
+     * and a column that was added by the other process in the meantime counts as added.
+     */
+    private fun addMissingColumns(table: String) {
+        database.runInTransaction(Runnable {
+            val existing = mutableSetOf<String>()
+            db.query("PRAGMA table_info(`$table`)").use { cursor ->
+                val nameIndex = cursor.getColumnIndex("name")
+                while (cursor.moveToNext()) {
+                    existing.add(cursor.getString(nameIndex))
+                }
+            }
+
+            for ((column, definition) in LogDataPartitions.ADDED_COLUMNS) {
+                if (column in existing) continue
+                try {
+                    db.execSQL("ALTER TABLE `$table` ADD COLUMN `$column` $definition")
+                } catch (e: SQLiteException) {
+                    if (e.message?.contains("duplicate column name") != true) throw e
+                }
+            }
+        })
+    }
+
+    /**
+     * Moves rows written before partitioning into their partitions, does nothing once the table is empty.
+     * Rows are moved in chunks of [LEGACY_ROWS_PER_TRANSACTION], each in its own transaction,
+     * so a large table neither blocks other writers for long nor grows the WAL by its whole size.
+     */
+    private fun moveLegacyRows() {
+        var movedRows = 0L
+        val movedDays = mutableSetOf<Long>()
+
+        while (true) {
+            val chunk = database.runInTransaction(Callable {
+                val lastId = db.query(
+                    "SELECT MAX(id) FROM (SELECT id FROM `$LEGACY_TABLE` ORDER BY id LIMIT $LEGACY_ROWS_PER_TRANSACTION)"
+                ).use { cursor -> if (cursor.moveToFirst() && !cursor.isNull(0)) cursor.getLong(0) else null }
+                    ?: return@Callable null
+
+                val chunkDays = mutableListOf<Long>()
+                db.query("SELECT DISTINCT timestamp / $DAY_MILLIS FROM `$LEGACY_TABLE` WHERE id <= ?", arrayOf(lastId)).use { cursor ->
+                    while (cursor.moveToNext()) {
+                        chunkDays.add(cursor.getLong(0))
+                    }
+                }
+
+                for (day in chunkDays) {
+                    db.execSQL(createSql(day))
+                    db.execSQL(
+                        "INSERT INTO `${tableName(day)}` ($COLUMNS) SELECT $COLUMNS FROM `$LEGACY_TABLE` " +
+                                "WHERE id <= ? AND timestamp >= ? AND timestamp < ?",
+                        arrayOf(lastId, startOf(day), startOf(day + 1))
+                    )
+                    // the partition may already hold rows of earlier chunks, so only the moved rows are counted
+                    db.execSQL(
+                        "INSERT INTO `$COUNTERS_TABLE` (day, sensor_name, unsynced, synced) " +
+                                "SELECT ?, COALESCE(sensorName, ''), SUM(synced = 0), SUM(synced != 0) FROM `$LEGACY_TABLE` " +
+                                "WHERE id <= ? AND timestamp >= ? AND timestamp < ? GROUP BY COALESCE(sensorName, '') " +
+                                "ON CONFLICT(day, sensor_name) DO UPDATE SET unsynced = unsynced + excluded.unsynced, " +
+                                "synced = synced + excluded.synced",
+                        arrayOf(day, lastId, startOf(day), startOf(day + 1))
+                    )
+                }
+                db.compileStatement("DELETE FROM `$LEGACY_TABLE` WHERE id <= ?").use { statement ->
+                    statement.bindLong(1, lastId)
+                    Pair(chunkDays, statement.executeUpdateDelete())
+                }
+            }) ?: break
+
+            movedDays += chunk.first
+            movedRows += chunk.second
+        }
+
+        if (movedRows > 0) {
+            WHALELog.i(TAG, "Moved $movedRows LogData row(s) of ${movedDays.size} day(s) into partitions")
+        }
+    }
+
+    /**
+     * Another database instance may have dropped a partition in the meantime,
+     * in that case the partitions are listed again and the block is retried once.
+     */
+    private fun <T> read(block: () -> T): T {
+        return try {
+            block()
+        } catch (e: SQLiteException) {
+            if (!isMissingTable(e)) throw e
+            listed = null
+            block()
+        }
+    }
+
+    private fun isMissingTable(e: SQLiteException): Boolean = e.message?.contains("no such table") == true
+
+    private fun write(block: () -> Unit) {
+        read(block)
+    }
+
+    private fun unsyncedBeforeDay(all: List<ReadingCounter>, day: Long): Long {
+        return all.filter { it.day < day }.sumOf { it.unsynced }
+    }
+
+    /** Unsynced rows of the day of [cutoffTimestamp] up to the cutoff, given the counters of that day. */
+    private fun unsyncedOnDayBefore(dayCounters: List<ReadingCounter>, cutoffTimestamp: Long): Long {
+        val unsynced = dayCounters.sumOf { it.unsynced }
+        val day = dayOf(cutoffTimestamp)
+        if (unsynced == 0L || cutoffTimestamp >= startOf(day + 1) - 1) return unsynced
+
+        return read {
+            if (day !in partitions()) return@read 0L
+            tables.queryLong(
+                SimpleSQLiteQuery(
+                    "SELECT COUNT(*) FROM `${tableName(day)}` WHERE synced = 0 AND timestamp <= ?",
+                    arrayOf(cutoffTimestamp)
+                )
+            )
+        }
+    }
+
+    private fun adjustCounter(day: Long, sensorName: String?, unsyncedDelta: Long, syncedDelta: Long) {
+        if (unsyncedDelta == 0L && syncedDelta == 0L) return
+        db.execSQL(
+            "INSERT INTO `$COUNTERS_TABLE` (day, sensor_name, unsynced, synced) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT(day, sensor_name) DO UPDATE SET unsynced = unsynced + excluded.unsynced, " +
+                    "synced = synced + excluded.synced",
+            arrayOf(day, sensorName ?: "", unsyncedDelta, syncedDelta)
+        )
+    }
+
+    /** Count the rows of a partition again, must run in a transaction. */
+    private fun recount(day: Long) {
+        db.execSQL("DELETE FROM `$COUNTERS_TABLE` WHERE day = ?", arrayOf(day))
+        db.execSQL(
+            "INSERT INTO `$COUNTERS_TABLE` (day, sensor_name, unsynced, synced) " +
+                    "SELECT ?, COALESCE(sensorName, ''), SUM(synced = 0), SUM(synced != 0) FROM `${tableName(day)}` " +
+                    "GROUP BY COALESCE(sensorName, '')",
+            arrayOf(day)
+        )
+    }
+
+    /**
+     * Compressed rows keep neither the plain payload nor the upload form, which contains the payload as well;
+     * both are restored from the compressed payload when needed.
+     */
+    private fun bindRow(statement: SupportSQLiteStatement, row: LogData) {
+        val compressed = PayloadDictionaries.compress(row.sensorName, row.data)
+
+        statement.bindLong(1, row.timestamp)
+        statement.bindStringOrNull(2, row.sensorName)
+        statement.bindLong(3, if (row.synced) 1 else 0)
+        statement.bindStringOrNull(4, if (compressed == null) row.data else null)
+        statement.bindLong(5, if (row.hasFile) 1 else 0)
+        statement.bindStringOrNull(6, row.filePath)
+        statement.bindStringOrNull(7, row.localId)
+        statement.bindStringOrNull(8, if (compressed == null) row.wireJson else null)
+        statement.bindLong(9, compressed?.dictionaryId?.toLong() ?: 0)
+        if (compressed == null) statement.bindNull(10) else statement.bindBlob(10, compressed.bytes)
+    }
+
+    private fun SupportSQLiteStatement.bindStringOrNull(index: Int, value: String?) {
+        if (value == null) bindNull(index) else bindString(index, value)
+    }
+
+    private class ListedPartitions(val schemaVersion: Long, val days: List<Long>)
+
+    private class SensorFilter(val clause: String, val args: List<Any>, val afterTimestamp: Long = Long.MIN_VALUE) {
+        /** Ids are only unique within a partition, but readings of the same timestamp share their partition. */
+        fun after(timestamp: Long, id: Int): SensorFilter {
+            return SensorFilter(
+                "$clause AND (timestamp > ? OR (timestamp = ? AND id > ?))",
+                args + listOf(timestamp, timestamp, id),
+                timestamp
+            )
+        }
+
+        companion object {
+            val ALL = SensorFilter("", emptyList())
+
+            fun only(sensorNames: List<String>): SensorFilter {
+                return SensorFilter(" AND sensorName IN (${placeholders(sensorNames.size)})", sensorNames)
+            }
+
+            fun excluding(sensorNames: List<String>): SensorFilter {
+                return SensorFilter(
+                    " AND (sensorName IS NULL OR sensorName NOT IN (${placeholders(sensorNames.size)}))",
+                    sensorNames
+                )
+            }
+        }
+    }
+
+    companion object {
+        private const val COUNTERS_TABLE = "reading_counters"
+
+        // below SQLite's default limit of 999 bound variables
+        private const val MAX_IDS_PER_STATEMENT = 500
+
+        private const val LEGACY_ROWS_PER_TRANSACTION = 5000
+
+        private fun placeholders(count: Int): String = List(count) { "?" }.joinToString(", ")
+    }
+}
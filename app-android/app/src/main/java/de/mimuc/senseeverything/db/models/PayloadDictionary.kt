@@ -0,0 +1,26 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Preset dictionary for compressing the LogData payloads of one sensor.
+ * Dictionaries are never changed; retraining adds a new version, and rows keep the id of the version they were
+ * compressed with in `dataEncoding`.
+ */
+@Entity(tableName = "payload_dictionaries")
+class PayloadDictionary(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    val id: Int = 0,
+
+    @ColumnInfo(name = "sensor_name")
+    val sensorName: String,
+
+    @ColumnInfo(name = "dictionary")
+    val dictionary: ByteArray,
+
+    @ColumnInfo(name = "created_at")
+    val createdAt: Long = System.currentTimeMillis()
+)
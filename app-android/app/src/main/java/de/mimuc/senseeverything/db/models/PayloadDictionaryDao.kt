@@ -0,0 +1,23 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+
+@Dao
+interface PayloadDictionaryDao {
+    @Insert
+    fun insert(dictionary: PayloadDictionary): Long
+
+    @Query("SELECT * FROM payload_dictionaries WHERE id = :id")
+    fun getById(id: Int): PayloadDictionary?
+
+    @Query("SELECT * FROM payload_dictionaries WHERE sensor_name = :sensorName ORDER BY id DESC LIMIT 1")
+    fun getLatestForSensor(sensorName: String): PayloadDictionary?
+
+    @Query("SELECT * FROM payload_dictionaries WHERE id IN (SELECT MAX(id) FROM payload_dictionaries GROUP BY sensor_name)")
+    fun getLatest(): List<PayloadDictionary>
+
+    @Query("DELETE FROM payload_dictionaries")
+    fun deleteAll()
+}
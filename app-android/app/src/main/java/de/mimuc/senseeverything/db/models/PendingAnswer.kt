@@ -0,0 +1,27 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.ForeignKey.Companion.CASCADE
+import java.util.UUID
+
+/**
+ * Draft of a single answer, written while a questionnaire is being filled in. Drafts are newer than
+ * [PendingQuestionnaire.elementValuesJson] and are folded into it on page changes, when the questionnaire
+ * is paused and when it is completed.
+ */
+@Entity(tableName = "pending_answer", primaryKeys = ["pending_questionnaire_uid", "element_id"], foreignKeys = [
+    ForeignKey(
+        entity = PendingQuestionnaire::class,
+        parentColumns = arrayOf("uid"),
+        childColumns = arrayOf("pending_questionnaire_uid"),
+        onDelete = CASCADE
+    )
+])
+data class PendingAnswer(
+    @ColumnInfo(name = "pending_questionnaire_uid") val pendingQuestionnaireUid: UUID,
+    @ColumnInfo(name = "element_id") val elementId: Int,
+    @ColumnInfo(name = "value_json") val valueJson: String,
+    @ColumnInfo(name = "updated_at") val updatedAt: Long
+)
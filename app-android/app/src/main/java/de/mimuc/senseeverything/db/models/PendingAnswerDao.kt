@@ -0,0 +1,20 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import java.util.UUID
+
+@Dao
+interface PendingAnswerDao {
+    @Query("SELECT * FROM pending_answer WHERE pending_questionnaire_uid = :pendingQuestionnaireUid")
+    fun getForPendingQuestionnaire(pendingQuestionnaireUid: UUID): List<PendingAnswer>
+
+    /** Replaces the previous draft of the same element. */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun upsertAll(answers: List<PendingAnswer>)
+
+    @Query("DELETE FROM pending_answer WHERE pending_questionnaire_uid = :pendingQuestionnaireUid")
+    fun deleteForPendingQuestionnaire(pendingQuestionnaireUid: UUID)
+}
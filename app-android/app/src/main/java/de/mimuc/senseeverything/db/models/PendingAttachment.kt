@@ -0,0 +1,39 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * A file belonging to a LogData row that still has to be uploaded.
+ * Kept separately from the row, since rows are deleted as soon as their data is synced.
+ */
+@Entity(tableName = "pending_attachments")
+data class PendingAttachment(
+    @PrimaryKey
+    @ColumnInfo(name = "local_id")
+    val localId: String,
+
+    @ColumnInfo(name = "file_path")
+    val filePath: String,
+
+    @ColumnInfo(name = "size_bytes")
+    val sizeBytes: Long,
+
+    /** Bytes acknowledged by the server, the offset to resume from. */
+    @ColumnInfo(name = "uploaded_bytes")
+    val uploadedBytes: Long = 0,
+
+    /** Hex encoded SHA-256 of the whole file, computed before the first part is sent. */
+    @ColumnInfo(name = "sha256")
+    val sha256: String? = null,
+
+    @ColumnInfo(name = "created_at")
+    val createdAt: Long = System.currentTimeMillis()
+)
+
+data class AttachmentDiskUsage(
+    val fileCount: Long,
+    val totalBytes: Long,
+    val remainingBytes: Long
+)
@@ -0,0 +1,34 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import kotlinx.coroutines.flow.Flow
+
+@Dao
+interface PendingAttachmentDao {
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun insert(attachment: PendingAttachment)
+
+    @Query("SELECT * FROM pending_attachments ORDER BY created_at ASC LIMIT :n")
+    fun getNextN(n: Int): List<PendingAttachment>
+
+    @Query("UPDATE pending_attachments SET uploaded_bytes = :uploadedBytes WHERE local_id = :localId")
+    fun updateUploadedBytes(localId: String, uploadedBytes: Long)
+
+    @Query("UPDATE pending_attachments SET sha256 = :sha256, size_bytes = :sizeBytes, uploaded_bytes = 0 WHERE local_id = :localId")
+    fun updateChecksum(localId: String, sha256: String, sizeBytes: Long)
+
+    @Query("DELETE FROM pending_attachments WHERE local_id = :localId")
+    fun deleteByLocalId(localId: String)
+
+    @Query("DELETE FROM pending_attachments")
+    fun deleteAll()
+
+    @Query("SELECT COUNT(*) AS fileCount, COALESCE(SUM(size_bytes), 0) AS totalBytes, COALESCE(SUM(size_bytes - uploaded_bytes), 0) AS remainingBytes FROM pending_attachments")
+    fun getDiskUsage(): AttachmentDiskUsage
+
+    @Query("SELECT COUNT(*) AS fileCount, COALESCE(SUM(size_bytes), 0) AS totalBytes, COALESCE(SUM(size_bytes - uploaded_bytes), 0) AS remainingBytes FROM pending_attachments")
+    fun getDiskUsageFlow(): Flow<AttachmentDiskUsage>
+}
@@ -16,6 +16,7 @@ import kotlinx.serialization.SerialName
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.encodeToString
 import java.util.UUID
+import java.util.concurrent.Callable
 import kotlin.time.Duration
 import kotlin.time.Duration.Companion.milliseconds
 
@@ -50,7 +51,8 @@ data class PendingQuestionnaire(
     @PrimaryKey() var uid: UUID,
     @ColumnInfo(name = "added_at") val addedAt: Long,
     @ColumnInfo(name = "valid_until") val validUntil: Long,
-    @ColumnInfo(name = "questionnaire_json") val questionnaireJson: String,
+    /** Only set for entries created before [questionnaireHash], newer entries reference a [QuestionnaireDefinition]. */
+    @ColumnInfo(name = "questionnaire_json") val questionnaireJson: String?,
     @ColumnInfo(name = "trigger_json") val triggerJson: String,
     @ColumnInfo(name = "saved_values") var elementValuesJson: String? = null,
     @ColumnInfo(name = "updated_at") var updatedAt: Long,
@@ -59,7 +61,8 @@ data class PendingQuestionnaire(
     @ColumnInfo(name = "finished_at") var finishedAt: Long? = null,
     @ColumnInfo(name = "notification_trigger_uid") var notificationTriggerUid: UUID? = null,
     @ColumnInfo(name = "source_pending_notification_id") val sourcePendingNotificationId: UUID? = null,
-    @ColumnInfo(name = "display_type") val displayType: PendingQuestionnaireDisplayType = PendingQuestionnaireDisplayType.INBOX
+    @ColumnInfo(name = "display_type") val displayType: PendingQuestionnaireDisplayType = PendingQuestionnaireDisplayType.INBOX,
+    @ColumnInfo(name = "questionnaire_hash") val questionnaireHash: String? = null
 ) {
 
     companion object {
@@ -80,41 +83,71 @@ data class PendingQuestionnaire(
             val displayType =
                 if (notificationTriggerUid != null) PendingQuestionnaireDisplayType.NOTIFICATION_TRIGGER else PendingQuestionnaireDisplayType.INBOX
 
-            val pendingQuestionnaire = PendingQuestionnaire(
-                uid = UUID.randomUUID(),
-                System.currentTimeMillis(),
-                validUntil,
-                fullQuestionnaireJson.encodeToString(questionnaire),
-                fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger),
-                null,
-                System.currentTimeMillis(),
-                -1,
-                PendingQuestionnaireStatus.NOTIFIED,
-                null,
-                notificationTriggerUid,
-                sourcePendingNotificationId,
-                displayType
-            )
-
-            database.pendingQuestionnaireDao().insert(pendingQuestionnaire)
-            return pendingQuestionnaire
+            val triggerJson = fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger)
+
+            // in one transaction, so unreferenced definitions are never cleaned up in between
+            return database.runInTransaction(Callable {
+                val pendingQuestionnaire = PendingQuestionnaire(
+                    uid = UUID.randomUUID(),
+                    System.currentTimeMillis(),
+                    validUntil,
+                    null,
+                    triggerJson,
+                    null,
+                    System.currentTimeMillis(),
+                    -1,
+                    PendingQuestionnaireStatus.NOTIFIED,
+                    null,
+                    notificationTriggerUid,
+                    sourcePendingNotificationId,
+                    displayType,
+                    QuestionnaireDefinitions.store(database, questionnaire)
+                )
+
+                database.pendingQuestionnaireDao().insert(pendingQuestionnaire)
+                pendingQuestionnaire
+            })
         }
     }
 
+    /**
+     * The questionnaire this entry was created for, from the process-wide [QuestionnaireDefinitions].
+     * Must not be called on the main thread.
+     */
+    fun questionnaire(database: AppDatabase): FullQuestionnaire {
+        return questionnaireOrNull(database)
+            ?: throw IllegalStateException("Questionnaire definition of pending questionnaire $uid is missing")
+    }
+
+    /** Like [questionnaire], but null if the definition cannot be found. */
+    fun questionnaireOrNull(database: AppDatabase): FullQuestionnaire? {
+        if (questionnaireHash != null) {
+            return QuestionnaireDefinitions.get(database, questionnaireHash)
+        }
+        return questionnaireJson?.let { QuestionnaireDefinitions.getInline(it) }
+    }
+
+    /**
+     * Saves the answers of a questionnaire that is still being filled in. Does nothing if it was completed
+     * in the meantime, e.g. in another activity, so completed answers are never replaced or reopened.
+     */
     fun update(
         database: AppDatabase,
         elementValues: Map<Int, ElementValue>?,
         openedPage: Int?
     ) {
-        this.updatedAt = System.currentTimeMillis()
-        this.openedPage = openedPage
-        this.status = PendingQuestionnaireStatus.PENDING
-
-        if (!elementValues.isNullOrEmpty()) {
-            this.elementValuesJson = ElementValue.valueMapToJson(elementValues).toString()
-        }
-
-        database.pendingQuestionnaireDao().update(this)
+        database.runInTransaction(Runnable {
+            if (isCompleted(database)) {
+                database.pendingAnswerDao().deleteForPendingQuestionnaire(uid)
+                return@Runnable
+            }
+
+            this.updatedAt = System.currentTimeMillis()
+            this.openedPage = openedPage
+            this.status = PendingQuestionnaireStatus.PENDING
+
+            saveValues(database, elementValues)
+        })
     }
 
     fun markCompleted(
@@ -125,11 +158,57 @@ data class PendingQuestionnaire(
         this.finishedAt = System.currentTimeMillis()
         this.status = PendingQuestionnaireStatus.COMPLETED
 
-        if (elementValues.isNotEmpty()) {
-            this.elementValuesJson = ElementValue.valueMapToJson(elementValues).toString()
-        }
+        saveValues(database, elementValues)
+    }
+
+    /**
+     * Writes drafts of single answers without touching this row, see [PendingAnswer].
+     * @param drafts JSON encoded values by element id
+     */
+    fun saveDrafts(database: AppDatabase, drafts: Map<Int, String>) {
+        val now = System.currentTimeMillis()
+        database.runInTransaction(Runnable {
+            if (isCompleted(database)) return@Runnable
+
+            database.pendingAnswerDao().upsertAll(drafts.map { (elementId, valueJson) ->
+                PendingAnswer(uid, elementId, valueJson, now)
+            })
+        })
+    }
+
+    /** @return the saved answers, including drafts that were not folded into this row yet */
+    fun savedValues(database: AppDatabase): Map<Int, ElementValue> {
+        return withDrafts(database.pendingAnswerDao().getForPendingQuestionnaire(uid))
+    }
 
-        database.pendingQuestionnaireDao().update(this)
+    /** Saves [elementValues], or folds the drafts into this row if there are none, and removes the drafts. */
+    private fun saveValues(database: AppDatabase, elementValues: Map<Int, ElementValue>?) {
+        database.runInTransaction(Runnable {
+            if (!elementValues.isNullOrEmpty()) {
+                this.elementValuesJson = ElementValue.encodeValueMap(elementValues)
+            } else {
+                val drafts = database.pendingAnswerDao().getForPendingQuestionnaire(uid)
+                if (drafts.isNotEmpty()) {
+                    this.elementValuesJson = ElementValue.encodeValueMap(withDrafts(drafts))
+                }
+            }
+
+            database.pendingQuestionnaireDao().update(this)
+            database.pendingAnswerDao().deleteForPendingQuestionnaire(uid)
+        })
+    }
+
+    /** Reads the stored status, this instance may be outdated. */
+    private fun isCompleted(database: AppDatabase): Boolean {
+        return database.pendingQuestionnaireDao().getStatus(uid) == PendingQuestionnaireStatus.COMPLETED
+    }
+
+    private fun withDrafts(drafts: List<PendingAnswer>): Map<Int, ElementValue> {
+        val values = ElementValue.decodeValueMap(elementValuesJson ?: "[]").toMutableMap()
+        for (draft in drafts) {
+            values[draft.elementId] = ElementValue.decode(draft.valueJson)
+        }
+        return values
     }
 }
 
@@ -153,9 +232,9 @@ val QuestionnaireInboxItem.validDistance get(): Duration {
     return this.pendingQuestionnaire.validDistance
 }
 
-fun PendingQuestionnaire.toInboxItem(): QuestionnaireInboxItem {
-    val fullQuestionnaire =
-        fullQuestionnaireJson.decodeFromString<FullQuestionnaire>(this.questionnaireJson)
+/** @return the inbox item, or null if the questionnaire definition is missing */
+fun PendingQuestionnaire.toInboxItem(database: AppDatabase): QuestionnaireInboxItem? {
+    val fullQuestionnaire = questionnaireOrNull(database) ?: return null
     return QuestionnaireInboxItem(
         fullQuestionnaire.questionnaire.name,
         this.validUntil,
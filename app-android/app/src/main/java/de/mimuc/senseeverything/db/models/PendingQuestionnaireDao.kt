@@ -13,6 +13,9 @@ interface PendingQuestionnaireDao {
     @Query("SELECT * FROM pending_questionnaire")
     fun getAll(): List<PendingQuestionnaire>
 
+    @Query("SELECT COUNT(*) FROM pending_questionnaire")
+    fun getCount(): Long
+
     @Query("SELECT * FROM pending_questionnaire WHERE (valid_until > :now OR valid_until = -1) AND status != 'COMPLETED'")
     fun getAllNotExpiredFlow(now: Long): Flow<List<PendingQuestionnaire>>
 
@@ -22,6 +25,19 @@ interface PendingQuestionnaireDao {
     @Query("SELECT * FROM pending_questionnaire WHERE uid = :uid")
     fun getByIdFlow(uid: UUID): Flow<PendingQuestionnaire?>
 
+    @Query("SELECT status FROM pending_questionnaire WHERE uid = :uid")
+    fun getStatus(uid: UUID): PendingQuestionnaireStatus?
+
+    /**
+     * Only completed answers are streamed, in-progress uploads would be stored as separate answers by the backend.
+     * Rows are ordered by update timestamp and uid, so rows sharing a timestamp can be split across pages.
+     */
+    @Query("SELECT * FROM pending_questionnaire WHERE status = 'COMPLETED' AND (updated_at > :timestamp OR (updated_at = :timestamp AND uid > :uid)) ORDER BY updated_at ASC, uid ASC LIMIT :n")
+    fun getNextNCompletedAfter(n: Int, timestamp: Long, uid: UUID): List<PendingQuestionnaire>
+
+    @Query("SELECT COUNT(*) AS rowCount, COALESCE(SUM(LENGTH(saved_values)), 0) AS byteCount FROM pending_questionnaire WHERE status = 'COMPLETED' AND (updated_at > :timestamp OR (updated_at = :timestamp AND uid > :uid))")
+    fun getCompletedBacklogAfter(timestamp: Long, uid: UUID): UnsyncedBacklog
+
     @Insert
     fun insert(pendingQuestionnaire: PendingQuestionnaire)
 
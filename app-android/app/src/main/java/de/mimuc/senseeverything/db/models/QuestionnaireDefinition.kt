@@ -0,0 +1,87 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import de.mimuc.senseeverything.api.model.ema.FullQuestionnaire
+import de.mimuc.senseeverything.api.model.ema.fullQuestionnaireJson
+import de.mimuc.senseeverything.db.AppDatabase
+import kotlinx.serialization.encodeToString
+import java.security.MessageDigest
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A questionnaire as it was when a [PendingQuestionnaire] was created. Definitions are stored once per
+ * content [hash], so all pending questionnaires of the same questionnaire version share one row.
+ */
+@Entity(tableName = "questionnaire_definition", indices = [Index(value = ["questionnaire_id", "version"])])
+data class QuestionnaireDefinition(
+    @PrimaryKey() val hash: String,
+    @ColumnInfo(name = "questionnaire_id") val questionnaireId: Int,
+    @ColumnInfo(name = "version") val version: Int,
+    @ColumnInfo(name = "json") val json: String,
+    @ColumnInfo(name = "added_at") val addedAt: Long
+) {
+    companion object {
+        fun of(questionnaire: FullQuestionnaire): QuestionnaireDefinition {
+            val json = fullQuestionnaireJson.encodeToString(questionnaire)
+            return QuestionnaireDefinition(
+                hash = contentHash(json),
+                questionnaireId = questionnaire.questionnaire.id,
+                version = questionnaire.questionnaire.version,
+                json = json,
+                addedAt = System.currentTimeMillis()
+            )
+        }
+
+        /** @return the hex encoded SHA-256 of [json] */
+        fun contentHash(json: String): String {
+            val digest = MessageDigest.getInstance("SHA-256").digest(json.toByteArray(Charsets.UTF_8))
+            return digest.joinToString("") { "%02x".format(it) }
+        }
+    }
+}
+
+/**
+ * Process-wide store of decoded questionnaire definitions, shared by the questionnaire screens, the floating
+ * widget and the upload workers. A definition is decoded at most once per process, since its hash identifies
+ * its content.
+ */
+object QuestionnaireDefinitions {
+    private val decoded = ConcurrentHashMap<String, FullQuestionnaire>()
+
+    // questionnaires from the DataStoreManager are memoized, so the same instance is stored again and again
+    private val encoded = Collections.synchronizedMap(WeakHashMap<FullQuestionnaire, QuestionnaireDefinition>())
+
+    /**
+     * Stores [questionnaire] unless an identical definition exists already. Must not be called on the main thread.
+     * @return the hash to reference the definition with
+     */
+    fun store(database: AppDatabase, questionnaire: FullQuestionnaire): String {
+        val definition = encoded.getOrPut(questionnaire) { QuestionnaireDefinition.of(questionnaire) }
+        database.questionnaireDefinitionDao().insert(definition)
+        decoded.putIfAbsent(definition.hash, questionnaire)
+        return definition.hash
+    }
+
+    /** @return the definition with [hash], decoded only if no one in this process has done so before */
+    fun get(database: AppDatabase, hash: String): FullQuestionnaire? {
+        decoded[hash]?.let { return it }
+        val definition = database.questionnaireDefinitionDao().getByHash(hash) ?: return null
+        return decode(hash, definition.json)
+    }
+
+    /** Decodes questionnaire JSON stored inline by pending questionnaires created before definitions existed. */
+    fun getInline(json: String): FullQuestionnaire {
+        val hash = QuestionnaireDefinition.contentHash(json)
+        return decoded[hash] ?: decode(hash, json)
+    }
+
+    private fun decode(hash: String, json: String): FullQuestionnaire {
+        val questionnaire = fullQuestionnaireJson.decodeFromString<FullQuestionnaire>(json)
+        return decoded.putIfAbsent(hash, questionnaire) ?: questionnaire
+    }
+}
@@ -0,0 +1,22 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+
+@Dao
+interface QuestionnaireDefinitionDao {
+    @Query("SELECT * FROM questionnaire_definition WHERE hash = :hash")
+    fun getByHash(hash: String): QuestionnaireDefinition?
+
+    /** Definitions are content-addressed, so an existing row with the same hash is already identical. */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun insert(definition: QuestionnaireDefinition)
+
+    @Query("DELETE FROM questionnaire_definition WHERE hash NOT IN (SELECT questionnaire_hash FROM pending_questionnaire WHERE questionnaire_hash IS NOT NULL)")
+    fun deleteUnreferenced()
+
+    @Query("DELETE FROM questionnaire_definition")
+    fun deleteAll()
+}
@@ -0,0 +1,23 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+
+/**
+ * Number of LogData rows of one sensor in one daily partition, kept current by [PartitionedLogDataDao]
+ * on every write, so counts never have to scan the partitions. Rows without a sensor name are counted under "".
+ */
+@Entity(tableName = "reading_counters", primaryKeys = ["day", "sensor_name"])
+data class ReadingCounter(
+    @ColumnInfo(name = "day")
+    val day: Long,
+
+    @ColumnInfo(name = "sensor_name")
+    val sensorName: String,
+
+    @ColumnInfo(name = "unsynced")
+    val unsynced: Long,
+
+    @ColumnInfo(name = "synced")
+    val synced: Long
+)
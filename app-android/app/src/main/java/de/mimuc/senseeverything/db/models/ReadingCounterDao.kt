@@ -0,0 +1,27 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.Dao
+import androidx.room.Query
+import kotlinx.coroutines.flow.Flow
+
+/** Counters are written by [PartitionedLogDataDao] only, this DAO reads them. */
+@Dao
+interface ReadingCounterDao {
+    @Query("SELECT * FROM reading_counters")
+    fun getAll(): List<ReadingCounter>
+
+    @Query("SELECT * FROM reading_counters")
+    fun getAllFlow(): Flow<List<ReadingCounter>>
+
+    @Query("SELECT * FROM reading_counters WHERE day = :day")
+    fun getForDay(day: Long): List<ReadingCounter>
+
+    @Query("SELECT COALESCE(SUM(unsynced), 0) FROM reading_counters")
+    fun getUnsyncedCount(): Long
+
+    @Query("SELECT COALESCE(SUM(unsynced + synced), 0) FROM reading_counters")
+    fun getRowCount(): Long
+
+    @Query("SELECT COUNT(*) FROM reading_counters")
+    fun getCounterCount(): Long
+}
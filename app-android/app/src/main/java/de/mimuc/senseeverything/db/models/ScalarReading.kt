@@ -0,0 +1,28 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Reading of a sensor with a single value, see [TypedSensor]; flags are stored as 0 or 1.
+ * [reliable] is null for sensors that do not report an accuracy.
+ */
+@Entity(tableName = "scalar_readings")
+class ScalarReading(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    val id: Long = 0,
+
+    @ColumnInfo(name = "sensor")
+    val sensor: Int,
+
+    @ColumnInfo(name = "timestamp")
+    val timestamp: Long,
+
+    @ColumnInfo(name = "value")
+    val value: Double,
+
+    @ColumnInfo(name = "reliable")
+    val reliable: Boolean? = null
+)
@@ -3,9 +3,6 @@ package de.mimuc.senseeverything.db.models
 import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.PrimaryKey
-import de.mimuc.senseeverything.db.AppDatabase
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.withContext
 
 @Entity(tableName = "scheduled_alarms")
 data class ScheduledAlarm(
@@ -14,7 +11,13 @@ data class ScheduledAlarm(
     @ColumnInfo(name = "receiver") val receiver: String,
     @ColumnInfo(name = "identifier") val identifier: String,
     @ColumnInfo(name = "timestamp") val timestamp: Long,
-    @ColumnInfo(name = "request_code") val requestCode: Int
+    @ColumnInfo(name = "request_code") val requestCode: Int,
+    /** Intent extras of alarms scheduled through the AlarmMultiplexer, see [de.mimuc.senseeverything.service.alarm.AlarmExtras] */
+    @ColumnInfo(name = "extras") val extras: String? = null,
+    /** How much later than [timestamp] the alarm may be delivered, so it can share a wakeup with other alarms */
+    @ColumnInfo(name = "window_millis", defaultValue = "0") val windowMillis: Long = 0,
+    /** Whether the AlarmMultiplexer still has to deliver the alarm */
+    @ColumnInfo(name = "pending", defaultValue = "0") val pending: Boolean = false
 ) {
     companion object {
         fun createEntry(receiver: String, identifier: String, timestamp: Long): ScheduledAlarm {
@@ -31,16 +34,5 @@ data class ScheduledAlarm(
         fun generateRequestCode(receiver: String, identifier: String): Int {
             return (receiver + identifier).hashCode()
         }
-
-        suspend fun getOrCreateScheduledAlarm(
-            database: AppDatabase,
-            receiver: String,
-            identifier: String,
-            timestamp: Long
-        ): ScheduledAlarm = withContext(Dispatchers.IO) {
-            database.scheduledAlarmDao().getByIdentifier(receiver, identifier)
-                ?: createEntry(receiver, identifier, timestamp)
-                    .also { database.scheduledAlarmDao().insert(it) }
-        }
     }
 }
\ No newline at end of file
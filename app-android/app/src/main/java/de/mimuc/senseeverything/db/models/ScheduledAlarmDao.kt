@@ -4,6 +4,7 @@ import androidx.room.Dao
 import androidx.room.Delete
 import androidx.room.Insert
 import androidx.room.Query
+import androidx.room.Update
 
 @Dao
 interface ScheduledAlarmDao {
@@ -16,9 +17,27 @@ interface ScheduledAlarmDao {
     @Query("SELECT * FROM scheduled_alarms WHERE timestamp > :timestamp")
     fun getAfterTimestamp(timestamp: Long): List<ScheduledAlarm>
 
+    @Query("SELECT * FROM scheduled_alarms WHERE pending = 1 ORDER BY timestamp ASC")
+    fun getPending(): List<ScheduledAlarm>
+
+    @Query("UPDATE scheduled_alarms SET pending = 0 WHERE uid IN (:uids)")
+    fun markDelivered(uids: List<Long>)
+
+    @Query("UPDATE scheduled_alarms SET pending = 0 WHERE receiver = :receiver AND identifier = :identifier")
+    fun cancelPending(receiver: String, identifier: String)
+
+    @Query("UPDATE scheduled_alarms SET pending = 0")
+    fun cancelAllPending()
+
+    @Query("UPDATE scheduled_alarms SET pending = 0 WHERE pending = 1 AND timestamp + window_millis < :timestamp")
+    fun cancelPendingBefore(timestamp: Long): Int
+
     @Insert
     fun insert(scheduledAlarm: ScheduledAlarm): Long
 
+    @Update
+    fun update(scheduledAlarm: ScheduledAlarm)
+
     @Delete
     fun delete(scheduledAlarm: ScheduledAlarm)
 
@@ -10,6 +10,9 @@ interface SocialNetworkContactDao {
     @Query("SELECT * FROM social_network_contacts")
     fun getAll(): List<SocialNetworkContact>
 
+    @Query("SELECT COUNT(*) FROM social_network_contacts")
+    fun getCount(): Long
+
     @Query("SELECT * FROM social_network_contacts ORDER BY name ASC")
     fun getAllSortedByName(): List<SocialNetworkContact>
 
@@ -0,0 +1,20 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+
+/**
+ * Number of stored readings of one [TypedSensor] on one UTC day, kept current by [TypedReadingStore]
+ * on every write. Typed readings are deleted once uploaded, so every counted reading is unsynced.
+ */
+@Entity(tableName = "typed_reading_counters", primaryKeys = ["day", "sensor"])
+data class TypedReadingCounter(
+    @ColumnInfo(name = "day")
+    val day: Long,
+
+    @ColumnInfo(name = "sensor")
+    val sensor: Int,
+
+    @ColumnInfo(name = "unsynced")
+    val unsynced: Long
+)
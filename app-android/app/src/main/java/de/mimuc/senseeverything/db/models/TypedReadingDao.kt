@@ -0,0 +1,58 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Typed readings are read in insertion order, which follows their timestamps, so no index besides the
+ * primary key is needed. Writes go through [TypedReadingStore], which keeps the [TypedReadingCounter]s current.
+ */
+@Dao
+interface TypedReadingDao {
+    @Insert
+    fun insertVector3(vararg readings: Vector3Reading)
+
+    @Insert
+    fun insertScalar(vararg readings: ScalarReading)
+
+    @Query("SELECT * FROM vector3_readings WHERE sensor IN (:sensors) AND timestamp <= :cutoffTimestamp ORDER BY id ASC LIMIT :n")
+    fun getNextVector3(n: Int, cutoffTimestamp: Long, sensors: List<Int>): List<Vector3Reading>
+
+    @Query("SELECT * FROM scalar_readings WHERE sensor IN (:sensors) AND timestamp <= :cutoffTimestamp ORDER BY id ASC LIMIT :n")
+    fun getNextScalar(n: Int, cutoffTimestamp: Long, sensors: List<Int>): List<ScalarReading>
+
+    @Query("SELECT COUNT(*) FROM vector3_readings WHERE sensor IN (:sensors) AND timestamp >= :startTimestamp AND timestamp <= :cutoffTimestamp")
+    fun countVector3Between(startTimestamp: Long, cutoffTimestamp: Long, sensors: List<Int>): Long
+
+    @Query("SELECT COUNT(*) FROM scalar_readings WHERE sensor IN (:sensors) AND timestamp >= :startTimestamp AND timestamp <= :cutoffTimestamp")
+    fun countScalarBetween(startTimestamp: Long, cutoffTimestamp: Long, sensors: List<Int>): Long
+
+    @Query("SELECT * FROM typed_reading_counters")
+    fun getCounters(): List<TypedReadingCounter>
+
+    @Query("SELECT * FROM typed_reading_counters")
+    fun getCountersFlow(): Flow<List<TypedReadingCounter>>
+
+    @Query("SELECT COALESCE(SUM(unsynced), 0) FROM typed_reading_counters")
+    fun getUnsyncedCount(): Long
+
+    @Query("SELECT COUNT(*) FROM typed_reading_counters")
+    fun getCounterCount(): Long
+
+    @Query("DELETE FROM vector3_readings WHERE id IN (:ids)")
+    fun deleteVector3(ids: List<Long>): Int
+
+    @Query("DELETE FROM scalar_readings WHERE id IN (:ids)")
+    fun deleteScalar(ids: List<Long>): Int
+
+    @Query("DELETE FROM vector3_readings")
+    fun deleteAllVector3()
+
+    @Query("DELETE FROM scalar_readings")
+    fun deleteAllScalar()
+
+    @Query("DELETE FROM typed_reading_counters")
+    fun deleteAllCounters()
+}
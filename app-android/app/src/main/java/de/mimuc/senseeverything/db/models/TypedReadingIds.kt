@@ -0,0 +1,27 @@
+package de.mimuc.senseeverything.db.models
+
+import java.nio.ByteBuffer
+import java.util.UUID
+
+/**
+ * Upload ids of typed readings, which do not store a UUID per row.
+ * The id is derived from a random per-installation [seed], the table and the row id; SQLite's AUTOINCREMENT
+ * never reuses row ids, so ids stay unique as long as the seed is kept.
+ */
+class TypedReadingIds(seed: String) {
+    private val seedBytes = seed.toByteArray(Charsets.UTF_8)
+
+    fun localId(family: ReadingFamily, id: Long): String {
+        val name = ByteBuffer.allocate(seedBytes.size + 1 + Long.SIZE_BYTES)
+            .put(seedBytes)
+            .put(family.ordinal.toByte())
+            .putLong(id)
+            .array()
+        return UUID.nameUUIDFromBytes(name).toString()
+    }
+
+    companion object {
+        /** Name of the seed in the generated keys table. */
+        const val SEED_KEY_NAME = "typed_reading_ids"
+    }
+}
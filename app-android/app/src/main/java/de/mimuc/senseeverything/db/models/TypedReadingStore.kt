@@ -0,0 +1,192 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.models.LogDataPartitions.DAY_MILLIS
+import de.mimuc.senseeverything.db.models.LogDataPartitions.dayOf
+import de.mimuc.senseeverything.db.models.LogDataPartitions.startOf
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+
+/** A stored typed reading, e.g. one that was uploaded or rolled up and can be deleted. */
+class TypedReadingRef(
+    val family: ReadingFamily,
+    val id: Long,
+    val sensor: Int,
+    val timestamp: Long
+)
+
+/**
+ * Writes and counts the readings of [TypedSensor]s.
+ *
+ * Every insert and delete updates the [TypedReadingCounter]s of the touched days and sensors in the same
+ * transaction, so unsynced counts, backlogs and their flows only read the small counters table, like the
+ * [ReadingCounter]s of LogData. Readings stored before the counters existed are counted on first use.
+ */
+class TypedReadingStore(private val database: AppDatabase) {
+    private val dao = database.typedReadingDao()
+    private val db: SupportSQLiteDatabase get() = database.openHelper.writableDatabase
+
+    @Volatile
+    private var prepared = false
+
+    val unsyncedCount: Long
+        get() {
+            prepare()
+            return dao.getUnsyncedCount()
+        }
+
+    fun insert(reading: Vector3Reading) {
+        prepare()
+        database.runInTransaction(Runnable {
+            dao.insertVector3(reading)
+            adjustCounter(dayOf(reading.timestamp), reading.sensor, 1)
+        })
+    }
+
+    fun insert(reading: ScalarReading) {
+        prepare()
+        database.runInTransaction(Runnable {
+            dao.insertScalar(reading)
+            adjustCounter(dayOf(reading.timestamp), reading.sensor, 1)
+        })
+    }
+
+    /** Readings that were already deleted, e.g. by the other process, are not counted twice. */
+    fun delete(readings: List<TypedReadingRef>) {
+        if (readings.isEmpty()) return
+        prepare()
+
+        database.runInTransaction(Runnable {
+            for ((key, group) in readings.groupBy { Triple(it.family, dayOf(it.timestamp), it.sensor) }) {
+                val (family, day, sensor) = key
+                var deleted = 0L
+                for (ids in group.map { it.id }.chunked(MAX_IDS_PER_STATEMENT)) {
+                    deleted += when (family) {
+                        ReadingFamily.VECTOR3 -> dao.deleteVector3(ids)
+                        ReadingFamily.SCALAR -> dao.deleteScalar(ids)
+                    }
+                }
+                adjustCounter(day, sensor, -deleted)
+            }
+            db.execSQL("DELETE FROM `$COUNTERS_TABLE` WHERE unsynced <= 0")
+        })
+    }
+
+    fun deleteAll() {
+        database.runInTransaction(Runnable {
+            dao.deleteAllVector3()
+            dao.deleteAllScalar()
+            dao.deleteAllCounters()
+        })
+    }
+
+    fun getUnsyncedCountBefore(cutoffTimestamp: Long): Long {
+        prepare()
+        return countBefore(dao.getCounters(), cutoffTimestamp)
+    }
+
+    /**
+     * Re-evaluated whenever the counters change. The readings of the day of the cutoff only have to be counted
+     * again if the counters of that day changed.
+     */
+    fun getUnsyncedCountBeforeFlow(cutoffTimestamp: Long): Flow<Long> {
+        val cutoffDay = dayOf(cutoffTimestamp)
+
+        return flow {
+            prepare()
+            var cutoffDayCounters: List<TypedReadingCounter>? = null
+            var cutoffDayCount = 0L
+
+            emitAll(dao.getCountersFlow().conflate().map { all ->
+                val dayCounters = all.filter { it.day == cutoffDay }.sortedBy { it.sensor }
+                if (dayCounters != cutoffDayCounters) {
+                    cutoffDayCount = countBefore(dayCounters, cutoffTimestamp)
+                    cutoffDayCounters = dayCounters
+                }
+                all.filter { it.day < cutoffDay }.sumOf { it.unsynced } + cutoffDayCount
+            })
+        }
+            .distinctUntilChanged()
+            .flowOn(Dispatchers.IO)
+    }
+
+    /** Sizes are estimated from the typical size of an encoded reading of each table. */
+    fun getBacklogBefore(cutoffTimestamp: Long, sensors: Collection<TypedSensor> = TypedSensor.entries): UnsyncedBacklog {
+        prepare()
+        val all = dao.getCounters()
+
+        var rowCount = 0L
+        var byteCount = 0L
+        for ((family, familySensors) in sensors.groupBy { it.family }) {
+            val codes = familySensors.map { it.code }.toSet()
+            val count = countBefore(all.filter { it.sensor in codes }, cutoffTimestamp)
+            rowCount += count
+            byteCount += count * when (family) {
+                ReadingFamily.VECTOR3 -> VECTOR3_READING_BYTES
+                ReadingFamily.SCALAR -> SCALAR_READING_BYTES
+            }
+        }
+        return UnsyncedBacklog(rowCount, byteCount)
+    }
+
+    /** Readings up to [cutoffTimestamp], given the counters of the sensors to count. */
+    private fun countBefore(counters: List<TypedReadingCounter>, cutoffTimestamp: Long): Long {
+        val cutoffDay = dayOf(cutoffTimestamp)
+        val before = counters.filter { it.day < cutoffDay }.sumOf { it.unsynced }
+        val onCutoffDay = counters.filter { it.day == cutoffDay && it.unsynced > 0 }
+        if (onCutoffDay.isEmpty() || cutoffTimestamp >= startOf(cutoffDay + 1) - 1) {
+            return before + onCutoffDay.sumOf { it.unsynced }
+        }
+
+        val (vector3, scalar) = onCutoffDay.map { it.sensor }
+            .partition { TypedSensor.forCode(it)?.family == ReadingFamily.VECTOR3 }
+        val start = startOf(cutoffDay)
+        return before +
+                (if (vector3.isEmpty()) 0L else dao.countVector3Between(start, cutoffTimestamp, vector3)) +
+                (if (scalar.isEmpty()) 0L else dao.countScalarBetween(start, cutoffTimestamp, scalar))
+    }
+
+    /** Counts the readings once if there are no counters yet, e.g. after an update. */
+    private fun prepare() {
+        if (prepared) return
+        database.runInTransaction(Runnable {
+            if (dao.getCounterCount() == 0L) {
+                for (table in READING_TABLES) {
+                    db.execSQL(
+                        "INSERT INTO `$COUNTERS_TABLE` (day, sensor, unsynced) " +
+                                "SELECT timestamp / $DAY_MILLIS, sensor, COUNT(*) FROM `$table` GROUP BY timestamp / $DAY_MILLIS, sensor"
+                    )
+                }
+            }
+        })
+        prepared = true
+    }
+
+    private fun adjustCounter(day: Long, sensor: Int, delta: Long) {
+        if (delta == 0L) return
+        db.execSQL(
+            "INSERT INTO `$COUNTERS_TABLE` (day, sensor, unsynced) VALUES (?, ?, ?) " +
+                    "ON CONFLICT(day, sensor) DO UPDATE SET unsynced = unsynced + excluded.unsynced",
+            arrayOf(day, sensor, delta)
+        )
+    }
+
+    companion object {
+        private const val COUNTERS_TABLE = "typed_reading_counters"
+        private val READING_TABLES = listOf("vector3_readings", "scalar_readings")
+
+        // typical size of a reading in the upload format
+        private const val VECTOR3_READING_BYTES = 170L
+        private const val SCALAR_READING_BYTES = 130L
+
+        // below SQLite's default limit of 999 bound variables
+        private const val MAX_IDS_PER_STATEMENT = 500
+    }
+}
@@ -0,0 +1,67 @@
+package de.mimuc.senseeverything.db.models
+
+import java.text.NumberFormat
+
+/** Tables for typed readings, see [Vector3Reading] and [ScalarReading]. */
+enum class ReadingFamily {
+    VECTOR3,
+    SCALAR
+}
+
+/** How the value of a [ScalarReading] is written as LogData payload. */
+enum class ScalarFormat {
+    /** Formatted with `CONST.numberFormat`, followed by the reliability flag if there is one. */
+    DECIMAL,
+    INTEGER,
+    ON_OFF,
+    BOOLEAN
+}
+
+/**
+ * Sensors whose readings are stored in typed tables instead of LogData.
+ * The [code] is stored with each row and must never change.
+ *
+ * [format] turns a typed reading back into the exact payload the sensor used to write as LogData,
+ * so the upload format does not change.
+ */
+enum class TypedSensor(
+    val code: Int,
+    val sensorName: String,
+    val family: ReadingFamily,
+    val scalarFormat: ScalarFormat = ScalarFormat.DECIMAL,
+    private val suffix: String = ""
+) {
+    ACCELEROMETER(1, "Accelerometer", ReadingFamily.VECTOR3),
+    GYROSCOPE(2, "Gyroscope", ReadingFamily.VECTOR3),
+    ORIENTATION(3, "Orientation Sensor", ReadingFamily.VECTOR3, suffix = "\n"),
+    LIGHT(10, "Light Sensor", ReadingFamily.SCALAR),
+    PROXIMITY(11, "Proximity", ReadingFamily.SCALAR),
+    AUDIO_LEVEL(12, "Audio Level", ReadingFamily.SCALAR, ScalarFormat.INTEGER),
+    RINGTONE_VOLUME(13, "Ringtone Volume", ReadingFamily.SCALAR, ScalarFormat.INTEGER),
+    SCREEN_ON_OFF(20, "Screen On/Off", ReadingFamily.SCALAR, ScalarFormat.ON_OFF),
+    CHARGING(21, "Charging", ReadingFamily.SCALAR, ScalarFormat.BOOLEAN);
+
+    fun format(reading: Vector3Reading, numberFormat: NumberFormat): String {
+        return numberFormat.format(reading.x) + "," + numberFormat.format(reading.y) + "," +
+                numberFormat.format(reading.z) + "," + reading.reliable + suffix
+    }
+
+    fun format(reading: ScalarReading, numberFormat: NumberFormat): String {
+        return when (scalarFormat) {
+            ScalarFormat.DECIMAL -> numberFormat.format(reading.value) + (reading.reliable?.let { ",$it" } ?: "") + suffix
+            ScalarFormat.INTEGER -> reading.value.toLong().toString() + suffix
+            ScalarFormat.ON_OFF -> (if (reading.value != 0.0) "on" else "off") + suffix
+            ScalarFormat.BOOLEAN -> (reading.value != 0.0).toString() + suffix
+        }
+    }
+
+    companion object {
+        private val byCode = entries.associateBy { it.code }
+        private val byName = entries.associateBy { it.sensorName }
+
+        fun forCode(code: Int): TypedSensor? = byCode[code]
+
+        @JvmStatic
+        fun forSensorName(sensorName: String?): TypedSensor? = byName[sensorName]
+    }
+}
@@ -0,0 +1,34 @@
+package de.mimuc.senseeverything.db.models
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Reading of a three-axis sensor, see [TypedSensor]. Values are the sensor's floats, widened exactly.
+ * Rows are deleted once uploaded, their upload id is derived from [id], see `TypedReadingIds`.
+ */
+@Entity(tableName = "vector3_readings")
+class Vector3Reading(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    val id: Long = 0,
+
+    @ColumnInfo(name = "sensor")
+    val sensor: Int,
+
+    @ColumnInfo(name = "timestamp")
+    val timestamp: Long,
+
+    @ColumnInfo(name = "x")
+    val x: Double,
+
+    @ColumnInfo(name = "y")
+    val y: Double,
+
+    @ColumnInfo(name = "z")
+    val z: Double,
+
+    @ColumnInfo(name = "reliable")
+    val reliable: Boolean
+)
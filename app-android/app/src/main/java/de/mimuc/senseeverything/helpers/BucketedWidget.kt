@@ -18,46 +18,17 @@ val TIME_BUCKETS = listOf(
 )
 
 fun getCurrentTimeBucket(): String {
-    val now = Calendar.getInstance()
-    val hour = now.get(Calendar.HOUR_OF_DAY)
-
-    // find the bucket that contains the current hour
-    return TIME_BUCKETS.find { bucket ->
-        val start = bucket.split("-")[0].split(":")[0].toInt()
-        val end = bucket.split("-")[1].split(":")[0].toInt()
-        hour in start until end
-    } ?: "Unknown"
-}
-
-fun applyTime(time: String, startDay: Calendar): Calendar {
-    val startHour = time.split(":")[0].toInt()
-    val startMinute = time.split(":")[1].toInt()
-
-    val timeCal = startDay.clone() as Calendar
-    timeCal.apply {
-        set(Calendar.HOUR_OF_DAY, startHour)
-        set(Calendar.MINUTE, startMinute)
-        set(Calendar.SECOND, 0)
-        set(Calendar.MILLISECOND, 0)
-    }
-
-    return timeCal
+    val schedule = TimeBucketSchedule.of(TIME_BUCKETS)
+    val index = schedule.bucketAtMinute(schedule.minuteOfDay(System.currentTimeMillis()))
+    return if (index >= 0) schedule.buckets[index] else "Unknown"
 }
 
 fun parseTimebucket(bucket: String, startDay: Calendar): Pair<Calendar, Calendar> {
-    val startHour = bucket.split("-")[0].split(":")[0].toInt()
-    val startMinute = bucket.split("-")[0].split(":")[1].toInt()
-    val endHour = bucket.split("-")[1].split(":")[0].toInt()
-    val endMinute = bucket.split("-")[1].split(":")[1].toInt()
+    val schedule = TimeBucketSchedule.of(listOf(bucket), startDay.timeZone.toZoneId())
+    val day = schedule.dayOf(startDay.timeInMillis)
     val startCal = startDay.clone() as Calendar
-    startCal.set(Calendar.HOUR_OF_DAY, startHour)
-    startCal.set(Calendar.MINUTE, startMinute)
-    startCal.set(Calendar.SECOND, 0)
-    startCal.set(Calendar.MILLISECOND, 0)
+    startCal.timeInMillis = schedule.startMillis(0, day)
     val endCal = startDay.clone() as Calendar
-    endCal.set(Calendar.HOUR_OF_DAY, endHour)
-    endCal.set(Calendar.MINUTE, endMinute)
-    endCal.set(Calendar.SECOND, 0)
-    endCal.set(Calendar.MILLISECOND, 0)
+    endCal.timeInMillis = schedule.endMillis(0, day)
     return Pair(startCal, endCal)
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package de.mimuc.senseeverything.helpers
+
+import android.database.Cursor
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteException
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.logging.WHALELog
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.JsonNull
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.JsonPrimitive
+import java.io.File
+import java.util.Base64
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/**
+ * Exports the database without stopping sensor writes.
+ *
+ * [snapshot] copies a consistent state of the database with `VACUUM INTO`, which only holds a read
+ * transaction, so writers continue against the WAL meanwhile. [dumpTables] pages through every table of
+ * such a snapshot and writes one JSON object per row, so memory use does not grow with the table size.
+ */
+class DatabaseExportEngine(
+    private val database: AppDatabase,
+    private val databaseFile: File
+) {
+    private val TAG = "DatabaseExportEngine"
+
+    /**
+     * Write a consistent copy of the database to [target], replacing an existing file.
+     *
+     * The copy runs on a separate read-only connection, since Room's write connection would block
+     * all writes until the copy is done. That is only used if the separate connection cannot copy.
+     */
+    fun snapshot(target: File) {
+        target.delete()
+        try {
+            SQLiteDatabase.openDatabase(databaseFile.path, null, SQLiteDatabase.OPEN_READONLY).use { connection ->
+                connection.execSQL("VACUUM INTO ?", arrayOf(target.path))
+            }
+        } catch (e: SQLiteException) {
+            WHALELog.w(TAG, "Could not copy on a read-only connection, writes wait for the copy: $e")
+            target.delete()
+            database.openHelper.writableDatabase.execSQL("VACUUM INTO ?", arrayOf(target.path))
+        }
+    }
+
+    /** Tables of a snapshot with their row counts, without SQLite's and Room's bookkeeping tables. */
+    fun tables(snapshot: File): List<Pair<String, Long>> {
+        return openSnapshot(snapshot).use { connection ->
+            val names = connection.rawQuery(
+                "SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite\\_%' ESCAPE '\\' " +
+                        "AND name NOT IN ('android_metadata', 'room_master_table') ORDER BY name",
+                null
+            ).use { cursor -> List(cursor.count) { cursor.moveToNext(); cursor.getString(0) } }
+
+            names.map { name ->
+                val count = connection.rawQuery("SELECT COUNT(*) FROM `$name`", null).use { cursor ->
+                    if (cursor.moveToFirst()) cursor.getLong(0) else 0
+                }
+                name to count
+            }
+        }
+    }
+
+    /**
+     * Write each table of [snapshot] as newline-delimited JSON into its own compressed entry `tables/<name>.ndjson`.
+     * Blobs are written as Base64 strings. [onProgress] receives the share of exported rows.
+     */
+    fun dumpTables(snapshot: File, output: ZipOutputStream, onProgress: (Float) -> Unit = {}) {
+        val tables = tables(snapshot)
+        val totalRows = tables.sumOf { it.second }.coerceAtLeast(1)
+        var exportedRows = 0L
+
+        openSnapshot(snapshot).use { connection ->
+            for ((name, _) in tables) {
+                output.putNextEntry(ZipEntry("tables/$name.ndjson"))
+                // not closed, that would close the zip
+                val writer = output.bufferedWriter()
+                var lastRowId = Long.MIN_VALUE
+
+                while (true) {
+                    val rows = connection.rawQuery(
+                        "SELECT rowid AS _export_rowid, * FROM `$name` WHERE rowid > ? ORDER BY rowid LIMIT $PAGE_SIZE",
+                        arrayOf(lastRowId.toString())
+                    ).use { cursor ->
+                        var count = 0
+                        while (cursor.moveToNext()) {
+                            lastRowId = cursor.getLong(0)
+                            writer.write(rowToJson(cursor).toString())
+                            writer.write("\n")
+                            count++
+                        }
+                        count
+                    }
+
+                    exportedRows += rows
+                    onProgress(exportedRows.toFloat() / totalRows)
+                    if (rows < PAGE_SIZE) break
+                }
+
+                writer.flush()
+                output.closeEntry()
+                WHALELog.i(TAG, "Exported table $name")
+            }
+        }
+    }
+
+    private fun openSnapshot(snapshot: File): SQLiteDatabase {
+        return SQLiteDatabase.openDatabase(snapshot.path, null, SQLiteDatabase.OPEN_READONLY)
+    }
+
+    private fun rowToJson(cursor: Cursor): JsonObject {
+        val columns = LinkedHashMap<String, JsonElement>()
+        // the first column is the rowid used for paging
+        for (index in 1 until cursor.columnCount) {
+            columns[cursor.getColumnName(index)] = when (cursor.getType(index)) {
+                Cursor.FIELD_TYPE_NULL -> JsonNull
+                Cursor.FIELD_TYPE_INTEGER -> JsonPrimitive(cursor.getLong(index))
+                Cursor.FIELD_TYPE_FLOAT -> JsonPrimitive(cursor.getDouble(index))
+                Cursor.FIELD_TYPE_BLOB -> JsonPrimitive(Base64.getEncoder().encodeToString(cursor.getBlob(index)))
+                else -> JsonPrimitive(cursor.getString(index))
+            }
+        }
+        return JsonObject(columns)
+    }
+
+    companion object {
+        // rows per query, keeps large payloads within one cursor window
+        private const val PAGE_SIZE = 500
+    }
+}
@@ -17,7 +17,7 @@ import javax.inject.Singleton
 
 sealed class ExportStatus {
     object Idle : ExportStatus()
-    object Exporting : ExportStatus()
+    data class Exporting(val progress: Float? = null) : ExportStatus()
     object Success : ExportStatus()
     data class Error(val message: String) : ExportStatus()
 }
@@ -30,8 +30,36 @@ class DatabaseExporter @Inject constructor(
     private val _exportStatus = MutableStateFlow<ExportStatus>(ExportStatus.Idle)
     val exportStatus: StateFlow<ExportStatus> get() = _exportStatus
 
+    /** Export a consistent copy of the complete database. */
     suspend fun exportDatabase(context: Context, onSuccess: (zipFile: java.io.File) -> Unit) {
-        _exportStatus.value = ExportStatus.Exporting
+        val note = "Complete database with all tables is included in the export."
+        export(context, "whale_database", note, onSuccess) { _, snapshot, zipOut ->
+            java.io.FileInputStream(snapshot).use { fis ->
+                zipOut.putNextEntry(java.util.zip.ZipEntry("senseeverything-roomdb.db"))
+                fis.copyTo(zipOut)
+                zipOut.closeEntry()
+            }
+        }
+    }
+
+    /** Export every table as newline-delimited JSON, e.g. for analysis without SQLite. */
+    suspend fun exportTables(context: Context, onSuccess: (zipFile: java.io.File) -> Unit) {
+        val note = "Every table is included as newline-delimited JSON in tables/, blobs are Base64-encoded."
+        export(context, "whale_tables", note, onSuccess) { engine, snapshot, zipOut ->
+            engine.dumpTables(snapshot, zipOut) { progress ->
+                _exportStatus.value = ExportStatus.Exporting(progress)
+            }
+        }
+    }
+
+    private suspend fun export(
+        context: Context,
+        name: String,
+        note: String,
+        onSuccess: (zipFile: java.io.File) -> Unit,
+        writeContent: (DatabaseExportEngine, java.io.File, java.util.zip.ZipOutputStream) -> Unit
+    ) {
+        _exportStatus.value = ExportStatus.Exporting()
 
         try {
             withContext(Dispatchers.IO) {
@@ -43,26 +71,41 @@ class DatabaseExporter @Inject constructor(
                     return@withContext
                 }
 
-                // Checkpoint WAL to ensure all data is in main database file
-                database.openHelper.writableDatabase.query("PRAGMA wal_checkpoint(FULL)").close()
-
                 // Create export directory in cache
                 val exportDir = java.io.File(context.cacheDir, "database_exports")
                 exportDir.mkdirs()
 
-                // Generate metadata
-                val metadata = generateMetadata()
-
-                // Create zip file
-                val zipFile = createZipFile(dbFile, metadata, exportDir)
-
-                // Share file on main thread
-                withContext(Dispatchers.Main) {
-                    shareFile(context, zipFile)
-                    _exportStatus.value = ExportStatus.Success
-
-                    // Callback for cleanup
-                    onSuccess(zipFile)
+                // Copy a consistent state while sensors keep writing
+                val engine = DatabaseExportEngine(database, dbFile)
+                val snapshot = java.io.File(exportDir, "snapshot.db")
+                try {
+                    engine.snapshot(snapshot)
+
+                    // Generate metadata
+                    val metadata = generateMetadata(note)
+
+                    // Create zip file
+                    val timestamp = java.text.SimpleDateFormat("yyyyMMdd_HHmmss", java.util.Locale.US).format(java.util.Date())
+                    val zipFile = java.io.File(exportDir, "${name}_$timestamp.zip")
+                    java.util.zip.ZipOutputStream(java.io.BufferedOutputStream(java.io.FileOutputStream(zipFile))).use { zipOut ->
+                        writeContent(engine, snapshot, zipOut)
+
+                        // Add metadata
+                        zipOut.putNextEntry(java.util.zip.ZipEntry("metadata.txt"))
+                        zipOut.write(metadata.toByteArray())
+                        zipOut.closeEntry()
+                    }
+
+                    // Share file on main thread
+                    withContext(Dispatchers.Main) {
+                        shareFile(context, zipFile)
+                        _exportStatus.value = ExportStatus.Success
+
+                        // Callback for cleanup
+                        onSuccess(zipFile)
+                    }
+                } finally {
+                    snapshot.delete()
                 }
             }
         } catch (e: Exception) {
@@ -71,12 +114,14 @@ class DatabaseExporter @Inject constructor(
         }
     }
 
-    private suspend fun generateMetadata(): String {
+    private suspend fun generateMetadata(note: String): String {
         val participantId = dataStoreManager.participantIdFlow.first()
-        val logDataCount = database.logDataDao().all.size.toLong()
-        val pendingQuestionnaireCount = database.pendingQuestionnaireDao().getAll().size.toLong()
-        val notificationTriggerCount = database.notificationTriggerDao().getAll().size.toLong()
-        val socialNetworkContactCount = database.socialNetworkContactDao().getAll().size.toLong()
+        val logDataCount = database.logDataDao().rowCount
+        val unsyncedLogDataCount = database.logDataDao().unsyncedCount
+        val typedReadingCount = database.typedReadings().unsyncedCount
+        val pendingQuestionnaireCount = database.pendingQuestionnaireDao().getCount()
+        val notificationTriggerCount = database.notificationTriggerDao().getCount()
+        val socialNetworkContactCount = database.socialNetworkContactDao().getCount()
 
         return buildString {
             appendLine("=== WHALE Database Export Metadata ===")
@@ -85,62 +130,18 @@ class DatabaseExporter @Inject constructor(
             appendLine("Export Date: ${java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss", java.util.Locale.US).format(java.util.Date())}")
             appendLine()
             appendLine("=== Table Row Counts ===")
-            appendLine("LogData: $logDataCount")
+            appendLine("LogData: $logDataCount ($unsyncedLogDataCount not yet synced)")
+            appendLine("Typed readings: $typedReadingCount (not yet synced)")
             appendLine("PendingQuestionnaire: $pendingQuestionnaireCount")
             appendLine("NotificationTrigger: $notificationTriggerCount")
             appendLine("SocialNetworkContact: $socialNetworkContactCount")
             appendLine("ScheduledAlarm: (see database)")
             appendLine("GeneratedKey: (see database)")
             appendLine()
-            appendLine("Note: Complete database with all tables is included in the export.")
+            appendLine("Note: $note")
         }
     }
 
-    private fun createZipFile(dbFile: java.io.File, metadata: String, exportDir: java.io.File): java.io.File {
-        val timestamp = java.text.SimpleDateFormat("yyyyMMdd_HHmmss", java.util.Locale.US).format(java.util.Date())
-        val zipFile = java.io.File(exportDir, "whale_database_$timestamp.zip")
-
-        java.util.zip.ZipOutputStream(java.io.FileOutputStream(zipFile)).use { zipOut ->
-            // Add database file
-            java.io.FileInputStream(dbFile).use { fis ->
-                val entry = java.util.zip.ZipEntry("senseeverything-roomdb.db")
-                zipOut.putNextEntry(entry)
-                fis.copyTo(zipOut)
-                zipOut.closeEntry()
-            }
-
-            // Add WAL file if it exists
-            val walFile = java.io.File(dbFile.parent, "${dbFile.name}-wal")
-            if (walFile.exists()) {
-                java.io.FileInputStream(walFile).use { fis ->
-                    val entry = java.util.zip.ZipEntry("senseeverything-roomdb.db-wal")
-                    zipOut.putNextEntry(entry)
-                    fis.copyTo(zipOut)
-                    zipOut.closeEntry()
-                }
-            }
-
-            // Add SHM file if it exists
-            val shmFile = java.io.File(dbFile.parent, "${dbFile.name}-shm")
-            if (shmFile.exists()) {
-                java.io.FileInputStream(shmFile).use { fis ->
-                    val entry = java.util.zip.ZipEntry("senseeverything-roomdb.db-shm")
-                    zipOut.putNextEntry(entry)
-                    fis.copyTo(zipOut)
-                    zipOut.closeEntry()
-                }
-            }
-
-            // Add metadata
-            val metadataEntry = java.util.zip.ZipEntry("metadata.txt")
-            zipOut.putNextEntry(metadataEntry)
-            zipOut.write(metadata.toByteArray())
-            zipOut.closeEntry()
-        }
-
-        return zipFile
-    }
-
     private fun shareFile(context: Context, file: java.io.File) {
         val uri: Uri = FileProvider.getUriForFile(
             context,
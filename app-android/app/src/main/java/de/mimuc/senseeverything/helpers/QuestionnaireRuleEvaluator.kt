@@ -11,45 +11,174 @@ import de.mimuc.senseeverything.api.model.SocialNetworkEntryValue
 import de.mimuc.senseeverything.api.model.TextEntryValue
 import de.mimuc.senseeverything.api.model.TimeInputValue
 import de.mimuc.senseeverything.api.model.ema.Action
+import de.mimuc.senseeverything.api.model.ema.Comparator
+import de.mimuc.senseeverything.api.model.ema.LogicalOperator
 import de.mimuc.senseeverything.api.model.ema.QuestionnaireElementType
 import de.mimuc.senseeverything.api.model.ema.QuestionnaireRule
 import de.mimuc.senseeverything.db.models.PendingQuestionnaire
 import de.mimuc.senseeverything.service.esm.QuestionnaireRuleActionReceiver
 
-class QuestionnaireRuleEvaluator(var rules: List<QuestionnaireRule>) {
-    fun evaluate(elementValues: Map<Int, ElementValue>): Map<String, List<Action>> {
-        val ruleActions = mutableMapOf<String, List<Action>>()
+/**
+ * Rules compiled for evaluation: conditions point to field slots instead of field names,
+ * expected values are normalized once and each slot knows the rules that read it.
+ */
+class CompiledRules private constructor(
+    val rules: List<QuestionnaireRule>,
+    internal val slotByFieldName: Map<String, Int>,
+    internal val conditions: Array<Array<CompiledCondition>>,
+    internal val rulesBySlot: Array<IntArray>
+) {
+    internal class CompiledCondition(val slot: Int, val comparator: Comparator, val expectedValue: String)
 
-        for (rule in rules) {
-            val conditionsMet = rule.conditions.conditions.map { condition ->
-                val elementValue =
-                    elementValues.entries.find { it.value.elementName == condition.fieldName }?.value.let {
-                        elementValueAsString(it)
-                    }
-                        ?: return@map false
+    val fieldCount: Int get() = slotByFieldName.size
 
-                when (condition.comparator) {
-                    de.mimuc.senseeverything.api.model.ema.Comparator.EQUALS -> elementValue == condition.expectedValue.toString()
-                        .trim('"')
+    companion object {
+        fun compile(rules: List<QuestionnaireRule>): CompiledRules {
+            val slotByFieldName = HashMap<String, Int>()
+            val rulesBySlot = ArrayList<MutableSet<Int>>()
 
-                    de.mimuc.senseeverything.api.model.ema.Comparator.NOT_EQUALS -> elementValue != condition.expectedValue.toString()
-                        .trim('"')
-                }
+            val conditions = Array(rules.size) { ruleIndex ->
+                rules[ruleIndex].conditions.conditions.map { condition ->
+                    val slot = slotByFieldName.getOrPut(condition.fieldName) {
+                        rulesBySlot.add(LinkedHashSet())
+                        rulesBySlot.size - 1
+                    }
+                    rulesBySlot[slot].add(ruleIndex)
+                    CompiledCondition(slot, condition.comparator, condition.expectedValue.toString().trim('"'))
+                }.toTypedArray()
             }
 
-            val allConditionsMet = when (rule.conditions.operator) {
-                de.mimuc.senseeverything.api.model.ema.LogicalOperator.AND -> conditionsMet.all { it }
-                de.mimuc.senseeverything.api.model.ema.LogicalOperator.OR -> conditionsMet.any { it }
+            return CompiledRules(
+                rules,
+                slotByFieldName,
+                conditions,
+                Array(rulesBySlot.size) { rulesBySlot[it].toIntArray() }
+            )
+        }
+    }
+}
+
+/**
+ * Evaluates questionnaire rules against element values.
+ *
+ * [evaluate] checks all rules, [update] and [updateAll] only re-check the rules that read a changed answer.
+ * The evaluator remembers the last values it has seen, so one instance belongs to one questionnaire run.
+ */
+class QuestionnaireRuleEvaluator(rules: List<QuestionnaireRule>) {
+    private var compiled = CompiledRules.compile(rules)
+
+    // element id -> slot, or -1 if no rule reads the element
+    private val slotByElementId = HashMap<Int, Int>()
+    private var values = arrayOfNulls<String>(compiled.fieldCount)
+    private var seen = BooleanArray(compiled.fieldCount)
+    private var matched = BooleanArray(compiled.rules.size)
+
+    var rules: List<QuestionnaireRule>
+        get() = compiled.rules
+        set(value) {
+            compiled = CompiledRules.compile(value)
+            reset()
+        }
+
+    /** Evaluates all rules against [elementValues]. */
+    fun evaluate(elementValues: Map<Int, ElementValue>): Map<String, List<Action>> {
+        reset()
+        for (elementValue in elementValues.values) {
+            val slot = slotOf(elementValue)
+            // the first value for a field name wins, as rules address elements by name
+            if (slot < 0 || seen[slot]) continue
+            seen[slot] = true
+            values[slot] = elementValueAsString(elementValue)
+        }
+
+        for (ruleIndex in matched.indices) {
+            matched[ruleIndex] = check(ruleIndex)
+        }
+        return actions()
+    }
+
+    /** Records a changed answer and re-checks only the rules that read it. */
+    fun update(elementValue: ElementValue): Map<String, List<Action>> {
+        val slot = slotOf(elementValue)
+        if (slot >= 0 && store(slot, elementValueAsString(elementValue))) {
+            recheck(compiled.rulesBySlot[slot])
+        }
+        return actions()
+    }
+
+    /** Records all answers of [elementValues] and re-checks the rules whose answers changed. */
+    fun updateAll(elementValues: Map<Int, ElementValue>): Map<String, List<Action>> {
+        var changedSlots: MutableSet<Int>? = null
+        for (elementValue in elementValues.values) {
+            val slot = slotOf(elementValue)
+            if (slot >= 0 && store(slot, elementValueAsString(elementValue))) {
+                (changedSlots ?: LinkedHashSet<Int>().also { changedSlots = it }).add(slot)
             }
+        }
 
-            if (allConditionsMet) {
+        changedSlots?.let { slots ->
+            val rules = slots.flatMapTo(LinkedHashSet()) { compiled.rulesBySlot[it].asIterable() }
+            recheck(rules.toIntArray())
+        }
+        return actions()
+    }
+
+    /** @return the actions of all rules that matched the answers seen so far, by rule name */
+    fun actions(): Map<String, List<Action>> {
+        val ruleActions = mutableMapOf<String, List<Action>>()
+        for (ruleIndex in matched.indices) {
+            if (matched[ruleIndex]) {
+                val rule = compiled.rules[ruleIndex]
                 ruleActions[rule.name] = rule.actions
             }
         }
-
         return ruleActions
     }
 
+    private fun reset() {
+        slotByElementId.clear()
+        values = arrayOfNulls(compiled.fieldCount)
+        seen = BooleanArray(compiled.fieldCount)
+        matched = BooleanArray(compiled.rules.size)
+    }
+
+    private fun slotOf(elementValue: ElementValue): Int {
+        return slotByElementId.getOrPut(elementValue.elementId) {
+            compiled.slotByFieldName[elementValue.elementName] ?: -1
+        }
+    }
+
+    /** @return whether the value of [slot] changed */
+    private fun store(slot: Int, value: String?): Boolean {
+        if (seen[slot] && values[slot] == value) return false
+        seen[slot] = true
+        values[slot] = value
+        return true
+    }
+
+    private fun recheck(ruleIndices: IntArray) {
+        for (ruleIndex in ruleIndices) {
+            matched[ruleIndex] = check(ruleIndex)
+        }
+    }
+
+    private fun check(ruleIndex: Int): Boolean {
+        val conditions = compiled.conditions[ruleIndex]
+        val conditionMet = { condition: CompiledRules.CompiledCondition ->
+            val elementValue = values[condition.slot]
+            when {
+                elementValue == null -> false
+                condition.comparator == Comparator.EQUALS -> elementValue == condition.expectedValue
+                else -> elementValue != condition.expectedValue
+            }
+        }
+
+        return when (compiled.rules[ruleIndex].conditions.operator) {
+            LogicalOperator.AND -> conditions.all(conditionMet)
+            LogicalOperator.OR -> conditions.any(conditionMet)
+        }
+    }
+
     private fun elementValueAsString(value: ElementValue?): String? {
         if (value == null) return null
 
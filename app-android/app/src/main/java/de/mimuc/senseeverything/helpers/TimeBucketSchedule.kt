@@ -0,0 +1,147 @@
+package de.mimuc.senseeverything.helpers
+
+import java.time.Instant
+import java.time.LocalDate
+import java.time.LocalTime
+import java.time.ZoneId
+import java.time.ZonedDateTime
+import java.time.temporal.ChronoUnit
+import java.util.concurrent.ConcurrentHashMap
+
+private const val MINUTES_PER_DAY = 24 * 60
+private const val MILLIS_PER_MINUTE = 60_000L
+private const val SECONDS_PER_DAY = 24 * 60 * 60L
+
+/** Parses a time of day like "9:00" or "09:00" into minutes since midnight. */
+fun parseMinuteOfDay(time: String): Int {
+    val separator = time.indexOf(':')
+    require(separator > 0) { "Invalid time of day: $time" }
+    return time.substring(0, separator).trim().toInt() * 60 + time.substring(separator + 1).trim().toInt()
+}
+
+/** @return the timestamp of [time], e.g. "20:00", on the day of [epochMillis] */
+fun timeOfDayOn(epochMillis: Long, time: String, zone: ZoneId = ZoneId.systemDefault()): Long {
+    val minuteOfDay = parseMinuteOfDay(time)
+    val day = Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate()
+    return ZonedDateTime.of(day, LocalTime.of(minuteOfDay / 60, minuteOfDay % 60), zone).toInstant().toEpochMilli()
+}
+
+/**
+ * Time buckets like "9:00-11:29", parsed once into minute-of-day ranges.
+ *
+ * Buckets keep the order they were given in, [byStart] and [byEnd] list their indices sorted by start and end.
+ * Timestamps on a day are computed with `java.time` in [zone], the same way `Calendar` sets the time of day.
+ * Instances are cached per bucket list, use [of] to get one.
+ */
+class TimeBucketSchedule private constructor(
+    val buckets: List<String>,
+    val zone: ZoneId
+) {
+    private val rules = zone.rules
+    private val startMinutes = IntArray(buckets.size)
+    private val endMinutes = IntArray(buckets.size)
+
+    /** The first bucket that contains a minute, counting the end minute as outside, or -1 */
+    private val bucketByMinute = IntArray(MINUTES_PER_DAY) { -1 }
+
+    /** The first bucket that ends at a minute, or -1 */
+    private val bucketEndingAt = IntArray(MINUTES_PER_DAY + 1) { -1 }
+
+    private val indexByName = HashMap<String, Int>(buckets.size * 2)
+
+    val byStart: IntArray
+    val byEnd: IntArray
+
+    init {
+        buckets.forEachIndexed { index, bucket ->
+            val separator = bucket.indexOf('-')
+            require(separator > 0) { "Invalid time bucket: $bucket" }
+            startMinutes[index] = parseMinuteOfDay(bucket.substring(0, separator))
+            endMinutes[index] = parseMinuteOfDay(bucket.substring(separator + 1))
+            indexByName.putIfAbsent(bucket, index)
+
+            for (minute in startMinutes[index] until minOf(endMinutes[index], MINUTES_PER_DAY)) {
+                if (bucketByMinute[minute] < 0) bucketByMinute[minute] = index
+            }
+            if (endMinutes[index] in 0..MINUTES_PER_DAY && bucketEndingAt[endMinutes[index]] < 0) {
+                bucketEndingAt[endMinutes[index]] = index
+            }
+        }
+
+        byStart = buckets.indices.sortedBy { startMinutes[it] }.toIntArray()
+        byEnd = buckets.indices.sortedBy { endMinutes[it] }.toIntArray()
+    }
+
+    val size: Int get() = buckets.size
+
+    fun indexOf(bucket: String): Int = indexByName[bucket] ?: -1
+
+    fun startMinute(index: Int): Int = startMinutes[index]
+
+    fun endMinute(index: Int): Int = endMinutes[index]
+
+    fun dayOf(epochMillis: Long): LocalDate {
+        val offsetSeconds = rules.getOffset(Instant.ofEpochMilli(epochMillis)).totalSeconds
+        return LocalDate.ofEpochDay(Math.floorDiv(Math.floorDiv(epochMillis, 1000L) + offsetSeconds, SECONDS_PER_DAY))
+    }
+
+    /** @return the timestamp of [minuteOfDay] on [day], times in a DST gap are moved forward like with `Calendar` */
+    fun timeOnDay(day: LocalDate, minuteOfDay: Int): Long {
+        val dayOffset = minuteOfDay / MINUTES_PER_DAY
+        val time = LocalTime.of((minuteOfDay % MINUTES_PER_DAY) / 60, minuteOfDay % 60)
+        return ZonedDateTime.of(day.plusDays(dayOffset.toLong()), time, zone).toInstant().toEpochMilli()
+    }
+
+    fun startOfDay(day: LocalDate): Long = day.atStartOfDay(zone).toInstant().toEpochMilli()
+
+    fun startMillis(index: Int, day: LocalDate): Long = timeOnDay(day, startMinutes[index])
+
+    fun endMillis(index: Int, day: LocalDate): Long = timeOnDay(day, endMinutes[index])
+
+    fun minuteOfDay(epochMillis: Long): Int = (millisOfDay(epochMillis) / MILLIS_PER_MINUTE).toInt()
+
+    private fun millisOfDay(epochMillis: Long): Long {
+        val offsetMillis = rules.getOffset(Instant.ofEpochMilli(epochMillis)).totalSeconds * 1000L
+        return Math.floorMod(epochMillis + offsetMillis, SECONDS_PER_DAY * 1000L)
+    }
+
+    /** @return the bucket containing [minuteOfDay], with the end minute outside of the bucket, or -1 */
+    fun bucketAtMinute(minuteOfDay: Int): Int {
+        if (minuteOfDay !in 0 until MINUTES_PER_DAY) return -1
+        return bucketByMinute[minuteOfDay]
+    }
+
+    /**
+     * @return the bucket containing [epochMillis], or -1. The end of a bucket is its end minute at zero seconds,
+     * like the end `Calendar` of [parseTimebucket].
+     */
+    fun bucketAt(epochMillis: Long): Int {
+        val millisOfDay = millisOfDay(epochMillis)
+        val minute = (millisOfDay / MILLIS_PER_MINUTE).toInt()
+
+        val index = bucketByMinute[minute]
+        if (index >= 0) return index
+        return if (millisOfDay % MILLIS_PER_MINUTE == 0L) bucketEndingAt[minute] else -1
+    }
+
+    companion object {
+        private const val MAX_CACHED = 32
+
+        private val cache = ConcurrentHashMap<Pair<ZoneId, List<String>>, TimeBucketSchedule>()
+
+        fun of(buckets: List<String>, zone: ZoneId = ZoneId.systemDefault()): TimeBucketSchedule {
+            cache[zone to buckets]?.let { return it }
+
+            if (cache.size >= MAX_CACHED) cache.clear()
+            val copy = buckets.toList()
+            return TimeBucketSchedule(copy, zone).also { cache[zone to copy] = it }
+        }
+
+        /** @return the number of calendar days from the day of [fromMillis] to the day of [toMillis] */
+        fun daysBetween(fromMillis: Long, toMillis: Long, zone: ZoneId = ZoneId.systemDefault()): Long {
+            val from = Instant.ofEpochMilli(fromMillis).atZone(zone).toLocalDate()
+            val to = Instant.ofEpochMilli(toMillis).atZone(zone).toLocalDate()
+            return ChronoUnit.DAYS.between(from, to)
+        }
+    }
+}
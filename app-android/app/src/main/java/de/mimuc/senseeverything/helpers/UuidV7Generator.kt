@@ -0,0 +1,42 @@
+package de.mimuc.senseeverything.helpers
+
+import java.util.UUID
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Time-ordered UUIDs (version 7, RFC 9562) for reading ids.
+ *
+ * The 48-bit millisecond timestamp is followed by a 12-bit counter, so ids of one process are strictly
+ * increasing, even within a millisecond or if the clock goes back. The remaining 62 bits are random,
+ * from [ThreadLocalRandom] instead of the shared `SecureRandom` of [UUID.randomUUID].
+ */
+class UuidV7Generator(private val clock: () -> Long = System::currentTimeMillis) {
+    // timestamp << 12 | counter of the last id
+    private val last = AtomicLong(0)
+
+    fun next(): UUID {
+        val candidate = clock() shl COUNTER_BITS
+        // a counter overflow moves on to the next millisecond
+        val state = last.updateAndGet { previous -> maxOf(candidate, previous + 1) }
+
+        val timestamp = state ushr COUNTER_BITS
+        val counter = state and COUNTER_MASK
+        val mostSignificant = (timestamp shl 16) or VERSION or counter
+        val leastSignificant = (ThreadLocalRandom.current().nextLong() and RANDOM_MASK) or VARIANT
+        return UUID(mostSignificant, leastSignificant)
+    }
+
+    companion object {
+        private const val COUNTER_BITS = 12
+        private const val COUNTER_MASK = (1L shl COUNTER_BITS) - 1
+        private const val VERSION = 0x7000L
+        private const val VARIANT = Long.MIN_VALUE
+        private const val RANDOM_MASK = -1L ushr 2
+
+        private val shared = UuidV7Generator()
+
+        @JvmStatic
+        fun nextString(): String = shared.next().toString()
+    }
+}
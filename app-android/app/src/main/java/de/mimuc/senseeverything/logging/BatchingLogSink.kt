@@ -0,0 +1,122 @@
+package de.mimuc.senseeverything.logging
+
+/**
+ * A log entry waiting to be written to the database.
+ * [repeatCount] is larger than one when identical consecutive entries were collapsed.
+ */
+data class LogRecord(
+    val timestamp: Long,
+    val level: String,
+    val tag: String,
+    val message: String,
+    val exception: String? = null,
+    val stackTrace: String? = null,
+    val repeatCount: Int = 1,
+    val lastTimestamp: Long = timestamp
+) {
+    fun isRepeatOf(other: LogRecord): Boolean {
+        return level == other.level && tag == other.tag && message == other.message && exception == other.exception
+    }
+}
+
+/**
+ * Bounded buffer between log calls and the database.
+ *
+ * Identical consecutive records are collapsed into one record with a count, every tag may only
+ * write [maxRecordsPerTag] records per [rateLimitWindowMillis] (errors are exempt), and when the
+ * buffer is full the oldest records are overwritten. Records lost to the rate limit or to overflow
+ * are reported as a single summary record on the next [drain].
+ */
+class BatchingLogSink(
+    private val capacity: Int = DEFAULT_CAPACITY,
+    private val maxRecordsPerTag: Int = DEFAULT_MAX_RECORDS_PER_TAG,
+    private val rateLimitWindowMillis: Long = DEFAULT_RATE_LIMIT_WINDOW_MILLIS
+) {
+    private val buffer = ArrayDeque<LogRecord>(capacity)
+
+    private var windowStart = 0L
+    private val recordsInWindow = mutableMapOf<String, Int>()
+    private val rateLimited = mutableMapOf<String, Int>()
+    private var overflowed = 0
+
+    /**
+     * Queue a record.
+     * @return true if the buffer reached its flush threshold or an error was queued, and it should be drained soon
+     */
+    @Synchronized
+    fun offer(record: LogRecord): Boolean {
+        val last = buffer.lastOrNull()
+        if (last != null && last.isRepeatOf(record)) {
+            buffer[buffer.size - 1] = last.copy(repeatCount = last.repeatCount + 1, lastTimestamp = record.timestamp)
+            return false
+        }
+
+        if (record.level != "ERROR" && !withinRateLimit(record)) {
+            rateLimited[record.tag] = (rateLimited[record.tag] ?: 0) + 1
+            return false
+        }
+
+        if (buffer.size >= capacity) {
+            buffer.removeFirst()
+            overflowed++
+        }
+        buffer.addLast(record)
+
+        // errors are written right away, they are the entries most likely to be lost when the process dies
+        return record.level == "ERROR" || buffer.size >= capacity / 2
+    }
+
+    /**
+     * Take all queued records, followed by a summary of dropped records if there were any.
+     */
+    @Synchronized
+    fun drain(now: Long): List<LogRecord> {
+        val records = buffer.toMutableList()
+        buffer.clear()
+
+        val droppedByRateLimit = rateLimited.values.sum()
+        if (droppedByRateLimit > 0 || overflowed > 0) {
+            val perTag = rateLimited.entries
+                .sortedByDescending { it.value }
+                .joinToString(", ") { "${it.key}=${it.value}" }
+            records.add(
+                LogRecord(
+                    timestamp = now,
+                    level = "WARN",
+                    tag = TAG,
+                    message = "Dropped ${droppedByRateLimit + overflowed} log record(s): " +
+                            "$overflowed on buffer overflow, $droppedByRateLimit rate limited ($perTag)"
+                )
+            )
+            rateLimited.clear()
+            overflowed = 0
+        }
+
+        return records
+    }
+
+    @Synchronized
+    fun size(): Int = buffer.size
+
+    private fun withinRateLimit(record: LogRecord): Boolean {
+        if (record.timestamp - windowStart >= rateLimitWindowMillis) {
+            windowStart = record.timestamp
+            recordsInWindow.clear()
+        }
+
+        val count = recordsInWindow[record.tag] ?: 0
+        if (count >= maxRecordsPerTag) {
+            return false
+        }
+        recordsInWindow[record.tag] = count + 1
+        return true
+    }
+
+    companion object {
+        private const val TAG = "WHALELog"
+
+        const val DEFAULT_CAPACITY = 512
+        const val DEFAULT_MAX_RECORDS_PER_TAG = 60
+        const val DEFAULT_RATE_LIMIT_WINDOW_MILLIS = 60_000L
+    }
+}
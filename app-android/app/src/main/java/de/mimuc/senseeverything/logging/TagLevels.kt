@@ -0,0 +1,23 @@
+package de.mimuc.senseeverything.logging
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Minimum log level per tag, using the priority constants of android.util.Log.
+ * Tags without an own level use [defaultLevel]. Levels can be changed at runtime from any thread.
+ */
+class TagLevels(@Volatile var defaultLevel: Int) {
+    private val levels = ConcurrentHashMap<String, Int>()
+
+    fun setLevel(tag: String, level: Int) {
+        levels[tag] = level
+    }
+
+    fun clearLevel(tag: String) {
+        levels.remove(tag)
+    }
+
+    fun levelFor(tag: String): Int = levels[tag] ?: defaultLevel
+
+    fun isLoggable(tag: String, level: Int): Boolean = level >= levelFor(tag)
+}
@@ -1,17 +1,22 @@
 package de.mimuc.senseeverything.logging
 
 import android.util.Log
+import de.mimuc.senseeverything.BuildConfig
 import de.mimuc.senseeverything.db.models.LogData
 import de.mimuc.senseeverything.service.SEApplicationController
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
 import org.json.JSONObject
+import java.util.concurrent.atomic.AtomicBoolean
 
 /**
  * WHALELog is a drop-in replacement for Android's Log class that logs to both Logcat
  * and the app's database for synchronization with the server.
+ * Database entries are buffered by a [BatchingLogSink] and written in batches every few seconds.
  *
  * Usage:
  *   WHALELog.d("MyTag", "Debug message")
@@ -19,6 +24,9 @@ import org.json.JSONObject
  *   WHALELog.w("MyTag", "Warning message")
  *   WHALELog.e("MyTag", "Error message")
  *   WHALELog.v("MyTag", "Verbose message")
+ *
+ * On hot paths, pass the message as a lambda so it is only built when the tag logs at that level:
+ *   WHALELog.d("MyTag") { "Expensive $message" }
  */
 object WHALELog {
     private const val SENSOR_NAME = "Logging"
@@ -26,10 +34,17 @@ object WHALELog {
 
     private const val DB_LOG_LEVEL = Log.INFO // Log level to store in DB
 
+    // entries are batched, so log writes do not compete with sensor writes for the database
+    private const val FLUSH_INTERVAL_MILLIS = 5_000L
+    private val sink = BatchingLogSink()
+    private val flushRequests = Channel<Unit>(Channel.CONFLATED)
+    private val flushLoopStarted = AtomicBoolean(false)
+
     /**
      * Send a DEBUG log message.
      */
     fun d(tag: String, message: String) {
+        if (!isLoggable(tag, Log.DEBUG)) return
         Log.d(tag, message)
         if (DB_LOG_LEVEL > Log.DEBUG) return
         saveToDatabase("DEBUG", tag, message, null)
@@ -39,6 +54,7 @@ object WHALELog {
      * Send a DEBUG log message with a throwable.
      */
     fun d(tag: String, message: String, throwable: Throwable?) {
+        if (!isLoggable(tag, Log.DEBUG)) return
         Log.d(tag, message, throwable)
         if (DB_LOG_LEVEL > Log.DEBUG) return
         saveToDatabase("DEBUG", tag, message, throwable)
@@ -48,6 +64,7 @@ object WHALELog {
      * Send an INFO log message.
      */
     fun i(tag: String, message: String) {
+        if (!isLoggable(tag, Log.INFO)) return
         Log.i(tag, message)
         if (DB_LOG_LEVEL > Log.INFO) return
         saveToDatabase("INFO", tag, message, null)
@@ -57,6 +74,7 @@ object WHALELog {
      * Send an INFO log message with a throwable.
      */
     fun i(tag: String, message: String, throwable: Throwable?) {
+        if (!isLoggable(tag, Log.INFO)) return
         Log.i(tag, message, throwable)
         if (DB_LOG_LEVEL > Log.INFO) return
         saveToDatabase("INFO", tag, message, throwable)
@@ -66,6 +84,7 @@ object WHALELog {
      * Send a WARN log message.
      */
     fun w(tag: String, message: String) {
+        if (!isLoggable(tag, Log.WARN)) return
         Log.w(tag, message)
         if (DB_LOG_LEVEL > Log.WARN) return
         saveToDatabase("WARN", tag, message, null)
@@ -75,6 +94,7 @@ object WHALELog {
      * Send a WARN log message with a throwable.
      */
     fun w(tag: String, message: String, throwable: Throwable?) {
+        if (!isLoggable(tag, Log.WARN)) return
         Log.w(tag, message, throwable)
         if (DB_LOG_LEVEL > Log.WARN) return
         saveToDatabase("WARN", tag, message, throwable)
@@ -84,6 +104,7 @@ object WHALELog {
      * Send an ERROR log message.
      */
     fun e(tag: String, message: String) {
+        if (!isLoggable(tag, Log.ERROR)) return
         Log.e(tag, message)
         if (DB_LOG_LEVEL > Log.ERROR) return
         saveToDatabase("ERROR", tag, message, null)
@@ -93,6 +114,7 @@ object WHALELog {
      * Send an ERROR log message with a throwable.
      */
     fun e(tag: String, message: String, throwable: Throwable?) {
+        if (!isLoggable(tag, Log.ERROR)) return
         Log.e(tag, message, throwable)
         if (DB_LOG_LEVEL > Log.ERROR) return
         saveToDatabase("ERROR", tag, message, throwable)
@@ -102,6 +124,7 @@ object WHALELog {
      * Send a VERBOSE log message.
      */
     fun v(tag: String, message: String) {
+        if (!isLoggable(tag, Log.VERBOSE)) return
         Log.v(tag, message)
         if (DB_LOG_LEVEL > Log.VERBOSE) return
         saveToDatabase("VERBOSE", tag, message, null)
@@ -111,46 +134,122 @@ object WHALELog {
      * Send a VERBOSE log message with a throwable.
      */
     fun v(tag: String, message: String, throwable: Throwable?) {
+        if (!isLoggable(tag, Log.VERBOSE)) return
         Log.v(tag, message, throwable)
         if (DB_LOG_LEVEL > Log.VERBOSE) return
         saveToDatabase("VERBOSE", tag, message, throwable)
     }
 
     /**
-     * Save log entry to database asynchronously.
+     * Minimum level per tag, below which messages are neither sent to Logcat nor stored.
+     * Debug builds log everything by default, release builds start at INFO.
+     */
+    val levels = TagLevels(if (BuildConfig.DEBUG) Log.VERBOSE else Log.INFO)
+
+    fun isLoggable(tag: String, level: Int): Boolean = levels.isLoggable(tag, level)
+
+    /**
+     * Send a DEBUG log message that is only built if the tag logs at this level.
+     */
+    inline fun d(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.DEBUG)) d(tag, message())
+    }
+
+    /**
+     * Send an INFO log message that is only built if the tag logs at this level.
+     */
+    inline fun i(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.INFO)) i(tag, message())
+    }
+
+    /**
+     * Send a WARN log message that is only built if the tag logs at this level.
+     */
+    inline fun w(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.WARN)) w(tag, message())
+    }
+
+    /**
+     * Send an ERROR log message that is only built if the tag logs at this level.
+     */
+    inline fun e(tag: String, throwable: Throwable? = null, message: () -> String) {
+        if (isLoggable(tag, Log.ERROR)) e(tag, message(), throwable)
+    }
+
+    /**
+     * Send a VERBOSE log message that is only built if the tag logs at this level.
+     */
+    inline fun v(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.VERBOSE)) v(tag, message())
+    }
+
+    /**
+     * Queue a log entry, it is written to the database with the next batch.
      */
     private fun saveToDatabase(level: String, tag: String, message: String, throwable: Throwable?) {
-        scope.launch {
-            try {
-                val appController = SEApplicationController.getInstance()
-                if (appController == null) {
-                    Log.w("WHALELog", "SEApplicationController not initialized, skipping database log")
-                    return@launch
-                }
+        val record = LogRecord(
+            timestamp = System.currentTimeMillis(),
+            level = level,
+            tag = tag,
+            message = message,
+            exception = throwable?.toString(),
+            stackTrace = throwable?.let { Log.getStackTraceString(it) }
+        )
 
-                val db = appController.getAppDatabase()
-                val logDataDao = db.logDataDao()
-
-                val jsonData = JSONObject().apply {
-                    put("level", level)
-                    put("tag", tag)
-                    put("message", message)
-                    if (throwable != null) {
-                        put("exception", throwable.toString())
-                        put("stackTrace", Log.getStackTraceString(throwable))
-                    }
+        if (sink.offer(record)) {
+            flushRequests.trySend(Unit)
+        }
+        ensureFlushLoop()
+    }
+
+    private fun ensureFlushLoop() {
+        if (flushLoopStarted.compareAndSet(false, true)) {
+            scope.launch {
+                while (true) {
+                    withTimeoutOrNull(FLUSH_INTERVAL_MILLIS) { flushRequests.receive() }
+                    flush()
                 }
+            }
+        }
+    }
 
-                val logData = LogData(
-                    System.currentTimeMillis(),
-                    SENSOR_NAME,
-                    jsonData.toString()
-                )
+    /**
+     * Write all queued entries in a single transaction.
+     */
+    private fun flush() {
+        if (sink.size() == 0) return
+
+        try {
+            val appController = SEApplicationController.getInstance()
+            if (appController == null) {
+                Log.w("WHALELog", "SEApplicationController not initialized, keeping logs queued")
+                return
+            }
+
+            val records = sink.drain(System.currentTimeMillis())
+            val logData = records.map { record ->
+                LogData(record.timestamp, SENSOR_NAME, toJson(record).toString())
+            }
 
-                logDataDao.insertAll(logData)
-            } catch (e: Exception) {
-                // Fallback to Android Log if database operation fails
-                Log.e("WHALELog", "Failed to save log to database", e)
+            appController.getAppDatabase().logDataDao().insertAll(*logData.toTypedArray())
+        } catch (e: Exception) {
+            // Fallback to Android Log if database operation fails
+            Log.e("WHALELog", "Failed to save logs to database", e)
+        }
+    }
+
+    private fun toJson(record: LogRecord): JSONObject {
+        return JSONObject().apply {
+            put("level", record.level)
+            put("tag", record.tag)
+            put("message", record.message)
+            if (record.exception != null) {
+                put("exception", record.exception)
+                put("stackTrace", record.stackTrace)
+            }
+            if (record.repeatCount > 1) {
+                put("repeatCount", record.repeatCount)
+                put("lastTimestamp", record.lastTimestamp)
             }
         }
     }
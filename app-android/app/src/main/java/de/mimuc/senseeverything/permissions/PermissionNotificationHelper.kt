@@ -56,8 +56,12 @@ class PermissionNotificationHelper @Inject constructor(
         notificationManager.notify(NOTIFICATION_ID, notification)
 
         // Update DataStore with current timestamp and revoked permissions
-        dataStoreManager.saveLastPermissionNotificationTime(System.currentTimeMillis())
-        dataStoreManager.saveLastRevokedPermissions(revokedPerms.keys)
+        dataStoreManager.edit {
+            it.copy(
+                lastPermissionNotificationTime = System.currentTimeMillis(),
+                lastRevokedPermissions = revokedPerms.keys
+            )
+        }
     }
 
     /**
@@ -1,13 +1,20 @@
 package de.mimuc.senseeverything.sensor;
 
 import android.content.Context;
+import android.database.sqlite.SQLiteFullException;
 import android.os.AsyncTask;
 
+import java.io.File;
 import java.io.Serializable;
 
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.db.models.LogData;
+import de.mimuc.senseeverything.db.models.PendingAttachment;
+import de.mimuc.senseeverything.db.models.ScalarReading;
+import de.mimuc.senseeverything.db.models.TypedSensor;
+import de.mimuc.senseeverything.db.models.Vector3Reading;
 import de.mimuc.senseeverything.logging.WHALELog;
+import de.mimuc.senseeverything.storage.StorageBackpressure;
 
 public abstract class AbstractSensor implements Serializable  {
 
@@ -64,11 +71,61 @@ public abstract class AbstractSensor implements Serializable  {
 	}
 
 	protected void onLogDataItem(Long timestamp, String data){
+		if (!StorageBackpressure.current.admit(SENSOR_NAME, timestamp)) {
+			return;
+		}
+
 		AsyncTask.execute(() -> {
 			db.logDataDao().insertAll(new LogData(timestamp,SENSOR_NAME, data));
 		});
 	}
 
+	/**
+	 * Store a reading of a three-axis {@link TypedSensor} in its typed table instead of LogData.
+	 */
+	protected void onVector3Item(long timestamp, float x, float y, float z, boolean reliable) {
+		TypedSensor sensor = typedSensor();
+		if (sensor == null || !StorageBackpressure.current.admit(SENSOR_NAME, timestamp)) {
+			return;
+		}
+
+		Vector3Reading reading = new Vector3Reading(0, sensor.getCode(), timestamp, x, y, z, reliable);
+		insertTyped(() -> db.typedReadings().insert(reading));
+	}
+
+	/**
+	 * Store a single-valued reading of a {@link TypedSensor}, flags are passed as 0 or 1.
+	 * @param reliable null if the sensor does not report an accuracy
+	 */
+	protected void onScalarItem(long timestamp, double value, Boolean reliable) {
+		TypedSensor sensor = typedSensor();
+		if (sensor == null || !StorageBackpressure.current.admit(SENSOR_NAME, timestamp)) {
+			return;
+		}
+
+		ScalarReading reading = new ScalarReading(0, sensor.getCode(), timestamp, value, reliable);
+		insertTyped(() -> db.typedReadings().insert(reading));
+	}
+
+	private TypedSensor typedSensor() {
+		TypedSensor sensor = TypedSensor.forSensorName(SENSOR_NAME);
+		if (sensor == null) {
+			WHALELog.INSTANCE.e(TAG, "No typed table for sensor " + SENSOR_NAME);
+		}
+		return sensor;
+	}
+
+	private void insertTyped(Runnable insert) {
+		AsyncTask.execute(() -> {
+			try {
+				insert.run();
+			} catch (SQLiteFullException e) {
+				StorageBackpressure.current.onStorageFull();
+				WHALELog.INSTANCE.e(TAG, "Storage full, dropped reading", e);
+			}
+		});
+	}
+
 	public void tryLogStringData(String data) throws SensorNotRunningException {
 		if (m_IsRunning) {
 			onLogDataItem(System.currentTimeMillis(), data);
@@ -79,7 +136,12 @@ public abstract class AbstractSensor implements Serializable  {
 
 	protected void onLogDataItemWithFile(Long timestamp, String data, String fileName) {
 		AsyncTask.execute(() -> {
-			db.logDataDao().insertAll(new LogData(timestamp, SENSOR_NAME, data, true, fileName));
+			LogData logData = new LogData(timestamp, SENSOR_NAME, data, true, fileName);
+			PendingAttachment attachment = new PendingAttachment(logData.localId, fileName, new File(fileName).length(), 0, null, System.currentTimeMillis());
+			db.runInTransaction(() -> {
+				db.logDataDao().insertAll(logData);
+				db.pendingAttachmentDao().insert(attachment);
+			});
 		});
 	}
 
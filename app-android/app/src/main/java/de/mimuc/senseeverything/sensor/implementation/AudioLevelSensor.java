@@ -100,7 +100,7 @@ public class AudioLevelSensor extends AbstractSensor {
 		
 		try {
 			int amplitude = mediaRecorder.getMaxAmplitude();
-			onLogDataItem(t,String.valueOf(amplitude));
+			onScalarItem(t, amplitude, null);
 		} catch (Exception e) {
 			WHALELog.INSTANCE.d(TAG, e.toString());
 		}
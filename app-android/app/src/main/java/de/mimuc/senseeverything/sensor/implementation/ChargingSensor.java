@@ -48,11 +48,7 @@ public class ChargingSensor extends AbstractSensor {
 		if (!m_isSensorAvailable)
 			return;
 
-		if(isConnected(context)) {
-			onLogDataItem(t, "true");
-		} else {
-			onLogDataItem(t, "false");
-		}
+		onScalarItem(t, isConnected(context) ? 1 : 0, null);
 		m_IsRunning = true;
 	}
 
@@ -13,7 +13,8 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import de.mimuc.senseeverything.activity.CONST;
+import java.util.Arrays;
+
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.logging.WHALELog;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
@@ -77,16 +78,13 @@ public class MyAccelerometerSensor extends AbstractSensor implements SensorEvent
 
 	@Override
 	public void onSensorChanged(SensorEvent event) {
-		WHALELog.INSTANCE.d(TAG,  event.values + ",");
+		if (WHALELog.INSTANCE.isLoggable(TAG, Log.DEBUG)) {
+			WHALELog.INSTANCE.d(TAG, Arrays.toString(event.values));
+		}
         Long t = System.currentTimeMillis();
 		if (m_IsRunning) {
-			if (event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," + CONST.numberFormat.format(event.values[1]) + ","
-						+ CONST.numberFormat.format(event.values[2]) + ",false");
-			} else {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," + CONST.numberFormat.format(event.values[1]) + ","
-						+ CONST.numberFormat.format(event.values[2]) + ",true");
-			}
+			onVector3Item(t, event.values[0], event.values[1], event.values[2],
+					event.accuracy != SensorManager.SENSOR_STATUS_UNRELIABLE);
 		}
 	}
 
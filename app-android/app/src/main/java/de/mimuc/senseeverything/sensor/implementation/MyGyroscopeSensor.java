@@ -12,7 +12,6 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import de.mimuc.senseeverything.activity.CONST;
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
 
@@ -71,15 +70,8 @@ public class MyGyroscopeSensor extends AbstractSensor implements SensorEventList
 		Long t = System.currentTimeMillis();
 		if(m_IsRunning) {
 			count++;
-			if(event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," +
-						CONST.numberFormat.format(event.values[1]) + "," +
-						CONST.numberFormat.format(event.values[2]) + ",false");
-			} else {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," +
-						CONST.numberFormat.format(event.values[1]) + "," +
-						CONST.numberFormat.format(event.values[2]) + ",true");
-			}
+			onVector3Item(t, event.values[0], event.values[1], event.values[2],
+					event.accuracy != SensorManager.SENSOR_STATUS_UNRELIABLE);
 		}
 	}
 	
@@ -6,7 +6,6 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 
-import de.mimuc.senseeverything.activity.CONST;
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
 
@@ -65,11 +64,7 @@ public class MyLightSensor extends AbstractSensor implements SensorEventListener
 	public void onSensorChanged(SensorEvent event) {
 		Long t = System.currentTimeMillis();
 		if(m_IsRunning) {
-			if(event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + ",false");
-			} else {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + ",true");
-			}
+			onScalarItem(t, event.values[0], event.accuracy != SensorManager.SENSOR_STATUS_UNRELIABLE);
 		}
 	}
 	
@@ -12,7 +12,6 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import de.mimuc.senseeverything.activity.CONST;
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
 
@@ -72,11 +71,7 @@ public class MyProximitySensor extends AbstractSensor implements SensorEventList
 	public void onSensorChanged(SensorEvent event) {
 		Long t = System.currentTimeMillis();
 		if(m_IsRunning) {
-			if (event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + ",false");
-			} else {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + ",true");
-			}
+			onScalarItem(t, event.values[0], event.accuracy != SensorManager.SENSOR_STATUS_UNRELIABLE);
 		}
 	}
 
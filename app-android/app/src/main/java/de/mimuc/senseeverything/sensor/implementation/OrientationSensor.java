@@ -12,7 +12,6 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import de.mimuc.senseeverything.activity.CONST;
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
 public class OrientationSensor extends AbstractSensor implements SensorEventListener {
@@ -71,15 +70,8 @@ public class OrientationSensor extends AbstractSensor implements SensorEventList
 	public void onSensorChanged(SensorEvent event) {
         Long t = System.currentTimeMillis();
 		if(m_IsRunning) {
-			if(event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0])+ "," +
-						CONST.numberFormat.format(event.values[1]) + "," +
-						CONST.numberFormat.format(event.values[2]) + ",false\n");
-			} else {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," +
-						CONST.numberFormat.format(event.values[1]) + "," +
-						CONST.numberFormat.format(event.values[2]) + ",true\n");
-			}
+			onVector3Item(t, event.values[0], event.values[1], event.values[2],
+					event.accuracy != SensorManager.SENSOR_STATUS_UNRELIABLE);
 		}
 	}
 }
@@ -40,7 +40,7 @@ public class RingtoneVolumeSensor extends AbstractSensor {
 
 		AudioManager audio = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
 		int currentVolume = audio.getStreamVolume(AudioManager.STREAM_RING);
-		onLogDataItem(t, String.valueOf(currentVolume));
+		onScalarItem(t, currentVolume, null);
 		m_IsRunning = true;
 	}
 
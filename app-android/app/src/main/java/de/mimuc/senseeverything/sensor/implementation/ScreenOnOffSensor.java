@@ -50,11 +50,7 @@ public class ScreenOnOffSensor extends AbstractSensor {
 		boolean isScreenOn = pm.isScreenOn();
 		this.m_context = context;
 		try {			
-			if(isScreenOn) {
-				onLogDataItem(t, "on");
-			} else {
-				onLogDataItem(t, "off");
-			}
+			onScalarItem(t, isScreenOn ? 1 : 0, null);
 		} catch (Exception e) {
 			WHALELog.INSTANCE.e(TAG, e.toString());
 		}
@@ -94,10 +90,10 @@ public class ScreenOnOffSensor extends AbstractSensor {
 			Long t = System.currentTimeMillis();
 			if(m_IsRunning) {
 				if(intent.getAction().equals(Intent.ACTION_SCREEN_OFF)) {
-					onLogDataItem(t,"off");
+					onScalarItem(t, 0, null);
 					wasScreenOn = false;
 				} else if(intent.getAction().equals(Intent.ACTION_SCREEN_ON)) {
-					onLogDataItem(t,"on");
+					onScalarItem(t, 1, null);
 					wasScreenOn = true;
 				}
 			}
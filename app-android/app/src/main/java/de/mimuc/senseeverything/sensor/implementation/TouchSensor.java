@@ -80,7 +80,9 @@ public class TouchSensor extends AbstractSensor implements HandlerListener {
 	@Override
 	public void sendMessage(String msg) {
 		if(m_IsRunning) {
-			WHALELog.INSTANCE.d(TAG, "#"+msg);
+			if (WHALELog.INSTANCE.isLoggable(TAG, Log.DEBUG)) {
+				WHALELog.INSTANCE.d(TAG, "#" + msg);
+			}
 			onLogDataItem(System.currentTimeMillis(), msg);
 		}
 		else
@@ -86,7 +86,7 @@ class UITreeSensor(applicationContext: Context, database: AppDatabase) :
                         return
                     }
 
-                    WHALELog.d(TAG, "Received broadcast for batch ID: $batchId ($count snapshots)")
+                    WHALELog.d(TAG) { "Received broadcast for batch ID: $batchId ($count snapshots)" }
 
                     // Launch coroutine to fetch from database
                     CoroutineScope(Dispatchers.IO).launch {
@@ -108,7 +108,7 @@ class UITreeSensor(applicationContext: Context, database: AppDatabase) :
                     return
                 }
 
-                WHALELog.d(TAG, "Fetched batch ID $batchId: ${batch.jsonData.length} bytes")
+                WHALELog.d(TAG) { "Fetched batch ID $batchId: ${batch.jsonData.length} bytes" }
 
                 val compressedData = compressJson(batch.jsonData)
 
@@ -118,7 +118,7 @@ class UITreeSensor(applicationContext: Context, database: AppDatabase) :
                 // Delete from staging table (cleanup)
                 dao.deleteById(batchId)
 
-                WHALELog.d(TAG, "Processed and deleted batch ID $batchId")
+                WHALELog.d(TAG) { "Processed and deleted batch ID $batchId" }
             } catch (e: Exception) {
                 WHALELog.e(TAG, "Failed to fetch batch from database: ${e.message}", e)
             }
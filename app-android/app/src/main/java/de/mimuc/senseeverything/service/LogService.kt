@@ -19,8 +19,13 @@ import de.mimuc.senseeverything.sensor.SingletonSensorList
 import de.mimuc.senseeverything.service.floatingWidget.NotificationTriggerFloatingWidgetService
 import de.mimuc.senseeverything.service.healthcheck.HealthcheckResult
 import de.mimuc.senseeverything.service.healthcheck.ServiceHealthcheck.checkServices
+import de.mimuc.senseeverything.storage.StorageBackpressure
+import de.mimuc.senseeverything.storage.StoragePressureLevel
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
 import kotlinx.coroutines.launch
 import java.lang.ref.WeakReference
 import javax.inject.Inject
@@ -40,6 +45,9 @@ class LogService : AbstractService() {
     private var state = LogServiceState.IDLE
     private var isPeriodicSamplingEnabled = false
 
+    private val serviceScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private var storagePressureJob: Job? = null
+
     @Inject
     lateinit var singletonSensorList: SingletonSensorList
 
@@ -62,6 +70,7 @@ class LogService : AbstractService() {
         WHALELog.i(TAG, "onStartCommand called")
 
         if (runHealthcheck(this).allCriticalPermissionsGranted) {
+            followStoragePressure()
             listenForLockUnlock()
             setupPeriodicSampling()
             setupContiunousSampling()
@@ -81,6 +90,9 @@ class LogService : AbstractService() {
 
         stopSensors(true)
 
+        StorageBackpressure.current.onPaused = null
+        serviceScope.cancel()
+
         if (lockUnlockReceiver != null) {
             try {
                 unregisterReceiver(lockUnlockReceiver)
@@ -328,6 +340,36 @@ class LogService : AbstractService() {
         return result
     }
 
+    /* Section: Storage Pressure */
+
+    /**
+     * The storage pressure is evaluated by the StorageManagerWorker in the main process, so the level of this
+     * process follows the stored level for as long as the service runs. Pauses because the database is full
+     * are stored as well, so the next evaluation sees and relaxes them.
+     */
+    private fun followStoragePressure() {
+        if (storagePressureJob?.isActive == true) return
+
+        // sensors started right after this already use the stored level
+        dataStoreManager.getStoragePressureSync { level ->
+            StorageBackpressure.current.level = level
+        }
+        StorageBackpressure.current.onPaused = {
+            serviceScope.launch {
+                try {
+                    dataStoreManager.saveStoragePressure(StoragePressureLevel.PAUSE)
+                } catch (e: Exception) {
+                    WHALELog.e(TAG, "Could not store storage pressure pause", e)
+                }
+            }
+        }
+        storagePressureJob = serviceScope.launch {
+            dataStoreManager.storagePressureFlow.collect { level ->
+                StorageBackpressure.current.level = level
+            }
+        }
+    }
+
     /* Section: Interaction Widget */
     private fun showInteractionWidget() {
         val intent = Intent(this, NotificationTriggerFloatingWidgetService::class.java)
@@ -133,7 +133,7 @@ class UITreeConsumer : AccessibilityLoggingConsumer {
 
                 processSnapshot(snapshot)
 
-                WHALELog.d(TAG, "New screen captured: ${snapshot.appPackage}, signature: ${signature.take(8)}..., nodes: ${nodes.size}")
+                WHALELog.d(TAG) { "New screen captured: ${snapshot.appPackage}, signature: ${signature.take(8)}..., nodes: ${nodes.size}" }
             }
         } finally {
             rootNode.recycle()
@@ -393,7 +393,7 @@ class UITreeConsumer : AccessibilityLoggingConsumer {
 
                 processSnapshot(snapshot)
 
-                WHALELog.d(TAG, "Interaction recorded: ${type.name} on node $nodeId at (${interaction.tapX}, ${interaction.tapY})")
+                WHALELog.d(TAG) { "Interaction recorded: ${type.name} on node $nodeId at (${interaction.tapX}, ${interaction.tapY})" }
             }
         } finally {
             source.recycle()
@@ -0,0 +1,23 @@
+package de.mimuc.senseeverything.service.alarm
+
+/** An alarm that must be delivered within [timestamp] and [timestamp] + [windowMillis]. */
+data class AlarmWindow(
+    val timestamp: Long,
+    val windowMillis: Long
+) {
+    val deadline: Long get() = timestamp + windowMillis
+}
+
+/**
+ * Decides when the device has to wake up for a set of pending alarms.
+ *
+ * Only the earliest deadline gets an exact alarm. Every alarm whose window has opened by then is delivered
+ * in the same wakeup, so alarms with overlapping windows share one wakeup. No alarm is delivered early.
+ */
+object AlarmCoalescing {
+    /** @return the time of the next wakeup, or null if nothing is pending */
+    fun nextWakeup(pending: List<AlarmWindow>): Long? = pending.minOfOrNull { it.deadline }
+
+    /** @return whether a wakeup at [now] delivers [alarm] */
+    fun isDue(alarm: AlarmWindow, now: Long): Boolean = alarm.timestamp <= now
+}
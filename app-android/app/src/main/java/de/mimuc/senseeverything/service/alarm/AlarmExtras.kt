@@ -0,0 +1,33 @@
+package de.mimuc.senseeverything.service.alarm
+
+import android.content.Intent
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.json.Json
+
+/**
+ * Intent extras of an alarm, stored with its `scheduled_alarms` row until the [AlarmMultiplexer] delivers it.
+ * Values are kept by type, so receivers can read them with `getIntExtra` and `getLongExtra` as before.
+ */
+@Serializable
+data class AlarmExtras(
+    val strings: Map<String, String?> = emptyMap(),
+    val ints: Map<String, Int> = emptyMap(),
+    val longs: Map<String, Long> = emptyMap()
+) {
+    fun applyTo(intent: Intent) {
+        strings.forEach { (key, value) -> intent.putExtra(key, value) }
+        ints.forEach { (key, value) -> intent.putExtra(key, value) }
+        longs.forEach { (key, value) -> intent.putExtra(key, value) }
+    }
+
+    fun encode(): String = json.encodeToString(serializer(), this)
+
+    companion object {
+        private val json = Json { ignoreUnknownKeys = true }
+
+        fun decode(encoded: String?): AlarmExtras {
+            if (encoded.isNullOrEmpty()) return AlarmExtras()
+            return json.decodeFromString(serializer(), encoded)
+        }
+    }
+}
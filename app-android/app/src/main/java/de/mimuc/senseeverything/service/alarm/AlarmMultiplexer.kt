@@ -0,0 +1,193 @@
+package de.mimuc.senseeverything.service.alarm
+
+import android.app.AlarmManager
+import android.app.PendingIntent
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.os.Build
+import dagger.hilt.android.AndroidEntryPoint
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.models.ScheduledAlarm
+import de.mimuc.senseeverything.helpers.goAsync
+import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.service.esm.NotificationTriggerReceiver
+import de.mimuc.senseeverything.service.esm.OneTimeNotificationReceiver
+import de.mimuc.senseeverything.service.esm.PeriodicNotificationReceiver
+import de.mimuc.senseeverything.service.esm.QuestionnaireReminderNotificationReceiver
+import de.mimuc.senseeverything.service.esm.RandomNotificationReceiver
+import de.mimuc.senseeverything.study.ChangePhaseReceiver
+import de.mimuc.senseeverything.study.EndStudyReceiver
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import javax.inject.Inject
+
+val ScheduledAlarm.window: AlarmWindow get() = AlarmWindow(timestamp, windowMillis)
+
+/**
+ * Keeps a single exact alarm for all questionnaire and study alarms, instead of one per alarm.
+ *
+ * Alarms are stored as pending rows in `scheduled_alarms`, together with their intent extras and how much
+ * later they may be delivered. The device wakes up at the earliest deadline and delivers every alarm that
+ * is due by then to its receiver, see [AlarmCoalescing]. Delivery uses explicit in-app broadcasts, so each
+ * receiver keeps its own injection and `goAsync` lifecycle.
+ */
+object AlarmMultiplexer {
+    private const val TAG = "AlarmMultiplexer"
+    private const val REQUEST_CODE = 0x414C524D
+
+    /** Alarms that wait for the user anyway, e.g. notifications, may share a wakeup within this window. */
+    const val NOTIFICATION_WINDOW_MILLIS = 2 * 60 * 1000L
+
+    private val receivers: Map<String, Class<out BroadcastReceiver>> = listOf(
+        EndStudyReceiver::class.java,
+        ChangePhaseReceiver::class.java,
+        OneTimeNotificationReceiver::class.java,
+        RandomNotificationReceiver::class.java,
+        PeriodicNotificationReceiver::class.java,
+        NotificationTriggerReceiver::class.java,
+        QuestionnaireReminderNotificationReceiver::class.java
+    ).associateBy { it.simpleName }
+
+    private val mutex = Mutex()
+
+    /**
+     * Schedules an alarm for [receiver] at [timestamp], replacing an earlier alarm with the same [identifier].
+     * The alarm is delivered between [timestamp] and [timestamp] + [windowMillis].
+     */
+    suspend fun schedule(
+        context: Context,
+        database: AppDatabase,
+        receiver: Class<out BroadcastReceiver>,
+        identifier: String,
+        timestamp: Long,
+        extras: AlarmExtras = AlarmExtras(),
+        windowMillis: Long = 0
+    ): ScheduledAlarm = mutex.withLock {
+        val scheduledAlarm = withContext(Dispatchers.IO) {
+            val dao = database.scheduledAlarmDao()
+            val existing = dao.getByIdentifier(receiver.simpleName, identifier)
+            if (existing != null) {
+                existing.copy(timestamp = timestamp, extras = extras.encode(), windowMillis = windowMillis, pending = true)
+                    .also { dao.update(it) }
+            } else {
+                ScheduledAlarm.createEntry(receiver.simpleName, identifier, timestamp)
+                    .copy(extras = extras.encode(), windowMillis = windowMillis, pending = true)
+                    .let { it.copy(uid = dao.insert(it)) }
+            }
+        }
+
+        WHALELog.i(TAG, "Scheduled ${receiver.simpleName} $identifier at $timestamp")
+        rearm(context, database)
+        scheduledAlarm
+    }
+
+    suspend fun cancel(context: Context, database: AppDatabase, receiver: Class<out BroadcastReceiver>, identifier: String) = mutex.withLock {
+        withContext(Dispatchers.IO) {
+            database.scheduledAlarmDao().cancelPending(receiver.simpleName, identifier)
+        }
+        rearm(context, database)
+    }
+
+    suspend fun cancelAll(context: Context, database: AppDatabase) = mutex.withLock {
+        withContext(Dispatchers.IO) {
+            database.scheduledAlarmDao().cancelAllPending()
+        }
+        rearm(context, database)
+    }
+
+    /**
+     * Registers the wakeup again after a reboot. Alarms that were missed while the device was off are dropped,
+     * as without the multiplexer; the reschedule functions of each receiver decide what to schedule again.
+     */
+    suspend fun restore(context: Context, database: AppDatabase) = mutex.withLock {
+        val dropped = withContext(Dispatchers.IO) {
+            database.scheduledAlarmDao().cancelPendingBefore(System.currentTimeMillis())
+        }
+        if (dropped > 0) {
+            WHALELog.i(TAG, "Dropped $dropped alarm(s) missed while the device was off")
+        }
+        rearm(context, database)
+    }
+
+    /**
+     * Delivers all alarms that are due and registers the next wakeup.
+     * Alarms are marked delivered after their broadcast was sent, so an alarm is delivered again rather than
+     * lost if the process dies in between. Receivers have to tolerate such a repeated delivery.
+     */
+    suspend fun deliverDue(context: Context, database: AppDatabase) {
+        mutex.withLock {
+            val now = System.currentTimeMillis()
+            val due = withContext(Dispatchers.IO) {
+                database.scheduledAlarmDao().getPending().filter { AlarmCoalescing.isDue(it.window, now) }
+            }
+
+            WHALELog.i(TAG, "Delivering ${due.size} alarm(s) in one wakeup")
+            for (alarm in due) {
+                val receiver = receivers[alarm.receiver]
+                if (receiver == null) {
+                    WHALELog.e(TAG, "Unknown receiver ${alarm.receiver} for alarm ${alarm.identifier}")
+                } else {
+                    try {
+                        val intent = Intent(context, receiver)
+                        AlarmExtras.decode(alarm.extras).applyTo(intent)
+                        context.sendBroadcast(intent)
+                    } catch (e: Exception) {
+                        // an alarm that cannot be sent would otherwise fire again on every wakeup
+                        WHALELog.e(TAG, "Could not deliver alarm ${alarm.identifier}: $e")
+                    }
+                }
+
+                withContext(Dispatchers.IO) {
+                    database.scheduledAlarmDao().markDelivered(listOf(alarm.uid))
+                }
+            }
+
+            rearm(context, database)
+        }
+    }
+
+    /** Registers the exact alarm for the earliest deadline of all pending alarms. Must hold [mutex]. */
+    private suspend fun rearm(context: Context, database: AppDatabase) {
+        val pending = withContext(Dispatchers.IO) {
+            database.scheduledAlarmDao().getPending()
+        }
+
+        val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
+        val pendingIntent = PendingIntent.getBroadcast(
+            context.applicationContext,
+            REQUEST_CODE,
+            Intent(context.applicationContext, AlarmMultiplexerReceiver::class.java),
+            PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_UPDATE_CURRENT
+        )
+
+        val wakeup = AlarmCoalescing.nextWakeup(pending.map { it.window })
+        if (wakeup == null) {
+            alarmManager.cancel(pendingIntent)
+            WHALELog.d(TAG, "No pending alarms")
+            return
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, wakeup, pendingIntent)
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, wakeup, pendingIntent)
+        }
+
+        val sharing = pending.count { AlarmCoalescing.isDue(it.window, wakeup) }
+        WHALELog.i(TAG, "Next wakeup at $wakeup for $sharing of ${pending.size} pending alarm(s)")
+    }
+}
+
+@AndroidEntryPoint
+class AlarmMultiplexerReceiver : BroadcastReceiver() {
+    @Inject
+    lateinit var database: AppDatabase
+
+    override fun onReceive(context: Context?, intent: Intent?) = goAsync {
+        val applicationContext = context?.applicationContext ?: return@goAsync
+        AlarmMultiplexer.deliverDue(applicationContext, database)
+    }
+}
@@ -1,7 +1,5 @@
 package de.mimuc.senseeverything.service.esm
 
-import android.app.AlarmManager
-import android.app.PendingIntent
 import android.content.Context
 import android.content.Intent
 import de.mimuc.senseeverything.activity.esm.QuestionnaireActivity
@@ -23,8 +21,10 @@ import de.mimuc.senseeverything.db.models.NotificationTriggerModality
 import de.mimuc.senseeverything.db.models.NotificationTriggerSource
 import de.mimuc.senseeverything.db.models.NotificationTriggerStatus
 import de.mimuc.senseeverything.db.models.PendingQuestionnaire
-import de.mimuc.senseeverything.db.models.ScheduledAlarm
+import de.mimuc.senseeverything.helpers.TimeBucketSchedule
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.service.alarm.AlarmExtras
+import de.mimuc.senseeverything.service.alarm.AlarmMultiplexer
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.flow.first
@@ -62,7 +62,7 @@ class EsmHandler {
 
             // also reschedule already scheduled floating widget notifications
             val floatingWidgetNotificationScheduler = FloatingWidgetNotificationScheduler()
-            floatingWidgetNotificationScheduler.schedulePlannedNotificationTriggers(context, database)
+            floatingWidgetNotificationScheduler.scheduleNextNotificationTrigger(context, database)
         }
 
         suspend fun schedulePeriodicQuestionnaires(
@@ -133,33 +133,21 @@ class EsmHandler {
             // Calculate study day based on notification time and study start
             val studyDay = calculateStudyDay(studyStartTimestamp, nextNotificationTime)
 
-            val scheduledAlarm = ScheduledAlarm.getOrCreateScheduledAlarm(
+            AlarmMultiplexer.schedule(
+                context.applicationContext,
                 database,
-                "PeriodicNotificationReceiver",
+                PeriodicNotificationReceiver::class.java,
                 "periodic_${trigger.id}_day${studyDay}",
-                nextNotificationTime
-            )
-
-            val intent = Intent(context.applicationContext, PeriodicNotificationReceiver::class.java)
-            intent.apply {
-                putExtra(INTENT_TITLE, trigger.configuration.notificationText)
-                putExtra(INTENT_TRIGGER_ID, trigger.id)
-                putExtra(INTENT_TRIGGER_JSON, fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger))
-                putExtra(INTENT_QUESTIONNAIRE_NAME, questionnaireName)
-            }
-
-            val pendingIntent = PendingIntent.getBroadcast(
-                context.applicationContext,
-                scheduledAlarm.requestCode,
-                intent,
-                PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_ONE_SHOT
-            )
-
-            val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
-            alarmManager.setExactAndAllowWhileIdle(
-                AlarmManager.RTC_WAKEUP,
                 nextNotificationTime,
-                pendingIntent
+                AlarmExtras(
+                    strings = mapOf(
+                        INTENT_TITLE to trigger.configuration.notificationText,
+                        INTENT_TRIGGER_JSON to fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger),
+                        INTENT_QUESTIONNAIRE_NAME to questionnaireName
+                    ),
+                    ints = mapOf(INTENT_TRIGGER_ID to trigger.id)
+                ),
+                AlarmMultiplexer.NOTIFICATION_WINDOW_MILLIS
             )
 
             WHALELog.i(
@@ -170,25 +158,8 @@ class EsmHandler {
 
 
         fun calculateStudyDay(studyStartTimestamp: Long, notificationTimestamp: Long): Int {
-            val studyStartCalendar = Calendar.getInstance().apply {
-                timeInMillis = studyStartTimestamp
-                set(Calendar.HOUR_OF_DAY, 0)
-                set(Calendar.MINUTE, 0)
-                set(Calendar.SECOND, 0)
-                set(Calendar.MILLISECOND, 0)
-            }
-
-            val notificationCalendar = Calendar.getInstance().apply {
-                timeInMillis = notificationTimestamp
-                set(Calendar.HOUR_OF_DAY, 0)
-                set(Calendar.MINUTE, 0)
-                set(Calendar.SECOND, 0)
-                set(Calendar.MILLISECOND, 0)
-            }
-
-            val daysDifference = TimeUnit.MILLISECONDS.toDays(
-                notificationCalendar.timeInMillis - studyStartCalendar.timeInMillis
-            )
+            // calendar days, so a day shortened by a DST change still counts as a full day
+            val daysDifference = TimeBucketSchedule.daysBetween(studyStartTimestamp, notificationTimestamp)
 
             // Study days are 1-indexed (day 1, day 2, etc.)
             return (daysDifference + 1).toInt()
@@ -462,13 +433,20 @@ class EsmHandler {
             val endTime = fromTime.clone() as Calendar
             endTime.add(Calendar.DAY_OF_YEAR, phase.durationDays)
 
+            val seed = FloatingWidgetNotificationScheduler.planSeed(
+                dataStoreManager.participantIdFlow.first(),
+                phase.name,
+                fromTime
+            )
+
             floatingWidgetNotificationScheduler.scheduleFloatingWidgetNotificationTriggersForPhase(
                 context,
                 fromTime,
                 endTime,
                 triggers,
                 database,
-                phase.name
+                phase.name,
+                seed
             )
         }
 
@@ -476,7 +454,8 @@ class EsmHandler {
             phase: ExperimentalGroupPhase,
             fromTime: Calendar,
             context: Context,
-            dataStoreManager: DataStoreManager
+            dataStoreManager: DataStoreManager,
+            database: AppDatabase
         ) {
             val triggers = dataStoreManager.questionnairesFlow.first().flatMap { it.triggers }
             val emaTriggers =
@@ -502,27 +481,20 @@ class EsmHandler {
                     initialCalendar,
                     questionnaire.name,
                     untilTimestamp,
-                    context
+                    context,
+                    database
                 )
             }
         }
 
-        fun scheduleRandomEMANotificationForTrigger(
+        suspend fun scheduleRandomEMANotificationForTrigger(
             trigger: RandomEMAQuestionnaireTrigger,
             calendar: Calendar,
             questionnaireName: String,
             untilTimestamp: Long,
-            context: Context
+            context: Context,
+            database: AppDatabase
         ) {
-            val intent = Intent(context, RandomNotificationReceiver::class.java)
-            intent.apply {
-                putExtra(INTENT_TITLE, "Es ist Zeit für $questionnaireName")
-                putExtra(INTENT_TRIGGER_ID, trigger.id)
-                putExtra(INTENT_TRIGGER_JSON, fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger))
-                putExtra(INTENT_QUESTIONNAIRE_NAME, questionnaireName)
-                putExtra(INTENT_NOTIFY_PHASE_UNTIL_TIMESTAMP, untilTimestamp)
-            }
-
             val nextNotificationTime = getCalendarForNextRandomNotification(trigger, calendar)
 
             // if the next notification time is after the end of the phase, don't schedule it
@@ -530,24 +502,27 @@ class EsmHandler {
                 return
             }
 
-            val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
-
-            val pendingIntent = PendingIntent.getBroadcast(
-                context.applicationContext,
-                trigger.id,
-                intent,
-                PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_ONE_SHOT
-            )
-
             WHALELog.i(
                 "EsmHandler",
                 "Scheduling random EMA notification for ${questionnaireName} at ${nextNotificationTime.timeInMillis}"
             )
 
-            alarmManager.setExactAndAllowWhileIdle(
-                AlarmManager.RTC_WAKEUP,
+            AlarmMultiplexer.schedule(
+                context.applicationContext,
+                database,
+                RandomNotificationReceiver::class.java,
+                "random_${trigger.id}",
                 nextNotificationTime.timeInMillis,
-                pendingIntent
+                AlarmExtras(
+                    strings = mapOf(
+                        INTENT_TITLE to "Es ist Zeit für $questionnaireName",
+                        INTENT_TRIGGER_JSON to fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger),
+                        INTENT_QUESTIONNAIRE_NAME to questionnaireName
+                    ),
+                    ints = mapOf(INTENT_TRIGGER_ID to trigger.id),
+                    longs = mapOf(INTENT_NOTIFY_PHASE_UNTIL_TIMESTAMP to untilTimestamp)
+                ),
+                AlarmMultiplexer.NOTIFICATION_WINDOW_MILLIS
             )
         }
 
@@ -567,15 +542,13 @@ class EsmHandler {
 
             // check if the notification is in the correct time bucket
             if (!isInTimeBucket(nextNotificationTime, trigger.configuration.timeBucket)) {
+                val bucketStart = TimeBucketSchedule.of(listOf(trigger.configuration.timeBucket)).startMinute(0)
                 // remove the minutes and try again
                 nextNotificationTime.add(Calendar.MINUTE, -(timeToAdd))
                 // calculate the next notification time starting from the next day
                 nextNotificationTime.add(Calendar.DATE, 1)
-                nextNotificationTime.set(Calendar.HOUR_OF_DAY, trigger.configuration.timeBucket.split(":")[0].toInt())
-                nextNotificationTime.set(
-                    Calendar.MINUTE,
-                    trigger.configuration.timeBucket.split(":")[1].split("-")[0].toInt()
-                )
+                nextNotificationTime.set(Calendar.HOUR_OF_DAY, bucketStart / 60)
+                nextNotificationTime.set(Calendar.MINUTE, bucketStart % 60)
                 return getCalendarForNextRandomNotification(trigger, nextNotificationTime)
             }
 
@@ -583,10 +556,8 @@ class EsmHandler {
         }
 
         fun isInTimeBucket(currentTime: Calendar, timeBucket: String): Boolean {
-            val start = timeBucket.split("-")[0].split(":")[0].toInt()
-            val end = timeBucket.split("-")[1].split(":")[0].toInt()
-            val hour = currentTime.get(Calendar.HOUR_OF_DAY)
-            return hour in start until end
+            val schedule = TimeBucketSchedule.of(listOf(timeBucket), currentTime.timeZone.toZoneId())
+            return schedule.bucketAtMinute(schedule.minuteOfDay(currentTime.timeInMillis)) >= 0
         }
 
         suspend fun scheduleOneTimeQuestionnaires(
@@ -632,34 +603,21 @@ class EsmHandler {
                         continue
                     }
 
-                    val scheduledAlarm = ScheduledAlarm.getOrCreateScheduledAlarm(
+                    AlarmMultiplexer.schedule(
+                        context.applicationContext,
                         database,
-                        "OneTimeNotificationReceiver",
+                        OneTimeNotificationReceiver::class.java,
                         "one_time_${trigger.id}",
-                        calendar.timeInMillis
-                    )
-
-                    val intent = Intent(context.applicationContext, OneTimeNotificationReceiver::class.java)
-                    intent.apply {
-                        putExtra(INTENT_TITLE, trigger.configuration.notificationText)
-                        putExtra(INTENT_TRIGGER_ID, trigger.id)
-                        putExtra(INTENT_TRIGGER_JSON, fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger))
-                        putExtra(INTENT_QUESTIONNAIRE_NAME, questionnaire.name)
-                    }
-
-                    val pendingIntent = PendingIntent.getBroadcast(
-                        context.applicationContext,
-                        scheduledAlarm.requestCode,
-                        intent,
-                        PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_ONE_SHOT
-                    )
-
-                    val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
-
-                    alarmManager.setExactAndAllowWhileIdle(
-                        AlarmManager.RTC_WAKEUP,
                         calendar.timeInMillis,
-                        pendingIntent
+                        AlarmExtras(
+                            strings = mapOf(
+                                INTENT_TITLE to trigger.configuration.notificationText,
+                                INTENT_TRIGGER_JSON to fullQuestionnaireJson.encodeToString<QuestionnaireTrigger>(trigger),
+                                INTENT_QUESTIONNAIRE_NAME to questionnaire.name
+                            ),
+                            ints = mapOf(INTENT_TRIGGER_ID to trigger.id)
+                        ),
+                        AlarmMultiplexer.NOTIFICATION_WINDOW_MILLIS
                     )
 
                     WHALELog.i(
@@ -1,28 +1,29 @@
 package de.mimuc.senseeverything.service.esm
 
 import android.annotation.SuppressLint
-import android.app.AlarmManager
-import android.app.PendingIntent
 import android.content.Context
-import android.content.Intent
 import de.mimuc.senseeverything.api.model.ema.EMAFloatingWidgetNotificationTrigger
 import de.mimuc.senseeverything.api.model.ema.QuestionnaireTrigger
 import de.mimuc.senseeverything.api.model.ema.fullQuestionnaireJson
 import de.mimuc.senseeverything.db.AppDatabase
 import de.mimuc.senseeverything.db.models.NotificationTrigger
+import de.mimuc.senseeverything.db.models.NotificationTriggerIndex
 import de.mimuc.senseeverything.db.models.NotificationTriggerModality
 import de.mimuc.senseeverything.db.models.NotificationTriggerPriority
 import de.mimuc.senseeverything.db.models.NotificationTriggerSource
 import de.mimuc.senseeverything.db.models.NotificationTriggerStatus
-import de.mimuc.senseeverything.db.models.ScheduledAlarm
 import de.mimuc.senseeverything.db.models.answeredOrCancelled
-import de.mimuc.senseeverything.helpers.parseTimebucket
+import de.mimuc.senseeverything.helpers.TimeBucketSchedule
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.service.alarm.AlarmExtras
+import de.mimuc.senseeverything.service.alarm.AlarmMultiplexer
 import de.mimuc.senseeverything.service.esm.EsmHandler.Companion.INTENT_TRIGGER_JSON
 import de.mimuc.senseeverything.service.esm.EsmHandler.Companion.INTENT_TRIGGER_NOTIFICATION_ID
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import kotlinx.serialization.encodeToString
+import java.time.Instant
+import java.time.LocalDate
 import java.util.Calendar
 import java.util.UUID
 import kotlin.random.Random
@@ -71,6 +72,12 @@ class FloatingWidgetNotificationScheduler {
             )
         }
 
+        /** Seed for the notification plan of a phase, so the plan of a participant can be reproduced. */
+        fun planSeed(participantId: String, phaseName: String, startDay: Calendar): Long {
+            val day = Instant.ofEpochMilli(startDay.timeInMillis).atZone(startDay.timeZone.toZoneId()).toLocalDate()
+            return UUID.nameUUIDFromBytes("$participantId/$phaseName/$day".toByteArray()).mostSignificantBits
+        }
+
         // fixme: this is so the test does not fail
         private fun jsonForTrigger(trigger: QuestionnaireTrigger): String {
             return try {
@@ -89,22 +96,29 @@ class FloatingWidgetNotificationScheduler {
             startOfDay.set(Calendar.MINUTE, 0)
             startOfDay.set(Calendar.SECOND, 0)
             startOfDay.set(Calendar.MILLISECOND, 0)
-            val endOfDay = startOfDay.clone() as Calendar
-            endOfDay.add(Calendar.DAY_OF_YEAR, 1)
-            endOfDay.add(Calendar.MILLISECOND, -1)
 
-            // get all triggers valid on the day of calendar
+            // get all triggers of the day of calendar that are already valid, the index is loaded on first use
             val notifications =
                 withContext(Dispatchers.IO) {
-                    database.notificationTriggerDao()
-                        .getForInterval(startOfDay.timeInMillis, endOfDay.timeInMillis)
-                        .filter { it.validFrom <= calendar.timeInMillis }
-                        // strip all that are not yet valid
-                        .sortedByDescending { it.validFrom }
+                    NotificationTriggerIndex.between(
+                        database.notificationTriggerDao(),
+                        startOfDay.timeInMillis,
+                        calendar.timeInMillis
+                    ).asReversed()
                 }
 
             // check if the previous bucket has an unanswered wave-breaking notification
-            return selectLastValidTrigger(notifications, calendar.clone() as Calendar)
+            // the index owns its triggers, callers get a copy they can change
+            return selectLastValidTrigger(notifications, calendar.clone() as Calendar)?.copy()
+        }
+
+        /**
+         * Where to continue the alarm chain after the alarm of [firedTrigger] was received at [receivedAt].
+         * Alarms can be delivered late, so the chain continues from the planned time of the fired trigger,
+         * otherwise triggers planned between that time and the delivery would never get an alarm.
+         */
+        fun rearmAfter(firedTrigger: NotificationTrigger?, receivedAt: Long): Long {
+            return minOf(firedTrigger?.validFrom ?: receivedAt, receivedAt)
         }
 
         fun selectLastValidTrigger(
@@ -115,24 +129,18 @@ class FloatingWidgetNotificationScheduler {
 
             // Group triggers by time bucket
             val triggersByBucket = triggers.groupBy { it.timeBucket }
+            val schedule = TimeBucketSchedule.of(triggersByBucket.keys.toList(), currentTime.timeZone.toZoneId())
+            val day = schedule.dayOf(currentTime.timeInMillis)
 
             // Find which bucket the current time falls into
-            var currentBucket: String? = null
-            var currentBucketStart: Long? = null
-            for ((bucket, _) in triggersByBucket) {
-                val (start, end) = parseTimebucket(bucket, currentTime)
-                if (currentTime >= start && currentTime <= end) {
-                    currentBucket = bucket
-                    currentBucketStart = start.timeInMillis
-                    break
-                }
-            }
+            val currentBucketIndex = schedule.bucketAt(currentTime.timeInMillis)
+            val currentBucket = if (currentBucketIndex >= 0) schedule.buckets[currentBucketIndex] else null
+            val currentBucketStart = if (currentBucketIndex >= 0) schedule.startMillis(currentBucketIndex, day) else null
 
             // Look for unanswered wave-breaking triggers from previous buckets
-            val sortedBuckets = triggersByBucket.keys.map { bucket ->
-                val times = parseTimebucket(bucket, currentTime)
-                Triple(bucket, times.first.timeInMillis, times.second.timeInMillis)
-            }.sortedBy { it.second }
+            val sortedBuckets = schedule.byStart.map { index ->
+                Triple(schedule.buckets[index], schedule.startMillis(index, day), schedule.endMillis(index, day))
+            }
 
             // Collect all unanswered wave-breaking triggers from previous buckets
             var latestWaveBreakingTrigger: NotificationTrigger? = null
@@ -184,7 +192,7 @@ class FloatingWidgetNotificationScheduler {
             // Check if a wave-breaking trigger from a previous bucket was answered in the current bucket
             // This means the previous wave extended into the current bucket and completed here
             if (currentBucket != null && currentBucketStart != null) {
-                val currentBucketEnd = parseTimebucket(currentBucket, currentTime).second.timeInMillis
+                val currentBucketEnd = schedule.endMillis(currentBucketIndex, day)
 
                 for ((bucketName, _, bucketEnd) in sortedBuckets) {
                     if (bucketEnd < currentTime.timeInMillis) {
@@ -243,13 +251,19 @@ class FloatingWidgetNotificationScheduler {
         }
     }
 
-    fun scheduleFloatingWidgetNotificationTriggersForPhase(
+    /**
+     * Plans all notification triggers of the phase in memory and stores them in one transaction.
+     * Only the next push is registered with the [AlarmMultiplexer], [NotificationTriggerReceiver] chains the following ones.
+     * The same [seed] always yields the same notification times.
+     */
+    suspend fun scheduleFloatingWidgetNotificationTriggersForPhase(
         context: Context,
         emaStartDay: Calendar,
         endDay: Calendar,
         triggers: List<QuestionnaireTrigger>,
         database: AppDatabase,
-        phaseName: String
+        phaseName: String,
+        seed: Long
     ) {
         // get all triggers for the current phase that can be scheduled
         val triggersToBeScheduled =
@@ -259,50 +273,46 @@ class FloatingWidgetNotificationScheduler {
             triggersToBeScheduled,
             emaStartDay,
             endDay,
-            phaseName
+            phaseName,
+            Random(seed)
         )
-        for (notification in scheduledNotifications) {
-            database.notificationTriggerDao().insert(notification)
-
-            if (notification.modality == NotificationTriggerModality.Push) {
-                val scheduledAlarm = ScheduledAlarm.createEntry("NotificationTriggerReceiver", notification.uid.toString(), notification.validFrom)
-                database.scheduledAlarmDao().insert(scheduledAlarm)
-
-                scheduleAlarmForNotificationTrigger(notification, context, scheduledAlarm)
-            }
+        withContext(Dispatchers.IO) {
+            database.runInTransaction(Runnable {
+                database.notificationTriggerDao().insertAll(scheduledNotifications)
+            })
         }
+        WHALELog.i(TAG, "Planned ${scheduledNotifications.size} notification triggers for phase $phaseName")
+
+        scheduleNextNotificationTrigger(context, database)
     }
 
-    suspend fun schedulePlannedNotificationTriggers(context: Context, database: AppDatabase) {
-        val now = System.currentTimeMillis()
-        val plannedNotifications = withContext(Dispatchers.IO) {
-            database.notificationTriggerDao().getNextForModality(
-                NotificationTriggerModality.Push, now
-            )
+    /**
+     * Registers the alarm for the next push notification trigger valid after [after], if there is one.
+     * Called after planning, after a notification trigger alarm fired and after a reboot.
+     */
+    suspend fun scheduleNextNotificationTrigger(
+        context: Context,
+        database: AppDatabase,
+        after: Long = System.currentTimeMillis()
+    ) {
+        val nextNotification = withContext(Dispatchers.IO) {
+            database.notificationTriggerDao().getFirstForModality(NotificationTriggerModality.Push, after)
         }
 
-        WHALELog.i(
-            TAG,
-            "Scheduling ${plannedNotifications.size} planned push notification triggers after $now"
-        )
-
-        for (notification in plannedNotifications) {
-            val scheduledAlarm = ScheduledAlarm.getOrCreateScheduledAlarm(
-                database,
-                "NotificationTriggerReceiver",
-                notification.uid.toString(),
-                notification.validFrom
-            )
-
-            scheduleAlarmForNotificationTrigger(notification, context, scheduledAlarm)
+        if (nextNotification == null) {
+            WHALELog.i(TAG, "No planned push notification triggers after $after")
+            return
         }
+
+        scheduleAlarmForNotificationTrigger(nextNotification, context, database)
     }
 
     fun scheduleAllNotificationsWithTimeout(
         triggers: List<EMAFloatingWidgetNotificationTrigger>,
         startDay: Calendar,
         endDay: Calendar,
-        phaseName: String
+        phaseName: String,
+        random: Random = Random.Default
     ): List<NotificationTrigger> {
         val allNotifications = mutableListOf<NotificationTrigger>()
         val triggersToBeScheduled = triggers
@@ -310,7 +320,7 @@ class FloatingWidgetNotificationScheduler {
             .filter { it.configuration.source == NotificationTriggerSource.Scheduled }
 
         for (trigger in triggersToBeScheduled) {
-            val plannedNotifications = planNotificationsForTrigger(trigger, startDay, endDay)
+            val plannedNotifications = planNotificationsForTrigger(trigger, startDay, endDay, random)
             allNotifications.addAll(plannedNotifications)
 
             val timeoutTrigger = triggers.find { it.id == trigger.configuration.timeoutNotificationTriggerId }
@@ -327,14 +337,18 @@ class FloatingWidgetNotificationScheduler {
     fun planNotificationsForTrigger(
         trigger: EMAFloatingWidgetNotificationTrigger,
         emaStart: Calendar,
-        studyEnd: Calendar
+        studyEnd: Calendar,
+        random: Random = Random.Default
     ): List<NotificationTrigger> {
         // for each day between emaStart and studyEnd, plan the notifications
         val notifications = mutableListOf<NotificationTrigger>()
-        val dayIterator = emaStart.clone() as Calendar
-        while (dayIterator < studyEnd) {
-            notifications.addAll(planNotificationsForDay(trigger, dayIterator))
-            dayIterator.add(Calendar.DAY_OF_YEAR, 1)
+        val schedule = TimeBucketSchedule.of(trigger.configuration.timeBuckets, emaStart.timeZone.toZoneId())
+        val triggerJson = jsonForTrigger(trigger)
+        val start = Instant.ofEpochMilli(emaStart.timeInMillis).atZone(schedule.zone)
+        var day = start
+        while (day.toInstant().toEpochMilli() < studyEnd.timeInMillis) {
+            planNotificationsForDay(trigger, schedule, day.toLocalDate(), triggerJson, random, notifications)
+            day = day.plusDays(1)
         }
         return notifications
     }
@@ -343,18 +357,26 @@ class FloatingWidgetNotificationScheduler {
         trigger: EMAFloatingWidgetNotificationTrigger,
         day: Calendar
     ): List<NotificationTrigger> {
+        val schedule = TimeBucketSchedule.of(trigger.configuration.timeBuckets, day.timeZone.toZoneId())
         val notifications = mutableListOf<NotificationTrigger>()
+        planNotificationsForDay(trigger, schedule, schedule.dayOf(day.timeInMillis), jsonForTrigger(trigger), Random.Default, notifications)
+        return notifications
+    }
 
-        val sortedBuckets = trigger.configuration.timeBuckets.map { bucket ->
-            val times = parseTimebucket(bucket, day.clone() as Calendar)
-
-            Triple(bucket, times.first.timeInMillis, times.second.timeInMillis)
-        }.sortedBy { it.second }
-
+    private fun planNotificationsForDay(
+        trigger: EMAFloatingWidgetNotificationTrigger,
+        schedule: TimeBucketSchedule,
+        day: LocalDate,
+        triggerJson: String,
+        random: Random,
+        notifications: MutableList<NotificationTrigger>
+    ) {
         var lastNotificationTime = 0L
 
-        for (bucketInfo in sortedBuckets) {
-            val (bucketName, bucketStart, bucketEnd) = bucketInfo
+        for (index in schedule.byStart) {
+            val bucketName = schedule.buckets[index]
+            val bucketStart = schedule.startMillis(index, day)
+            val bucketEnd = schedule.endMillis(index, day)
 
             // Calculate the earliest possible time for this notification
             val earliestTime = if (lastNotificationTime == 0L) {
@@ -381,7 +403,7 @@ class FloatingWidgetNotificationScheduler {
                         availableWindow,
                         trigger.configuration.randomToleranceMinutes * 60 * 1000L
                     )
-                    earliestTime + Random.nextLong(0, maxRandomOffset + 1)
+                    earliestTime + random.nextLong(0, maxRandomOffset + 1)
                 }
             }
 
@@ -399,46 +421,38 @@ class FloatingWidgetNotificationScheduler {
                 modality = trigger.configuration.modality,
                 source = trigger.configuration.source,
                 questionnaireId = trigger.questionnaireId.toLong(),
-                triggerJson = jsonForTrigger(trigger),
+                triggerJson = triggerJson,
                 updatedAt = System.currentTimeMillis()
             )
 
             notifications.add(notificationTrigger)
             lastNotificationTime = finalNotificationTime
         }
-
-        return notifications
     }
 
-    private fun scheduleAlarmForNotificationTrigger(
+    private suspend fun scheduleAlarmForNotificationTrigger(
         notificationTrigger: NotificationTrigger,
         context: Context,
-        scheduledAlarm: ScheduledAlarm
+        database: AppDatabase
     ) {
-        val intent = Intent(context, NotificationTriggerReceiver::class.java)
-        intent.apply {
-            putExtra(INTENT_TRIGGER_JSON, notificationTrigger.triggerJson)
-            putExtra(INTENT_TRIGGER_NOTIFICATION_ID, notificationTrigger.uid.toString())
-        }
-
-        val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
-
-        val pendingIntent = PendingIntent.getBroadcast(
-            context.applicationContext,
-            scheduledAlarm.requestCode,
-            intent,
-            PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_ONE_SHOT
-        )
-
         WHALELog.i(
             "EsmHandler",
             "Scheduling notification trigger for ${notificationTrigger.uid} at ${notificationTrigger.validFrom}"
         )
 
-        alarmManager.setExactAndAllowWhileIdle(
-            AlarmManager.RTC_WAKEUP,
-            scheduledAlarm.timestamp,
-            pendingIntent
+        AlarmMultiplexer.schedule(
+            context.applicationContext,
+            database,
+            NotificationTriggerReceiver::class.java,
+            notificationTrigger.uid.toString(),
+            notificationTrigger.validFrom,
+            AlarmExtras(
+                strings = mapOf(
+                    INTENT_TRIGGER_JSON to notificationTrigger.triggerJson,
+                    INTENT_TRIGGER_NOTIFICATION_ID to notificationTrigger.uid.toString()
+                )
+            ),
+            AlarmMultiplexer.NOTIFICATION_WINDOW_MILLIS
         )
     }
 }
@@ -17,6 +17,7 @@ import de.mimuc.senseeverything.logging.WHALELog
 import de.mimuc.senseeverything.service.esm.EsmHandler.Companion.INTENT_TRIGGER_NOTIFICATION_ID
 import kotlinx.coroutines.flow.first
 import java.util.Calendar
+import java.util.UUID
 import javax.inject.Inject
 import kotlin.time.Duration
 import kotlin.time.Duration.Companion.minutes
@@ -36,17 +37,31 @@ class NotificationTriggerReceiver: BroadcastReceiver() {
         }
 
         val calendar = Calendar.getInstance()
+        val originalTriggerId = intent.getStringExtra(INTENT_TRIGGER_NOTIFICATION_ID)
 
-        // check latest valid trigger
-        val notificationTrigger = FloatingWidgetNotificationScheduler.getLatestValidTriggerForTime(calendar, database)
+        try {
+            // check latest valid trigger
+            val notificationTrigger = FloatingWidgetNotificationScheduler.getLatestValidTriggerForTime(calendar, database)
 
-        // deliver notification to user
-        if (notificationTrigger != null && shouldSendPush(notificationTrigger)) {
-            notificationPushHelper?.pushNotificationTrigger(notificationTrigger, getTimeout(notificationTrigger))
-            setPushed(notificationTrigger)
-        } else {
-            val originalTriggerId = intent.getStringExtra(INTENT_TRIGGER_NOTIFICATION_ID)
-            WHALELog.w("NotificationTriggerReceiver", "No valid notification trigger found for timestamp ${calendar.timeInMillis} (planned trigger was $originalTriggerId)")
+            // deliver notification to user
+            if (notificationTrigger != null && shouldSendPush(notificationTrigger)) {
+                notificationPushHelper?.pushNotificationTrigger(notificationTrigger, getTimeout(notificationTrigger))
+                setPushed(notificationTrigger)
+            } else {
+                WHALELog.w("NotificationTriggerReceiver", "No valid notification trigger found for timestamp ${calendar.timeInMillis} (planned trigger was $originalTriggerId)")
+            }
+        } finally {
+            // only one notification trigger alarm is registered at a time, so the chain must continue even if delivery failed
+            if (context != null) {
+                val firedTrigger = originalTriggerId
+                    ?.let { runCatching { UUID.fromString(it) }.getOrNull() }
+                    ?.let { database.notificationTriggerDao().getById(it) }
+                FloatingWidgetNotificationScheduler().scheduleNextNotificationTrigger(
+                    context,
+                    database,
+                    FloatingWidgetNotificationScheduler.rearmAfter(firedTrigger, calendar.timeInMillis)
+                )
+            }
         }
     }
 
@@ -1,7 +1,5 @@
 package de.mimuc.senseeverything.service.esm
 
-import android.app.AlarmManager
-import android.app.PendingIntent
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
@@ -15,15 +13,15 @@ import de.mimuc.senseeverything.data.DataStoreManager
 import de.mimuc.senseeverything.db.AppDatabase
 import de.mimuc.senseeverything.db.models.PendingQuestionnaire
 import de.mimuc.senseeverything.db.models.PendingQuestionnaireStatus
-import de.mimuc.senseeverything.db.models.ScheduledAlarm
-import de.mimuc.senseeverything.helpers.applyTime
 import de.mimuc.senseeverything.helpers.goAsync
+import de.mimuc.senseeverything.helpers.timeOfDayOn
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.service.alarm.AlarmExtras
+import de.mimuc.senseeverything.service.alarm.AlarmMultiplexer
 import de.mimuc.senseeverything.service.esm.EsmHandler.Companion.INTENT_PENDING_QUESTIONNAIRE_ID
 import de.mimuc.senseeverything.service.esm.EsmHandler.Companion.INTENT_QUESTIONNAIRE_NAME
 import de.mimuc.senseeverything.service.esm.EsmHandler.Companion.INTENT_REMINDER_JSON
 import de.mimuc.senseeverything.service.esm.EsmHandler.Companion.INTENT_TRIGGER_ID
-import de.mimuc.senseeverything.study.clearAlarm
 import kotlinx.serialization.encodeToString
 import java.util.UUID
 import javax.inject.Inject
@@ -72,7 +70,7 @@ class QuestionnaireReminderNotificationReceiver: BroadcastReceiver() {
     }
 }
 
-fun scheduleReminderNotification(
+suspend fun scheduleReminderNotification(
     context: Context,
     database: AppDatabase,
     pendingQuestionnaire: PendingQuestionnaire,
@@ -81,52 +79,44 @@ fun scheduleReminderNotification(
     questionnaireName: String,
     notificationTimestamp: Long
 ) {
-    val intent = Intent(context, QuestionnaireReminderNotificationReceiver::class.java)
-    intent.apply {
-        putExtra(INTENT_REMINDER_JSON, fullQuestionnaireJson.encodeToString(reminder))
-        putExtra(INTENT_TRIGGER_ID, trigger.id)
-        putExtra(INTENT_QUESTIONNAIRE_NAME, questionnaireName)
-        putExtra(INTENT_PENDING_QUESTIONNAIRE_ID, pendingQuestionnaire.uid.toString())
-    }
-
     val timestamp = getReminderNotificationTime(notificationTimestamp, reminder)
 
-    val scheduledAlarm = ScheduledAlarm.createEntry("QuestionnaireReminderNotificationReceiver", pendingQuestionnaire.uid.toString(), timestamp)
-    database.scheduledAlarmDao().insert(scheduledAlarm)
-
-    val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
-
-    val pendingIntent = PendingIntent.getBroadcast(
-        context.applicationContext,
-        scheduledAlarm.requestCode,
-        intent,
-        PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_ONE_SHOT
-    )
-
     WHALELog.i(
         "QuestionnaireReminderNotificationReceiver",
         "Scheduling reminder notification for ${pendingQuestionnaire.uid} at $timestamp"
     )
 
-    alarmManager.setExactAndAllowWhileIdle(
-        AlarmManager.RTC_WAKEUP,
-        scheduledAlarm.timestamp,
-        pendingIntent
+    AlarmMultiplexer.schedule(
+        context.applicationContext,
+        database,
+        QuestionnaireReminderNotificationReceiver::class.java,
+        pendingQuestionnaire.uid.toString(),
+        timestamp,
+        AlarmExtras(
+            strings = mapOf(
+                INTENT_REMINDER_JSON to fullQuestionnaireJson.encodeToString(reminder),
+                INTENT_QUESTIONNAIRE_NAME to questionnaireName,
+                INTENT_PENDING_QUESTIONNAIRE_ID to pendingQuestionnaire.uid.toString()
+            ),
+            ints = mapOf(INTENT_TRIGGER_ID to trigger.id)
+        ),
+        AlarmMultiplexer.NOTIFICATION_WINDOW_MILLIS
     )
 }
 
-fun clearReminderNotification(context: Context, database: AppDatabase, pendingQuestionnaireId: UUID) {
-    val scheduledAlarm = database.scheduledAlarmDao().getByIdentifier("QuestionnaireReminderNotificationReceiver", pendingQuestionnaireId.toString())
-    if (scheduledAlarm != null) {
-        clearAlarm(context, QuestionnaireReminderNotificationReceiver::class.java, scheduledAlarm.requestCode)
-    }
+suspend fun clearReminderNotification(context: Context, database: AppDatabase, pendingQuestionnaireId: UUID) {
+    AlarmMultiplexer.cancel(
+        context.applicationContext,
+        database,
+        QuestionnaireReminderNotificationReceiver::class.java,
+        pendingQuestionnaireId.toString()
+    )
 }
 
 fun getReminderNotificationTime(notificationTimestamp: Long, reminder: QuestionnaireReminder): Long {
     return when (reminder) {
         is TimeQuestionnaireReminder -> {
-            val start = java.util.Calendar.getInstance().apply { timeInMillis = notificationTimestamp }
-            applyTime(reminder.time, start).timeInMillis
+            timeOfDayOn(notificationTimestamp, reminder.time)
         }
         is DurationQuestionnaireReminder -> {
             notificationTimestamp + reminder.afterMinutes.minutes.inWholeMilliseconds
@@ -56,7 +56,8 @@ class RandomNotificationReceiver: BroadcastReceiver() {
                 Calendar.getInstance(),
                 questionnaireName,
                 untilTimestamp,
-                context
+                context,
+                database
             )
         } else {
             WHALELog.e("PeriodicNotificationReceiver", "Failed to schedule next notification, missing information c:${context} t:${trigger} n:${questionnaireName}")
@@ -13,6 +13,7 @@ import de.mimuc.senseeverything.helpers.isServiceRunning
 import de.mimuc.senseeverything.helpers.scheduleResumeSamplingAlarm
 import de.mimuc.senseeverything.logging.WHALELog
 import de.mimuc.senseeverything.service.LogService
+import de.mimuc.senseeverything.service.alarm.AlarmMultiplexer
 import de.mimuc.senseeverything.service.esm.EsmHandler
 import de.mimuc.senseeverything.service.healthcheck.PeriodicServiceHealthcheckReceiver
 import de.mimuc.senseeverything.service.healthcheck.ServiceHealthcheck
@@ -83,6 +84,7 @@ class OnBootReceiver: BroadcastReceiver() {
 }
 
 private suspend fun rescheduleAlarms(context: Context, database: AppDatabase, dataStoreManager: DataStoreManager) {
+    AlarmMultiplexer.restore(context, database)
     rescheduleStudyEndAlarm(context, database)
     reschedulePhaseChanges(context, database, dataStoreManager)
     EsmHandler.rescheduleQuestionnaires(context, dataStoreManager, database)
@@ -0,0 +1,70 @@
+package de.mimuc.senseeverything.storage
+
+import de.mimuc.senseeverything.workers.sync.SyncPriorityClass
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Applies the current [StoragePressureLevel] to the write path of sensor readings.
+ *
+ * From [StoragePressureLevel.DOWNSAMPLE] on, readings of [lowPrioritySensors] are thinned out to one per
+ * [downsampleIntervalMillis], and at [StoragePressureLevel.PAUSE] they are not stored at all.
+ * Other sensors are never throttled.
+ */
+class StorageBackpressure(
+    private val lowPrioritySensors: Set<String> = SyncPriorityClass.BULK_SENSOR_NAMES.toSet(),
+    private val downsampleIntervalMillis: Long = DEFAULT_DOWNSAMPLE_INTERVAL_MILLIS
+) {
+    @Volatile
+    var level: StoragePressureLevel = StoragePressureLevel.NORMAL
+
+    private val lastAdmitted = ConcurrentHashMap<String, Long>()
+
+    /**
+     * Called when [onStorageFull] paused low-priority writes. The level is only relaxed again by the next
+     * evaluation of the [StorageManager], so the pause has to be stored where that evaluation reads it.
+     */
+    @Volatile
+    var onPaused: (() -> Unit)? = null
+
+    /** Readings keep their pre-encoded upload form only while there is enough space. */
+    val storeWireFormat: Boolean
+        get() = level < StoragePressureLevel.COMPRESS
+
+    /**
+     * @return true if a reading of [sensorName] taken at [timestamp] should be stored
+     */
+    fun admit(sensorName: String?, timestamp: Long): Boolean {
+        val current = level
+        if (current < StoragePressureLevel.DOWNSAMPLE || sensorName == null || sensorName !in lowPrioritySensors) {
+            return true
+        }
+        if (current == StoragePressureLevel.PAUSE) {
+            return false
+        }
+
+        val last = lastAdmitted[sensorName]
+        if (last != null && timestamp - last in 0 until downsampleIntervalMillis) {
+            return false
+        }
+        lastAdmitted[sensorName] = timestamp
+        return true
+    }
+
+    /** The database could not grow anymore, stop low-priority writes until the next check. */
+    fun onStorageFull() {
+        if (level == StoragePressureLevel.PAUSE) return
+        level = StoragePressureLevel.PAUSE
+        onPaused?.invoke()
+    }
+
+    companion object {
+        const val DEFAULT_DOWNSAMPLE_INTERVAL_MILLIS = 5_000L
+
+        /**
+         * Shared by all sensors of the process, updated by the [StorageManager] and,
+         * in the process of the LogService, from the stored level.
+         */
+        @JvmField
+        val current = StorageBackpressure()
+    }
+}
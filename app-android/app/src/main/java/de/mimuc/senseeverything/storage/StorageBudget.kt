@@ -0,0 +1,78 @@
+package de.mimuc.senseeverything.storage
+
+/**
+ * Escalation steps when local storage runs low, ordered from least to most invasive.
+ */
+enum class StoragePressureLevel {
+    /** Everything is stored as usual. */
+    NORMAL,
+
+    /** Readings are stored in a more compact form. */
+    COMPRESS,
+
+    /** Low-priority sensors only keep a reduced rate of readings. */
+    DOWNSAMPLE,
+
+    /** Readings of low-priority sensors are no longer stored. */
+    PAUSE
+}
+
+/** Disk space used by the app's data and the space left on the device. */
+data class StorageUsage(
+    val databaseBytes: Long,
+    val walBytes: Long,
+    val attachmentBytes: Long,
+    val freeBytes: Long
+) {
+    val totalBytes: Long get() = databaseBytes + walBytes + attachmentBytes
+}
+
+/**
+ * Decides how far to escalate, based on the share of the [budgetBytes] in use and the free space of the device,
+ * whichever is more severe. A level is only left once usage dropped by [hysteresis] below its threshold,
+ * so the level does not flap around a threshold.
+ */
+class StorageBudgetPolicy(
+    val budgetBytes: Long = DEFAULT_BUDGET_BYTES,
+    val minFreeBytes: Long = DEFAULT_MIN_FREE_BYTES,
+    private val hysteresis: Double = DEFAULT_HYSTERESIS
+) {
+    fun levelFor(usage: StorageUsage, current: StoragePressureLevel): StoragePressureLevel {
+        val escalated = levelWithSlack(usage, 0.0)
+        if (escalated >= current) {
+            return escalated
+        }
+
+        return minOf(current, levelWithSlack(usage, hysteresis))
+    }
+
+    private fun levelWithSlack(usage: StorageUsage, slack: Double): StoragePressureLevel {
+        val usedShare = usage.totalBytes.toDouble() / budgetBytes
+        val byBudget = when {
+            usedShare >= PAUSE_SHARE - slack -> StoragePressureLevel.PAUSE
+            usedShare >= DOWNSAMPLE_SHARE - slack -> StoragePressureLevel.DOWNSAMPLE
+            usedShare >= COMPRESS_SHARE - slack -> StoragePressureLevel.COMPRESS
+            else -> StoragePressureLevel.NORMAL
+        }
+
+        val free = usage.freeBytes.toDouble() / (1 + slack)
+        val byFreeSpace = when {
+            free < minFreeBytes -> StoragePressureLevel.PAUSE
+            free < minFreeBytes * 2 -> StoragePressureLevel.DOWNSAMPLE
+            free < minFreeBytes * 4 -> StoragePressureLevel.COMPRESS
+            else -> StoragePressureLevel.NORMAL
+        }
+
+        return maxOf(byBudget, byFreeSpace)
+    }
+
+    companion object {
+        const val DEFAULT_BUDGET_BYTES = 2L * 1024 * 1024 * 1024
+        const val DEFAULT_MIN_FREE_BYTES = 256L * 1024 * 1024
+        const val DEFAULT_HYSTERESIS = 0.1
+
+        private const val COMPRESS_SHARE = 0.5
+        private const val DOWNSAMPLE_SHARE = 0.75
+        private const val PAUSE_SHARE = 0.9
+    }
+}
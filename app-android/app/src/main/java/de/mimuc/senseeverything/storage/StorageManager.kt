@@ -0,0 +1,152 @@
+package de.mimuc.senseeverything.storage
+
+import android.content.Context
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.compression.PayloadDictionaries
+import de.mimuc.senseeverything.db.compression.PayloadDictionaryTrainer
+import de.mimuc.senseeverything.db.models.PayloadDictionary
+import de.mimuc.senseeverything.logging.WHALELog
+import java.io.File
+
+/** A change of the storage pressure level and the usage it was based on. */
+data class StorageDecision(
+    val previous: StoragePressureLevel,
+    val level: StoragePressureLevel,
+    val usage: StorageUsage
+) {
+    override fun toString(): String {
+        return "Storage pressure $previous -> $level: database ${usage.databaseBytes} bytes, " +
+                "WAL ${usage.walBytes} bytes, attachments ${usage.attachmentBytes} bytes, ${usage.freeBytes} bytes free"
+    }
+}
+
+/**
+ * Keeps the database and attachment files within a [StorageBudgetPolicy].
+ *
+ * [evaluate] measures the current usage and applies the resulting level to [StorageBackpressure],
+ * [runMaintenance] returns free database pages to the file system and should only run while the device is idle.
+ */
+class StorageManager(
+    private val context: Context,
+    private val database: AppDatabase,
+    val policy: StorageBudgetPolicy = StorageBudgetPolicy(),
+    private val backpressure: StorageBackpressure = StorageBackpressure.current
+) {
+    private val TAG = "StorageManager"
+
+    fun measure(): StorageUsage {
+        val databaseFile = context.getDatabasePath(DATABASE_NAME)
+        val walFile = File(databaseFile.path + "-wal")
+        val attachments = database.pendingAttachmentDao().getDiskUsage()
+
+        return StorageUsage(
+            databaseBytes = databaseFile.length(),
+            walBytes = walFile.length(),
+            attachmentBytes = attachments.totalBytes,
+            freeBytes = databaseFile.parentFile?.usableSpace ?: Long.MAX_VALUE
+        )
+    }
+
+    /**
+     * Measure the usage, escalate or relax the storage pressure and apply it.
+     */
+    fun evaluate(previous: StoragePressureLevel): StorageDecision {
+        val usage = measure()
+        val level = policy.levelFor(usage, previous)
+        val decision = StorageDecision(previous, level, usage)
+
+        backpressure.level = level
+        if (level >= StoragePressureLevel.COMPRESS && previous < StoragePressureLevel.COMPRESS) {
+            val compacted = database.logDataDao().dropWireFormat()
+            WHALELog.i(TAG, "Dropped pre-encoded upload form of $compacted unsynced reading(s)")
+        }
+
+        return decision
+    }
+
+    /**
+     * Checkpoint the WAL and vacuum free pages, e.g. those of dropped LogData partitions.
+     * Incremental vacuum is enabled with one full vacuum, if there is enough space for the temporary copy.
+     */
+    fun runMaintenance(usage: StorageUsage) {
+        val db = database.openHelper.writableDatabase
+        checkpoint()
+
+        val autoVacuum = db.query("PRAGMA auto_vacuum").use { cursor ->
+            if (cursor.moveToFirst()) cursor.getInt(0) else 0
+        }
+        if (autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+            if (usage.freeBytes < usage.databaseBytes * 2) {
+                WHALELog.w(TAG, "Not enough free space to enable incremental vacuum")
+                return
+            }
+            WHALELog.i(TAG, "Enabling incremental vacuum")
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
+            db.execSQL("VACUUM")
+        }
+
+        val freePages = db.query("PRAGMA freelist_count").use { cursor ->
+            if (cursor.moveToFirst()) cursor.getLong(0) else 0
+        }
+        if (freePages > 0) {
+            // every step of the pragma frees a page, so the cursor has to be read to the end
+            db.query("PRAGMA incremental_vacuum($MAX_VACUUM_PAGES)").use { cursor ->
+                while (cursor.moveToNext()) {
+                    // nothing to read
+                }
+            }
+            WHALELog.i(TAG, "Vacuumed up to ${minOf(freePages, MAX_VACUUM_PAGES)} of $freePages free page(s)")
+        }
+
+        checkpoint()
+    }
+
+    /**
+     * Train a new payload dictionary for each verbose sensor without a recent one.
+     * Older dictionaries are kept, rows compressed with them stay readable.
+     * @return the number of trained dictionaries
+     */
+    fun trainDictionaries(now: Long = System.currentTimeMillis()): Int {
+        val dictionaryDao = database.payloadDictionaryDao()
+        var trained = 0
+
+        for (sensorName in COMPRESSED_SENSOR_NAMES) {
+            val latest = dictionaryDao.getLatestForSensor(sensorName)
+            if (latest != null && now - latest.createdAt < DICTIONARY_MAX_AGE_MILLIS) continue
+
+            val samples = database.logDataDao().getRecentPayloads(sensorName, DICTIONARY_SAMPLE_COUNT)
+            if (samples.size < DICTIONARY_MIN_SAMPLE_COUNT) continue
+
+            val dictionary = PayloadDictionaryTrainer.train(samples)
+            if (dictionary.isEmpty()) continue
+
+            val id = dictionaryDao.insert(PayloadDictionary(sensorName = sensorName, dictionary = dictionary, createdAt = now))
+            PayloadDictionaries.register(PayloadDictionary(id.toInt(), sensorName, dictionary, now))
+            WHALELog.i(TAG, "Trained ${dictionary.size} byte payload dictionary for $sensorName from ${samples.size} reading(s)")
+            trained++
+        }
+
+        return trained
+    }
+
+    private fun checkpoint() {
+        database.openHelper.writableDatabase.query("PRAGMA wal_checkpoint(TRUNCATE)").use { it.moveToFirst() }
+    }
+
+    companion object {
+        private const val DATABASE_NAME = "senseeverything-roomdb"
+        private const val AUTO_VACUUM_INCREMENTAL = 2
+
+        // 4 KB pages, so at most 200 MB per run
+        private const val MAX_VACUUM_PAGES = 50_000L
+
+        /** Sensors with verbose text payloads; UITree batches are already gzipped. */
+        val COMPRESSED_SENSOR_NAMES = listOf(
+            "Notification", "Accessibility", "Usage Stats", "Interaction Log", "App", "Nearby Bluetooth", "Logging"
+        )
+
+        private const val DICTIONARY_SAMPLE_COUNT = 2_000
+        private const val DICTIONARY_MIN_SAMPLE_COUNT = 100
+        private const val DICTIONARY_MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L
+    }
+}
@@ -1,7 +1,5 @@
 package de.mimuc.senseeverything.study
 
-import android.app.AlarmManager
-import android.app.PendingIntent
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
@@ -9,9 +7,10 @@ import dagger.hilt.android.AndroidEntryPoint
 import de.mimuc.senseeverything.api.model.ExperimentalGroupPhase
 import de.mimuc.senseeverything.data.DataStoreManager
 import de.mimuc.senseeverything.db.AppDatabase
-import de.mimuc.senseeverything.db.models.ScheduledAlarm
 import de.mimuc.senseeverything.helpers.goAsync
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.service.alarm.AlarmExtras
+import de.mimuc.senseeverything.service.alarm.AlarmMultiplexer
 import de.mimuc.senseeverything.service.esm.EsmHandler
 import kotlinx.coroutines.flow.first
 import kotlinx.serialization.Serializable
@@ -54,16 +53,14 @@ class ChangePhaseReceiver  : BroadcastReceiver() {
 
         WHALELog.i("ChangePhaseReceiver", "Changing phase to ${phase.name} (from ${phase.fromDay} for ${phase.durationDays} days)")
 
-        EsmHandler.scheduleRandomEMANotificationsForPhase(phase, Calendar.getInstance(), context.applicationContext, dataStoreManager)
+        EsmHandler.scheduleRandomEMANotificationsForPhase(phase, Calendar.getInstance(), context.applicationContext, dataStoreManager, database)
         EsmHandler.scheduleFloatingWidgetNotifications(phase, Calendar.getInstance(), context.applicationContext, dataStoreManager, database)
 
-        val phaseSchedule = dataStoreManager.phaseSchedulesFlow.first()
-        if (phaseSchedule != null) {
-            phaseSchedule.find { it.phaseName == phase.name }?.let {
-                it.status =
-                    PhaseSchedulingStatus.CHANGED
-            }
-            dataStoreManager.savePhaseSchedules(phaseSchedule)
+        // copies the schedule, changing the status in place would also change the cached settings
+        dataStoreManager.edit { settings ->
+            settings.copy(phaseSchedules = settings.phaseSchedules?.map {
+                if (it.phaseName == phase.name) it.copy(status = PhaseSchedulingStatus.CHANGED) else it
+            })
         }
     }
 }
@@ -87,11 +84,6 @@ suspend fun schedulePhaseChanges(context: Context, studyStartTimestamp: Long, ph
 
     // schedule an alarm for each phase change so that it can be adapted
     for ((index, phase) in phases.withIndex()) {
-        val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
-
-        val intent = Intent(context, ChangePhaseReceiver::class.java)
-        intent.putExtra("phaseJson", Json.encodeToString(phase))
-
         // if fromDay is 0, schedule phase change 2 minutes after study start, otherwise on start of the day
         val triggerTimestamp = if (phase.fromDay == 0) {
             studyStartTimestamp + TimeUnit.MINUTES.toMillis(2)
@@ -115,25 +107,14 @@ suspend fun schedulePhaseChanges(context: Context, studyStartTimestamp: Long, ph
             WHALELog.i("ChangePhaseReceiver", "Not scheduling phase change to ${phase.name} at $triggerTimestamp, timestamp is in the past")
             PhaseSchedulingStatus.SKIPPED
         } else {
-            val scheduledAlarm = ScheduledAlarm.getOrCreateScheduledAlarm(
+            WHALELog.i("ChangePhaseReceiver", "Scheduling phase change to ${phase.name} at $triggerTimestamp")
+            AlarmMultiplexer.schedule(
+                context,
                 database,
-                "ChangePhaseReceiver",
+                ChangePhaseReceiver::class.java,
                 "phase_${phase.fromDay}",
-                triggerTimestamp
-            )
-
-            val pendingIntent = PendingIntent.getBroadcast(
-                context,
-                scheduledAlarm.requestCode,
-                intent,
-                PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_ONE_SHOT
-            )
-
-            WHALELog.i("ChangePhaseReceiver", "Scheduling phase change to ${phase.name} at $triggerTimestamp")
-            alarmManager.setExactAndAllowWhileIdle(
-                AlarmManager.RTC_WAKEUP,
-                scheduledAlarm.timestamp,
-                pendingIntent
+                triggerTimestamp,
+                AlarmExtras(strings = mapOf("phaseJson" to Json.encodeToString(phase)))
             )
             PhaseSchedulingStatus.SCHEDULED
         }
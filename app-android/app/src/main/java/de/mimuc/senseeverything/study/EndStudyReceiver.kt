@@ -1,7 +1,5 @@
 package de.mimuc.senseeverything.study
 
-import android.app.AlarmManager
-import android.app.PendingIntent
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
@@ -9,9 +7,9 @@ import dagger.hilt.android.AndroidEntryPoint
 import de.mimuc.senseeverything.data.DataStoreManager
 import de.mimuc.senseeverything.data.StudyState
 import de.mimuc.senseeverything.db.AppDatabase
-import de.mimuc.senseeverything.db.models.ScheduledAlarm
 import de.mimuc.senseeverything.helpers.goAsync
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.service.alarm.AlarmMultiplexer
 import de.mimuc.senseeverything.workers.UploadWorkTag
 import de.mimuc.senseeverything.workers.enqueueSingleSensorReadingsUploadWorker
 import kotlinx.coroutines.Dispatchers
@@ -45,14 +43,7 @@ class EndStudyReceiver : BroadcastReceiver() {
 }
 
 suspend fun scheduleStudyEndAlarm(context: Context, timestamp: Long, database: AppDatabase) {
-    val scheduledAlarm = ScheduledAlarm.getOrCreateScheduledAlarm(
-        database,
-        "EndStudyReceiver",
-        "End",
-        timestamp
-    )
-
-    setStudyEndAlarm(context, scheduledAlarm)
+    setStudyEndAlarm(context, database, "End", timestamp)
     WHALELog.i("EndStudyReceiver", "Scheduled study end alarm for timestamp $timestamp")
 }
 
@@ -62,43 +53,13 @@ suspend fun rescheduleStudyEndAlarm(context: Context, database: AppDatabase) {
     }
 
     if (scheduledAlarm != null) {
-        setStudyEndAlarm(context, scheduledAlarm)
+        setStudyEndAlarm(context, database, scheduledAlarm.identifier, scheduledAlarm.timestamp)
         WHALELog.i("EndStudyReceiver", "Rescheduled study end alarm for timestamp ${scheduledAlarm.timestamp}")
     } else {
         WHALELog.w("EndStudyReceiver", "No scheduled study end alarm found to reschedule")
     }
 }
 
-fun setStudyEndAlarm(context: Context, scheduledAlarm: ScheduledAlarm) {
-    val endStudyIntent = Intent(context, EndStudyReceiver::class.java)
-    val pendingIntent = PendingIntent.getBroadcast(
-        context,
-        scheduledAlarm.requestCode,
-        endStudyIntent,
-        PendingIntent.FLAG_IMMUTABLE or PendingIntent.FLAG_ONE_SHOT
-    )
-
-    val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
-
-    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S) {
-        if (alarmManager.canScheduleExactAlarms()) {
-            alarmManager.setExactAndAllowWhileIdle(
-                AlarmManager.RTC_WAKEUP,
-                scheduledAlarm.timestamp,
-                pendingIntent
-            )
-        } else {
-            alarmManager.setAndAllowWhileIdle(
-                AlarmManager.RTC_WAKEUP,
-                scheduledAlarm.timestamp,
-                pendingIntent
-            )
-        }
-    } else {
-        alarmManager.setExactAndAllowWhileIdle(
-            AlarmManager.RTC_WAKEUP,
-            scheduledAlarm.timestamp,
-            pendingIntent
-        )
-    }
-}
\ No newline at end of file
+suspend fun setStudyEndAlarm(context: Context, database: AppDatabase, identifier: String, timestamp: Long) {
+    AlarmMultiplexer.schedule(context, database, EndStudyReceiver::class.java, identifier, timestamp)
+}
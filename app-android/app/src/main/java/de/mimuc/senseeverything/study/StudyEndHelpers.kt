@@ -8,13 +8,16 @@ import android.os.Build
 import androidx.work.WorkManager
 import de.mimuc.senseeverything.db.AppDatabase
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.service.alarm.AlarmMultiplexer
 import de.mimuc.senseeverything.service.esm.NotificationTriggerReceiver
 import de.mimuc.senseeverything.service.esm.OneTimeNotificationReceiver
 import de.mimuc.senseeverything.service.esm.PeriodicNotificationReceiver
 import de.mimuc.senseeverything.service.esm.QuestionnaireReminderNotificationReceiver
 import de.mimuc.senseeverything.service.esm.RandomNotificationReceiver
 import de.mimuc.senseeverything.service.healthcheck.PeriodicServiceHealthcheckReceiver
+import de.mimuc.senseeverything.workers.OpportunisticSyncCheckWorker
 import de.mimuc.senseeverything.workers.StaleUnsyncedSensorReadingsCheckWorker
+import de.mimuc.senseeverything.workers.StorageManagerWorker
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 
@@ -49,11 +52,16 @@ fun clearJobs(context: Context) {
     WorkManager.getInstance(context).cancelAllWorkByTag("updateQuestionnaires")
     WorkManager.getInstance(context).cancelAllWorkByTag("pendingQuestionnaireUpload")
     WorkManager.getInstance(context).cancelAllWorkByTag(StaleUnsyncedSensorReadingsCheckWorker.WORKER_TAG)
+    WorkManager.getInstance(context).cancelAllWorkByTag(OpportunisticSyncCheckWorker.WORKER_TAG)
+    WorkManager.getInstance(context).cancelAllWorkByTag(StorageManagerWorker.WORKER_TAG)
 
     WHALELog.i("EndStudy", "Cancelled all jobs")
 }
 
 suspend fun clearAllAlarms(context: Context, database: AppDatabase) {
+    AlarmMultiplexer.cancelAll(context, database)
+
+    // alarms registered directly with the AlarmManager before the multiplexer
     val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
 
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
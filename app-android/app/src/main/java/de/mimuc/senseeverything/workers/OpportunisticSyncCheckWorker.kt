@@ -0,0 +1,150 @@
+package de.mimuc.senseeverything.workers
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkInfo
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import de.mimuc.senseeverything.data.DataStoreManager
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.models.UnsyncedBacklog
+import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.workers.sync.OpportunisticSyncLevel
+import de.mimuc.senseeverything.workers.sync.OpportunisticSyncPolicy
+import de.mimuc.senseeverything.workers.sync.SyncBudget
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.withContext
+import java.util.concurrent.TimeUnit
+
+/**
+ * Watches the unsynced backlog and starts incremental uploads once it crosses a threshold,
+ * instead of waiting for the daily upload.
+ */
+@HiltWorker
+class OpportunisticSyncCheckWorker @AssistedInject constructor(
+    @Assisted appContext: Context,
+    @Assisted workerParams: WorkerParameters,
+    private val database: AppDatabase,
+    private val dataStoreManager: DataStoreManager
+) : CoroutineWorker(appContext, workerParams) {
+
+    private val TAG = "OpportunisticSyncCheckWorker"
+
+    companion object {
+        const val WORKER_TAG = "OpportunisticSyncCheckWorker"
+        const val UPLOAD_WORK_NAME = "opportunisticReadingsUpload"
+    }
+
+    override suspend fun doWork(): Result {
+        return withContext(Dispatchers.IO) {
+            try {
+                val now = System.currentTimeMillis()
+                val logData = database.logDataDao().getUnsyncedBacklogBefore(now)
+                val typed = database.typedReadings().getBacklogBefore(now)
+                val attachments = database.pendingAttachmentDao().getDiskUsage()
+                val backlog = UnsyncedBacklog(
+                    logData.rowCount + typed.rowCount + attachments.fileCount,
+                    logData.byteCount + typed.byteCount + attachments.remainingBytes
+                )
+
+                val policy = OpportunisticSyncPolicy()
+                val level = policy.levelFor(backlog)
+
+                WHALELog.d(TAG, "Backlog of ${backlog.rowCount} rows, ${backlog.byteCount} bytes, sync level $level")
+
+                if (level != OpportunisticSyncLevel.NONE) {
+                    val token = dataStoreManager.tokenFlow.first()
+                    val jitterMillis = policy.jitterMillis(dataStoreManager.participantIdFlow.first())
+                    enqueueOpportunisticUpload(applicationContext, token, level, jitterMillis)
+                }
+
+                Result.success()
+            } catch (e: Exception) {
+                WHALELog.e(TAG, "Error checking unsynced backlog: $e")
+                Result.failure()
+            }
+        }
+    }
+}
+
+fun enqueueOpportunisticSyncCheckWorker(context: Context) {
+    val checkWorkRequest = PeriodicWorkRequestBuilder<OpportunisticSyncCheckWorker>(1, TimeUnit.HOURS)
+        .addTag("readingsUpload")
+        .addTag(OpportunisticSyncCheckWorker.WORKER_TAG)
+        .build()
+
+    WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+        OpportunisticSyncCheckWorker.WORKER_TAG,
+        ExistingPeriodicWorkPolicy.KEEP,
+        checkWorkRequest
+    )
+}
+
+/**
+ * Enqueue an incremental, budgeted upload. A pending upload is kept unless the new level is more urgent,
+ * in which case it is replaced with one that has less strict constraints.
+ */
+private fun enqueueOpportunisticUpload(
+    context: Context,
+    token: String,
+    level: OpportunisticSyncLevel,
+    jitterMillis: Long
+) {
+    val workManager = WorkManager.getInstance(context)
+
+    val existing = workManager.getWorkInfosForUniqueWork(OpportunisticSyncCheckWorker.UPLOAD_WORK_NAME).get()
+    if (existing.any { it.state == WorkInfo.State.RUNNING }) {
+        return
+    }
+
+    val pending = existing.filter { it.state == WorkInfo.State.ENQUEUED || it.state == WorkInfo.State.BLOCKED }
+    val pendingLevel = pending.flatMap { it.tags }
+        .mapNotNull { tag -> OpportunisticSyncLevel.values().firstOrNull { it.name == tag } }
+        .maxOrNull()
+
+    if (pendingLevel != null && pendingLevel >= level) {
+        return
+    }
+
+    val budget = SyncBudget.PERIODIC
+    val data = workDataOf(
+        "token" to token,
+        SensorReadingsUploadWorker.INPUT_BUDGET_BYTES to budget.maxBytes,
+        SensorReadingsUploadWorker.INPUT_BUDGET_MILLIS to budget.maxMillis
+    )
+
+    val constraints = Constraints.Builder()
+        .setRequiredNetworkType(NetworkType.UNMETERED)
+    if (level == OpportunisticSyncLevel.CHARGING_AND_IDLE) {
+        constraints
+            .setRequiresCharging(true)
+            .setRequiresDeviceIdle(true)
+    }
+
+    val uploadWorkRequest = OneTimeWorkRequestBuilder<SensorReadingsUploadWorker>()
+        .addTag("readingsUpload")
+        .addTag(level.name)
+        .setInputData(data)
+        .setInitialDelay(jitterMillis, TimeUnit.MILLISECONDS)
+        .setConstraints(constraints.build())
+        .build()
+
+    WHALELog.i(OpportunisticSyncCheckWorker.WORKER_TAG, "Enqueueing incremental upload ($level) in ${jitterMillis / 1000}s")
+
+    workManager.enqueueUniqueWork(
+        OpportunisticSyncCheckWorker.UPLOAD_WORK_NAME,
+        ExistingWorkPolicy.REPLACE,
+        uploadWorkRequest
+    )
+}
@@ -15,9 +15,7 @@ import com.android.volley.TimeoutError
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
 import de.mimuc.senseeverything.api.ApiClient
-import de.mimuc.senseeverything.api.model.ema.FullQuestionnaire
 import de.mimuc.senseeverything.api.model.ema.QuestionnaireTrigger
-import de.mimuc.senseeverything.api.model.ema.fullQuestionnaireJson
 import de.mimuc.senseeverything.api.model.ema.questionnaireJson
 import de.mimuc.senseeverything.api.model.ema.uploadQuestionnaireAnswer
 import de.mimuc.senseeverything.data.DataStoreManager
@@ -78,7 +76,7 @@ class PendingQuestionnaireUploadWorker @AssistedInject constructor(
                     }
 
                     WHALELog.i("PendingQuestionnaireUploadWorker", "Uploading pending questionnaire: ${pendingQuestionnaire.uid}")
-                    val questionnaire = fullQuestionnaireJson.decodeFromString<FullQuestionnaire>(pendingQuestionnaire.questionnaireJson)
+                    val questionnaire = pendingQuestionnaire.questionnaire(database)
 
                     try {
                         uploadQuestionnaireAnswer(
@@ -152,7 +150,7 @@ class PendingQuestionnaireUploadWorker @AssistedInject constructor(
                 continue
             }
 
-            val questionnaire = fullQuestionnaireJson.decodeFromString<FullQuestionnaire>(pendingQuestionnaire.questionnaireJson)
+            val questionnaire = pendingQuestionnaire.questionnaire(database)
             try {
                 uploadQuestionnaireAnswer(
                     ApiClient.getInstance(applicationContext),
@@ -177,6 +175,7 @@ class PendingQuestionnaireUploadWorker @AssistedInject constructor(
 
         // clear all expired pending questionnaires
         database.pendingQuestionnaireDao().deleteExpired(System.currentTimeMillis())
+        database.questionnaireDefinitionDao().deleteUnreferenced()
 
         return Result.success()
     }
@@ -0,0 +1,242 @@
+package de.mimuc.senseeverything.workers
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import de.mimuc.senseeverything.data.DataStoreManager
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.models.LogData
+import de.mimuc.senseeverything.db.models.ReadingFamily
+import de.mimuc.senseeverything.db.models.TypedReadingRef
+import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.workers.tiering.ParsedReading
+import de.mimuc.senseeverything.workers.tiering.ReadingAggregate
+import de.mimuc.senseeverything.workers.tiering.ReadingAggregator
+import de.mimuc.senseeverything.workers.tiering.ReadingTiers
+import de.mimuc.senseeverything.workers.tiering.SkeletonDeduplicator
+import de.mimuc.senseeverything.workers.tiering.TieringKind
+import de.mimuc.senseeverything.workers.tiering.TieringPolicy
+import de.mimuc.senseeverything.workers.tiering.TieringWatermark
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.withContext
+import kotlinx.serialization.json.Json
+
+/**
+ * Rolls stale unsynced readings of high-rate sensors into coarser summaries, following the
+ * [TieringPolicy] of each sensor, so long offline periods take bounded space and upload quickly.
+ *
+ * Raw readings are replaced by per-minute aggregates, which are later replaced by per-10-minute aggregates.
+ * UITree batches keep their readings, but repeated skeletons are replaced by references.
+ */
+@HiltWorker
+class ReadingTieringWorker @AssistedInject constructor(
+    @Assisted appContext: Context,
+    @Assisted workerParams: WorkerParameters,
+    private val database: AppDatabase,
+    private val dataStoreManager: DataStoreManager
+) : CoroutineWorker(appContext, workerParams) {
+
+    private val TAG = "ReadingTieringWorker"
+
+    private val json = Json { ignoreUnknownKeys = true }
+
+    companion object {
+        const val WORK_NAME = "ReadingTiering"
+        private const val PAGE_SIZE = 5_000
+
+        // UITree batches are large, keep fewer of them in memory
+        private const val SKELETON_PAGE_SIZE = 100
+    }
+
+    override suspend fun doWork(): Result {
+        return withContext(Dispatchers.IO) {
+            try {
+                val now = System.currentTimeMillis()
+                for (policy in TieringPolicy.DEFAULT_POLICIES) {
+                    if (isStopped) break
+
+                    when (policy.kind) {
+                        TieringKind.NUMERIC -> {
+                            val minutes = rollUpRaw(policy, now - policy.rawRetentionMillis) +
+                                    rollUpTyped(policy, now - policy.rawRetentionMillis)
+                            val tenMinutes = rollUpMinutes(policy, now - policy.minuteRetentionMillis)
+                            if (minutes > 0 || tenMinutes > 0) {
+                                WHALELog.i(TAG, "${policy.sensorName}: rolled up $minutes raw reading(s) and $tenMinutes minute aggregate(s)")
+                            }
+                        }
+                        TieringKind.SKELETON_REFERENCES -> {
+                            val replaced = deduplicateSkeletons(policy, now - policy.rawRetentionMillis)
+                            if (replaced > 0) {
+                                WHALELog.i(TAG, "${policy.sensorName}: replaced $replaced repeated skeleton(s) with references")
+                            }
+                        }
+                    }
+                }
+
+                Result.success()
+            } catch (e: Exception) {
+                WHALELog.e(TAG, "Error tiering readings: $e")
+                Result.failure()
+            }
+        }
+    }
+
+    /** @return the number of raw readings that were replaced */
+    private fun rollUpRaw(policy: TieringPolicy, cutoffTimestamp: Long): Int {
+        val aggregator = ReadingAggregator(policy.fieldCount)
+        val targetName = ReadingTiers.sensorName(policy.sensorName, ReadingTiers.MINUTE)
+
+        return rollUp(policy.sensorName, targetName, cutoffTimestamp) { page ->
+            aggregator.aggregateRaw(page.map { it.timestamp to it.data }, ReadingTiers.MINUTE, ReadingTiers.MINUTE_MILLIS)
+        }
+    }
+
+    /**
+     * Replace typed readings of the policy's [TieringPolicy.typedSensor] up to [cutoffTimestamp] page by page
+     * with minute aggregates, each page in one transaction like [rollUp].
+     * @return the number of typed readings that were replaced
+     */
+    private fun rollUpTyped(policy: TieringPolicy, cutoffTimestamp: Long): Int {
+        val sensor = policy.typedSensor ?: return 0
+        val dao = database.typedReadingDao()
+        val aggregator = ReadingAggregator(policy.fieldCount)
+        val targetName = ReadingTiers.sensorName(policy.sensorName, ReadingTiers.MINUTE)
+        var replaced = 0
+        var previousFirst: TypedReadingRef? = null
+
+        while (!isStopped) {
+            val page = when (sensor.family) {
+                ReadingFamily.VECTOR3 -> dao.getNextVector3(PAGE_SIZE, cutoffTimestamp, listOf(sensor.code)).map { reading ->
+                    TypedReadingRef(sensor.family, reading.id, reading.sensor, reading.timestamp) to
+                            ParsedReading(doubleArrayOf(reading.x, reading.y, reading.z), reading.reliable)
+                }
+                ReadingFamily.SCALAR -> dao.getNextScalar(PAGE_SIZE, cutoffTimestamp, listOf(sensor.code)).map { reading ->
+                    TypedReadingRef(sensor.family, reading.id, reading.sensor, reading.timestamp) to
+                            ParsedReading(doubleArrayOf(reading.value), reading.reliable)
+                }
+            }
+            if (page.isEmpty()) break
+
+            // the previous page was not replaced, e.g. because the storage is full
+            val first = page.first().first
+            if (previousFirst != null && previousFirst.id == first.id) {
+                WHALELog.w(TAG, "Could not replace typed readings of ${policy.sensorName}, stopping")
+                break
+            }
+            previousFirst = first
+
+            val rows = aggregator.aggregateParsed(
+                page.map { (ref, reading) -> ref.timestamp to reading }, ReadingTiers.MINUTE, ReadingTiers.MINUTE_MILLIS
+            ).map { summary ->
+                LogData(summary.start, targetName, json.encodeToString(ReadingAggregate.serializer(), summary))
+            }
+            database.runInTransaction(Runnable {
+                database.logDataDao().insertAll(*rows.toTypedArray())
+                database.typedReadings().delete(page.map { it.first })
+            })
+            replaced += page.size
+        }
+
+        return replaced
+    }
+
+    /** @return the number of minute aggregates that were replaced */
+    private fun rollUpMinutes(policy: TieringPolicy, cutoffTimestamp: Long): Int {
+        val aggregator = ReadingAggregator(policy.fieldCount)
+        val sourceName = ReadingTiers.sensorName(policy.sensorName, ReadingTiers.MINUTE)
+        val targetName = ReadingTiers.sensorName(policy.sensorName, ReadingTiers.TEN_MINUTES)
+
+        return rollUp(sourceName, targetName, cutoffTimestamp) { page ->
+            val aggregates = page.mapNotNull { logData ->
+                logData.data?.let { runCatching { json.decodeFromString<ReadingAggregate>(it) }.getOrNull() }
+            }
+            aggregator.mergeAggregates(aggregates, ReadingTiers.TEN_MINUTES, ReadingTiers.TEN_MINUTES_MILLIS)
+        }
+    }
+
+    /**
+     * Replace readings of [sourceName] up to [cutoffTimestamp] page by page with aggregates stored as [targetName].
+     * Each page is replaced in one transaction, so an interrupted run neither loses nor duplicates readings.
+     */
+    private fun rollUp(
+        sourceName: String,
+        targetName: String,
+        cutoffTimestamp: Long,
+        aggregate: (List<LogData>) -> List<ReadingAggregate>
+    ): Int {
+        val dao = database.logDataDao()
+        var replaced = 0
+        var previousFirst: LogData? = null
+
+        while (!isStopped) {
+            val page = dao.getNextNUnsyncedBeforeForSensors(PAGE_SIZE, cutoffTimestamp, listOf(sourceName))
+            if (page.isEmpty()) break
+
+            // the previous page was not replaced, e.g. because the storage is full
+            val first = page.first()
+            if (previousFirst != null && previousFirst.id == first.id && previousFirst.timestamp == first.timestamp) {
+                WHALELog.w(TAG, "Could not replace readings of $sourceName, stopping")
+                break
+            }
+            previousFirst = first
+
+            val rows = aggregate(page).map { summary ->
+                LogData(summary.start, targetName, json.encodeToString(ReadingAggregate.serializer(), summary))
+            }
+            database.runInTransaction(Runnable {
+                dao.insertAll(*rows.toTypedArray())
+                dao.deleteLogData(*page.toTypedArray())
+            })
+            replaced += page.size
+        }
+
+        return replaced
+    }
+
+    /** @return the number of skeletons that were replaced by references */
+    private suspend fun deduplicateSkeletons(policy: TieringPolicy, cutoffTimestamp: Long): Int {
+        val dao = database.logDataDao()
+        val deduplicator = SkeletonDeduplicator()
+        var watermark = dataStoreManager.tieringWatermarksFlow.first()[policy.sensorName] ?: TieringWatermark.START
+
+        while (!isStopped) {
+            val page = dao.getNextNUnsyncedAfterForSensors(
+                SKELETON_PAGE_SIZE, watermark.timestamp, watermark.id, cutoffTimestamp, listOf(policy.sensorName)
+            )
+            if (page.isEmpty()) break
+
+            val changed = page.filter { logData ->
+                val deduplicated = logData.data?.let { deduplicator.deduplicate(it) } ?: return@filter false
+                logData.data = deduplicated
+                // encoded again on upload
+                logData.wireJson = null
+                true
+            }
+            dao.updateLogData(*changed.toTypedArray())
+
+            watermark = TieringWatermark(page.last().timestamp, page.last().id)
+            dataStoreManager.saveTieringWatermark(policy.sensorName, watermark)
+        }
+
+        return deduplicator.replacedSkeletons
+    }
+}
+
+fun enqueueReadingTieringWorker(context: Context) {
+    val workRequest = OneTimeWorkRequestBuilder<ReadingTieringWorker>()
+        .addTag(ReadingTieringWorker.WORK_NAME)
+        .build()
+
+    WorkManager.getInstance(context).enqueueUniqueWork(
+        ReadingTieringWorker.WORK_NAME,
+        ExistingWorkPolicy.KEEP,
+        workRequest
+    )
+}
@@ -5,6 +5,7 @@ import android.content.Context
 import androidx.hilt.work.HiltWorker
 import androidx.work.Constraints
 import androidx.work.CoroutineWorker
+import androidx.work.Data
 import androidx.work.ExistingPeriodicWorkPolicy
 import androidx.work.NetworkType
 import androidx.work.OneTimeWorkRequestBuilder
@@ -18,14 +19,26 @@ import com.android.volley.NetworkError
 import com.android.volley.TimeoutError
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
+import de.mimuc.senseeverything.api.AimdBatchController
 import de.mimuc.senseeverything.api.ApiClient
-import de.mimuc.senseeverything.api.ApiResources
-import de.mimuc.senseeverything.api.ChunkedUploadHelper
+import de.mimuc.senseeverything.api.currentNetworkTypeKey
+import de.mimuc.senseeverything.data.DataStoreManager
 import de.mimuc.senseeverything.db.AppDatabase
-import de.mimuc.senseeverything.db.models.LogData
 import de.mimuc.senseeverything.helpers.backgroundWorkForegroundInfo
 import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.workers.sync.AttachmentUploadReport
+import de.mimuc.senseeverything.workers.sync.AttachmentUploader
+import de.mimuc.senseeverything.workers.sync.CombinedSyncStream
+import de.mimuc.senseeverything.workers.sync.LogDataSyncStream
+import de.mimuc.senseeverything.workers.sync.QuestionnaireSyncStream
+import de.mimuc.senseeverything.workers.sync.SyncBudget
+import de.mimuc.senseeverything.workers.sync.SyncPriorityClass
+import de.mimuc.senseeverything.workers.sync.SyncReport
+import de.mimuc.senseeverything.workers.sync.SyncScheduler
+import de.mimuc.senseeverything.workers.sync.TypedReadingSyncStream
+import de.mimuc.senseeverything.workers.sync.SyncStream
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.withContext
 import kotlinx.serialization.Serializable
 import java.util.concurrent.TimeUnit
@@ -51,7 +64,8 @@ data class SensorReading(
 class SensorReadingsUploadWorker @AssistedInject constructor(
     @Assisted appContext: Context,
     @Assisted workerParams: WorkerParameters,
-    private val database: AppDatabase
+    private val database: AppDatabase,
+    private val dataStoreManager: DataStoreManager
 ) :
     CoroutineWorker(appContext, workerParams) {
     val TAG = "SensorReadingsUploadWorker"
@@ -63,14 +77,17 @@ class SensorReadingsUploadWorker @AssistedInject constructor(
     private val notificationId = 1012
 
     override suspend fun doWork(): Result {
-        val db = database
-
         val token = inputData.getString("token") ?: ""
 
         if (token.isEmpty()) {
             return Result.failure()
         }
 
+        val budget = SyncBudget(
+            inputData.getLong(INPUT_BUDGET_BYTES, SyncBudget.PERIODIC.maxBytes),
+            inputData.getLong(INPUT_BUDGET_MILLIS, SyncBudget.PERIODIC.maxMillis)
+        )
+
         setForeground(
             backgroundWorkForegroundInfo(notificationId, applicationContext, notificationManager)
         )
@@ -78,8 +95,7 @@ class SensorReadingsUploadWorker @AssistedInject constructor(
         return withContext(Dispatchers.IO) {
             try {
                 val cutoffTimestamp = System.currentTimeMillis()
-                val total = db.logDataDao().getUnsyncedCountBefore(cutoffTimestamp)
-                syncNextNActivities(db, applicationContext, token, total, cutoffTimestamp, 0, 200)
+                syncPriorityClasses(applicationContext, token, cutoffTimestamp, budget)
             } catch (e: Exception) {
                 WHALELog.e(TAG, "Unexpected error during sensor readings upload: $e")
                 return@withContext Result.retry()
@@ -87,96 +103,132 @@ class SensorReadingsUploadWorker @AssistedInject constructor(
         }
     }
 
-    private suspend fun syncNextNActivities(
-        db: AppDatabase,
+    private suspend fun syncPriorityClasses(
         context: Context,
         token: String,
-        initialTotal: Long,
         cutoffTimestamp: Long,
-        totalSynced: Long,
-        n: Int
+        budget: SyncBudget
     ): Result {
-        var currentTotalSynced = totalSynced
         val client = ApiClient.getInstance(context)
         val headers = mapOf("Authorization" to "Bearer $token")
+        val studyId = dataStoreManager.studyIdFlow.first()
 
-        while (!isStopped) {
-            val data = db.logDataDao().getNextNUnsyncedBefore(n, cutoffTimestamp)
-            if (data.isEmpty()) {
-                WHALELog.i(TAG, "Completed Sensor Reading Sync")
-                return Result.success()
-            }
-
-            val sensorReadings = data.map { logData ->
-                SensorReading(
-                    sensorType = logData.sensorName,
-                    timestamp = logData.timestamp,
-                    data = logData.data,
-                    localId = logData.localId
-                )
-            }
-
-            try {
-                val uploadResult = ChunkedUploadHelper.uploadWithSizeBasedChunking(
-                    data = sensorReadings,
-                    maxBatchSize = n,
-                    client = client,
-                    url = ApiResources.sensorReadingsBatched(),
-                    headers = headers
-                )
-
-                WHALELog.i(TAG, "Uploaded ${uploadResult.totalItems} items in ${uploadResult.chunksUploaded} chunk(s), " +
-                        "total size: ${uploadResult.totalBytesUploaded} bytes, fast path: ${uploadResult.usedFastPath}")
-
-                // Log if any items were dropped as unuploadable
-                if (uploadResult.errors.isNotEmpty()) {
-                    val droppedCount = uploadResult.errors.size
-                    val successfulCount = data.size - droppedCount
-
-                    WHALELog.w(TAG, "Upload completed with $droppedCount dropped item(s) out of ${data.size} total ($successfulCount successful)")
-
-                    uploadResult.errors.forEach { error ->
-                        WHALELog.e(TAG, "Dropped item: $error")
-                    }
-                }
+        // batch sizes are learned separately per network type, as Wi-Fi and cellular behave very differently
+        val networkType = currentNetworkTypeKey(context)
+        val batchController = AimdBatchController(
+            dataStoreManager.batchSizingFlow.first()[networkType] ?: AimdBatchController.DEFAULT_STATE
+        )
 
-                db.logDataDao().deleteLogData(*data.toTypedArray<LogData>())
-                WHALELog.i(TAG, "batch synced successful, removed ${data.size} entries")
+        val streams = mutableListOf<SyncStream>()
+        if (studyId != -1) {
+            streams.add(QuestionnaireSyncStream(database, dataStoreManager, client, studyId, token))
+        }
+        for (priorityClass in LOG_DATA_CLASSES) {
+            // one stream per class, so typed readings share the class quantum instead of doubling it
+            streams.add(CombinedSyncStream(priorityClass, listOf(
+                LogDataSyncStream(priorityClass, database, client, headers, cutoffTimestamp, batchController),
+                TypedReadingSyncStream(priorityClass, database, client, headers, cutoffTimestamp, batchController)
+            )))
+        }
 
-                currentTotalSynced += data.size
+        val scheduler = SyncScheduler(streams, budget)
+        var lastReport: SyncReport? = null
 
-                val progressPercentage = if (initialTotal > 0) {
-                    ((currentTotalSynced.toDouble() / initialTotal) * 100).toInt()
+        try {
+            val report = scheduler.run(isStopped = { isStopped }) { progress ->
+                lastReport = progress
+                val progressPercentage = if (progress.backlogRows > 0) {
+                    ((progress.uploadedRows.toDouble() / progress.backlogRows) * 100).toInt()
                 } else {
                     100
                 }
                 setProgress(workDataOf("progress" to progressPercentage))
+            }
+            lastReport = report
 
-            } catch (e: Exception) {
-                if (e is NetworkError || e is TimeoutError) {
-                    return Result.retry()
-                }
+            reportClasses(report)
 
-                if (e is ClientError) {
-                    val message = e.networkResponse.data.decodeToString()
-                    WHALELog.e(
-                        TAG,
-                        "Client error uploading sensor readings: $message with total $currentTotalSynced"
-                    )
-                    return Result.failure()
-                }
+            val droppedPartitions = database.logDataDao().dropSyncedPartitions()
+            if (droppedPartitions > 0) {
+                WHALELog.i(TAG, "Dropped $droppedPartitions fully synced LogData partition(s)")
+            }
 
+            var attachmentReport: AttachmentUploadReport? = null
+            if (!isStopped) {
+                attachmentReport = AttachmentUploader(database.pendingAttachmentDao(), client, headers)
+                    .uploadPending(isStopped = { isStopped })
+                WHALELog.i(TAG, attachmentReport.toString())
+            }
+
+            if (isStopped) {
+                WHALELog.w(TAG, "Work cancelled, stopping further sync")
+            } else if (report.budgetExhausted) {
+                WHALELog.i(TAG, "Sync budget exhausted after ${report.uploadedBytes} bytes in ${report.elapsedMillis}ms, remaining data is deferred to the next run")
+            } else {
+                WHALELog.i(TAG, "Completed Sensor Reading Sync")
+            }
+
+            return Result.success(reportData(report, attachmentReport))
+        } catch (e: Exception) {
+            val currentTotalSynced = lastReport?.uploadedRows ?: 0
+            lastReport?.let { reportClasses(it) }
+
+            if (e is NetworkError || e is TimeoutError) {
+                return Result.retry()
+            }
+
+            if (e is ClientError) {
+                val message = e.networkResponse.data.decodeToString()
                 WHALELog.e(
                     TAG,
-                    "Error uploading sensor readings: $e, ${e.stackTraceToString()} with total $currentTotalSynced"
+                    "Client error uploading sensor readings: $message with total $currentTotalSynced"
                 )
-
                 return Result.failure()
             }
+
+            WHALELog.e(
+                TAG,
+                "Error uploading sensor readings: $e, ${e.stackTraceToString()} with total $currentTotalSynced"
+            )
+
+            return Result.failure()
+        } finally {
+            WHALELog.i(TAG, "Learned batch sizing for $networkType: ${batchController.state}")
+            dataStoreManager.saveBatchSizing(networkType, batchController.state)
         }
+    }
+
+    private fun reportClasses(report: SyncReport) {
+        for (classReport in report.classes) {
+            WHALELog.i(TAG, classReport.toString())
+        }
+    }
+
+    private fun reportData(report: SyncReport, attachmentReport: AttachmentUploadReport?): Data {
+        val values = mutableMapOf<String, Any>()
+        for (classReport in report.classes) {
+            val key = classReport.priorityClass.name.lowercase()
+            values["${key}_backlog"] = classReport.remainingRows
+            values["${key}_uploaded"] = classReport.uploadedRows
+            values["${key}_bytesPerSecond"] = classReport.bytesPerSecond
+        }
+        if (attachmentReport != null) {
+            values["attachments_uploaded"] = attachmentReport.uploadedFiles
+            values["attachments_pending"] = attachmentReport.remaining.fileCount
+            values["attachments_pendingBytes"] = attachmentReport.remaining.totalBytes
+        }
+        return Data.Builder().putAll(values).build()
+    }
+
+    companion object {
+        const val INPUT_BUDGET_BYTES = "budgetBytes"
+        const val INPUT_BUDGET_MILLIS = "budgetMillis"
 
-        WHALELog.w(TAG, "Work cancelled, stopping further sync")
-        return Result.success()
+        private val LOG_DATA_CLASSES = listOf(
+            SyncPriorityClass.STUDY_CRITICAL_SENSORS,
+            SyncPriorityClass.BULK_SENSORS,
+            SyncPriorityClass.DIAGNOSTIC_LOGS
+        )
     }
 }
 
@@ -206,9 +258,14 @@ fun enqueueSingleSensorReadingsUploadWorker(
     token: String,
     workTag: UploadWorkTag = UploadWorkTag.FINAL_UPLOAD_MANUAL,
     expedited: Boolean,
-    delay: Duration = 0.milliseconds
+    delay: Duration = 0.milliseconds,
+    budget: SyncBudget = SyncBudget.UNLIMITED
 ) {
-    val data = workDataOf("token" to token)
+    val data = workDataOf(
+        "token" to token,
+        SensorReadingsUploadWorker.INPUT_BUDGET_BYTES to budget.maxBytes,
+        SensorReadingsUploadWorker.INPUT_BUDGET_MILLIS to budget.maxMillis
+    )
 
     val constraintsBuilder = Constraints.Builder()
         .setRequiredNetworkType(NetworkType.CONNECTED)
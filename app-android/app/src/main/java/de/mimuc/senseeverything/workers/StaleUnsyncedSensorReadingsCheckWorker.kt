@@ -39,7 +39,8 @@ class StaleUnsyncedSensorReadingsCheckWorker @AssistedInject constructor(
         return withContext(Dispatchers.IO) {
             try {
                 val twoDaysAgo = System.currentTimeMillis() - STALE_DURATION
-                val oldUnsyncedCount = database.logDataDao().getUnsyncedCountBefore(twoDaysAgo)
+                val oldUnsyncedCount = database.logDataDao().getUnsyncedCountBefore(twoDaysAgo) +
+                        database.typedReadings().getUnsyncedCountBefore(twoDaysAgo)
 
                 WHALELog.d(TAG, "Old data check: found $oldUnsyncedCount unsynced items older than ${STALE_DURATION.milliseconds.inWholeHours} hours")
 
@@ -47,6 +48,9 @@ class StaleUnsyncedSensorReadingsCheckWorker @AssistedInject constructor(
                     val notificationHelper = NotificationPushHelper(applicationContext)
                     notificationHelper.sendOldDataReminderNotification()
                     WHALELog.i(TAG, "Sent old data reminder notification")
+
+                    // keep the offline backlog bounded until it can be uploaded
+                    enqueueReadingTieringWorker(applicationContext)
                 }
 
                 Result.success()
@@ -0,0 +1,99 @@
+package de.mimuc.senseeverything.workers
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import de.mimuc.senseeverything.data.DataStoreManager
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.logging.WHALELog
+import de.mimuc.senseeverything.storage.StorageManager
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.withContext
+import java.util.concurrent.TimeUnit
+
+/**
+ * Checks the storage used by the database and attachment files, and adjusts the storage pressure.
+ * With [INPUT_MAINTENANCE] set, payload dictionaries are retrained and the database is checkpointed and vacuumed.
+ */
+@HiltWorker
+class StorageManagerWorker @AssistedInject constructor(
+    @Assisted appContext: Context,
+    @Assisted workerParams: WorkerParameters,
+    private val database: AppDatabase,
+    private val dataStoreManager: DataStoreManager
+) : CoroutineWorker(appContext, workerParams) {
+
+    private val TAG = "StorageManagerWorker"
+
+    companion object {
+        const val WORKER_TAG = "StorageManagerWorker"
+        const val MAINTENANCE_WORK_NAME = "StorageMaintenance"
+        const val INPUT_MAINTENANCE = "maintenance"
+    }
+
+    override suspend fun doWork(): Result {
+        return withContext(Dispatchers.IO) {
+            try {
+                val storageManager = StorageManager(applicationContext, database)
+
+                val previous = dataStoreManager.storagePressureFlow.first()
+                val decision = storageManager.evaluate(previous)
+                if (decision.level != previous) {
+                    WHALELog.i(TAG, decision.toString())
+                    dataStoreManager.saveStoragePressure(decision.level)
+                } else {
+                    WHALELog.d(TAG, decision.toString())
+                }
+
+                if (inputData.getBoolean(INPUT_MAINTENANCE, false)) {
+                    storageManager.trainDictionaries()
+                    storageManager.runMaintenance(decision.usage)
+                    WHALELog.i(TAG, "Maintenance done, database now ${storageManager.measure().databaseBytes} bytes")
+                }
+
+                Result.success()
+            } catch (e: Exception) {
+                WHALELog.e(TAG, "Error managing storage: $e")
+                Result.failure()
+            }
+        }
+    }
+}
+
+fun enqueueStorageManagerWorkers(context: Context) {
+    val checkWorkRequest = PeriodicWorkRequestBuilder<StorageManagerWorker>(1, TimeUnit.HOURS)
+        .addTag(StorageManagerWorker.WORKER_TAG)
+        .build()
+
+    val maintenanceWorkRequest = PeriodicWorkRequestBuilder<StorageManagerWorker>(1, TimeUnit.DAYS)
+        .addTag(StorageManagerWorker.WORKER_TAG)
+        .setInputData(workDataOf(StorageManagerWorker.INPUT_MAINTENANCE to true))
+        .setConstraints(
+            Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build()
+        )
+        .build()
+
+    val workManager = WorkManager.getInstance(context)
+    workManager.enqueueUniquePeriodicWork(
+        StorageManagerWorker.WORKER_TAG,
+        ExistingPeriodicWorkPolicy.KEEP,
+        checkWorkRequest
+    )
+    workManager.enqueueUniquePeriodicWork(
+        StorageManagerWorker.MAINTENANCE_WORK_NAME,
+        ExistingPeriodicWorkPolicy.KEEP,
+        maintenanceWorkRequest
+    )
+}
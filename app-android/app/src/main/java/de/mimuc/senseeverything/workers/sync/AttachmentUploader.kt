@@ -0,0 +1,172 @@
+package de.mimuc.senseeverything.workers.sync
+
+import com.android.volley.ClientError
+import de.mimuc.senseeverything.api.ApiClient
+import de.mimuc.senseeverything.api.ApiResources
+import de.mimuc.senseeverything.api.FileParts
+import de.mimuc.senseeverything.db.models.AttachmentDiskUsage
+import de.mimuc.senseeverything.db.models.PendingAttachment
+import de.mimuc.senseeverything.db.models.PendingAttachmentDao
+import de.mimuc.senseeverything.logging.WHALELog
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import java.io.File
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+@Serializable
+data class FileUploadState(
+    val receivedBytes: Long,
+    val completed: Boolean = false
+)
+
+@Serializable
+data class FileCompleteRequest(
+    val totalBytes: Long,
+    val sha256: String,
+    val filename: String
+)
+
+data class AttachmentUploadReport(
+    val uploadedFiles: Int,
+    val uploadedBytes: Long,
+    val missingFiles: Int,
+    val remaining: AttachmentDiskUsage
+) {
+    override fun toString(): String {
+        return "Attachments: uploaded $uploadedFiles file(s) ($uploadedBytes bytes), $missingFiles missing, " +
+                "${remaining.fileCount} pending using ${remaining.totalBytes} bytes on disk (${remaining.remainingBytes} bytes left to upload)"
+    }
+}
+
+/**
+ * Uploads files of file-backed LogData rows in fixed-size parts.
+ *
+ * The acknowledged offset of every part is persisted, so an interrupted upload resumes where it stopped,
+ * and the server reports its own offset if both sides disagree. Files are only deleted from disk once the
+ * server has verified the checksum of the complete file. Several files are uploaded at once, while the parts
+ * of a single file are sent in order.
+ */
+class AttachmentUploader(
+    private val dao: PendingAttachmentDao,
+    private val client: ApiClient,
+    private val headers: Map<String, String>,
+    private val partSizeBytes: Int = DEFAULT_PART_SIZE_BYTES,
+    private val maxConcurrentFiles: Int = DEFAULT_MAX_CONCURRENT_FILES
+) {
+    private val TAG = "AttachmentUploader"
+
+    private val json = Json { ignoreUnknownKeys = true }
+
+    suspend fun uploadPending(isStopped: () -> Boolean = { false }): AttachmentUploadReport {
+        val uploadedFiles = AtomicInteger()
+        val uploadedBytes = AtomicLong()
+        val missingFiles = AtomicInteger()
+
+        val attachments = dao.getNextN(MAX_FILES_PER_RUN)
+        val semaphore = Semaphore(maxConcurrentFiles)
+
+        coroutineScope {
+            for (attachment in attachments) {
+                launch {
+                    semaphore.withPermit {
+                        if (isStopped()) return@withPermit
+
+                        val file = File(attachment.filePath)
+                        if (!file.exists() || file.length() == 0L) {
+                            WHALELog.w(TAG, "File for ${attachment.localId} is missing or empty, dropping attachment")
+                            file.delete()
+                            dao.deleteByLocalId(attachment.localId)
+                            missingFiles.incrementAndGet()
+                            return@withPermit
+                        }
+
+                        val sent = upload(attachment, file, isStopped)
+                        if (sent != null) {
+                            uploadedFiles.incrementAndGet()
+                            uploadedBytes.addAndGet(sent)
+                        }
+                    }
+                }
+            }
+        }
+
+        return AttachmentUploadReport(uploadedFiles.get(), uploadedBytes.get(), missingFiles.get(), dao.getDiskUsage())
+    }
+
+    /**
+     * @return the bytes sent in this run, or null if the file is not completed yet
+     */
+    private suspend fun upload(attachment: PendingAttachment, file: File, isStopped: () -> Boolean): Long? {
+        var sha256 = attachment.sha256
+        var sizeBytes = attachment.sizeBytes
+        var offset = attachment.uploadedBytes
+        if (sha256 == null || sizeBytes != file.length()) {
+            sha256 = FileParts.sha256Hex(file)
+            sizeBytes = file.length()
+            offset = 0
+            dao.updateChecksum(attachment.localId, sha256, sizeBytes)
+        }
+
+        val startOffset = offset
+        var checksumFailures = 0
+        while (offset < sizeBytes) {
+            if (isStopped()) return null
+
+            val part = FileParts.readPart(file, offset, partSizeBytes)
+            try {
+                val response = client.putBytes(
+                    ApiResources.readingFileUpload(attachment.localId, offset),
+                    part,
+                    headers + ("X-Part-Checksum" to FileParts.sha256Hex(part))
+                )
+                offset = json.decodeFromString<FileUploadState>(response).receivedBytes
+            } catch (e: ClientError) {
+                when (e.networkResponse?.statusCode) {
+                    // server has a different offset, continue from there
+                    409 -> offset = json.decodeFromString<FileUploadState>(e.networkResponse.data.decodeToString()).receivedBytes
+                    422 -> if (++checksumFailures > MAX_CHECKSUM_FAILURES) throw e
+                    else -> throw e
+                }
+            }
+            dao.updateUploadedBytes(attachment.localId, offset)
+        }
+
+        try {
+            client.postJsonString(
+                ApiResources.readingFileComplete(attachment.localId),
+                Json.encodeToString(FileCompleteRequest(sizeBytes, sha256, file.name)),
+                headers
+            )
+        } catch (e: ClientError) {
+            if (e.networkResponse?.statusCode == 422) {
+                WHALELog.w(TAG, "Server rejected checksum of ${attachment.localId}, restarting upload")
+                dao.updateUploadedBytes(attachment.localId, 0)
+                return null
+            }
+            throw e
+        }
+
+        if (!file.delete()) {
+            WHALELog.w(TAG, "Could not delete uploaded file ${file.path}")
+        }
+        dao.deleteByLocalId(attachment.localId)
+
+        WHALELog.i(TAG, "Uploaded attachment ${attachment.localId} ($sizeBytes bytes)")
+        return (sizeBytes - startOffset).coerceAtLeast(0)
+    }
+
+    companion object {
+        // below the 1MB request limit of the proxy
+        const val DEFAULT_PART_SIZE_BYTES = 512 * 1024
+        const val DEFAULT_MAX_CONCURRENT_FILES = 2
+
+        private const val MAX_FILES_PER_RUN = 50
+        private const val MAX_CHECKSUM_FAILURES = 3
+    }
+}
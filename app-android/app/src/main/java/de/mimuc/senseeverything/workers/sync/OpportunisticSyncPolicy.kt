@@ -0,0 +1,58 @@
+package de.mimuc.senseeverything.workers.sync
+
+import de.mimuc.senseeverything.db.models.UnsyncedBacklog
+
+/**
+ * How urgently an incremental upload should run, ordered from least to most urgent.
+ */
+enum class OpportunisticSyncLevel {
+    /** The backlog is small enough to wait for the daily upload. */
+    NONE,
+
+    /** Upload on Wi-Fi while the device is charging and idle. */
+    CHARGING_AND_IDLE,
+
+    /** Upload on the next Wi-Fi connection, regardless of charging state. */
+    UNMETERED
+}
+
+/**
+ * Decides when an incremental upload is started in between the daily uploads,
+ * so heavy participants sync in smaller pieces instead of one large burst.
+ */
+class OpportunisticSyncPolicy(
+    private val softThreshold: UnsyncedBacklog = DEFAULT_SOFT_THRESHOLD,
+    private val hardThreshold: UnsyncedBacklog = DEFAULT_HARD_THRESHOLD,
+    private val maxJitterMillis: Long = DEFAULT_MAX_JITTER_MILLIS
+) {
+    fun levelFor(backlog: UnsyncedBacklog): OpportunisticSyncLevel {
+        return when {
+            exceeds(backlog, hardThreshold) -> OpportunisticSyncLevel.UNMETERED
+            exceeds(backlog, softThreshold) -> OpportunisticSyncLevel.CHARGING_AND_IDLE
+            else -> OpportunisticSyncLevel.NONE
+        }
+    }
+
+    /**
+     * A delay that is stable per device but spread over all devices of a study, so participants
+     * crossing the threshold at the same time do not hit the server at the same moment.
+     */
+    fun jitterMillis(deviceKey: String): Long {
+        if (maxJitterMillis <= 0) return 0
+        return Math.floorMod(deviceKey.hashCode().toLong() * JITTER_SPREAD, maxJitterMillis)
+    }
+
+    private fun exceeds(backlog: UnsyncedBacklog, threshold: UnsyncedBacklog): Boolean {
+        return backlog.rowCount >= threshold.rowCount || backlog.byteCount >= threshold.byteCount
+    }
+
+    companion object {
+        val DEFAULT_SOFT_THRESHOLD = UnsyncedBacklog(rowCount = 20_000, byteCount = 5L * 1024 * 1024)
+        val DEFAULT_HARD_THRESHOLD = UnsyncedBacklog(rowCount = 80_000, byteCount = 20L * 1024 * 1024)
+
+        const val DEFAULT_MAX_JITTER_MILLIS = 30L * 60 * 1000
+
+        // large odd multiplier, spreads similar participant ids across the jitter window
+        private const val JITTER_SPREAD = 2_654_435_761L
+    }
+}
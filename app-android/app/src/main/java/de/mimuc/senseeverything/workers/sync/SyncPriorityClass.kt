@@ -0,0 +1,46 @@
+package de.mimuc.senseeverything.workers.sync
+
+/**
+ * Priority classes of the sync scheduler, ordered from most to least valuable.
+ *
+ * The weight determines the share of the per-run byte budget a class receives in each
+ * scheduling round, so higher classes move first but lower classes are never fully starved.
+ */
+enum class SyncPriorityClass(val weight: Int) {
+    QUESTIONNAIRE_ANSWERS(8),
+    STUDY_CRITICAL_SENSORS(4),
+    BULK_SENSORS(2),
+    DIAGNOSTIC_LOGS(1);
+
+    companion object {
+        /** High-rate or large-payload sensors whose readings can wait for a longer connection. */
+        val BULK_SENSOR_NAMES = listOf(
+            "UITree",
+            "Accessibility",
+            "Accelerometer",
+            "Gyroscope",
+            "Light Sensor",
+            "Orientation Sensor",
+            "Proximity",
+            "Audio Level",
+            "Touch Log",
+            "Usage Stats"
+        )
+
+        /** Rows written by WHALELog. */
+        val DIAGNOSTIC_SENSOR_NAMES = listOf(
+            "Logging"
+        )
+
+        /** Every sensor not listed as bulk or diagnostic is considered study-critical. */
+        val NON_CRITICAL_SENSOR_NAMES = BULK_SENSOR_NAMES + DIAGNOSTIC_SENSOR_NAMES
+
+        fun forSensorName(sensorName: String?): SyncPriorityClass {
+            return when (sensorName) {
+                in DIAGNOSTIC_SENSOR_NAMES -> DIAGNOSTIC_LOGS
+                in BULK_SENSOR_NAMES -> BULK_SENSORS
+                else -> STUDY_CRITICAL_SENSORS
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package de.mimuc.senseeverything.workers.sync
+
+/**
+ * Limits for a single sync run. A run stops as soon as either limit is reached.
+ */
+data class SyncBudget(
+    val maxBytes: Long,
+    val maxMillis: Long
+) {
+    companion object {
+        /** Periodic runs move up to 64 MB within 8 minutes before yielding to the next run. */
+        val PERIODIC = SyncBudget(64L * 1024 * 1024, 8L * 60 * 1000)
+        val UNLIMITED = SyncBudget(Long.MAX_VALUE, Long.MAX_VALUE)
+    }
+}
+
+/**
+ * Backlog and throughput of one priority class during a sync run.
+ */
+data class SyncClassReport(
+    val priorityClass: SyncPriorityClass,
+    val backlogRows: Long,
+    val backlogBytes: Long,
+    val uploadedRows: Long = 0,
+    val uploadedBytes: Long = 0,
+    val activeMillis: Long = 0
+) {
+    val remainingRows: Long get() = (backlogRows - uploadedRows).coerceAtLeast(0)
+
+    val bytesPerSecond: Long get() = if (activeMillis > 0) uploadedBytes * 1000 / activeMillis else 0
+
+    override fun toString(): String {
+        return "$priorityClass: uploaded $uploadedRows/$backlogRows rows ($uploadedBytes/$backlogBytes bytes) " +
+                "in ${activeMillis}ms, $bytesPerSecond B/s"
+    }
+}
+
+data class SyncReport(
+    val classes: List<SyncClassReport>,
+    val elapsedMillis: Long,
+    val budgetExhausted: Boolean
+) {
+    val backlogRows: Long get() = classes.sumOf { it.backlogRows }
+    val uploadedRows: Long get() = classes.sumOf { it.uploadedRows }
+    val uploadedBytes: Long get() = classes.sumOf { it.uploadedBytes }
+    val drained: Boolean get() = classes.all { it.remainingRows == 0L }
+}
+
+/**
+ * Shares the byte and time budget of a sync run between priority classes using deficit round robin.
+ *
+ * In every round each class with a backlog is credited [quantumBytes] times its weight and may upload
+ * until that credit is spent. Classes are visited in priority order, so the most valuable data moves
+ * first when the connection window is short, while lower classes still make progress on every run.
+ */
+class SyncScheduler(
+    streams: List<SyncStream>,
+    private val budget: SyncBudget,
+    private val quantumBytes: Long = DEFAULT_QUANTUM_BYTES,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+    private val streams = streams.sortedBy { it.priorityClass.ordinal }
+
+    suspend fun run(
+        isStopped: () -> Boolean = { false },
+        onProgress: suspend (SyncReport) -> Unit = {}
+    ): SyncReport {
+        val startedAt = clock()
+        val reports = streams.map { stream ->
+            val backlog = stream.backlog()
+            SyncClassReport(stream.priorityClass, backlog.rowCount, backlog.byteCount)
+        }.toMutableList()
+
+        val deficits = LongArray(streams.size)
+        val drained = BooleanArray(streams.size) { reports[it].backlogRows == 0L }
+        var bytesRemaining = budget.maxBytes
+
+        fun withinBudget(): Boolean {
+            return !isStopped() && bytesRemaining > 0 && clock() - startedAt < budget.maxMillis
+        }
+
+        while (withinBudget() && !drained.all { it }) {
+            for ((index, stream) in streams.withIndex()) {
+                if (drained[index]) continue
+
+                deficits[index] += quantumBytes * stream.priorityClass.weight
+
+                while (deficits[index] > 0 && !drained[index] && withinBudget()) {
+                    val stepStartedAt = clock()
+                    val result = stream.uploadNext(minOf(deficits[index], bytesRemaining))
+                    val report = reports[index]
+
+                    if (result.rows == 0) {
+                        drained[index] = true
+                        deficits[index] = 0
+                        break
+                    }
+
+                    deficits[index] -= result.bytes
+                    bytesRemaining -= result.bytes
+                    reports[index] = report.copy(
+                        uploadedRows = report.uploadedRows + result.rows,
+                        uploadedBytes = report.uploadedBytes + result.bytes,
+                        activeMillis = report.activeMillis + (clock() - stepStartedAt)
+                    )
+
+                    onProgress(SyncReport(reports.toList(), clock() - startedAt, false))
+                }
+
+                if (!withinBudget()) break
+            }
+        }
+
+        return SyncReport(reports.toList(), clock() - startedAt, !drained.all { it } && !isStopped())
+    }
+
+    companion object {
+        // credit per weight unit and round, questionnaire answers receive 8 times this amount
+        const val DEFAULT_QUANTUM_BYTES = 256L * 1024
+    }
+}
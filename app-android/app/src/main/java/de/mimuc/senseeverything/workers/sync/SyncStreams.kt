@@ -0,0 +1,372 @@
+package de.mimuc.senseeverything.workers.sync
+
+import de.mimuc.senseeverything.activity.CONST
+import de.mimuc.senseeverything.api.AimdBatchController
+import de.mimuc.senseeverything.api.ApiClient
+import de.mimuc.senseeverything.api.ApiResources
+import de.mimuc.senseeverything.api.ChunkedUploadHelper
+import de.mimuc.senseeverything.api.SensorReadingWireFormat
+import de.mimuc.senseeverything.api.model.ema.uploadQuestionnaireAnswer
+import de.mimuc.senseeverything.data.DataStoreManager
+import de.mimuc.senseeverything.data.getOrCreateGeneratedKey
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.models.LogData
+import de.mimuc.senseeverything.db.models.ReadingFamily
+import de.mimuc.senseeverything.db.models.TypedReadingIds
+import de.mimuc.senseeverything.db.models.TypedReadingRef
+import de.mimuc.senseeverything.db.models.TypedSensor
+import de.mimuc.senseeverything.db.models.UnsyncedBacklog
+import de.mimuc.senseeverything.logging.WHALELog
+import kotlinx.coroutines.flow.first
+import java.text.NumberFormat
+import java.util.UUID
+
+/**
+ * Result of a single upload step of a [SyncStream].
+ * A result with zero rows signals that the stream has been drained.
+ */
+data class SyncBatchResult(
+    val rows: Int,
+    val bytes: Long
+) {
+    companion object {
+        val EMPTY = SyncBatchResult(0, 0)
+    }
+}
+
+/**
+ * A source of data that can be uploaded in steps by the [SyncScheduler].
+ */
+interface SyncStream {
+    val priorityClass: SyncPriorityClass
+
+    /** Rows and approximate bytes still waiting to be uploaded. */
+    suspend fun backlog(): UnsyncedBacklog
+
+    /**
+     * Upload the next batch, trying to stay within [maxBytes].
+     * At least one item is uploaded if any are left, even if it exceeds [maxBytes].
+     */
+    suspend fun uploadNext(maxBytes: Long): SyncBatchResult
+}
+
+/**
+ * Drains several sources of the same priority class one after another, so the class
+ * receives a single share of the budget no matter how many tables its data is stored in.
+ */
+class CombinedSyncStream(
+    override val priorityClass: SyncPriorityClass,
+    private val sources: List<SyncStream>
+) : SyncStream {
+    private var current = 0
+
+    init {
+        require(sources.all { it.priorityClass == priorityClass }) {
+            "All sources must belong to $priorityClass"
+        }
+    }
+
+    override suspend fun backlog(): UnsyncedBacklog {
+        val backlogs = sources.map { it.backlog() }
+        return UnsyncedBacklog(backlogs.sumOf { it.rowCount }, backlogs.sumOf { it.byteCount })
+    }
+
+    override suspend fun uploadNext(maxBytes: Long): SyncBatchResult {
+        while (current < sources.size) {
+            val result = sources[current].uploadNext(maxBytes)
+            if (result.rows > 0) return result
+            current++
+        }
+        return SyncBatchResult.EMPTY
+    }
+}
+
+/**
+ * Uploads LogData rows of one priority class, oldest first.
+ * Page size and chunk size are taken from the [batchController] on every step.
+ */
+class LogDataSyncStream(
+    override val priorityClass: SyncPriorityClass,
+    private val database: AppDatabase,
+    private val client: ApiClient,
+    private val headers: Map<String, String>,
+    private val cutoffTimestamp: Long,
+    private val batchController: AimdBatchController
+) : SyncStream {
+    private val TAG = "LogDataSyncStream"
+
+    override suspend fun backlog(): UnsyncedBacklog {
+        val dao = database.logDataDao()
+        return when (priorityClass) {
+            SyncPriorityClass.STUDY_CRITICAL_SENSORS -> dao.getUnsyncedBacklogBeforeExcludingSensors(
+                cutoffTimestamp, SyncPriorityClass.NON_CRITICAL_SENSOR_NAMES
+            )
+            SyncPriorityClass.BULK_SENSORS -> dao.getUnsyncedBacklogBeforeForSensors(
+                cutoffTimestamp, SyncPriorityClass.BULK_SENSOR_NAMES
+            )
+            SyncPriorityClass.DIAGNOSTIC_LOGS -> dao.getUnsyncedBacklogBeforeForSensors(
+                cutoffTimestamp, SyncPriorityClass.DIAGNOSTIC_SENSOR_NAMES
+            )
+            SyncPriorityClass.QUESTIONNAIRE_ANSWERS -> UnsyncedBacklog(0, 0)
+        }
+    }
+
+    private fun nextPage(pageSize: Int): List<LogData> {
+        val dao = database.logDataDao()
+        return when (priorityClass) {
+            SyncPriorityClass.STUDY_CRITICAL_SENSORS -> dao.getNextNUnsyncedBeforeExcludingSensors(
+                pageSize, cutoffTimestamp, SyncPriorityClass.NON_CRITICAL_SENSOR_NAMES
+            )
+            SyncPriorityClass.BULK_SENSORS -> dao.getNextNUnsyncedBeforeForSensors(
+                pageSize, cutoffTimestamp, SyncPriorityClass.BULK_SENSOR_NAMES
+            )
+            SyncPriorityClass.DIAGNOSTIC_LOGS -> dao.getNextNUnsyncedBeforeForSensors(
+                pageSize, cutoffTimestamp, SyncPriorityClass.DIAGNOSTIC_SENSOR_NAMES
+            )
+            SyncPriorityClass.QUESTIONNAIRE_ANSWERS -> emptyList()
+        }
+    }
+
+    override suspend fun uploadNext(maxBytes: Long): SyncBatchResult {
+        val pageSize = batchController.pageSize
+        val page = nextPage(pageSize)
+        if (page.isEmpty()) {
+            return SyncBatchResult.EMPTY
+        }
+
+        val data = fitToBudget(page, maxBytes)
+
+        // rows written before the wire column existed are encoded here
+        val fragments = data.mapNotNull { logData ->
+            logData.wireJson ?: SensorReadingWireFormat.encode(
+                logData.sensorName,
+                logData.timestamp,
+                logData.data,
+                logData.localId
+            )
+        }
+        if (fragments.size < data.size) {
+            WHALELog.w(TAG, "Dropping ${data.size - fragments.size} incomplete reading(s) without sensor name, data or id")
+        }
+
+        val uploadResult = ChunkedUploadHelper.uploadPreEncoded(
+            fragments = fragments,
+            maxBatchSize = pageSize,
+            safeThresholdBytes = batchController.chunkBytes,
+            client = client,
+            url = ApiResources.sensorReadingsBatched(),
+            headers = headers,
+            observer = batchController
+        )
+
+        WHALELog.i(TAG, "[$priorityClass] Uploaded ${uploadResult.totalItems} items in ${uploadResult.chunksUploaded} chunk(s), " +
+                "total size: ${uploadResult.totalBytesUploaded} bytes, fast path: ${uploadResult.usedFastPath}")
+
+        // Log if any items were dropped as unuploadable
+        if (uploadResult.errors.isNotEmpty()) {
+            val droppedCount = uploadResult.errors.size
+            val successfulCount = data.size - droppedCount
+
+            WHALELog.w(TAG, "Upload completed with $droppedCount dropped item(s) out of ${data.size} total ($successfulCount successful)")
+
+            uploadResult.errors.forEach { error ->
+                WHALELog.e(TAG, "Dropped item: $error")
+            }
+        }
+
+        database.logDataDao().deleteLogData(*data.toTypedArray<LogData>())
+
+        return SyncBatchResult(data.size, uploadResult.totalBytesUploaded)
+    }
+
+    /** Trims the page so its estimated payload size stays within [maxBytes], keeping at least one row. */
+    private fun fitToBudget(page: List<LogData>, maxBytes: Long): List<LogData> {
+        var estimatedBytes = 0L
+        var count = 0
+        for (logData in page) {
+            estimatedBytes += estimatedSize(logData)
+            if (count > 0 && estimatedBytes > maxBytes) break
+            count++
+        }
+        return page.take(count)
+    }
+
+    private fun estimatedSize(logData: LogData): Long {
+        logData.wireJson?.let { return it.length.toLong() }
+        // payload plus the JSON framing of the other fields
+        return (logData.data?.length ?: 0).toLong() + READING_OVERHEAD_BYTES
+    }
+
+    companion object {
+        private const val READING_OVERHEAD_BYTES = 100L
+    }
+}
+
+/**
+ * Uploads readings of the [TypedSensor]s of one priority class, oldest first.
+ * Rows are encoded into the same wire format as LogData rows, and deleted once uploaded.
+ */
+class TypedReadingSyncStream(
+    override val priorityClass: SyncPriorityClass,
+    private val database: AppDatabase,
+    private val client: ApiClient,
+    private val headers: Map<String, String>,
+    private val cutoffTimestamp: Long,
+    private val batchController: AimdBatchController
+) : SyncStream {
+    private val TAG = "TypedReadingSyncStream"
+
+    private val typedSensors = TypedSensor.entries
+        .filter { SyncPriorityClass.forSensorName(it.sensorName) == priorityClass }
+    private val sensors = typedSensors.map { it.code }
+
+    // the shared instance is not thread-safe
+    private val numberFormat = CONST.numberFormat.clone() as NumberFormat
+
+    private val ids: TypedReadingIds by lazy {
+        val seed = getOrCreateGeneratedKey(TypedReadingIds.SEED_KEY_NAME, database)
+            ?: throw IllegalStateException("Could not create the typed reading id seed")
+        TypedReadingIds(seed)
+    }
+
+    private class EncodedReading(val ref: TypedReadingRef, val fragment: String)
+
+    override suspend fun backlog(): UnsyncedBacklog {
+        if (sensors.isEmpty()) return UnsyncedBacklog(0, 0)
+        return database.typedReadings().getBacklogBefore(cutoffTimestamp, typedSensors)
+    }
+
+    /** The oldest readings of both tables, merged by timestamp. */
+    private fun nextPage(pageSize: Int): List<EncodedReading> {
+        val dao = database.typedReadingDao()
+        val vector3 = dao.getNextVector3(pageSize, cutoffTimestamp, sensors).mapNotNull { reading ->
+            val sensor = TypedSensor.forCode(reading.sensor) ?: return@mapNotNull null
+            encode(sensor, ReadingFamily.VECTOR3, reading.id, reading.timestamp, sensor.format(reading, numberFormat))
+        }
+        val scalar = dao.getNextScalar(pageSize, cutoffTimestamp, sensors).mapNotNull { reading ->
+            val sensor = TypedSensor.forCode(reading.sensor) ?: return@mapNotNull null
+            encode(sensor, ReadingFamily.SCALAR, reading.id, reading.timestamp, sensor.format(reading, numberFormat))
+        }
+        return (vector3 + scalar).sortedBy { it.ref.timestamp }.take(pageSize)
+    }
+
+    private fun encode(sensor: TypedSensor, family: ReadingFamily, id: Long, timestamp: Long, data: String): EncodedReading {
+        val localId = ids.localId(family, id)
+        val fragment = SensorReadingWireFormat.encode(sensor.sensorName, timestamp, data, localId)!!
+        return EncodedReading(TypedReadingRef(family, id, sensor.code, timestamp), fragment)
+    }
+
+    override suspend fun uploadNext(maxBytes: Long): SyncBatchResult {
+        if (sensors.isEmpty()) return SyncBatchResult.EMPTY
+
+        val pageSize = batchController.pageSize
+        val page = nextPage(pageSize)
+        if (page.isEmpty()) {
+            return SyncBatchResult.EMPTY
+        }
+
+        var estimatedBytes = 0L
+        val data = page.takeWhile { reading ->
+            estimatedBytes += reading.fragment.length
+            estimatedBytes <= maxBytes
+        }.ifEmpty { page.take(1) }
+
+        val uploadResult = ChunkedUploadHelper.uploadPreEncoded(
+            fragments = data.map { it.fragment },
+            maxBatchSize = pageSize,
+            safeThresholdBytes = batchController.chunkBytes,
+            client = client,
+            url = ApiResources.sensorReadingsBatched(),
+            headers = headers,
+            observer = batchController
+        )
+
+        WHALELog.i(TAG, "[$priorityClass] Uploaded ${uploadResult.totalItems} typed readings in ${uploadResult.chunksUploaded} chunk(s), " +
+                "total size: ${uploadResult.totalBytesUploaded} bytes")
+        uploadResult.errors.forEach { error ->
+            WHALELog.e(TAG, "Dropped item: $error")
+        }
+
+        database.typedReadings().delete(data.map { it.ref })
+
+        return SyncBatchResult(data.size, uploadResult.totalBytesUploaded)
+    }
+}
+
+/**
+ * Position of the last uploaded questionnaire answer. Answers can share an update timestamp, so the uid
+ * orders answers of the same timestamp. A watermark without uid covers all answers of its timestamp.
+ */
+data class QuestionnaireSyncWatermark(val updatedAt: Long, val uid: String?) {
+    // uids are compared as blobs, no uid sorts after this one
+    val uidOrLast: UUID get() = uid?.let { UUID.fromString(it) } ?: UUID(-1L, -1L)
+}
+
+/**
+ * Uploads questionnaire answers that were completed since the last scheduler run.
+ * The progress is kept as a watermark on the pending questionnaire's update timestamp and uid.
+ */
+class QuestionnaireSyncStream(
+    private val database: AppDatabase,
+    private val dataStoreManager: DataStoreManager,
+    private val client: ApiClient,
+    private val studyId: Int,
+    private val token: String
+) : SyncStream {
+    private val TAG = "QuestionnaireSyncStream"
+
+    override val priorityClass = SyncPriorityClass.QUESTIONNAIRE_ANSWERS
+
+    override suspend fun backlog(): UnsyncedBacklog {
+        val watermark = dataStoreManager.questionnaireSyncWatermarkFlow.first()
+        return database.pendingQuestionnaireDao().getCompletedBacklogAfter(watermark.updatedAt, watermark.uidOrLast)
+    }
+
+    override suspend fun uploadNext(maxBytes: Long): SyncBatchResult {
+        val watermark = dataStoreManager.questionnaireSyncWatermarkFlow.first()
+        val pendingQuestionnaires = database.pendingQuestionnaireDao()
+            .getNextNCompletedAfter(PAGE_SIZE, watermark.updatedAt, watermark.uidOrLast)
+        if (pendingQuestionnaires.isEmpty()) {
+            return SyncBatchResult.EMPTY
+        }
+
+        var rows = 0
+        var bytes = 0L
+        for (pendingQuestionnaire in pendingQuestionnaires) {
+            val answers = pendingQuestionnaire.elementValuesJson ?: "[]"
+            val questionnaire = pendingQuestionnaire.questionnaire(database)
+            val notificationTrigger = pendingQuestionnaire.notificationTriggerUid?.let {
+                database.notificationTriggerDao().getById(it)
+            }
+
+            uploadQuestionnaireAnswer(
+                client,
+                answers,
+                questionnaire.questionnaire.id,
+                studyId,
+                token,
+                pendingQuestionnaire,
+                notificationTrigger
+            )
+
+            rows++
+            bytes += answers.length
+
+            if (bytes >= maxBytes) {
+                break
+            }
+        }
+
+        val lastUploaded = pendingQuestionnaires[rows - 1]
+        dataStoreManager.saveQuestionnaireSyncWatermark(
+            QuestionnaireSyncWatermark(lastUploaded.updatedAt, lastUploaded.uid.toString())
+        )
+        WHALELog.i(TAG, "Uploaded $rows questionnaire answer(s) up to ${lastUploaded.updatedAt}")
+
+        return SyncBatchResult(rows, bytes)
+    }
+
+    companion object {
+        private const val PAGE_SIZE = 20
+    }
+}
@@ -0,0 +1,160 @@
+package de.mimuc.senseeverything.workers.tiering
+
+import kotlinx.serialization.Serializable
+import java.text.NumberFormat
+import java.text.ParsePosition
+import java.util.Locale
+
+/**
+ * Summary of the readings of one sensor within [start] and [end].
+ * [count] readings contributed to the values, [invalid] readings could not be parsed,
+ * [reliable] counts readings flagged as reliable, if the sensor reports that flag.
+ */
+@Serializable
+data class ReadingAggregate(
+    val tier: String,
+    val start: Long,
+    val end: Long,
+    val count: Int,
+    val invalid: Int = 0,
+    val reliable: Int? = null,
+    val mean: List<Double> = emptyList(),
+    val min: List<Double> = emptyList(),
+    val max: List<Double> = emptyList()
+)
+
+data class ParsedReading(
+    val values: DoubleArray,
+    val flag: Boolean?
+)
+
+/**
+ * Parses readings written with `CONST.numberFormat`, e.g. `0,12,9,81,-0,5,true` with a German locale.
+ *
+ * Numbers are parsed with a format configured like the writer's, so grouping separators are never accepted.
+ * Since the separator may also be the decimal separator, a trailing flag is split off before parsing and a
+ * separator that ends a number belongs to the next field. An integral value directly followed by another
+ * value can still be read as a single number; lines that do not yield the expected number of values are rejected.
+ */
+class NumericReadingParser(locale: Locale = Locale.getDefault(Locale.Category.FORMAT)) {
+    private val format = readingFormat(locale)
+
+    fun parse(line: String, fieldCount: Int): ParsedReading? {
+        val flag = when {
+            line.endsWith(",true") -> true
+            line.endsWith(",false") -> false
+            else -> null
+        }
+        val numbers = if (flag == null) line else line.substringBeforeLast(SEPARATOR)
+
+        val values = DoubleArray(fieldCount)
+        var index = 0
+        for (field in 0 until fieldCount) {
+            if (field > 0) {
+                if (index >= numbers.length || numbers[index] != SEPARATOR) return null
+                index++
+            }
+            val position = ParsePosition(index)
+            val number = format.parse(numbers, position) ?: return null
+            values[field] = number.toDouble()
+            // in "0,-1" the format takes "0," as a number with a decimal separator, the separator is given back
+            index = if (numbers[position.index - 1] == SEPARATOR) position.index - 1 else position.index
+        }
+
+        if (index != numbers.length) return null
+        return ParsedReading(values, flag)
+    }
+
+    companion object {
+        private const val SEPARATOR = ','
+
+        /** A format configured like `CONST.numberFormat`, which writes the readings. */
+        fun readingFormat(locale: Locale): NumberFormat {
+            return NumberFormat.getInstance(locale).apply {
+                maximumFractionDigits = Int.MAX_VALUE
+                isGroupingUsed = false
+            }
+        }
+    }
+}
+
+/**
+ * Rolls numeric readings up into fixed time buckets. Aggregates of one bucket can be merged again,
+ * so a bucket that is split across several pages of readings yields several mergeable aggregates.
+ */
+class ReadingAggregator(
+    private val fieldCount: Int,
+    private val parser: NumericReadingParser = NumericReadingParser()
+) {
+    fun aggregateRaw(readings: List<Pair<Long, String?>>, tier: String, bucketMillis: Long): List<ReadingAggregate> {
+        return aggregateParsed(readings.map { (timestamp, data) -> timestamp to data?.let { parser.parse(it, fieldCount) } }, tier, bucketMillis)
+    }
+
+    /** Like [aggregateRaw] for readings that are already parsed, e.g. from typed tables; null readings count as invalid. */
+    fun aggregateParsed(readings: List<Pair<Long, ParsedReading?>>, tier: String, bucketMillis: Long): List<ReadingAggregate> {
+        return readings
+            .groupBy { Math.floorDiv(it.first, bucketMillis) }
+            .toSortedMap()
+            .map { (_, bucket) ->
+                val sum = DoubleArray(fieldCount)
+                val min = DoubleArray(fieldCount) { Double.POSITIVE_INFINITY }
+                val max = DoubleArray(fieldCount) { Double.NEGATIVE_INFINITY }
+                var count = 0
+                var invalid = 0
+                var reliable: Int? = null
+
+                for ((_, reading) in bucket) {
+                    if (reading == null) {
+                        invalid++
+                        continue
+                    }
+                    count++
+                    if (reading.flag != null) {
+                        reliable = (reliable ?: 0) + if (reading.flag) 1 else 0
+                    }
+                    for (field in 0 until fieldCount) {
+                        sum[field] += reading.values[field]
+                        min[field] = minOf(min[field], reading.values[field])
+                        max[field] = maxOf(max[field], reading.values[field])
+                    }
+                }
+
+                ReadingAggregate(
+                    tier = tier,
+                    start = bucket.minOf { it.first },
+                    end = bucket.maxOf { it.first },
+                    count = count,
+                    invalid = invalid,
+                    reliable = reliable,
+                    mean = if (count > 0) sum.map { it / count } else emptyList(),
+                    min = if (count > 0) min.toList() else emptyList(),
+                    max = if (count > 0) max.toList() else emptyList()
+                )
+            }
+    }
+
+    fun mergeAggregates(aggregates: List<ReadingAggregate>, tier: String, bucketMillis: Long): List<ReadingAggregate> {
+        return aggregates
+            .groupBy { Math.floorDiv(it.start, bucketMillis) }
+            .toSortedMap()
+            .map { (_, bucket) ->
+                val withValues = bucket.filter { it.count > 0 && it.mean.size == fieldCount }
+                val count = withValues.sumOf { it.count }
+                val reliableCounts = bucket.mapNotNull { it.reliable }
+
+                ReadingAggregate(
+                    tier = tier,
+                    start = bucket.minOf { it.start },
+                    end = bucket.maxOf { it.end },
+                    count = count,
+                    invalid = bucket.sumOf { it.invalid } + (bucket.sumOf { it.count } - count),
+                    reliable = if (reliableCounts.isEmpty()) null else reliableCounts.sum(),
+                    mean = if (count > 0) {
+                        (0 until fieldCount).map { field -> withValues.sumOf { it.mean[field] * it.count } / count }
+                    } else emptyList(),
+                    min = if (count > 0) (0 until fieldCount).map { field -> withValues.minOf { it.min[field] } } else emptyList(),
+                    max = if (count > 0) (0 until fieldCount).map { field -> withValues.maxOf { it.max[field] } } else emptyList()
+                )
+            }
+    }
+}
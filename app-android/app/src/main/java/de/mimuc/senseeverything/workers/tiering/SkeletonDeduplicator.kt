@@ -0,0 +1,77 @@
+package de.mimuc.senseeverything.workers.tiering
+
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonArray
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.JsonPrimitive
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.jsonPrimitive
+import java.io.ByteArrayOutputStream
+import java.util.Base64
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Shrinks UITree batches (Base64-encoded gzip JSON, see `UITreeSensor`) by keeping each skeleton only once.
+ *
+ * The first snapshot with a skeleton signature keeps the full skeleton, later snapshots with the same
+ * signature get `{"signature": ..., "ref": true}` instead. Batches must be passed in upload order,
+ * so a reference always points to a skeleton that was uploaded before. Changed batches are marked with
+ * `"skeletonRefs": true`.
+ */
+class SkeletonDeduplicator {
+    private val seenSignatures = HashSet<String>()
+
+    var replacedSkeletons = 0
+        private set
+
+    /**
+     * @return the re-encoded batch, or null if the payload is not a UITree batch or nothing was replaced
+     */
+    fun deduplicate(payload: String): String? {
+        val batch = try {
+            Json.parseToJsonElement(decode(payload)).jsonObject
+        } catch (e: Exception) {
+            return null
+        }
+        val snapshots = batch["snapshots"] as? JsonArray ?: return null
+
+        var replaced = 0
+        val deduplicated = snapshots.map { element ->
+            val snapshot = element as? JsonObject ?: return@map element
+            val skeleton = snapshot["skeleton"] as? JsonObject ?: return@map element
+            if (skeleton["ref"] != null) return@map element
+            val signature = skeleton["signature"]?.jsonPrimitive?.content ?: return@map element
+
+            if (seenSignatures.add(signature)) {
+                element
+            } else {
+                replaced++
+                JsonObject(snapshot + ("skeleton" to JsonObject(mapOf(
+                    "signature" to JsonPrimitive(signature),
+                    "ref" to JsonPrimitive(true)
+                ))))
+            }
+        }
+
+        if (replaced == 0) return null
+        replacedSkeletons += replaced
+
+        val result = JsonObject(batch + mapOf(
+            "snapshots" to JsonArray(deduplicated),
+            "skeletonRefs" to JsonPrimitive(true)
+        ))
+        return encode(result.toString())
+    }
+
+    private fun decode(payload: String): String {
+        val compressed = Base64.getDecoder().decode(payload)
+        return GZIPInputStream(compressed.inputStream()).use { it.readBytes().decodeToString() }
+    }
+
+    private fun encode(json: String): String {
+        val output = ByteArrayOutputStream()
+        GZIPOutputStream(output).use { it.write(json.toByteArray(Charsets.UTF_8)) }
+        return Base64.getEncoder().encodeToString(output.toByteArray())
+    }
+}
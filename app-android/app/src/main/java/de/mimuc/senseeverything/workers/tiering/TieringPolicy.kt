@@ -0,0 +1,65 @@
+package de.mimuc.senseeverything.workers.tiering
+
+import de.mimuc.senseeverything.db.models.TypedSensor
+import kotlinx.serialization.Serializable
+import kotlin.time.Duration.Companion.days
+import kotlin.time.Duration.Companion.minutes
+
+enum class TieringKind {
+    /** Comma-separated numeric readings, rolled up into per-minute and then per-10-minute aggregates. */
+    NUMERIC,
+
+    /** UITree batches, repeated skeletons are replaced by references to their signature. */
+    SKELETON_REFERENCES
+}
+
+/**
+ * How long unsynced readings of a sensor are kept at each level of detail.
+ *
+ * Raw readings older than [rawRetentionMillis] are rolled up into [ReadingTiers.MINUTE] aggregates,
+ * which are rolled up into [ReadingTiers.TEN_MINUTES] aggregates after [minuteRetentionMillis].
+ * Raw readings of a [typedSensor] are read from its typed table as well as from LogData, which holds
+ * the readings stored before the typed tables existed. Aggregates are always stored as LogData.
+ */
+data class TieringPolicy(
+    val sensorName: String,
+    val kind: TieringKind,
+    val fieldCount: Int = 0,
+    val rawRetentionMillis: Long = 2.days.inWholeMilliseconds,
+    val minuteRetentionMillis: Long = 7.days.inWholeMilliseconds
+) {
+    val typedSensor: TypedSensor?
+        get() = TypedSensor.forSensorName(sensorName)
+
+    companion object {
+        val DEFAULT_POLICIES = listOf(
+            TieringPolicy("Accelerometer", TieringKind.NUMERIC, fieldCount = 3),
+            TieringPolicy("Gyroscope", TieringKind.NUMERIC, fieldCount = 3),
+            TieringPolicy("Orientation Sensor", TieringKind.NUMERIC, fieldCount = 3),
+            TieringPolicy("Light Sensor", TieringKind.NUMERIC, fieldCount = 1, minuteRetentionMillis = 14.days.inWholeMilliseconds),
+            TieringPolicy("Audio Level", TieringKind.NUMERIC, fieldCount = 1),
+            TieringPolicy("UITree", TieringKind.SKELETON_REFERENCES)
+        )
+    }
+}
+
+/**
+ * Position of the last reading that was tiered. Readings share timestamps, so the id orders readings of the same timestamp.
+ */
+@Serializable
+data class TieringWatermark(val timestamp: Long, val id: Int) {
+    companion object {
+        val START = TieringWatermark(Long.MIN_VALUE, 0)
+    }
+}
+
+object ReadingTiers {
+    const val MINUTE = "1min"
+    const val TEN_MINUTES = "10min"
+
+    val MINUTE_MILLIS = 1.minutes.inWholeMilliseconds
+    val TEN_MINUTES_MILLIS = 10.minutes.inWholeMilliseconds
+
+    /** Aggregates are stored under their own sensor name, e.g. "Accelerometer 1min". */
+    fun sensorName(sensorName: String, tier: String): String = "$sensorName $tier"
+}
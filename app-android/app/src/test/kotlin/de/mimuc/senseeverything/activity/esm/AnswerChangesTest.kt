@@ -0,0 +1,35 @@
+package de.mimuc.senseeverything.activity.esm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class AnswerChangesTest {
+    @Test
+    fun testOnlyLatestEditIsDrained() {
+        var encodes = 0
+        val changes = AnswerChanges<String> { encodes++; it }
+
+        for (text in listOf("h", "he", "hel", "hello")) {
+            changes.record(1, text)
+        }
+        changes.record(2, "0.5")
+
+        assertEquals(mapOf(1 to "hello", 2 to "0.5"), changes.drain())
+        assertEquals(2, encodes)
+        assertEquals(emptyMap<Int, String>(), changes.drain())
+    }
+
+    @Test
+    fun testUnchangedValuesAreSkipped() {
+        val changes = AnswerChanges<String> { it }
+        changes.record(1, "0.5")
+        changes.drain()
+
+        // slider dragged away and back before the edit was written
+        changes.record(1, "0.7")
+        changes.record(1, "0.5")
+        changes.record(2, "yes")
+
+        assertEquals(mapOf(2 to "yes"), changes.drain())
+    }
+}
@@ -0,0 +1,70 @@
+package de.mimuc.senseeverything.api
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class AimdBatchControllerTest {
+    @Test
+    fun testFastRequestsIncreaseAdditively() {
+        val controller = AimdBatchController(BatchSizingState(200, 256 * 1024))
+
+        controller.onRequestCompleted(100_000, 200)
+        controller.onRequestCompleted(100_000, 200)
+
+        assertEquals(200 + 2 * AimdBatchController.PAGE_SIZE_STEP, controller.pageSize)
+        assertEquals(256 * 1024 + 2 * AimdBatchController.CHUNK_BYTES_STEP, controller.chunkBytes)
+    }
+
+    @Test
+    fun testSlowRequestHalvesSizes() {
+        val controller = AimdBatchController(BatchSizingState(400, 512 * 1024), targetLatencyMillis = 1000)
+
+        controller.onRequestCompleted(100_000, 3000)
+
+        assertEquals(200, controller.pageSize)
+        assertEquals(256 * 1024, controller.chunkBytes)
+    }
+
+    @Test
+    fun testFailureHalvesSizesDownToMinimum() {
+        val controller = AimdBatchController(BatchSizingState(40, 100 * 1024))
+
+        repeat(5) { controller.onRequestFailed(RuntimeException("timeout"), 100_000, 2500) }
+
+        assertEquals(AimdBatchController.MIN_PAGE_SIZE, controller.pageSize)
+        assertEquals(AimdBatchController.MIN_CHUNK_BYTES, controller.chunkBytes)
+    }
+
+    @Test
+    fun testThroughputCollapseBacksOff() {
+        val controller = AimdBatchController(BatchSizingState(400, 512 * 1024, throughputBytesPerSecond = 2_000_000))
+
+        // fast enough for the latency target, but a fraction of the usual throughput
+        controller.onRequestCompleted(300_000, 1000)
+
+        assertEquals(200, controller.pageSize)
+        assertTrue(controller.throughputBytesPerSecond < 2_000_000)
+    }
+
+    @Test
+    fun testShortTailRequestDoesNotBackOff() {
+        val controller = AimdBatchController(BatchSizingState(400, 512 * 1024, throughputBytesPerSecond = 2_000_000))
+
+        // last request of a stream, its round trip dominates the throughput
+        controller.onRequestCompleted(2_000, 100)
+
+        assertEquals(400 + AimdBatchController.PAGE_SIZE_STEP, controller.pageSize)
+        assertEquals(2_000_000L, controller.throughputBytesPerSecond)
+    }
+
+    @Test
+    fun testSizesStayWithinServerLimits() {
+        val controller = AimdBatchController(BatchSizingState(1990, 890_000))
+
+        repeat(10) { controller.onRequestCompleted(100_000, 100) }
+
+        assertEquals(AimdBatchController.MAX_PAGE_SIZE, controller.pageSize)
+        assertEquals(ChunkedUploadHelper.DEFAULT_SAFE_THRESHOLD, controller.chunkBytes)
+    }
+}
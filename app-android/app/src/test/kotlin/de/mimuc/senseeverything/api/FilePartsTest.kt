@@ -0,0 +1,49 @@
+package de.mimuc.senseeverything.api
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class FilePartsTest {
+    @TempDir
+    lateinit var tempDir: File
+
+    private fun sampleFile(size: Int): File {
+        val file = File(tempDir, "sample.webm")
+        file.writeBytes(ByteArray(size) { (it % 251).toByte() })
+        return file
+    }
+
+    @Test
+    fun testPartsReassembleFile() {
+        val file = sampleFile(2500)
+
+        val parts = generateSequence(0L) { it + 1000 }
+            .takeWhile { it < file.length() }
+            .map { FileParts.readPart(file, it, 1000) }
+            .toList()
+
+        assertEquals(listOf(1000, 1000, 500), parts.map { it.size })
+        assertArrayEquals(file.readBytes(), parts.reduce { acc, part -> acc + part })
+    }
+
+    @Test
+    fun testReadAtEndOfFileIsEmpty() {
+        val file = sampleFile(100)
+
+        assertEquals(0, FileParts.readPart(file, 100, 1000).size)
+    }
+
+    @Test
+    fun testFileChecksumMatchesBytes() {
+        val file = sampleFile(200_000)
+
+        assertEquals(FileParts.sha256Hex(file.readBytes()), FileParts.sha256Hex(file))
+        assertEquals(
+            "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+            FileParts.sha256Hex(ByteArray(0))
+        )
+    }
+}
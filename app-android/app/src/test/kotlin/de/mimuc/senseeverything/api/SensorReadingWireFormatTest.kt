@@ -0,0 +1,52 @@
+package de.mimuc.senseeverything.api
+
+import de.mimuc.senseeverything.workers.SensorReading
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class SensorReadingWireFormatTest {
+    private val readings = listOf(
+        SensorReading("Screen On/Off", 1000, "ON", "a"),
+        SensorReading("Notification", 2000, "{\"title\":\"Grüße \\\"quoted\\\" 🎉\"}", "b"),
+        SensorReading("App", 3000, "", "c")
+    )
+
+    @Test
+    fun testJoinedFragmentsMatchBatchSerialization() {
+        val fragments = readings.map {
+            SensorReadingWireFormat.encode(it.sensorType, it.timestamp, it.data, it.localId)!!
+        }
+
+        val expected = Json.encodeToString(readings)
+        assertEquals(expected, SensorReadingWireFormat.joinArray(fragments))
+        assertEquals(
+            expected.toByteArray(Charsets.UTF_8).size,
+            SensorReadingWireFormat.arraySize(fragments.map { SensorReadingWireFormat.utf8Length(it) })
+        )
+    }
+
+    @Test
+    fun testIncompleteRowsAreNotEncoded() {
+        assertNull(SensorReadingWireFormat.encode(null, 1000, "data", "id"))
+        assertNull(SensorReadingWireFormat.encode("App", 1000, null, "id"))
+    }
+
+    @Test
+    fun testChunksRespectItemAndByteLimits() {
+        // arrays of 10-byte items: 2 + 10n + (n - 1) bytes
+        val sizes = List(10) { 10 }
+
+        assertEquals(listOf(0..3, 4..7, 8..9), SensorReadingWireFormat.planChunks(sizes, 4, 1000))
+        assertEquals(listOf(0..2, 3..5, 6..8, 9..9), SensorReadingWireFormat.planChunks(sizes, 100, 40))
+    }
+
+    @Test
+    fun testOversizedItemFormsOwnChunk() {
+        val sizes = listOf(10, 500, 10)
+
+        assertEquals(listOf(0..0, 1..1, 2..2), SensorReadingWireFormat.planChunks(sizes, 100, 100))
+    }
+}
@@ -0,0 +1,87 @@
+package de.mimuc.senseeverything.api.model
+
+import de.mimuc.senseeverything.api.model.ema.QuestionnaireElementType
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class ElementValueSerializerTest {
+    @Serializable
+    private data class AnswerPayload(
+        val answers: List<@Serializable(with = ElementValueSerializer::class) ElementValue>
+    )
+
+    @Test
+    fun testWritesWireShape() {
+        assertEquals(
+            """{"elementId":1,"elementName":"mood","value":"2","valueJson":{"value":2},"elementType":"radio_group"}""",
+            RadioGroupValue(1, "mood", 2).encode()
+        )
+        assertEquals(
+            """{"elementId":2,"elementName":"when","value":"08:05","valueJson":{"hour":8,"minute":5},"elementType":"time_input"}""",
+            TimeInputValue(2, "when", 8 to 5).encode()
+        )
+        assertEquals(
+            """{"elementId":3,"elementName":"info","value":"","valueJson":{},"elementType":"text_view"}""",
+            ElementValue(3, "info", QuestionnaireElementType.TEXT_VIEW).encode()
+        )
+    }
+
+    @Test
+    fun testRatingsWriteOnlyValueJson() {
+        val rating = SocialNetworkRatingValue(4, "closeness", mapOf(17 to mapOf(5 to SliderValue(5, "close", 0.5))))
+
+        assertEquals(
+            """{"elementId":4,"elementName":"closeness","value":"17:close:0.5","valueJson":{"ratings":{"17":{"5":{"value":0.5}}}},"elementType":"social_network_rating"}""",
+            rating.encode()
+        )
+    }
+
+    @Test
+    fun testValueMapRoundTrip() {
+        val values = listOf(
+            RadioGroupValue(1, "a", 3),
+            CheckboxGroupValue(2, "b", listOf("x", "y")),
+            SliderValue(3, "c", 0.25),
+            TextEntryValue(4, "d", "line \"one\"\nline two"),
+            QuantityEntryValue(5, "e", "12"),
+            SocialNetworkEntryValue(6, "f", listOf(1L, 20_000_000_000L)),
+            CircumplexValue(7, "g", 0.5 to -0.5),
+            ButtonGroupValue(8, "h", "yes"),
+            TimeInputValue(9, "i", 23 to 59)
+        ).associateBy { it.elementId }
+
+        val decoded = ElementValue.decodeValueMap(ElementValue.encodeValueMap(values))
+
+        assertEquals(values.keys, decoded.keys)
+        for ((elementId, value) in values) {
+            val other = decoded.getValue(elementId)
+            assertEquals(value.javaClass, other.javaClass)
+            assertEquals(value.elementName, other.elementName)
+            assertEquals(value.getSerializedValue(), other.getSerializedValue())
+        }
+    }
+
+    @Test
+    fun testReadsSelectedButton() {
+        val value = ElementValue.decode(
+            """{"elementId":8,"elementName":"h","value":"no","valueJson":{"selectedButton":"no"},"elementType":"button_group"}"""
+        )
+
+        assertEquals("no", (value as ButtonGroupValue).value)
+    }
+
+    @Test
+    fun testDecodedAnswersEncodeLikeStoredArray() {
+        val stored = ElementValue.encodeValueMap(
+            listOf(RadioGroupValue(1, "a", 3), TextEntryValue(2, "b", "text")).associateBy { it.elementId }
+        )
+
+        assertEquals(
+            """{"answers":$stored}""",
+            Json.encodeToString(AnswerPayload(ElementValue.decodeList(stored)))
+        )
+    }
+}
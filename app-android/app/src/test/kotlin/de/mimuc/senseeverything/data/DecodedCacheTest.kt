@@ -0,0 +1,20 @@
+package de.mimuc.senseeverything.data
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+
+class DecodedCacheTest {
+    @Test
+    fun testDecodesOnlyWhenContentChanges() {
+        var decodes = 0
+        val cache = DecodedCache { encoded -> decodes++; encoded.split(",") }
+
+        val first = cache.get("a,b")
+        assertSame(first, cache.get(StringBuilder("a,").append("b").toString()))
+        assertEquals(1, decodes)
+
+        assertEquals(listOf("c"), cache.get("c"))
+        assertEquals(2, decodes)
+    }
+}
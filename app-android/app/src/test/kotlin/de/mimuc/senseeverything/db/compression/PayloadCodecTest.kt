@@ -0,0 +1,45 @@
+package de.mimuc.senseeverything.db.compression
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class PayloadCodecTest {
+    private fun notification(index: Int): String {
+        return "{\"packageName\":\"com.whatsapp\",\"category\":\"msg\",\"channelId\":\"individual_chat_defaults_$index\"," +
+                "\"postTime\":${1792454399999L + index},\"isOngoing\":false,\"isClearable\":true,\"priority\":1," +
+                "\"actions\":[\"Reply\",\"Mark as read\",\"Mute\"],\"hasLargeIcon\":true,\"group\":\"group_key_messages\"}"
+    }
+
+    @Test
+    fun testRoundTrip() {
+        val dictionary = PayloadDictionaryTrainer.train((0 until 50).map { notification(it) })
+        val payload = notification(100) + " Ünïcödé"
+
+        val compressed = PayloadCodec.compress(payload, dictionary)
+
+        assertEquals(payload, PayloadCodec.decompress(compressed, dictionary))
+    }
+
+    @Test
+    fun testDictionaryImprovesSmallPayloads() {
+        val dictionary = PayloadDictionaryTrainer.train((0 until 50).map { notification(it) })
+        val payload = notification(100)
+
+        val withDictionary = PayloadCodec.compress(payload, dictionary)
+        val withoutDictionary = PayloadCodec.compress(payload, ByteArray(0))
+
+        assertTrue(withDictionary.size < withoutDictionary.size / 2, "${withDictionary.size} vs ${withoutDictionary.size}")
+    }
+
+    @Test
+    fun testTrainerRespectsSizeLimitAndSkipsUniqueSegments() {
+        val samples = (0 until 50).map { notification(it) }
+
+        val dictionary = PayloadDictionaryTrainer.train(samples, maxBytes = 64).decodeToString()
+
+        assertTrue(dictionary.length <= 64)
+        assertTrue("individual_chat_defaults_7" !in dictionary)
+        assertEquals("", PayloadDictionaryTrainer.train(listOf(notification(1))).decodeToString())
+    }
+}
@@ -0,0 +1,38 @@
+package de.mimuc.senseeverything.db.models
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class LogDataPartitionsTest {
+    // 2026-10-19T23:59:59.999Z
+    private val lastMilliOfDay = 1792454399999L
+
+    @Test
+    fun testTimestampsAreBucketedByUtcDay() {
+        val day = LogDataPartitions.dayOf(lastMilliOfDay)
+
+        assertEquals("logdata_20261019", LogDataPartitions.tableName(day))
+        assertEquals(day + 1, LogDataPartitions.dayOf(lastMilliOfDay + 1))
+        assertEquals(lastMilliOfDay + 1, LogDataPartitions.startOf(day + 1))
+    }
+
+    @Test
+    fun testTableNamesRoundTrip() {
+        val day = LogDataPartitions.dayOf(lastMilliOfDay)
+
+        assertEquals(day, LogDataPartitions.dayOfTable(LogDataPartitions.tableName(day)))
+        assertNull(LogDataPartitions.dayOfTable("LogData"))
+        assertNull(LogDataPartitions.dayOfTable("logdata_backup"))
+    }
+
+    @Test
+    fun testOnlyPastDaysAreClosed() {
+        val day = LogDataPartitions.dayOf(lastMilliOfDay)
+
+        assertFalse(LogDataPartitions.isClosed(day, lastMilliOfDay))
+        assertTrue(LogDataPartitions.isClosed(day, lastMilliOfDay + 1))
+    }
+}
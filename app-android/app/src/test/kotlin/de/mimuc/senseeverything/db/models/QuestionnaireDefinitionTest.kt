@@ -0,0 +1,35 @@
+package de.mimuc.senseeverything.db.models
+
+import de.mimuc.senseeverything.api.model.ema.FullQuestionnaire
+import de.mimuc.senseeverything.api.model.ema.Questionnaire
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+
+class QuestionnaireDefinitionTest {
+    private fun questionnaire(version: Int) = FullQuestionnaire(
+        Questionnaire("Daily", 3, version, 1, true, null),
+        emptyList(),
+        emptyList()
+    )
+
+    @Test
+    fun testHashAddressesContent() {
+        val first = QuestionnaireDefinition.of(questionnaire(1))
+
+        assertEquals(first.hash, QuestionnaireDefinition.of(questionnaire(1)).hash)
+        assertNotEquals(first.hash, QuestionnaireDefinition.of(questionnaire(2)).hash)
+        assertEquals(3, first.questionnaireId)
+        assertEquals(1, first.version)
+    }
+
+    @Test
+    fun testInlineJsonIsDecodedOnce() {
+        val json = QuestionnaireDefinition.of(questionnaire(4)).json
+
+        val decoded = QuestionnaireDefinitions.getInline(json)
+        assertEquals(questionnaire(4), decoded)
+        assertSame(decoded, QuestionnaireDefinitions.getInline(String(json.toCharArray())))
+    }
+}
@@ -0,0 +1,54 @@
+package de.mimuc.senseeverything.db.models
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.util.UUID
+
+class TriggerTimelineTest {
+    private fun trigger(name: String, validFrom: Long, status: NotificationTriggerStatus = NotificationTriggerStatus.Planned) = NotificationTrigger(
+        uid = UUID.randomUUID(),
+        addedAt = 0,
+        name = name,
+        status = status,
+        validFrom = validFrom,
+        priority = NotificationTriggerPriority.Default,
+        timeBucket = "9:00-11:29",
+        modality = NotificationTriggerModality.Push,
+        source = NotificationTriggerSource.Scheduled,
+        questionnaireId = 1,
+        triggerJson = "{}",
+        updatedAt = 0
+    )
+
+    @Test
+    fun testBetweenIsInclusiveAndSorted() {
+        val timeline = TriggerTimeline.of(listOf(trigger("c", 300), trigger("a", 100), trigger("b", 200), trigger("d", 400)))
+
+        assertEquals(listOf("b", "c"), timeline.between(200, 300).map { it.name })
+        assertEquals(listOf("a", "b", "c", "d"), timeline.between(0, 1000).map { it.name })
+        assertEquals(emptyList<String>(), timeline.between(201, 299).map { it.name })
+    }
+
+    @Test
+    fun testInsertKeepsOrder() {
+        var timeline = TriggerTimeline.EMPTY
+        for ((name, validFrom) in listOf("c" to 300L, "a" to 100L, "b" to 200L, "b2" to 200L)) {
+            timeline = timeline.withInserted(trigger(name, validFrom))
+        }
+
+        assertEquals(listOf("a", "b", "b2", "c"), timeline.between(Long.MIN_VALUE, Long.MAX_VALUE).map { it.name })
+    }
+
+    @Test
+    fun testUpdateReplacesTriggerWithSameUid() {
+        val first = trigger("a", 100)
+        val second = trigger("b", 100)
+        val timeline = TriggerTimeline.of(listOf(first, second))
+
+        val updated = timeline.withUpdated(second.copy(status = NotificationTriggerStatus.Answered))
+
+        assertEquals(2, updated.size)
+        assertEquals(NotificationTriggerStatus.Answered, updated.between(100, 100).single { it.uid == second.uid }.status)
+        assertEquals(NotificationTriggerStatus.Planned, timeline.between(100, 100).single { it.uid == second.uid }.status)
+    }
+}
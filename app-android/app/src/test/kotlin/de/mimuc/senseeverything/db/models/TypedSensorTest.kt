@@ -0,0 +1,50 @@
+package de.mimuc.senseeverything.db.models
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Test
+import java.text.NumberFormat
+import java.util.Locale
+import java.util.UUID
+
+class TypedSensorTest {
+    private val numberFormat = NumberFormat.getInstance(Locale.GERMANY).apply {
+        maximumFractionDigits = Int.MAX_VALUE
+        isGroupingUsed = false
+    }
+
+    @Test
+    fun testVector3PayloadMatchesLogDataFormat() {
+        val values = floatArrayOf(0.12f, 9.81f, -0.5f)
+        val legacy = numberFormat.format(values[0]) + "," + numberFormat.format(values[1]) + "," +
+                numberFormat.format(values[2]) + ",true\n"
+
+        val reading = Vector3Reading(1, TypedSensor.ORIENTATION.code, 0, values[0].toDouble(), values[1].toDouble(), values[2].toDouble(), true)
+
+        assertEquals(legacy, TypedSensor.ORIENTATION.format(reading, numberFormat))
+    }
+
+    @Test
+    fun testScalarPayloadsMatchLogDataFormat() {
+        val lux = 123.45f
+
+        assertEquals(numberFormat.format(lux) + ",false",
+            TypedSensor.LIGHT.format(ScalarReading(1, TypedSensor.LIGHT.code, 0, lux.toDouble(), false), numberFormat))
+        assertEquals("3172", TypedSensor.AUDIO_LEVEL.format(ScalarReading(1, TypedSensor.AUDIO_LEVEL.code, 0, 3172.0), numberFormat))
+        assertEquals("off", TypedSensor.SCREEN_ON_OFF.format(ScalarReading(1, TypedSensor.SCREEN_ON_OFF.code, 0, 0.0), numberFormat))
+        assertEquals("true", TypedSensor.CHARGING.format(ScalarReading(1, TypedSensor.CHARGING.code, 0, 1.0), numberFormat))
+    }
+
+    @Test
+    fun testLocalIdsAreStableAndDistinct() {
+        val ids = TypedReadingIds("seed")
+
+        val id = ids.localId(ReadingFamily.VECTOR3, 42)
+
+        assertEquals(id, TypedReadingIds("seed").localId(ReadingFamily.VECTOR3, 42))
+        assertEquals(id, UUID.fromString(id).toString())
+        assertNotEquals(id, ids.localId(ReadingFamily.SCALAR, 42))
+        assertNotEquals(id, ids.localId(ReadingFamily.VECTOR3, 43))
+        assertNotEquals(id, TypedReadingIds("other").localId(ReadingFamily.VECTOR3, 42))
+    }
+}
@@ -178,4 +178,54 @@ class QuestionnaireRuleEvaluatorTest {
 
         assert(actions.isEmpty())
     }
+
+    @Test
+    fun testUpdateRechecksAffectedRules() {
+        val rules = listOf(
+            QuestionnaireRule(
+                "Yes Rule",
+                ConditionGroup(LogicalOperator.AND, listOf(Condition("answer1", Comparator.EQUALS, JsonPrimitive("Yes")))),
+                listOf(OpenQuestionnaire(1))
+            ),
+            QuestionnaireRule(
+                "Other Rule",
+                ConditionGroup(LogicalOperator.AND, listOf(Condition("answer2", Comparator.NOT_EQUALS, JsonPrimitive("No")))),
+                listOf(OpenQuestionnaire(2))
+            )
+        )
+
+        val evaluator = QuestionnaireRuleEvaluator(rules)
+        assert(evaluator.evaluate(mapOf(1 to ButtonGroupValue(1, "answer1", "No"))).isEmpty())
+
+        assert(evaluator.update(ButtonGroupValue(1, "answer1", "Yes")).keys == setOf("Yes Rule"))
+        assert(evaluator.update(ButtonGroupValue(2, "answer2", "Maybe")).keys == setOf("Yes Rule", "Other Rule"))
+        assert(evaluator.update(ButtonGroupValue(1, "answer1", "No")).keys == setOf("Other Rule"))
+    }
+
+    @Test
+    fun testUpdateAllMatchesEvaluate() {
+        val rules = listOf(
+            QuestionnaireRule(
+                "Test Rule",
+                ConditionGroup(
+                    LogicalOperator.OR,
+                    listOf(
+                        Condition("answer1", Comparator.EQUALS, JsonPrimitive("Yes")),
+                        Condition("answer2", Comparator.EQUALS, JsonPrimitive("Yes"))
+                    )
+                ),
+                listOf(OpenQuestionnaire(1))
+            )
+        )
+
+        val elementValues = mapOf(
+            1 to ButtonGroupValue(1, "answer1", "No"),
+            2 to ButtonGroupValue(2, "answer2", "Yes")
+        )
+
+        val incremental = QuestionnaireRuleEvaluator(rules)
+        incremental.updateAll(mapOf(1 to ButtonGroupValue(1, "answer1", "No")))
+
+        assert(incremental.updateAll(elementValues) == QuestionnaireRuleEvaluator(rules).evaluate(elementValues))
+    }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package de.mimuc.senseeverything.helpers
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.time.LocalDate
+import java.time.ZoneId
+import java.time.ZonedDateTime
+
+class TimeBucketScheduleTest {
+    private val zone = ZoneId.of("Europe/Berlin")
+
+    private fun at(day: LocalDate, hour: Int, minute: Int, second: Int = 0): Long =
+        ZonedDateTime.of(day.year, day.monthValue, day.dayOfMonth, hour, minute, second, 0, zone).toInstant().toEpochMilli()
+
+    @Test
+    fun testBucketsAreParsedWithAndWithoutPadding() {
+        val schedule = TimeBucketSchedule.of(listOf("14:00-16:29", "9:00-11:29", "09:30-10:00"), zone)
+
+        assertEquals(14 * 60, schedule.startMinute(0))
+        assertEquals(9 * 60, schedule.startMinute(1))
+        assertEquals(11 * 60 + 29, schedule.endMinute(1))
+        assertEquals(listOf(1, 2, 0), schedule.byStart.toList())
+        assertEquals(listOf(2, 1, 0), schedule.byEnd.toList())
+    }
+
+    @Test
+    fun testBucketAtIncludesOnlyTheFirstMillisecondOfTheEndMinute() {
+        val schedule = TimeBucketSchedule.of(listOf("9:00-11:29", "11:30-13:59"), zone)
+        val day = LocalDate.of(2025, 6, 2)
+
+        assertEquals(0, schedule.bucketAt(at(day, 9, 0)))
+        assertEquals(0, schedule.bucketAt(at(day, 11, 29)))
+        assertEquals(-1, schedule.bucketAt(at(day, 11, 29, 30)))
+        assertEquals(1, schedule.bucketAt(at(day, 11, 30)))
+        assertEquals(-1, schedule.bucketAt(at(day, 8, 59, 59)))
+        assertEquals(at(day, 13, 59), schedule.endMillis(1, day))
+    }
+
+    @Test
+    fun testDaysAreCountedAcrossDaylightSavingChanges() {
+        val schedule = TimeBucketSchedule.of(listOf("9:00-11:29"), zone)
+        // clocks go forward on 2025-03-30, that day has 23 hours
+        val before = LocalDate.of(2025, 3, 29)
+        val after = LocalDate.of(2025, 3, 31)
+
+        assertEquals(2, TimeBucketSchedule.daysBetween(at(before, 0, 0), at(after, 0, 0), zone))
+        assertEquals(after, schedule.dayOf(at(after, 0, 0)))
+        assertEquals(at(after, 9, 0) - at(before, 9, 0), 47 * 60 * 60 * 1000L)
+        assertEquals(at(after, 9, 0), schedule.startMillis(0, after))
+    }
+}
@@ -0,0 +1,40 @@
+package de.mimuc.senseeverything.helpers
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class UuidV7GeneratorTest {
+    private val now = 1792454399999L
+
+    @Test
+    fun testVersionVariantAndTimestamp() {
+        val uuid = UuidV7Generator { now }.next()
+
+        assertEquals(7, uuid.version())
+        assertEquals(2, uuid.variant())
+        assertEquals(now, uuid.mostSignificantBits ushr 16)
+    }
+
+    @Test
+    fun testIdsIncreaseWithinOneMillisecond() {
+        val generator = UuidV7Generator { now }
+
+        val ids = List(5000) { generator.next().toString() }
+
+        assertEquals(ids.sorted(), ids)
+        assertEquals(ids.size, ids.toSet().size)
+    }
+
+    @Test
+    fun testIdsIncreaseWhenTheClockGoesBack() {
+        var time = now
+        val generator = UuidV7Generator { time }
+
+        val before = generator.next().toString()
+        time -= 10_000
+        val after = generator.next().toString()
+
+        assertTrue(after > before)
+    }
+}
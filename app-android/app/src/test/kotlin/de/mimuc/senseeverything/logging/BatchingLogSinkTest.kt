@@ -0,0 +1,81 @@
+package de.mimuc.senseeverything.logging
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class BatchingLogSinkTest {
+    private fun record(tag: String, message: String, timestamp: Long = 0, level: String = "INFO") =
+        LogRecord(timestamp, level, tag, message)
+
+    @Test
+    fun testRepeatedMessagesAreCollapsed() {
+        val sink = BatchingLogSink()
+
+        repeat(5) { sink.offer(record("Sensor", "started", timestamp = it.toLong())) }
+        sink.offer(record("Sensor", "stopped", timestamp = 5))
+
+        val records = sink.drain(10)
+        assertEquals(2, records.size)
+        assertEquals(5, records[0].repeatCount)
+        assertEquals(4, records[0].lastTimestamp)
+        assertEquals(1, records[1].repeatCount)
+    }
+
+    @Test
+    fun testTagsAreRateLimitedPerWindow() {
+        val sink = BatchingLogSink(maxRecordsPerTag = 3, rateLimitWindowMillis = 1000)
+
+        repeat(10) { sink.offer(record("Chatty", "message $it", timestamp = 100)) }
+        sink.offer(record("Quiet", "message", timestamp = 100))
+        sink.offer(record("Chatty", "next window", timestamp = 1100))
+
+        val records = sink.drain(2000)
+        assertEquals(3, records.count { it.tag == "Chatty" && it.timestamp == 100L })
+        assertTrue(records.any { it.tag == "Quiet" })
+        assertTrue(records.any { it.message == "next window" })
+        assertTrue(records.last().message.contains("7 rate limited (Chatty=7)"))
+    }
+
+    @Test
+    fun testErrorsBypassRateLimit() {
+        val sink = BatchingLogSink(maxRecordsPerTag = 1)
+
+        repeat(3) { sink.offer(record("Upload", "failed $it", level = "ERROR")) }
+
+        assertEquals(3, sink.drain(0).size)
+    }
+
+    @Test
+    fun testErrorsRequestFlush() {
+        val sink = BatchingLogSink()
+
+        assertFalse(sink.offer(record("Upload", "started")))
+        assertTrue(sink.offer(record("Upload", "failed", level = "ERROR")))
+    }
+
+    @Test
+    fun testOverflowDropsOldestAndIsReported() {
+        val sink = BatchingLogSink(capacity = 4, maxRecordsPerTag = 100)
+
+        var flushRequested = false
+        repeat(6) { flushRequested = sink.offer(record("Tag", "message $it")) || flushRequested }
+
+        val records = sink.drain(0)
+        assertTrue(flushRequested)
+        assertEquals("message 2", records.first().message)
+        assertTrue(records.last().message.startsWith("Dropped 2 log record(s): 2 on buffer overflow"))
+        assertEquals(0, sink.size())
+    }
+
+    @Test
+    fun testDrainWithoutDropsHasNoSummary() {
+        val sink = BatchingLogSink()
+        sink.offer(record("Tag", "message"))
+
+        val records = sink.drain(0)
+        assertEquals(1, records.size)
+        assertFalse(sink.drain(0).any())
+    }
+}
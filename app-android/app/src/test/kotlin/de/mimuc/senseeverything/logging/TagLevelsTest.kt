@@ -0,0 +1,33 @@
+package de.mimuc.senseeverything.logging
+
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class TagLevelsTest {
+    // priorities of android.util.Log
+    private val debug = 3
+    private val info = 4
+    private val warn = 5
+
+    @Test
+    fun testDefaultLevelAppliesToUnknownTags() {
+        val levels = TagLevels(info)
+
+        assertFalse(levels.isLoggable("Sensor", debug))
+        assertTrue(levels.isLoggable("Sensor", info))
+    }
+
+    @Test
+    fun testTagLevelOverridesDefault() {
+        val levels = TagLevels(info)
+        levels.setLevel("UITreeConsumer", debug)
+        levels.setLevel("Chatty", warn)
+
+        assertTrue(levels.isLoggable("UITreeConsumer", debug))
+        assertFalse(levels.isLoggable("Chatty", info))
+
+        levels.clearLevel("Chatty")
+        assertTrue(levels.isLoggable("Chatty", info))
+    }
+}
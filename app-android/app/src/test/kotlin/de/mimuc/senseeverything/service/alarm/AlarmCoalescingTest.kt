@@ -0,0 +1,41 @@
+package de.mimuc.senseeverything.service.alarm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class AlarmCoalescingTest {
+    @Test
+    fun testWakesUpAtEarliestDeadline() {
+        val pending = listOf(AlarmWindow(1_000, 500), AlarmWindow(1_200, 0), AlarmWindow(2_000, 100))
+
+        assertEquals(1_200L, AlarmCoalescing.nextWakeup(pending))
+        assertNull(AlarmCoalescing.nextWakeup(emptyList()))
+    }
+
+    @Test
+    fun testOverlappingWindowsShareWakeup() {
+        val pending = listOf(AlarmWindow(1_000, 500), AlarmWindow(1_200, 300), AlarmWindow(1_600, 0))
+        val wakeup = AlarmCoalescing.nextWakeup(pending)!!
+
+        assertEquals(1_500L, wakeup)
+        assertTrue(AlarmCoalescing.isDue(pending[0], wakeup))
+        assertTrue(AlarmCoalescing.isDue(pending[1], wakeup))
+        // never delivered before its timestamp
+        assertFalse(AlarmCoalescing.isDue(pending[2], wakeup))
+    }
+
+    @Test
+    fun testExtrasRoundTrip() {
+        val extras = AlarmExtras(
+            strings = mapOf("title" to "Hello", "empty" to null),
+            ints = mapOf("id" to 7),
+            longs = mapOf("untilTimestamp" to 1_700_000_000_000L)
+        )
+
+        assertEquals(extras, AlarmExtras.decode(extras.encode()))
+        assertEquals(AlarmExtras(), AlarmExtras.decode(null))
+    }
+}
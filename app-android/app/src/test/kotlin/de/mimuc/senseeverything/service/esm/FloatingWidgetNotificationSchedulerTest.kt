@@ -11,6 +11,7 @@ import de.mimuc.senseeverything.helpers.parseTimebucket
 import org.junit.jupiter.api.RepeatedTest
 import org.junit.jupiter.api.Test
 import java.util.Calendar
+import kotlin.random.Random
 
 class FloatingWidgetNotificationSchedulerTest {
     private fun triggerWithBuckets(
@@ -44,6 +45,25 @@ class FloatingWidgetNotificationSchedulerTest {
         randomTolerance = 180
     )
 
+    @Test
+    fun testLateDeliveryContinuesChainFromFiredTrigger() {
+        val scheduler = FloatingWidgetNotificationScheduler()
+        val notifications = scheduler.planNotificationsForDay(defaultStudyTrigger, Calendar.getInstance())
+            .sortedBy { it.validFrom }
+        val fired = notifications[0]
+        // the alarm of the first trigger is only delivered after the third one became valid
+        val receivedAt = notifications[2].validFrom + 60_000
+
+        val after = FloatingWidgetNotificationScheduler.rearmAfter(fired, receivedAt)
+        val next = notifications.filter { it.validFrom > after }.minByOrNull { it.validFrom }
+
+        assert(after == fired.validFrom)
+        assert(next?.uid == notifications[1].uid) {
+            "Expected the second trigger to be armed next, but got ${next?.validFrom}"
+        }
+        assert(FloatingWidgetNotificationScheduler.rearmAfter(null, receivedAt) == receivedAt)
+    }
+
     @Test
     fun testEachBucketShouldHaveOneNotification() {
         val trigger = defaultStudyTrigger
@@ -119,6 +139,23 @@ class FloatingWidgetNotificationSchedulerTest {
         }
     }
 
+    @Test
+    fun samePlanSeedYieldsSameSchedule() {
+        val studyStart = Calendar.getInstance()
+        val studyEnd = studyStart.clone() as Calendar
+        studyEnd.add(Calendar.DAY_OF_YEAR, 14)
+
+        val scheduler = FloatingWidgetNotificationScheduler()
+        val seed = FloatingWidgetNotificationScheduler.planSeed("participant", "test", studyStart)
+        val first = scheduler.planNotificationsForTrigger(defaultStudyTrigger, studyStart, studyEnd, Random(seed))
+        val second = scheduler.planNotificationsForTrigger(defaultStudyTrigger, studyStart, studyEnd, Random(seed))
+        val otherSeed = FloatingWidgetNotificationScheduler.planSeed("other participant", "test", studyStart)
+        val other = scheduler.planNotificationsForTrigger(defaultStudyTrigger, studyStart, studyEnd, Random(otherSeed))
+
+        assert(first.map { it.validFrom } == second.map { it.validFrom })
+        assert(first.map { it.validFrom } != other.map { it.validFrom })
+    }
+
     @Test
     fun hasTimeoutNotificationInScheduleAfterDelay() {
         val trigger = EMAFloatingWidgetNotificationTrigger(
@@ -0,0 +1,51 @@
+package de.mimuc.senseeverything.storage
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class StorageBudgetPolicyTest {
+    private val mb = 1024L * 1024
+    private val policy = StorageBudgetPolicy(budgetBytes = 1000 * mb, minFreeBytes = 100 * mb)
+
+    private fun usage(databaseMb: Long, freeMb: Long = 10_000) = StorageUsage(databaseMb * mb, 0, 0, freeMb * mb)
+
+    @Test
+    fun testEscalatesWithBudgetShare() {
+        assertEquals(StoragePressureLevel.NORMAL, policy.levelFor(usage(400), StoragePressureLevel.NORMAL))
+        assertEquals(StoragePressureLevel.COMPRESS, policy.levelFor(usage(500), StoragePressureLevel.NORMAL))
+        assertEquals(StoragePressureLevel.DOWNSAMPLE, policy.levelFor(usage(800), StoragePressureLevel.NORMAL))
+        assertEquals(StoragePressureLevel.PAUSE, policy.levelFor(usage(950), StoragePressureLevel.NORMAL))
+    }
+
+    @Test
+    fun testLowFreeSpaceEscalatesWithinBudget() {
+        assertEquals(StoragePressureLevel.PAUSE, policy.levelFor(usage(10, freeMb = 50), StoragePressureLevel.NORMAL))
+        assertEquals(StoragePressureLevel.DOWNSAMPLE, policy.levelFor(usage(10, freeMb = 150), StoragePressureLevel.NORMAL))
+    }
+
+    @Test
+    fun testRelaxesOnlyBelowHysteresis() {
+        // just below the downsample threshold, but within the hysteresis
+        assertEquals(StoragePressureLevel.DOWNSAMPLE, policy.levelFor(usage(700), StoragePressureLevel.DOWNSAMPLE))
+        assertEquals(StoragePressureLevel.COMPRESS, policy.levelFor(usage(600), StoragePressureLevel.DOWNSAMPLE))
+        assertEquals(StoragePressureLevel.NORMAL, policy.levelFor(usage(100), StoragePressureLevel.PAUSE))
+    }
+
+    @Test
+    fun testBackpressureOnlyThrottlesLowPrioritySensors() {
+        val backpressure = StorageBackpressure(setOf("Accelerometer"), downsampleIntervalMillis = 1000)
+        backpressure.level = StoragePressureLevel.DOWNSAMPLE
+
+        assertTrue(backpressure.admit("Accelerometer", 0))
+        assertFalse(backpressure.admit("Accelerometer", 500))
+        assertTrue(backpressure.admit("Accelerometer", 1000))
+        assertTrue(backpressure.admit("Screen On/Off", 1001))
+        assertFalse(backpressure.storeWireFormat)
+
+        backpressure.level = StoragePressureLevel.PAUSE
+        assertFalse(backpressure.admit("Accelerometer", 5000))
+        assertTrue(backpressure.admit("Screen On/Off", 5000))
+    }
+}
@@ -0,0 +1,42 @@
+package de.mimuc.senseeverything.workers.sync
+
+import de.mimuc.senseeverything.db.models.UnsyncedBacklog
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class OpportunisticSyncPolicyTest {
+    private val policy = OpportunisticSyncPolicy(
+        softThreshold = UnsyncedBacklog(rowCount = 100, byteCount = 1000),
+        hardThreshold = UnsyncedBacklog(rowCount = 400, byteCount = 4000),
+        maxJitterMillis = 60_000
+    )
+
+    @Test
+    fun testSmallBacklogWaitsForDailyUpload() {
+        assertEquals(OpportunisticSyncLevel.NONE, policy.levelFor(UnsyncedBacklog(99, 999)))
+    }
+
+    @Test
+    fun testEitherRowsOrBytesTriggerSync() {
+        assertEquals(OpportunisticSyncLevel.CHARGING_AND_IDLE, policy.levelFor(UnsyncedBacklog(100, 0)))
+        assertEquals(OpportunisticSyncLevel.CHARGING_AND_IDLE, policy.levelFor(UnsyncedBacklog(0, 1000)))
+    }
+
+    @Test
+    fun testLargeBacklogDoesNotWaitForCharging() {
+        assertEquals(OpportunisticSyncLevel.UNMETERED, policy.levelFor(UnsyncedBacklog(50, 4000)))
+    }
+
+    @Test
+    fun testJitterIsStablePerDeviceAndWithinWindow() {
+        val first = policy.jitterMillis("participant-a")
+
+        assertEquals(first, policy.jitterMillis("participant-a"))
+        assertNotEquals(first, policy.jitterMillis("participant-b"))
+        for (i in 0 until 100) {
+            assertTrue(policy.jitterMillis("participant-$i") in 0 until 60_000)
+        }
+    }
+}
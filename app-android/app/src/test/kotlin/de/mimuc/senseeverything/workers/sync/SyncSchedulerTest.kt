@@ -0,0 +1,105 @@
+package de.mimuc.senseeverything.workers.sync
+
+import de.mimuc.senseeverything.db.models.UnsyncedBacklog
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class SyncSchedulerTest {
+    private class FakeStream(
+        override val priorityClass: SyncPriorityClass,
+        var rows: Int,
+        val bytesPerRow: Long,
+        val uploadOrder: MutableList<SyncPriorityClass>
+    ) : SyncStream {
+        override suspend fun backlog() = UnsyncedBacklog(rows.toLong(), rows * bytesPerRow)
+
+        override suspend fun uploadNext(maxBytes: Long): SyncBatchResult {
+            if (rows == 0) return SyncBatchResult.EMPTY
+            val count = (maxBytes / bytesPerRow).toInt().coerceIn(1, rows)
+            rows -= count
+            uploadOrder.add(priorityClass)
+            return SyncBatchResult(count, count * bytesPerRow)
+        }
+    }
+
+    private fun streams(order: MutableList<SyncPriorityClass>, rows: Int = 100, bytesPerRow: Long = 1000) =
+        SyncPriorityClass.values().reversed().map { FakeStream(it, rows, bytesPerRow, order) }
+
+    @Test
+    fun testUnlimitedBudgetDrainsAllClasses() = runBlocking {
+        val order = mutableListOf<SyncPriorityClass>()
+        val report = SyncScheduler(streams(order), SyncBudget.UNLIMITED, quantumBytes = 10_000).run()
+
+        assertTrue(report.drained)
+        assertFalse(report.budgetExhausted)
+        assertEquals(400L, report.uploadedRows)
+    }
+
+    @Test
+    fun testHighestPriorityClassMovesFirst() = runBlocking {
+        val order = mutableListOf<SyncPriorityClass>()
+        SyncScheduler(streams(order), SyncBudget.UNLIMITED, quantumBytes = 10_000).run()
+
+        assertEquals(SyncPriorityClass.QUESTIONNAIRE_ANSWERS, order.first())
+        assertEquals(SyncPriorityClass.DIAGNOSTIC_LOGS, order.last())
+    }
+
+    @Test
+    fun testByteBudgetIsSharedByWeight() = runBlocking {
+        val order = mutableListOf<SyncPriorityClass>()
+        // one round of quanta: 80 + 40 + 20 + 10 rows
+        val report = SyncScheduler(
+            streams(order),
+            SyncBudget(150_000, Long.MAX_VALUE),
+            quantumBytes = 10_000
+        ).run()
+
+        assertTrue(report.budgetExhausted)
+        val uploaded = report.classes.associate { it.priorityClass to it.uploadedRows }
+        assertEquals(80L, uploaded[SyncPriorityClass.QUESTIONNAIRE_ANSWERS])
+        assertEquals(40L, uploaded[SyncPriorityClass.STUDY_CRITICAL_SENSORS])
+        assertEquals(20L, uploaded[SyncPriorityClass.BULK_SENSORS])
+        assertEquals(10L, uploaded[SyncPriorityClass.DIAGNOSTIC_LOGS])
+    }
+
+    @Test
+    fun testTimeBudgetStopsRun() = runBlocking {
+        val order = mutableListOf<SyncPriorityClass>()
+        var now = 0L
+        val report = SyncScheduler(
+            streams(order),
+            SyncBudget(Long.MAX_VALUE, 5),
+            quantumBytes = 1_000,
+            clock = { now++ }
+        ).run()
+
+        assertTrue(report.budgetExhausted)
+        assertFalse(report.drained)
+        assertEquals(SyncPriorityClass.QUESTIONNAIRE_ANSWERS, order.first())
+    }
+
+    @Test
+    fun testCombinedSourcesShareOneClassQuantum() = runBlocking {
+        val order = mutableListOf<SyncPriorityClass>()
+        val bulk = SyncPriorityClass.BULK_SENSORS
+        val combined = CombinedSyncStream(bulk, listOf(
+            FakeStream(bulk, 15, 1000, order),
+            FakeStream(bulk, 15, 1000, order)
+        ))
+        // one round of quanta: 80 questionnaire rows and 20 bulk rows taken from both sources
+        val report = SyncScheduler(
+            listOf(FakeStream(SyncPriorityClass.QUESTIONNAIRE_ANSWERS, 100, 1000, order), combined),
+            SyncBudget(100_000, Long.MAX_VALUE),
+            quantumBytes = 10_000
+        ).run()
+
+        val uploaded = report.classes.associate { it.priorityClass to it.uploadedRows }
+        assertEquals(2, report.classes.size)
+        assertEquals(80L, uploaded[SyncPriorityClass.QUESTIONNAIRE_ANSWERS])
+        assertEquals(20L, uploaded[bulk])
+        assertEquals(30L, report.classes.single { it.priorityClass == bulk }.backlogRows)
+    }
+}
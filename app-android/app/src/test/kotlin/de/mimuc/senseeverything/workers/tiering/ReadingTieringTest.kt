@@ -0,0 +1,126 @@
+package de.mimuc.senseeverything.workers.tiering
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import java.util.Base64
+import java.util.Locale
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class ReadingTieringTest {
+    @Test
+    fun testParsesGermanReadings() {
+        val german = NumericReadingParser(Locale.GERMANY)
+        val reading = german.parse("0,12,9,81,-0,5,true", 3)
+        assertNotNull(reading)
+        assertArrayEquals(doubleArrayOf(0.12, 9.81, -0.5), reading!!.values, 0.0001)
+        assertEquals(true, reading.flag)
+
+        val zero = german.parse("0,true", 1)
+        assertNotNull(zero)
+        assertArrayEquals(doubleArrayOf(0.0), zero!!.values, 0.0001)
+        assertEquals(true, zero.flag)
+
+        val fraction = german.parse("12,5,true", 1)
+        assertNotNull(fraction)
+        assertArrayEquals(doubleArrayOf(12.5), fraction!!.values, 0.0001)
+        assertEquals(true, fraction.flag)
+
+        assertArrayEquals(doubleArrayOf(0.0, -0.5), german.parse("0,-0,5", 2)!!.values, 0.0001)
+        assertNull(german.parse("1.234,5", 1))
+    }
+
+    @Test
+    fun testRejectsGroupingSeparators() {
+        val english = NumericReadingParser(Locale.US)
+        assertNull(english.parse("1,234.5,false", 1))
+        assertArrayEquals(doubleArrayOf(1.5, 2.5), english.parse("1.5,2.5,false", 2)!!.values, 0.0001)
+        assertNull(english.parse("12", 1)!!.flag)
+        assertNull(english.parse("1.5,2.5", 3))
+    }
+
+    @Test
+    fun testAggregatesRawReadingsPerBucket() {
+        val aggregator = ReadingAggregator(1, NumericReadingParser(Locale.US))
+        val aggregates = aggregator.aggregateRaw(
+            listOf(1_000L to "2,true", 2_000L to "4,false", 61_000L to "10", 62_000L to "broken"),
+            ReadingTiers.MINUTE,
+            ReadingTiers.MINUTE_MILLIS
+        )
+
+        assertEquals(2, aggregates.size)
+        assertEquals(ReadingAggregate(ReadingTiers.MINUTE, 1_000, 2_000, 2, 0, 1, listOf(3.0), listOf(2.0), listOf(4.0)), aggregates[0])
+        assertEquals(1, aggregates[1].count)
+        assertEquals(1, aggregates[1].invalid)
+        assertNull(aggregates[1].reliable)
+    }
+
+    @Test
+    fun testTypedReadingsAggregateLikeTheirPayload() {
+        val aggregator = ReadingAggregator(3, NumericReadingParser(Locale.US))
+
+        val fromPayload = aggregator.aggregateRaw(
+            listOf(1_000L to "0.5,9.75,-1,true", 2_000L to "1.5,9.25,0,false"),
+            ReadingTiers.MINUTE,
+            ReadingTiers.MINUTE_MILLIS
+        )
+        val fromTyped = aggregator.aggregateParsed(
+            listOf(
+                1_000L to ParsedReading(doubleArrayOf(0.5, 9.75, -1.0), true),
+                2_000L to ParsedReading(doubleArrayOf(1.5, 9.25, 0.0), false)
+            ),
+            ReadingTiers.MINUTE,
+            ReadingTiers.MINUTE_MILLIS
+        )
+
+        assertEquals(fromPayload, fromTyped)
+    }
+
+    @Test
+    fun testMergesAggregatesWeightedByCount() {
+        val aggregator = ReadingAggregator(1)
+        val merged = aggregator.mergeAggregates(
+            listOf(
+                ReadingAggregate(ReadingTiers.MINUTE, 0, 59_000, 1, mean = listOf(1.0), min = listOf(1.0), max = listOf(1.0)),
+                ReadingAggregate(ReadingTiers.MINUTE, 60_000, 119_000, 3, invalid = 2, mean = listOf(5.0), min = listOf(2.0), max = listOf(9.0))
+            ),
+            ReadingTiers.TEN_MINUTES,
+            ReadingTiers.TEN_MINUTES_MILLIS
+        )
+
+        assertEquals(
+            listOf(ReadingAggregate(ReadingTiers.TEN_MINUTES, 0, 119_000, 4, 2, null, listOf(4.0), listOf(1.0), listOf(9.0))),
+            merged
+        )
+    }
+
+    @Test
+    fun testRepeatedSkeletonsBecomeReferences() {
+        val skeleton = """{"signature":"abc","nodes":[{"id":0}]}"""
+        val batch = """{"timestamp":1,"count":2,"snapshots":[{"timestamp":1,"skeleton":$skeleton},{"timestamp":2,"skeleton":$skeleton}]}"""
+        val deduplicator = SkeletonDeduplicator()
+
+        val result = deduplicator.deduplicate(encode(batch))
+
+        assertEquals(1, deduplicator.replacedSkeletons)
+        val decoded = decode(result!!)
+        assertEquals(1, Regex("\"nodes\"").findAll(decoded).count())
+        assertEquals(true, decoded.contains("\"skeletonRefs\":true"))
+        // a later batch with the same skeleton only contains references
+        assertNotNull(deduplicator.deduplicate(encode(batch)))
+        assertEquals(3, deduplicator.replacedSkeletons)
+    }
+
+    private fun encode(json: String): String {
+        val output = java.io.ByteArrayOutputStream()
+        GZIPOutputStream(output).use { it.write(json.toByteArray()) }
+        return Base64.getEncoder().encodeToString(output.toByteArray())
+    }
+
+    private fun decode(payload: String): String {
+        return GZIPInputStream(Base64.getDecoder().decode(payload).inputStream()).use { it.readBytes().decodeToString() }
+    }
+}
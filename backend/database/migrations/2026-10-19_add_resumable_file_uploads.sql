@@ -0,0 +1,3 @@
+alter table upload_files add column enrolment_id integer references enrolments (id);
+alter table upload_files add column local_id uuid;
+alter table upload_files add constraint unique_file_per_enrolment unique (enrolment_id, local_id);
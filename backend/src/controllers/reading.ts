@@ -1,6 +1,14 @@
 import { Express } from 'express';
 import { authenticate, RequestUser } from '../middleware/authenticate';
 import { upload } from '../middleware/upload';
+import {
+  appendPart,
+  completeUpload,
+  PartChecksumMismatchError,
+  PartOffsetMismatchError,
+  rawPart,
+  receivedBytes,
+} from '../middleware/resumableUpload';
 import { ISensorReadingRepository } from '../data/sensorReadingRepository';
 import { IEnrolmentRepository } from '../data/enrolmentRepository';
 import { Observability } from '../o11y';
@@ -11,6 +19,12 @@ import { SensorReadingJobData } from '../queues/sensorReadingQueue';
 
 const ReadingBatchRequestBody = z.array(ClientSensorReading);
 
+const FileCompleteRequestBody = z.object({
+  totalBytes: z.number().int().nonnegative(),
+  sha256: z.string().regex(/^[0-9a-f]{64}$/),
+  filename: z.string().min(1),
+});
+
 export function createReadingController(
   sensorReadingRepository: ISensorReadingRepository,
   enrolmentRepository: IEnrolmentRepository,
@@ -121,5 +135,135 @@ export function createReadingController(
     },
   );
 
+  // resumable uploads, files are identified by the local id of their reading
+
+  app.get('/v1/reading/:localId/file/upload', authenticate, async (req, res) => {
+    const localId = z.uuid().safeParse(req.params.localId);
+    if (!localId.success) {
+      return res.status(400).send({ error: 'Invalid local id' });
+    }
+
+    const enrolmentId = (req.user as RequestUser).enrolmentId;
+    if (!enrolmentId) {
+      return res.status(403).send({ error: 'Enrolment not found' });
+    }
+
+    const existing = await sensorReadingRepository.getFileByLocalId(
+      enrolmentId,
+      localId.data,
+    );
+
+    res.json({
+      receivedBytes: await receivedBytes(enrolmentId, localId.data),
+      completed: existing !== null,
+    });
+  });
+
+  app.put(
+    '/v1/reading/:localId/file/upload',
+    authenticate,
+    rawPart,
+    async (req, res) => {
+      const localId = z.uuid().safeParse(req.params.localId);
+      const offset = parseInt(req.query.offset as string);
+      const checksum = req.get('X-Part-Checksum');
+      if (!localId.success || isNaN(offset) || !checksum) {
+        return res.status(400).send({ error: 'Invalid request' });
+      }
+      if (!Buffer.isBuffer(req.body) || req.body.length === 0) {
+        return res.status(400).send({ error: 'No part uploaded' });
+      }
+
+      const enrolmentId = (req.user as RequestUser).enrolmentId;
+      if (!enrolmentId) {
+        return res.status(403).send({ error: 'Enrolment not found' });
+      }
+
+      try {
+        const received = await appendPart(
+          enrolmentId,
+          localId.data,
+          offset,
+          req.body,
+          checksum,
+        );
+        res.json({ receivedBytes: received });
+      } catch (e) {
+        if (e instanceof PartOffsetMismatchError) {
+          return res
+            .status(409)
+            .send({ error: e.message, receivedBytes: e.receivedBytes });
+        }
+        if (e instanceof PartChecksumMismatchError) {
+          return res.status(422).send({ error: e.message });
+        }
+
+        observability.logger.error(`Error storing file part ${e}`, {
+          enrolmentId,
+          localId: localId.data,
+        });
+        res.status(500).send({ error: 'Error storing file part' });
+      }
+    },
+  );
+
+  app.post(
+    '/v1/reading/:localId/file/complete',
+    authenticate,
+    async (req, res) => {
+      const localId = z.uuid().safeParse(req.params.localId);
+      const parsed = FileCompleteRequestBody.safeParse(req.body);
+      if (!localId.success || !parsed.success) {
+        return res.status(400).send({ error: 'Invalid request' });
+      }
+
+      const enrolmentId = (req.user as RequestUser).enrolmentId;
+      if (!enrolmentId) {
+        return res.status(403).send({ error: 'Enrolment not found' });
+      }
+
+      try {
+        // the acknowledgement of an earlier completion may have been lost
+        const existing = await sensorReadingRepository.getFileByLocalId(
+          enrolmentId,
+          localId.data,
+        );
+        if (
+          existing &&
+          (await receivedBytes(enrolmentId, localId.data)) === 0
+        ) {
+          return res.json(existing);
+        }
+
+        const stored = await completeUpload(
+          enrolmentId,
+          localId.data,
+          parsed.data.totalBytes,
+          parsed.data.sha256,
+          parsed.data.filename,
+        );
+        if (!stored) {
+          return res
+            .status(422)
+            .send({ error: 'File checksum does not match, restart upload' });
+        }
+
+        const uploaded = await sensorReadingRepository.createFileForLocalId(
+          enrolmentId,
+          localId.data,
+          stored,
+        );
+
+        res.status(201).json(uploaded);
+      } catch (e) {
+        observability.logger.error(`Error completing file upload ${e}`, {
+          enrolmentId,
+          localId: localId.data,
+        });
+        res.status(500).send({ error: 'Error completing file upload' });
+      }
+    },
+  );
+
   observability.logger.info('loaded reading controller');
 }
@@ -15,7 +15,8 @@ export interface SensorReading {
 
 export interface UploadFile {
   id: number;
-  readingId: number;
+  readingId: number | null;
+  localId?: string;
   filename: string;
   path: string;
 }
@@ -49,6 +50,33 @@ export interface ISensorReadingRepository {
     readingId: number,
     file: Pick<UploadFile, 'filename' | 'path'>,
   ): Promise<UploadFile>;
+
+  createFileForLocalId(
+    enrolmentId: number,
+    localId: string,
+    file: Pick<UploadFile, 'filename' | 'path'>,
+  ): Promise<UploadFile>;
+
+  getFileByLocalId(
+    enrolmentId: number,
+    localId: string,
+  ): Promise<UploadFile | null>;
+}
+
+function mapUploadFile(row: {
+  id: number;
+  reading_id: number | null;
+  local_id: string | null;
+  filename: string;
+  path: string;
+}): UploadFile {
+  return {
+    id: row.id,
+    readingId: row.reading_id,
+    localId: row.local_id ?? undefined,
+    filename: row.filename,
+    path: row.path,
+  };
 }
 
 export class SensorReadingRepository
@@ -75,6 +103,47 @@ export class SensorReadingRepository
     }
   }
 
+  /**
+   * Stores a file uploaded for a reading that is identified by its local id. The reading itself may
+   * still be queued, so the reading id is only linked when the reading already exists.
+   */
+  async createFileForLocalId(
+    enrolmentId: number,
+    localId: string,
+    file: Pick<UploadFile, 'filename' | 'path'>,
+  ): Promise<UploadFile> {
+    try {
+      const res = await this.pool.query(
+        `INSERT INTO upload_files (enrolment_id, local_id, reading_id, filename, path)
+         VALUES ($1, $2, (SELECT id FROM sensor_readings WHERE enrolment_id = $1 AND local_id = $2), $3, $4)
+         ON CONFLICT (enrolment_id, local_id) DO UPDATE SET filename = EXCLUDED.filename, path = EXCLUDED.path
+         RETURNING *`,
+        [enrolmentId, localId, file.filename, file.path],
+      );
+      return mapUploadFile(res.rows[0]);
+    } catch (e) {
+      throw new DatabaseError((e as Error).message.toString());
+    }
+  }
+
+  async getFileByLocalId(
+    enrolmentId: number,
+    localId: string,
+  ): Promise<UploadFile | null> {
+    try {
+      const res = await this.pool.query(
+        'SELECT * FROM upload_files WHERE enrolment_id = $1 AND local_id = $2',
+        [enrolmentId, localId],
+      );
+      if (res.rows.length === 0) {
+        return null;
+      }
+      return mapUploadFile(res.rows[0]);
+    } catch (e) {
+      throw new DatabaseError((e as Error).message.toString());
+    }
+  }
+
   async createSensorReading(
     enrolmentId: number,
     reading: Pick<
@@ -0,0 +1,148 @@
+import { Mutex } from 'async-mutex';
+import express from 'express';
+import { createHash } from 'node:crypto';
+import { constants, createReadStream } from 'node:fs';
+import fs from 'node:fs/promises';
+import path from 'node:path';
+import { Config } from '../config';
+
+// parts are sent as raw bytes and have to stay below the proxy's 1MB request limit
+export const rawPart = express.raw({
+  type: 'application/octet-stream',
+  limit: '1mb',
+});
+
+export class PartOffsetMismatchError extends Error {
+  constructor(public receivedBytes: number) {
+    super(`Part offset does not match, server has ${receivedBytes} bytes`);
+  }
+}
+
+export class PartChecksumMismatchError extends Error {
+  constructor() {
+    super('Part checksum does not match');
+  }
+}
+
+function uploadDirectory() {
+  return path.join(process.cwd(), Config.app.uploadLocation);
+}
+
+function partialUploadPath(enrolmentId: number, localId: string) {
+  return path.join(uploadDirectory(), 'partial', `${enrolmentId}-${localId}`);
+}
+
+// requests for the same upload are handled one at a time, so a retried part is not stored twice
+const uploadLocks = new Map<string, { mutex: Mutex; waiting: number }>();
+
+async function withUploadLock<T>(
+  enrolmentId: number,
+  localId: string,
+  fn: () => Promise<T>,
+) {
+  const key = `${enrolmentId}-${localId}`;
+  let lock = uploadLocks.get(key);
+  if (!lock) {
+    lock = { mutex: new Mutex(), waiting: 0 };
+    uploadLocks.set(key, lock);
+  }
+
+  lock.waiting++;
+  try {
+    return await lock.mutex.runExclusive(fn);
+  } finally {
+    lock.waiting--;
+    if (lock.waiting === 0) {
+      uploadLocks.delete(key);
+    }
+  }
+}
+
+export function sha256Hex(data: Buffer) {
+  return createHash('sha256').update(data).digest('hex');
+}
+
+/**
+ * Number of bytes of a partial upload the server has already stored, which is the offset to resume from.
+ */
+export async function receivedBytes(enrolmentId: number, localId: string) {
+  try {
+    const stat = await fs.stat(partialUploadPath(enrolmentId, localId));
+    return stat.size;
+  } catch {
+    return 0;
+  }
+}
+
+/**
+ * Appends a part to a partial upload. Parts must arrive in order, so a part that does not start
+ * at the current end of the partial file is rejected with the offset the client should resume from.
+ */
+export async function appendPart(
+  enrolmentId: number,
+  localId: string,
+  offset: number,
+  part: Buffer,
+  checksum: string,
+) {
+  if (sha256Hex(part) !== checksum.toLowerCase()) {
+    throw new PartChecksumMismatchError();
+  }
+
+  return withUploadLock(enrolmentId, localId, async () => {
+    const current = await receivedBytes(enrolmentId, localId);
+    if (offset !== current) {
+      throw new PartOffsetMismatchError(current);
+    }
+
+    // written at the offset instead of appended, so storing the same part again cannot grow the file
+    const target = partialUploadPath(enrolmentId, localId);
+    await fs.mkdir(path.dirname(target), { recursive: true });
+    const file = await fs.open(target, constants.O_WRONLY | constants.O_CREAT);
+    try {
+      await file.write(part, 0, part.length, offset);
+    } finally {
+      await file.close();
+    }
+
+    return current + part.length;
+  });
+}
+
+async function sha256OfFile(file: string) {
+  const hash = createHash('sha256');
+  for await (const chunk of createReadStream(file)) {
+    hash.update(chunk);
+  }
+  return hash.digest('hex');
+}
+
+/**
+ * Verifies a completed partial upload and moves it into the upload location.
+ * A partial upload with the wrong size or checksum is discarded, so the client starts over.
+ *
+ * @returns the stored filename and path, or null if verification failed
+ */
+export async function completeUpload(
+  enrolmentId: number,
+  localId: string,
+  totalBytes: number,
+  checksum: string,
+  originalName: string,
+) {
+  return withUploadLock(enrolmentId, localId, async () => {
+    const partial = partialUploadPath(enrolmentId, localId);
+    const size = await receivedBytes(enrolmentId, localId);
+
+    if (size !== totalBytes || (await sha256OfFile(partial)) !== checksum) {
+      await fs.rm(partial, { force: true });
+      return null;
+    }
+
+    const filename = `${Date.now()}-${enrolmentId}-${path.basename(originalName)}`;
+    const target = path.join(uploadDirectory(), filename);
+    await fs.rename(partial, target);
+
+    return { filename, path: target };
+  });
+}
@@ -5,6 +5,8 @@ import { Config } from '../src/config';
 import jwt from 'jsonwebtoken';
 import { initializeRepositories } from '../src/data/repositoryHelper';
 import { Observability } from '../src/o11y';
+import { randomUUID } from 'node:crypto';
+import { sha256Hex } from '../src/middleware/resumableUpload';
 
 // Mock observability to avoid actual logging during tests
 const mockObservability: Observability = {
@@ -374,6 +376,64 @@ test('should create a batch of sensor readings', async () => {
   expect(res.body[1]).toMatchObject({ sensorType: 'type', data: 'data' });
 });
 
+test('should resume a chunked file upload', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  const localId = randomUUID();
+  const file = Buffer.from('0123456789abcdefghij');
+  const first = file.subarray(0, 12);
+  const second = file.subarray(12);
+
+  const part = await request(app)
+    .put(`/v1/reading/${localId}/file/upload?offset=0`)
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/octet-stream',
+      'X-Part-Checksum': sha256Hex(first),
+    })
+    .send(first);
+
+  expect(part.statusCode).toBe(200);
+  expect(part.body.receivedBytes).toBe(12);
+
+  const mismatch = await request(app)
+    .put(`/v1/reading/${localId}/file/upload?offset=0`)
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/octet-stream',
+      'X-Part-Checksum': sha256Hex(second),
+    })
+    .send(second);
+
+  expect(mismatch.statusCode).toBe(409);
+  expect(mismatch.body.receivedBytes).toBe(12);
+
+  await request(app)
+    .put(`/v1/reading/${localId}/file/upload?offset=12`)
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/octet-stream',
+      'X-Part-Checksum': sha256Hex(second),
+    })
+    .send(second);
+
+  const complete = await request(app)
+    .post(`/v1/reading/${localId}/file/complete`)
+    .set({ Authorization: 'Bearer ' + enrol.body.token })
+    .send({
+      totalBytes: file.length,
+      sha256: sha256Hex(file),
+      filename: 'sample.webm',
+    });
+
+  expect(complete.statusCode).toBe(201);
+  expect(complete.body).toMatchObject({ localId });
+});
+
 test('should fetch questionnaires in a study', async () => {
   const token = generateAdminToken();
   const study = await request(app)